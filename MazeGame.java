@@ -3,11 +3,30 @@
  *
  * Press 'm' to enter manual gameplay mode
  *  - (Press 'escape' to exit mode and use arrow keys to move)
+ *  - (Press 'a' to toggle auto-run, where each arrow key slides the player
+ *    along the corridor to the next junction or dead end)
+ *  - (Press 'g' to toggle fog of war, which hides every cell the player has
+ *    not yet seen down a straight corridor)
+ *  - (Press 'p' to toggle a chase, where pursuers hunt the player down)
+ *  - (Press 'o' to scatter keys to collect before any exit wins; the shortest
+ *    route through them all is shown under the maze)
  * Press 'd' to toggle to depth first search mode
  * Press 'b' to toggle to breadth first search mode
+ * Press 'c' to race depth and breadth first search side by side
+ * Press 'w' to toggle weighted terrain, where passages cost 1 to 9 to cross
+ * Press 'k' to toggle to cheapest path mode (Dijkstra's algorithm)
+ * Press 'e' to add an exit in a random cell; reaching any exit wins, and the
+ * searches find the nearest one
+ * Press 'y' to toggle dynamic mode, where walls open and close over time
+ *  - (Press 'f' to flip a random wall right away)
  * Press 'r' to reset and create new maze
+ * Press '=' or '-' to zoom in or out, and the arrow keys to pan around mazes
+ * too big for the window (in manual gameplay, the window follows the player)
  *
  * Current mode and instructions are indicated in the game
+ *
+ * Play with java MazeWorld session.mzr to record every key pressed in
+ * session.mzr, with the maze's seed; replay it with java InputReplay session.mzr 1
  */
 
 
@@ -17,8 +36,35 @@ import javalib.worldimages.*;
 import tester.Tester;
 
 import java.awt.*;
-import java.util.Queue;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.imageio.ImageIO;
 
 // to represent a vertex in the maze
 class Vertex {
@@ -33,8 +79,7 @@ class Vertex {
 
   // draw the vertex
   WorldImage drawVertex(Color cellColor, int cellSize) {
-    return new RectangleImage(cellSize - 2, cellSize - 2,
-        OutlineMode.SOLID, cellColor);
+    return ImageCache.rectangle(cellSize - 2, cellSize - 2, cellColor);
   }
 }
 
@@ -58,12 +103,222 @@ class Edge {
   }
 }
 
+// to represent the open passages of a maze as one bitmask per cell,
+// where cells are numbered row by row and bit d is set when the wall
+// on side d of the cell has been removed
+class MazeGraph {
+  // directions, indexing the bits of each cell's mask
+  static final int UP = 0;
+  static final int DOWN = 1;
+  static final int LEFT = 2;
+  static final int RIGHT = 3;
+  static final int[] DX = {0, 0, -1, 1};
+  static final int[] DY = {-1, 1, 0, 0};
+  // the largest cost of crossing a passage in a weighted maze
+  static final int MAX_WEIGHT = 9;
+
+  int width;
+  int height;
+  byte[] open;
+  // the cost of crossing each side of each cell, indexed by 4 * cell + dir
+  byte[] weights;
+
+  // constructor
+  MazeGraph(int width, int height, ArrayList<Edge> edges) {
+    this.width = width;
+    this.height = height;
+    this.open = new byte[width * height];
+    this.weights = new byte[4 * width * height];
+    Arrays.fill(this.weights, (byte) 1);
+    for (Edge e : edges) {
+      this.setOpen(this.id(e.source), this.id(e.destination), true);
+    }
+  }
+
+  // a random maze of the given size, built by Kruskal's algorithm over the
+  // walls in a random order with a union-find of cell numbers, for mazes
+  // too large for MazeWorld's edge lists
+  static MazeGraph generate(int width, int height, Random rand) {
+    MazeGraph graph = new MazeGraph(width, height, new ArrayList<Edge>());
+    // each wall is stored as twice the cell on its left or top side,
+    // plus 1 for the wall below that cell
+    int[] walls = new int[(width - 1) * height + width * (height - 1)];
+    int count = 0;
+    for (int cell = 0; cell < graph.size(); cell++) {
+      if (graph.xOf(cell) < width - 1) {
+        walls[count] = 2 * cell;
+        count++;
+      }
+      if (graph.yOf(cell) < height - 1) {
+        walls[count] = 2 * cell + 1;
+        count++;
+      }
+    }
+    for (int i = count - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int temp = walls[i];
+      walls[i] = walls[j];
+      walls[j] = temp;
+    }
+    int[] representatives = new int[graph.size()];
+    for (int cell = 0; cell < graph.size(); cell++) {
+      representatives[cell] = cell;
+    }
+    for (int i = 0; i < count; i++) {
+      int a = walls[i] / 2;
+      int b = (walls[i] % 2 == 0) ? a + 1 : a + width;
+      int rootA = findRoot(representatives, a);
+      int rootB = findRoot(representatives, b);
+      if (rootA != rootB) {
+        representatives[rootA] = rootB;
+        graph.setOpen(a, b, true);
+      }
+    }
+    return graph;
+  }
+
+  // find the representative of the given cell, halving the path to it
+  static int findRoot(int[] representatives, int cell) {
+    while (representatives[cell] != cell) {
+      representatives[cell] = representatives[representatives[cell]];
+      cell = representatives[cell];
+    }
+    return cell;
+  }
+
+  // open each remaining wall with the given chance, so that the maze has loops
+  void addLoops(double chance, Random rand) {
+    for (int cell = 0; cell < this.size(); cell++) {
+      if (this.xOf(cell) < this.width - 1 && !this.isOpen(cell, RIGHT)
+          && rand.nextDouble() < chance) {
+        this.setOpen(cell, cell + 1, true);
+      }
+      if (this.yOf(cell) < this.height - 1 && !this.isOpen(cell, DOWN)
+          && rand.nextDouble() < chance) {
+        this.setOpen(cell, cell + this.width, true);
+      }
+    }
+  }
+
+  // give every passage a random cost from 1 to MAX_WEIGHT
+  void randomizeWeights(Random rand) {
+    for (int cell = 0; cell < this.size(); cell++) {
+      if (this.isOpen(cell, RIGHT)) {
+        this.setWeight(cell, cell + 1, 1 + rand.nextInt(MAX_WEIGHT));
+      }
+      if (this.isOpen(cell, DOWN)) {
+        this.setWeight(cell, cell + this.width, 1 + rand.nextInt(MAX_WEIGHT));
+      }
+    }
+  }
+
+  // the number of cells in this maze
+  int size() {
+    return this.width * this.height;
+  }
+
+  // the cell number of the given coordinates
+  int id(int x, int y) {
+    return y * this.width + x;
+  }
+
+  // the cell number of the given vertex
+  int id(Vertex v) {
+    return this.id(v.x, v.y);
+  }
+
+  // the column of the given cell
+  int xOf(int cell) {
+    return cell % this.width;
+  }
+
+  // the row of the given cell
+  int yOf(int cell) {
+    return cell / this.width;
+  }
+
+  // is the wall on the given side of the given cell open?
+  boolean isOpen(int cell, int dir) {
+    return (this.open[cell] & (1 << dir)) != 0;
+  }
+
+  // the cell on the given side of the given cell, assuming it is in the maze
+  int neighbor(int cell, int dir) {
+    return cell + DX[dir] + DY[dir] * this.width;
+  }
+
+  // the direction from cell a to the adjacent cell b
+  int direction(int a, int b) {
+    if (b == a - this.width) {
+      return UP;
+    } else if (b == a + this.width) {
+      return DOWN;
+    } else if (b == a - 1) {
+      return LEFT;
+    } else {
+      return RIGHT;
+    }
+  }
+
+  // the cost of crossing the given side of the given cell
+  int weight(int cell, int dir) {
+    return this.weights[4 * cell + dir];
+  }
+
+  // set the cost of crossing between the adjacent cells a and b
+  void setWeight(int a, int b, int weight) {
+    int dir = this.direction(a, b);
+    this.weights[4 * a + dir] = (byte) weight;
+    this.weights[4 * b + (dir ^ 1)] = (byte) weight;
+  }
+
+  // open or close the wall between the adjacent cells a and b
+  void setOpen(int a, int b, boolean isOpen) {
+    int dir = this.direction(a, b);
+    if (isOpen) {
+      this.open[a] |= 1 << dir;
+      this.open[b] |= 1 << (dir ^ 1);
+    } else {
+      this.open[a] &= ~(1 << dir);
+      this.open[b] &= ~(1 << (dir ^ 1));
+    }
+  }
+}
+
 // represents a Maze game 
 class MazeWorld extends World {
+  // the number of ticks between wall flips in dynamic mode
+  static final int FLIP_TICKS = 100;
+  // the color of the cells hidden by fog of war
+  static final Color FOG_COLOR = Color.DARK_GRAY;
+  // in a chase, the number of ticks between the pursuers' steps, the number
+  // of cells for each pursuer, and the color of the cells they are in
+  static final int PURSUER_TICKS = 250;
+  static final int CELLS_PER_PURSUER = 100;
+  static final Color PURSUER_COLOR = new Color(128, 0, 128);
+  // the number of keys to collect, and the color of the cells holding them
+  static final int KEY_COUNT = 8;
+  static final Color KEY_COLOR = new Color(255, 215, 0);
+  // the largest window onto the maze, in pixels; bigger mazes pan and zoom in it
+  static final int VIEW_WIDTH = 1000;
+  static final int VIEW_HEIGHT = 600;
+  // the smallest and largest cell sizes that zooming allows
+  static final int MIN_CELL_SIZE = 4;
+  static final int MAX_CELL_SIZE = 120;
+
   // Maze world dimensions
   int cellSize;
   int width;
   int height;
+  // the top left corner of the window onto the maze, in pixels of the whole
+  // drawn maze; it only moves when the maze does not fit in the window
+  int cameraX;
+  int cameraY;
+  // the level of detail drawn: at level k, each square of cellSize pixels is a
+  // tile of up to 2^k x 2^k cells, summarized by the pyramid, which is only
+  // built once the maze is zoomed out that far
+  int lodLevel;
+  MazePyramid pyramid;
 
   // maze world fields
   ArrayList<ArrayList<Vertex>> vertices;
@@ -73,34 +328,103 @@ class MazeWorld extends World {
   // random number generator
   Random rand;
 
-  // depth first search fields
-  HashMap<Vertex, Edge> cameFromEdgeDfs;
-  ArrayList<Vertex> dfsPath;
-  ArrayList<Vertex> dfsVisited;
-  Stack<Vertex> dfsWorklist;
+  // open passages of the maze, one bitmask per cell
+  MazeGraph graph;
+  // the drawn maze, repainted only where cells change
+  MazeRenderer renderer;
+  // the maze's corridors for drawing the race and for fog of war, and where
+  // the player slides to along them in auto-run, or null until they are next
+  // needed after the maze changes
+  CorridorRuns corridors;
+  CorridorSlides slides;
+  // does the maze have loops and passages of different costs?
+  boolean weighted;
+  // where the player and the searches start, and the exits, reaching any one
+  // of which wins, with one flag for each cell saying whether it is an exit
+  int start;
+  int[] exits;
+  boolean[] isExit;
+
+  // search fields
+  // both searches race on their own worker threads once either is started;
+  // the views are this thread's copies of what the workers have published,
+  // and the animating flags choose which one is shown, or both when racing
+  SolverWorker dfsWorker;
+  SolverWorker bfsWorker;
+  SolverWorker cheapestWorker;
+  SolverView dfsView;
+  SolverView bfsView;
+  SolverView cheapestView;
   boolean animatingDfs;
-  boolean reconstructDfs;
-  boolean finalStateDfs;
-  boolean solvingDfs;
-
-  // breadth first search fields
-  HashMap<Vertex, Edge> cameFromEdgeBfs;
-  ArrayList<Vertex> bfsPath;
-  ArrayList<Vertex> bfsVisited;
-  Queue<Vertex> bfsWorklist;
   boolean animatingBfs;
-  boolean reconstructBfs;
-  boolean finalStateBfs;
-  boolean solvingBfs;
+  boolean animatingCheapest;
+  boolean racing;
+
+  // dynamic mode fields
+  // walls flip every FLIP_TICKS ticks, and the planner repairs its path after
+  // each flip; it only exists in dynamic mode, when the searches are stopped
+  boolean dynamic;
+  LpaStarPlanner planner;
+  int ticksUntilFlip;
+  long lastReplanNanos;
 
   // manual player fields
   Vertex player;
-  ArrayList<Vertex> playerPathAnimator;
-  ArrayList<Vertex> playerPath;
+  // the player's route from the start, with every loop they walked erased:
+  // its cells in order, and one more than each cell's index in it, or 0 for
+  // cells off the route, so that the player's next cell is found in O(1)
+  int[] playerRoute;
+  int playerRouteLength;
+  int[] routeIndex;
+  // how many cells of the route have been replayed from the end after a win,
+  // and 1 for each of them, so that drawing never searches the route
+  int playerReplayed;
+  byte[] playerTrail;
   boolean playerReconstruct;
   boolean finalStatePlayer;
   boolean manualGameplay;
   boolean playerWon;
+  // the directions of the arrow keys pressed since the last tick
+  int[] pendingMoves;
+  int pendingMoveCount;
+  // does each arrow key slide the player to the next junction or dead end?
+  boolean autoRun;
+  // are the cells the player has not seen hidden? if so, one bit for each
+  // cell they have seen, and for each row and column run of the maze's
+  // corridors they have seen down, so that no run is revealed twice
+  boolean fog;
+  long[] revealed;
+  long[] revealedRows;
+  long[] revealedColumns;
+  int revealedCount;
+  // are pursuers hunting the player? if so, the way to the player from every
+  // cell, the cell of each pursuer, and the number of pursuers in each cell,
+  // so that drawing a cell never looks through them
+  boolean chase;
+  PursuitField pursuit;
+  int[] pursuers;
+  int[] pursuersAt;
+  int ticksUntilPursuit;
+  boolean playerCaught;
+  // are there keys to collect before any exit wins? if so, the cells they
+  // were scattered in, one flag for each cell still holding one, the number
+  // left, the moves walked since, and the shortest route through them all
+  // from where the player stood
+  boolean collecting;
+  int[] keyCells;
+  boolean[] isKey;
+  int keysLeft;
+  int keyMoves;
+  KeyRoute keyRoute;
+
+  // the ticks so far, and where every key is recorded with its tick, if
+  // anywhere
+  long ticks;
+  InputLog log;
+  // the time each tick stands for when the searches step on this thread in
+  // lockstep with the ticks, so that a replay is deterministic, or 0 when
+  // they run on their own threads
+  long lockstepNanos;
 
   // maze world constructor
   MazeWorld(int width, int height, Random rand) {
@@ -108,7 +432,11 @@ class MazeWorld extends World {
     // initialize the maze world dimensions
     this.width = width;
     this.height = height;
-    this.cellSize = 600 / this.height;
+    this.cellSize = Math.max(VIEW_HEIGHT / this.height, MIN_CELL_SIZE);
+    this.cameraX = 0;
+    this.cameraY = 0;
+    this.lodLevel = 0;
+    this.pyramid = null;
     this.rand = rand;
     this.vertices = new ArrayList<ArrayList<Vertex>>();
     this.representatives = new HashMap<Vertex, Vertex>();
@@ -124,38 +452,46 @@ class MazeWorld extends World {
     }
     // initialize the edges
     this.edges = this.kruskals();
-
-    // initialize the dfs, bfs, and player fields
-    // depth first search fields
-    this.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    this.dfsPath = new ArrayList<Vertex>();
-    this.dfsPath.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.dfsVisited = new ArrayList<Vertex>();
-    this.dfsWorklist = new Stack<Vertex>();
+    this.graph = new MazeGraph(this.width, this.height, this.edges);
+    this.weighted = false;
+    this.renderer = new MazeRenderer(this.viewWidth(), this.viewHeight());
+    this.corridors = null;
+    this.slides = null;
+    this.start = 0;
+    this.exits = new int[] {this.graph.size() - 1};
+    this.isExit = new boolean[this.graph.size()];
+    this.isExit[this.graph.size() - 1] = true;
+
+    // initialize the search and player fields
+    // search fields
+    this.initSolvers();
     this.animatingDfs = false;
-    this.reconstructDfs = false;
-    this.finalStateDfs = false;
-    this.solvingDfs = false;
-    // breadth first search fields
-    this.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    this.bfsPath = new ArrayList<Vertex>();
-    this.bfsPath.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.bfsVisited = new ArrayList<Vertex>();
-    this.bfsWorklist = new LinkedList<Vertex>();
     this.animatingBfs = false;
-    this.reconstructBfs = false;
-    this.finalStateBfs = false;
-    this.solvingBfs = false;
+    this.animatingCheapest = false;
+    this.racing = false;
+    // dynamic mode fields
+    this.dynamic = false;
+    this.planner = null;
+    this.ticksUntilFlip = FLIP_TICKS;
+    this.lastReplanNanos = 0;
     // manual player fields
-    this.playerPathAnimator = new ArrayList<Vertex>();
-    this.playerPathAnimator.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.playerPath = new ArrayList<Vertex>();
-    this.player = this.vertices.get(0).get(0);
-    this.playerPath.add(this.player);
+    this.initPlayerTrail();
+    this.player = this.vertices.get(this.graph.xOf(this.start)).get(this.graph.yOf(this.start));
     this.playerReconstruct = false;
     this.finalStatePlayer = false;
     this.manualGameplay = false;
+    this.pendingMoves = new int[8];
+    this.pendingMoveCount = 0;
+    this.autoRun = false;
+    this.fog = false;
+    this.chase = false;
+    this.playerCaught = false;
+    this.collecting = false;
+    this.keysLeft = 0;
     this.playerWon = false;
+    this.ticks = 0;
+    this.log = null;
+    this.lockstepNanos = 0;
   }
 
   // initialize the edges of the maze
@@ -250,46 +586,315 @@ class MazeWorld extends World {
 
   // draw the open paths of the maze
   void drawEdge(Edge edge, WorldScene ws) {
-    Color c = Color.WHITE;
-    if (this.dfsVisited.contains(edge.source) && this.dfsVisited.contains(edge.destination)
+    Color c = this.overlayColor(edge);
+    if (c == null) {
+      c = this.passageColor(edge);
+    }
+    this.placePassage(edge, c, ws);
+  }
+
+  // the color a search or the player gives the given passage,
+  // or null if it is drawn in its plain passage color
+  Color overlayColor(Edge edge) {
+    return this.overlayColor(this.graph.id(edge.source), this.graph.id(edge.destination));
+  }
+
+  // the color a search or the player gives the passage between the given
+  // cells, or null if it is drawn in its plain passage color
+  Color overlayColor(int source, int destination) {
+    if (this.dynamic) {
+      if (this.planner.onPath[source] && this.planner.onPath[destination]) {
+        return Color.BLUE;
+      }
+    } else if (this.dfsView.isVisited(source) && this.dfsView.isVisited(destination)
         && this.animatingDfs) {
-      if (this.dfsPath.contains(edge.source) || this.dfsPath.contains(edge.destination)) {
-        c = Color.BLUE;
+      if (this.dfsView.onPath(source) || this.dfsView.onPath(destination)) {
+        return Color.BLUE;
       } else {
-        c = Color.CYAN;
+        return Color.CYAN;
       }
-    } else if (this.bfsVisited.contains(edge.source) && this.bfsVisited.contains(edge.destination)
+    } else if (this.bfsView.isVisited(source) && this.bfsView.isVisited(destination)
         && this.animatingBfs) {
-      if (this.bfsPath.contains(edge.source) || this.bfsPath.contains(edge.destination)) {
-        c = Color.MAGENTA;
+      if (this.bfsView.onPath(source) || this.bfsView.onPath(destination)) {
+        return Color.MAGENTA;
+      } else {
+        return Color.PINK;
+      }
+    } else if (this.cheapestView.isVisited(source) && this.cheapestView.isVisited(destination)
+        && this.animatingCheapest) {
+      if (this.cheapestView.onPath(source) && this.cheapestView.onPath(destination)) {
+        return Color.ORANGE;
       } else {
-        c = Color.PINK;
+        return Color.YELLOW;
       }
-    } else if ((this.dfsPath.contains(edge.source) || this.dfsPath.contains(edge.destination))
+    } else if ((this.dfsView.onPath(source) || this.dfsView.onPath(destination))
         && this.animatingDfs) {
-      c = Color.BLUE;
-    } else if ((this.bfsPath.contains(edge.source) || this.bfsPath.contains(edge.destination))
+      return Color.BLUE;
+    } else if ((this.bfsView.onPath(source) || this.bfsView.onPath(destination))
         && this.animatingBfs) {
-      c = Color.MAGENTA;
-    } else if (this.playerPathAnimator.contains(edge.source)
-        && this.playerPathAnimator.contains(edge.destination)) {
-      c = Color.ORANGE;
+      return Color.MAGENTA;
+    } else if (this.playerTrail[source] == 1 && this.playerTrail[destination] == 1) {
+      return Color.ORANGE;
+    }
+    return null;
+  }
+
+  // the plain color of the given passage
+  Color passageColor(Edge edge) {
+    return this.passageColor(this.graph.id(edge.source), this.graph.id(edge.destination));
+  }
+
+  // the plain color of the passage between the given cells
+  Color passageColor(int source, int destination) {
+    if (this.weighted) {
+      return this.terrainColor(
+          this.graph.weight(source, this.graph.direction(source, destination)));
+    } else {
+      return Color.WHITE;
+    }
+  }
+
+  // the color of the given cell, given the current mode
+  Color cellColor(int cell) {
+    int playerCell = this.graph.id(this.player);
+    if (this.chase && this.pursuersAt[cell] > 0 && !this.isFogged(cell)) {
+      return PURSUER_COLOR;
+    } else if (cell == this.start && !(this.manualGameplay && playerCell == cell)) {
+      return Color.GREEN;
+    } else if (this.isFogged(cell)) {
+      return FOG_COLOR;
+    } else if (this.collecting && this.isKey[cell]) {
+      return KEY_COLOR;
+    } else if (this.isExit[cell] && !(this.manualGameplay && playerCell == cell)) {
+      return Color.RED;
+    } else if (this.dynamic && this.planner.onPath[cell]) { // the planned path
+      return Color.BLUE;
+    } else if (cell == playerCell && this.manualGameplay) { // the manual player
+      return Color.ORANGE;
+    } else if (this.dfsView.onPath(cell) && this.animatingDfs) { // dfs path reconstruction
+      return Color.BLUE;
+    } else if (this.bfsView.onPath(cell) && this.animatingBfs) { // bfs path reconstruction
+      return Color.MAGENTA;
+    } else if (this.cheapestView.onPath(cell) && this.animatingCheapest) { // cheapest path
+      return Color.ORANGE;
+    } else if (this.playerTrail[cell] == 1
+        && (this.playerReconstruct || this.finalStatePlayer)) { // the player's path
+      return Color.ORANGE;
+    } else if (this.dfsView.isVisited(cell) && this.animatingDfs) { // dfs visited vertices
+      return Color.CYAN;
+    } else if (this.bfsView.isVisited(cell) && this.animatingBfs) { // bfs visited vertices
+      return Color.PINK;
+    } else if (this.cheapestView.isVisited(cell) && this.animatingCheapest) {
+      return Color.YELLOW;
+    } else { // blank cells
+      return Color.WHITE;
+    }
+  }
+
+  // the search being shown, or null if none is
+  SolverView shownView() {
+    if (this.animatingDfs) {
+      return this.dfsView;
+    } else if (this.animatingBfs) {
+      return this.bfsView;
+    } else if (this.animatingCheapest) {
+      return this.cheapestView;
+    } else {
+      return null;
+    }
+  }
+
+  // the levels of detail of the maze, summarizing the search being shown
+  MazePyramid pyramid() {
+    if (this.pyramid == null || this.pyramid.graph != this.graph) {
+      this.pyramid = new MazePyramid(this.graph);
+    }
+    if (this.pyramid.view != this.shownView()) {
+      this.pyramid.refresh(this.shownView());
+    } else {
+      this.pyramid.flush();
+    }
+    return this.pyramid;
+  }
+
+  // the color of the tile at the given position in the given level of detail,
+  // where the start, the exits and the manual player stand out as they do in
+  // cells
+  Color tileColor(int level, int x, int y) {
+    boolean playerTile = this.manualGameplay && x == this.player.x >> level
+        && y == this.player.y >> level;
+    if (this.inTile(this.start, level, x, y)) {
+      return Color.GREEN;
+    } else if (this.fog && !playerTile) {
+      return FOG_COLOR;
+    } else if (this.exitInTile(level, x, y)) {
+      return Color.RED;
+    } else if (playerTile) {
+      return Color.ORANGE;
+    } else if (this.animatingDfs) {
+      return this.pyramid.tileColor(level, x, y, Color.CYAN, Color.BLUE);
+    } else if (this.animatingBfs) {
+      return this.pyramid.tileColor(level, x, y, Color.PINK, Color.MAGENTA);
+    } else {
+      return this.pyramid.tileColor(level, x, y, Color.YELLOW, Color.ORANGE);
     }
+  }
+
+  // is the given cell in the tile at the given position in the given level of
+  // detail?
+  boolean inTile(int cell, int level, int x, int y) {
+    return this.graph.xOf(cell) >> level == x && this.graph.yOf(cell) >> level == y;
+  }
+
+  // is any exit in the tile at the given position in the given level of detail?
+  boolean exitInTile(int level, int x, int y) {
+    for (int exit : this.exits) {
+      if (this.inTile(exit, level, x, y)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // draw the given passage in the given color
+  void placePassage(Edge edge, Color c, WorldScene ws) {
     if (edge.source.x == edge.destination.x) {
       Vertex v = (edge.source.y > edge.destination.y) ? edge.source : edge.destination;
-      ws.placeImageXY(new RectangleImage(cellSize - 2, 2,
-              OutlineMode.SOLID, c),
+      ws.placeImageXY(ImageCache.rectangle(cellSize - 2, 2, c),
           (v.x * cellSize) + cellSize / 2,
           v.y * cellSize);
     } else {
       Vertex v = (edge.source.x > edge.destination.x) ? edge.source : edge.destination;
-      ws.placeImageXY(new RectangleImage(2, cellSize - 2,
-              OutlineMode.SOLID, c),
+      ws.placeImageXY(ImageCache.rectangle(2, cellSize - 2, c),
           v.x * cellSize,
           (v.y * cellSize) + cellSize / 2);
     }
   }
 
+  // shade a passage from white to dark gray by its cost
+  Color terrainColor(int weight) {
+    int shade = 255 - (weight - 1) * 160 / (MazeGraph.MAX_WEIGHT - 1);
+    return new Color(shade, shade, shade);
+  }
+
+  // add loops to the maze by opening about one in ten of the remaining walls,
+  // then charge each passage from 1 to MazeGraph.MAX_WEIGHT by its edge's weight
+  void weighTerrain() {
+    for (int x = 0; x < this.width; x++) {
+      for (int y = 0; y < this.height; y++) {
+        int cell = this.graph.id(this.vertices.get(x).get(y));
+        if (x + 1 < this.width && !this.graph.isOpen(cell, MazeGraph.RIGHT)
+            && this.rand.nextInt(10) == 0) {
+          this.addLoop(this.vertices.get(x).get(y), this.vertices.get(x + 1).get(y));
+        }
+        if (y + 1 < this.height && !this.graph.isOpen(cell, MazeGraph.DOWN)
+            && this.rand.nextInt(10) == 0) {
+          this.addLoop(this.vertices.get(x).get(y), this.vertices.get(x).get(y + 1));
+        }
+      }
+    }
+    for (Edge e : this.edges) {
+      this.graph.setWeight(this.graph.id(e.source), this.graph.id(e.destination),
+          1 + e.weight * MazeGraph.MAX_WEIGHT / 1000);
+    }
+  }
+
+  // open a passage between the given vertices that is not in the spanning tree
+  void addLoop(Vertex v1, Vertex v2) {
+    this.edges.add(new Edge(v1, v2, this.rand.nextInt(1000)));
+    this.graph.setOpen(this.graph.id(v1), this.graph.id(v2), true);
+    this.corridors = null;
+    this.slides = null;
+    if (this.pyramid != null) {
+      this.pyramid.update(this.graph.id(v1));
+      this.pyramid.update(this.graph.id(v2));
+    }
+  }
+
+  // start or stop dynamic mode; starting it stops the searches, which must
+  // not read the maze while its walls change, and plans a path on this thread
+  void toggleDynamic() {
+    this.dfsWorker.cancel();
+    this.bfsWorker.cancel();
+    this.cheapestWorker.cancel();
+    this.initSolvers();
+    this.animatingDfs = false;
+    this.animatingBfs = false;
+    this.animatingCheapest = false;
+    this.racing = false;
+    this.dynamic = !this.dynamic;
+    this.ticksUntilFlip = FLIP_TICKS;
+    this.lastReplanNanos = 0;
+    if (this.dynamic) {
+      this.planner = new LpaStarPlanner(this.graph, this.start, this.exits[0]);
+      this.planner.replan();
+      this.planner.tracePath();
+    } else {
+      this.planner = null;
+    }
+  }
+
+  // flip a random interior wall of the maze, choosing only among the
+  // directions that have one; a single cell has none to flip
+  void flipRandomWall() {
+    boolean across = this.width > 1;
+    boolean down = this.height > 1;
+    if (!across && !down) {
+      return;
+    }
+    if (across && (!down || this.rand.nextBoolean())) {
+      int x = this.rand.nextInt(this.width - 1);
+      int y = this.rand.nextInt(this.height);
+      this.flipWall(this.vertices.get(x).get(y), this.vertices.get(x + 1).get(y));
+    } else {
+      int x = this.rand.nextInt(this.width);
+      int y = this.rand.nextInt(this.height - 1);
+      this.flipWall(this.vertices.get(x).get(y), this.vertices.get(x).get(y + 1));
+    }
+  }
+
+  // open the wall between the given adjacent vertices if it is closed,
+  // or close it if it is open, then repair the planner's path
+  void flipWall(Vertex v1, Vertex v2) {
+    int a = this.graph.id(v1);
+    int b = this.graph.id(v2);
+    if (this.graph.isOpen(a, this.graph.direction(a, b))) {
+      for (int i = 0; i < this.edges.size(); i++) {
+        if (this.edges.get(i).hasVertex(v1) && this.edges.get(i).hasVertex(v2)) {
+          this.edges.remove(i);
+          break;
+        }
+      }
+      this.graph.setOpen(a, b, false);
+    } else {
+      Edge e = new Edge(v1, v2, this.rand.nextInt(1000));
+      this.edges.add(e);
+      this.graph.setOpen(a, b, true);
+      if (this.weighted) {
+        this.graph.setWeight(a, b, 1 + e.weight * MazeGraph.MAX_WEIGHT / 1000);
+      }
+    }
+    this.renderer.touch(a);
+    this.renderer.touch(b);
+    this.corridors = null;
+    this.slides = null;
+    if (this.pyramid != null) {
+      this.pyramid.update(a);
+      this.pyramid.update(b);
+    }
+    long before = System.nanoTime();
+    this.planner.wallChanged(a, b);
+    this.planner.replan();
+    this.lastReplanNanos = System.nanoTime() - before;
+    for (int i = 0; i < this.planner.pathLength; i++) {
+      this.renderer.touch(this.planner.path[i]);
+    }
+    this.planner.tracePath();
+    for (int i = 0; i < this.planner.pathLength; i++) {
+      this.renderer.touch(this.planner.path[i]);
+    }
+  }
+
   // determine if the given vertex is in a cycle
   // FOR TESTING PURPOSES ONLY
   boolean containsCycle(Vertex start, Vertex current) {
@@ -303,489 +908,5156 @@ class MazeWorld extends World {
     }
   }
 
-  // depth first search to find the shortest path from the start to the end
-  void dfs() {
-    // get the next vertex from the top of the worklist
-    Vertex next = this.dfsWorklist.pop();
+  // create fresh searches from the start to the nearest exit of the current
+  // maze, each one search however many exits there are, paced so that a
+  // search visiting every cell takes the same time on any size of maze,
+  // whatever the frame rate
+  void initSolvers() {
+    int[] starts = {this.start};
+    StepSchedule schedule = StepSchedule.forMaze(this.graph);
+    this.dfsWorker = new SolverWorker(new DfsSolver(this.graph, starts, this.exits), schedule);
+    this.bfsWorker = new SolverWorker(new BfsSolver(this.graph, starts, this.exits), schedule);
+    this.cheapestWorker = new SolverWorker(
+        new DialSolver(this.graph, starts, this.exits), schedule);
+    this.dfsView = new SolverView(this.graph.size());
+    this.bfsView = new SolverView(this.graph.size());
+    this.cheapestView = new SolverView(this.graph.size());
+  }
 
-    // if next has already been visited, discard it
-    if (this.dfsVisited.contains(next)) {
+  // start the searches on their own threads, or in lockstep with the ticks,
+  // unless they are already running
+  void startSolvers() {
+    if (this.dfsWorker.isStarted()) {
+      return;
+    }
+    if (this.lockstepNanos > 0) {
+      this.dfsWorker.startInline();
+      this.bfsWorker.startInline();
+      this.cheapestWorker.startInline();
+    } else {
+      this.dfsWorker.start("dfs-solver");
+      this.bfsWorker.start("bfs-solver");
+      this.cheapestWorker.start("cheapest-solver");
+    }
+  }
+
+  // replay the next cell of the player's route, from the end back to the start
+  void reconstructPlayerPath() {
+    if (this.playerReplayed == this.playerRouteLength) {
+      this.playerReconstruct = false;
+      this.finalStatePlayer = true;
+      return;
+    }
+    int cell = this.playerRoute[this.playerRouteLength - 1 - this.playerReplayed];
+    this.playerReplayed++;
+    this.playerTrail[cell] = 1;
+    this.renderer.touch(cell);
+  }
+
+  // start the player's route over at the start, with nothing replayed but
+  // the exits
+  void initPlayerTrail() {
+    this.playerRoute = new int[this.width * this.height];
+    this.routeIndex = new int[this.width * this.height];
+    this.playerRouteLength = 0;
+    this.extendRoute(this.start);
+    this.playerReplayed = 0;
+    this.playerTrail = new byte[this.width * this.height];
+    for (int exit : this.exits) {
+      this.playerTrail[exit] = 1;
+    }
+    this.renderer.invalidate();
+  }
+
+  // start the player and the searches at the given cell, and end the maze at
+  // the given exits, starting the searches and the player over
+  void setEnds(int start, int[] exits) {
+    this.start = start;
+    this.exits = exits;
+    this.isExit = new boolean[this.graph.size()];
+    for (int exit : exits) {
+      this.isExit[exit] = true;
+    }
+    this.slides = null;
+    this.dfsWorker.cancel();
+    this.bfsWorker.cancel();
+    this.cheapestWorker.cancel();
+    this.initSolvers();
+    this.animatingDfs = false;
+    this.animatingBfs = false;
+    this.animatingCheapest = false;
+    this.racing = false;
+    this.resetPlayer();
+  }
+
+  // add an exit in a random cell that is neither the start nor an exit,
+  // unless there is none
+  void addExit() {
+    if (this.exits.length == this.graph.size() - 1) {
       return;
-    } else if (next.equals(this.vertices.get(this.width - 1).get(this.height - 1))) {
-      // reconstruct the path from the end to the start to show the shortest path
-      this.solvingDfs = false;
-      this.reconstructDfs = true;
+    }
+    int cell = this.rand.nextInt(this.graph.size());
+    while (cell == this.start || this.isExit[cell]) {
+      cell = this.rand.nextInt(this.graph.size());
+    }
+    int[] exits = Arrays.copyOf(this.exits, this.exits.length + 1);
+    exits[this.exits.length] = cell;
+    this.setEnds(this.start, exits);
+  }
+
+  // add the given cell to the end of the player's route, or, if the route
+  // already passes through it, erase the loop back to it
+  void extendRoute(int cell) {
+    if (this.routeIndex[cell] != 0) {
+      while (this.playerRouteLength > this.routeIndex[cell]) {
+        this.playerRouteLength--;
+        this.routeIndex[this.playerRoute[this.playerRouteLength]] = 0;
+      }
+    } else {
+      this.playerRoute[this.playerRouteLength] = cell;
+      this.playerRouteLength++;
+      this.routeIndex[cell] = this.playerRouteLength;
+    }
+  }
+
+  // is the given cell on the player's route?
+  boolean onRoute(int cell) {
+    return this.routeIndex[cell] != 0;
+  }
+
+  // start or stop hiding the cells the player has not seen, starting with
+  // only those seen from where they stand
+  void toggleFog() {
+    this.fog = !this.fog;
+    if (this.fog) {
+      CorridorRuns runs = this.corridors();
+      this.revealed = new long[(this.graph.size() + 63) >> 6];
+      this.revealedRows = new long[(runs.rowCount + 63) >> 6];
+      this.revealedColumns = new long[(runs.columnCount + 63) >> 6];
+      this.revealedCount = 0;
+      this.reveal(this.graph.id(this.player));
+    }
+    this.renderer.invalidate();
+  }
+
+  // reveal the cells seen from the given cell, down the row and column runs
+  // of corridor through it, repainting only those not seen before
+  void reveal(int cell) {
+    CorridorRuns runs = this.corridors();
+    int row = runs.rowRunOf[cell];
+    if ((this.revealedRows[row >> 6] & (1L << row)) == 0) {
+      this.revealedRows[row >> 6] |= 1L << row;
+      this.revealRun(runs.rowStart[row], runs.rowLength[row], 1);
+    }
+    int column = runs.columnRunOf[cell];
+    if (column >= 0 && (this.revealedColumns[column >> 6] & (1L << column)) == 0) {
+      this.revealedColumns[column >> 6] |= 1L << column;
+      this.revealRun(runs.columnStart[column], runs.columnLength[column], this.graph.width);
+    }
+  }
+
+  // reveal the given number of cells from the given one, the given step apart
+  void revealRun(int start, int length, int step) {
+    for (int i = 0; i < length; i++) {
+      int cell = start + i * step;
+      if ((this.revealed[cell >> 6] & (1L << cell)) == 0) {
+        this.revealed[cell >> 6] |= 1L << cell;
+        this.revealedCount++;
+        this.renderer.touch(cell);
+      }
+    }
+  }
+
+  // is the given cell hidden by fog of war?
+  boolean isFogged(int cell) {
+    return this.fog && (this.revealed[cell >> 6] & (1L << cell)) == 0;
+  }
+
+  // start or stop pursuers hunting the player, one for every
+  // CELLS_PER_PURSUER cells, each starting in a random cell but theirs
+  void toggleChase() {
+    this.chase = !this.chase;
+    this.playerCaught = false;
+    if (this.chase) {
+      int playerCell = this.graph.id(this.player);
+      this.pursuit = new PursuitField(this.graph, playerCell);
+      this.pursuers = new int[Math.max(1, this.graph.size() / CELLS_PER_PURSUER)];
+      this.pursuersAt = new int[this.graph.size()];
+      for (int i = 0; i < this.pursuers.length; i++) {
+        int cell = this.rand.nextInt(this.graph.size() - 1);
+        this.pursuers[i] = (cell < playerCell) ? cell : cell + 1;
+        this.pursuersAt[this.pursuers[i]]++;
+      }
+      this.ticksUntilPursuit = PURSUER_TICKS;
     } else {
-      // get edges of next
-      ArrayList<Edge> nextEdges = new ArrayList<Edge>();
-      for (Edge e : this.edges) {
-        if (e.hasVertex(next)) {
-          nextEdges.add(e);
+      this.pursuit = null;
+    }
+    this.renderer.invalidate();
+  }
+
+  // move every pursuer one step toward the player, repainting the cells they
+  // leave and enter, and catch the player if one reaches them
+  void stepPursuers() {
+    for (int i = 0; i < this.pursuers.length; i++) {
+      int cell = this.pursuers[i];
+      int next = this.pursuit.step(cell);
+      if (next != cell) {
+        this.pursuersAt[cell]--;
+        this.pursuersAt[next]++;
+        this.pursuers[i] = next;
+        this.renderer.touch(cell);
+        this.renderer.touch(next);
+      }
+    }
+    if (this.pursuersAt[this.graph.id(this.player)] > 0) {
+      this.playerCaught = true;
+    }
+  }
+
+  // follow the player to the given cell, one of theirs or next to it, with
+  // the way to them, and catch them if they ran into a pursuer there
+  void chaseTo(int cell) {
+    this.pursuit.moveTo(cell);
+    if (this.pursuersAt[cell] > 0) {
+      this.playerCaught = true;
+    }
+  }
+
+  // scatter KEY_COUNT keys in random cells other than the player's and the
+  // exits, and find the shortest route through them all from the player's
+  // cell to an exit, or take the keys away
+  void toggleKeys() {
+    this.collecting = !this.collecting;
+    this.slides = null;
+    if (this.collecting) {
+      int playerCell = this.graph.id(this.player);
+      this.keyCells = new int[Math.max(0,
+          Math.min(KEY_COUNT, this.graph.size() - 1 - this.exits.length))];
+      this.isKey = new boolean[this.graph.size()];
+      for (int i = 0; i < this.keyCells.length; i++) {
+        int cell = this.rand.nextInt(this.graph.size());
+        while (cell == playerCell || this.isExit[cell] || this.isKey[cell]) {
+          cell = this.rand.nextInt(this.graph.size());
         }
+        this.keyCells[i] = cell;
+        this.isKey[cell] = true;
+      }
+      this.keysLeft = this.keyCells.length;
+      this.keyMoves = 0;
+      this.keyRoute = new KeyRoute(this.graph, playerCell, this.keyCells, this.exits);
+    } else {
+      this.keysLeft = 0;
+      this.keyRoute = null;
+    }
+    this.renderer.invalidate();
+  }
+
+  // describe the keys left and the shortest route through them
+  String keysStatus() {
+    return "Keys: " + (this.keyCells.length - this.keysLeft) + " of " + this.keyCells.length
+        + ", " + this.keyMoves + " moves, shortest route " + this.keyRoute.length
+        + (this.keyRoute.exact ? "" : " or less");
+  }
+
+  // take the player into the given cell, one of theirs or next to it: add it
+  // to their route, and let fog, pursuers and keys follow them there
+  void enter(int cell) {
+    this.extendRoute(cell);
+    if (this.fog) {
+      this.reveal(cell);
+    }
+    if (this.chase) {
+      this.chaseTo(cell);
+    }
+    if (this.collecting) {
+      this.keyMoves++;
+      if (this.isKey[cell]) {
+        this.isKey[cell] = false;
+        this.keysLeft--;
+        this.renderer.touch(cell);
       }
-      // for each neighbor n of next
-      for (Edge e : nextEdges) {
-        Vertex neighbor = (e.source.equals(next)) ? e.destination : e.source;
-        // add n to the worklist
-        this.dfsWorklist.push(neighbor);
-        // record the edge from next to n in the cameFromEdge map
-        this.cameFromEdgeDfs.putIfAbsent(neighbor, e);
+    }
+  }
+
+  // the number of moves along the player's route
+  int routeMoves() {
+    return this.playerRouteLength - 1;
+  }
+
+  // remember a move of the player in the given direction, to be made on the
+  // next tick with any others pressed before it
+  void queueMove(int direction) {
+    if (this.pendingMoveCount == this.pendingMoves.length) {
+      this.pendingMoves = Arrays.copyOf(this.pendingMoves, 2 * this.pendingMoves.length);
+    }
+    this.pendingMoves[this.pendingMoveCount] = direction;
+    this.pendingMoveCount++;
+  }
+
+  // make every move queued since the last tick, then repaint the cells the
+  // player left and reached, keeping the window on the player
+  void applyMoves() {
+    if (this.pendingMoveCount == 0) {
+      return;
+    }
+    int before = this.graph.id(this.player);
+    int cameraX = this.cameraX;
+    int cameraY = this.cameraY;
+    for (int i = 0; i < this.pendingMoveCount; i++) {
+      if (this.autoRun) {
+        this.slide(this.pendingMoves[i]);
+      } else {
+        this.move(this.pendingMoves[i]);
       }
     }
+    this.pendingMoveCount = 0;
+    this.follow();
+    if (this.cameraX == cameraX && this.cameraY == cameraY) {
+      this.renderer.touch(before);
+      this.renderer.touch(this.graph.id(this.player));
+    } else {
+      this.renderer.invalidate();
+    }
+  }
+
+  // slide the player in the given direction along the corridor beyond, to the
+  // next junction, dead end, start, exit or key, as one move of the window; the
+  // end of the slide is looked up, and only the route follows each cell
+  void slide(int direction) {
+    int cell = this.graph.id(this.player);
+    CorridorSlides slides = this.slides();
+    int length = slides.length(cell, direction);
+    if (this.playerWon || this.playerCaught || length <= 0) {
+      this.move(direction);
+      return;
+    }
+    int previous = cell;
+    cell = this.graph.neighbor(cell, direction);
+    this.enter(cell);
+    for (int i = 1; i < length && !this.playerCaught; i++) {
+      int next = this.graph.neighbor(cell, slides.onward(this.graph, cell, previous));
+      previous = cell;
+      cell = next;
+      this.enter(cell);
+    }
+    this.player = this.vertices.get(this.graph.xOf(cell)).get(this.graph.yOf(cell));
+    if (this.isExit[cell] && this.keysLeft == 0) {
+      this.playerReconstruct = true;
+      this.playerWon = true;
+    }
+  }
+
+  // move the player one cell in the given direction unless a wall is in the
+  // way, and start replaying their route once they are at an exit with every
+  // key collected; once they have won, their route stays as it is, and once
+  // caught, so do they
+  void move(int direction) {
+    int x = this.player.x + MazeGraph.DX[direction];
+    int y = this.player.y + MazeGraph.DY[direction];
+    if (this.playerWon || this.playerCaught
+        || x < 0 || x >= this.width || y < 0 || y >= this.height) {
+      return;
+    }
+    if (this.graph.isOpen(this.graph.id(this.player), direction)) {
+      this.player = this.vertices.get(x).get(y);
+      this.enter(this.graph.id(this.player));
+    }
+    if (this.isExit[this.graph.id(this.player)] && this.keysLeft == 0) {
+      this.playerReconstruct = true;
+      this.playerWon = true;
+    }
+  }
 
-    // update the visited vertices
-    this.dfsVisited.add(next);
+  // reset entire world
+  void reset() {
+    // reset maze fields
+    this.vertices = new ArrayList<ArrayList<Vertex>>();
+    this.representatives = new HashMap<Vertex, Vertex>();
+    for (int i = 0; i < this.width; i++) {
+      this.vertices.add(new ArrayList<Vertex>());
+      for (int j = 0; j < this.height; j++) {
+        Vertex v = new Vertex(i, j);
+        this.vertices.get(i).add(v);
+        this.representatives.put(v, v);
+      }
+    }
+    this.edges = this.kruskals();
+    this.graph = new MazeGraph(this.width, this.height, this.edges);
+    if (this.weighted) {
+      this.weighTerrain();
+    }
+    this.renderer.invalidate();
+    this.corridors = null;
+    this.slides = null;
+    this.pyramid = null;
+
+    // reset search and player fields
+    // search fields
+    this.dfsWorker.cancel();
+    this.bfsWorker.cancel();
+    this.cheapestWorker.cancel();
+    this.initSolvers();
+    this.animatingDfs = false;
+    this.animatingBfs = false;
+    this.animatingCheapest = false;
+    this.racing = false;
+    // dynamic mode fields
+    this.dynamic = false;
+    this.planner = null;
+    this.ticksUntilFlip = FLIP_TICKS;
+    this.lastReplanNanos = 0;
+    // manual player fields
+    this.initPlayerTrail();
+    this.player = this.vertices.get(this.graph.xOf(this.start)).get(this.graph.yOf(this.start));
+    this.playerReconstruct = false;
+    this.finalStatePlayer = false;
+    this.manualGameplay = false;
+    this.pendingMoves = new int[8];
+    this.pendingMoveCount = 0;
+    this.autoRun = false;
+    this.fog = false;
+    this.chase = false;
+    this.playerCaught = false;
+    this.collecting = false;
+    this.keysLeft = 0;
+    this.playerWon = false;
+  }
+
+  // reset player world only to exit manual gameplay
+  void resetPlayer() {
+    if (this.collecting) {
+      // the keys no longer stop slides
+      this.slides = null;
+    }
+    // reset manual player fields
+    this.initPlayerTrail();
+    this.player = this.vertices.get(this.graph.xOf(this.start)).get(this.graph.yOf(this.start));
+    this.playerReconstruct = false;
+    this.finalStatePlayer = false;
+    this.manualGameplay = false;
+    this.pendingMoves = new int[8];
+    this.pendingMoveCount = 0;
+    this.autoRun = false;
+    this.fog = false;
+    this.chase = false;
+    this.playerCaught = false;
+    this.collecting = false;
+    this.keysLeft = 0;
+    this.playerWon = false;
+  }
+
+  // play a new maze, recording every key pressed in the given file if there
+  // is one, up to the tick the game is closed on, as in
+  // java MazeWorld session.mzr
+  public static void main(String[] args) throws IOException {
+    long seed = System.nanoTime();
+    final MazeWorld maze = new MazeWorld(50, 25, new Random(seed));
+    if (args.length > 0) {
+      maze.log = new InputLog(new FileOutputStream(args[0]), 50, 25, seed);
+      // closing the window ends the program, which ends the session
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        public void run() {
+          maze.stopRecording();
+        }
+      });
+    }
+    maze.bigBang(maze.viewWidth(), maze.viewHeight() + 200, 0.001);
+  }
+
+  // stop recording keys, marking the current tick as the last of the session,
+  // so that a replay runs on to it however long after the last key it is
+  void stopRecording() {
+    if (this.log == null) {
+      return;
+    }
+    try {
+      this.log.close(this.ticks);
+    } catch (IOException e) {
+      System.err.println("could not end the key log: " + e.getMessage());
+    }
+    this.log = null;
+  }
+
+  // on key event, handle accordingly, recording the key if it did anything,
+  // keeping the window on the player in manual gameplay, then repaint
+  // everything after a change of mode or a move of the window; moves of the
+  // player wait for the next tick
+  public void onKeyEvent(String key) {
+    int cameraX = this.cameraX;
+    int cameraY = this.cameraY;
+    if (this.handleKey(key) && this.log != null) {
+      try {
+        this.log.record(this.ticks, key);
+      } catch (IOException e) {
+        System.err.println("stopped recording keys: " + e.getMessage());
+        this.log = null;
+      }
+    }
+    if (this.manualGameplay) {
+      this.follow();
+    }
+    if (!(key.equals("up") || key.equals("down") || key.equals("left") || key.equals("right"))
+        || this.cameraX != cameraX || this.cameraY != cameraY) {
+      this.renderer.invalidate();
+    }
+  }
+
+  // handle the given key, returning whether it was one this mode handles
+  boolean handleKey(String key) {
+    // zooming works in every mode, and so does panning, but in manual gameplay
+    // the arrow keys move the player instead
+    if (key.equals("=") || key.equals("+") || key.equals("-")) {
+      this.zoom(!key.equals("-"));
+      return true;
+    } else if (!this.manualGameplay && key.equals("up")) {
+      this.pan(0, -1);
+      return true;
+    } else if (!this.manualGameplay && key.equals("down")) {
+      this.pan(0, 1);
+      return true;
+    } else if (!this.manualGameplay && key.equals("left")) {
+      this.pan(-1, 0);
+      return true;
+    } else if (!this.manualGameplay && key.equals("right")) {
+      this.pan(1, 0);
+      return true;
+    }
+    if (this.dynamic && !key.equals("y") && !key.equals("f") && !key.equals("r")) {
+      // the searches and the player wait until dynamic mode ends
+      return false;
+    }
+    if (key.equals("d")) {
+      // if already solving, toggle animation
+      if (this.animatingDfs || this.animatingBfs || this.animatingCheapest || this.racing) {
+        this.animatingDfs = true;
+        this.animatingBfs = false;
+        this.animatingCheapest = false;
+        this.racing = false;
+        return true;
+      }
+      // otherwise depth first search starts, with both searches running
+      this.animatingDfs = true;
+      this.startSolvers();
+    } else if (key.equals("b")) {
+      // if already solving, toggle animation
+      if (this.animatingDfs || this.animatingBfs || this.animatingCheapest || this.racing) {
+        this.animatingBfs = true;
+        this.animatingDfs = false;
+        this.animatingCheapest = false;
+        this.racing = false;
+        return true;
+      }
+      // otherwise breadth first search starts, with both searches running
+      this.animatingBfs = true;
+      this.startSolvers();
+    } else if (key.equals("k") && !this.manualGameplay) {
+      // show the cheapest path search, starting the searches if needed
+      this.animatingCheapest = true;
+      this.animatingDfs = false;
+      this.animatingBfs = false;
+      this.racing = false;
+      this.startSolvers();
+    } else if (key.equals("c") && !this.manualGameplay) {
+      // show both searches side by side, starting them if needed
+      this.racing = true;
+      this.animatingDfs = false;
+      this.animatingBfs = false;
+      this.animatingCheapest = false;
+      this.startSolvers();
+    } else if (key.equals("m") && !animatingDfs && !animatingBfs && !animatingCheapest
+        && !racing) {
+      this.manualGameplay = true;
+    } else if (key.equals("a") && this.manualGameplay) {
+      this.autoRun = !this.autoRun;
+    } else if (key.equals("g") && this.manualGameplay) {
+      this.toggleFog();
+    } else if (key.equals("p") && this.manualGameplay) {
+      this.toggleChase();
+    } else if (key.equals("o") && this.manualGameplay) {
+      this.toggleKeys();
+    } else if (key.equals("up") && this.manualGameplay && !this.finalStatePlayer) {
+      this.queueMove(MazeGraph.UP);
+    } else if (key.equals("down") && this.manualGameplay && !this.finalStatePlayer) {
+      this.queueMove(MazeGraph.DOWN);
+    } else if (key.equals("left") && this.manualGameplay && !this.finalStatePlayer) {
+      this.queueMove(MazeGraph.LEFT);
+    } else if (key.equals("right") && this.manualGameplay && !this.finalStatePlayer) {
+      this.queueMove(MazeGraph.RIGHT);
+    } else if (key.equals("escape")) {
+      this.resetPlayer();
+    } else if (key.equals("r")) {
+      this.reset();
+    } else if (key.equals("e") && !this.manualGameplay) {
+      this.addExit();
+    } else if (key.equals("y") && !this.manualGameplay) {
+      this.toggleDynamic();
+    } else if (key.equals("f") && this.dynamic) {
+      this.flipRandomWall();
+    } else if (key.equals("w")) {
+      // toggle weighted terrain on a new maze
+      this.weighted = !this.weighted;
+      this.reset();
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  // on tick
+  public void onTick() {
+    this.ticks++;
+    // step searches running in lockstep, then make the player's moves since
+    // the last tick, and then the pursuers', if it is their turn
+    if (this.dfsWorker.isInline()) {
+      this.dfsWorker.stepInline(this.lockstepNanos);
+      this.bfsWorker.stepInline(this.lockstepNanos);
+      this.cheapestWorker.stepInline(this.lockstepNanos);
+    }
+    this.applyMoves();
+    if (this.chase && !this.playerCaught && !this.playerWon) {
+      this.ticksUntilPursuit--;
+      if (this.ticksUntilPursuit == 0) {
+        this.stepPursuers();
+        this.ticksUntilPursuit = PURSUER_TICKS;
+      }
+    }
+    // catch up with whatever the searches have published since the last tick
+    this.syncView(this.dfsView, this.dfsWorker, this.animatingDfs);
+    this.syncView(this.bfsView, this.bfsWorker, this.animatingBfs);
+    this.syncView(this.cheapestView, this.cheapestWorker, this.animatingCheapest);
+    if (this.dynamic) {
+      this.ticksUntilFlip--;
+      if (this.ticksUntilFlip == 0) {
+        this.flipRandomWall();
+        this.ticksUntilFlip = FLIP_TICKS;
+      }
+    }
+    if (this.playerReconstruct) {
+      this.reconstructPlayerPath();
+    }
+  }
+
+  // catch the given view up with its worker, repainting the cells it marks
+  // if it is being shown
+  void syncView(SolverView view, SolverWorker worker, boolean shown) {
+    int visited = view.seenVisited;
+    int path = view.seenPath;
+    view.sync(worker);
+    if (shown) {
+      boolean summarized = this.pyramid != null && this.pyramid.view == view;
+      for (int i = visited; i < view.seenVisited; i++) {
+        this.renderer.touch(worker.solver.visitedCell(i));
+        if (summarized) {
+          this.pyramid.update(worker.solver.visitedCell(i));
+        }
+      }
+      for (int i = path; i < view.seenPath; i++) {
+        this.renderer.touch(worker.solver.pathCell(i));
+        if (summarized) {
+          this.pyramid.update(worker.solver.pathCell(i));
+        }
+      }
+    }
+  }
+
+  // the width of the window onto the maze, in pixels
+  int viewWidth() {
+    return Math.min(this.drawnWidth(), VIEW_WIDTH);
+  }
+
+  // the height of the window onto the maze, in pixels
+  int viewHeight() {
+    return Math.min(this.drawnHeight(), VIEW_HEIGHT);
+  }
+
+  // the width of the whole drawn maze at the current level of detail, in pixels
+  int drawnWidth() {
+    return (((this.width - 1) >> this.lodLevel) + 1) * this.cellSize;
+  }
+
+  // the height of the whole drawn maze at the current level of detail, in pixels
+  int drawnHeight() {
+    return (((this.height - 1) >> this.lodLevel) + 1) * this.cellSize;
+  }
+
+  // move the window by the given numbers of quarter windows across and down
+  void pan(int across, int down) {
+    this.cameraX += across * this.viewWidth() / 4;
+    this.cameraY += down * this.viewHeight() / 4;
+    this.clampCamera();
+  }
+
+  // keep the window inside the maze
+  void clampCamera() {
+    this.cameraX = Math.max(0, Math.min(this.cameraX, this.drawnWidth() - this.viewWidth()));
+    this.cameraY = Math.max(0, Math.min(this.cameraY, this.drawnHeight() - this.viewHeight()));
+  }
+
+  // double the cell size, or halve it, within MIN_CELL_SIZE and MAX_CELL_SIZE;
+  // past MIN_CELL_SIZE, zooming out draws the next coarser level of detail
+  // instead, until the whole maze fits in the window; either way, the middle
+  // of the window stays over the same part of the maze
+  void zoom(boolean in) {
+    int size = this.cellSize;
+    int level = this.lodLevel;
+    if (in && level > 0) {
+      level--;
+    } else if (in) {
+      size = Math.min(this.cellSize * 2, MAX_CELL_SIZE);
+    } else if (this.cellSize > MIN_CELL_SIZE) {
+      size = Math.max(this.cellSize / 2, MIN_CELL_SIZE);
+    } else if (this.drawnWidth() > VIEW_WIDTH || this.drawnHeight() > VIEW_HEIGHT) {
+      level++;
+    }
+    if ((in && size < this.cellSize) || (size == this.cellSize && level == this.lodLevel)) {
+      return;
+    }
+    long middleX = ((long) (this.cameraX + this.viewWidth() / 2) * size << this.lodLevel)
+        / ((long) this.cellSize << level);
+    long middleY = ((long) (this.cameraY + this.viewHeight() / 2) * size << this.lodLevel)
+        / ((long) this.cellSize << level);
+    this.cellSize = size;
+    this.lodLevel = level;
+    this.cameraX = (int) middleX - this.viewWidth() / 2;
+    this.cameraY = (int) middleY - this.viewHeight() / 2;
+    this.clampCamera();
+    this.renderer = new MazeRenderer(this.viewWidth(), this.viewHeight());
+  }
+
+  // move the window as little as possible to keep the player at least
+  // a quarter of the window away from its edges
+  void follow() {
+    int left = (this.player.x >> this.lodLevel) * this.cellSize;
+    int top = (this.player.y >> this.lodLevel) * this.cellSize;
+    this.cameraX = Math.max(Math.min(this.cameraX, left - this.viewWidth() / 4),
+        left + this.cellSize + this.viewWidth() / 4 - this.viewWidth());
+    this.cameraY = Math.max(Math.min(this.cameraY, top - this.viewHeight() / 4),
+        top + this.cellSize + this.viewHeight() / 4 - this.viewHeight());
+    this.clampCamera();
+  }
+
+  // draw the world
+  public WorldScene makeScene() {
+    WorldScene ws = new WorldScene(this.viewWidth(),
+        this.viewHeight() + 200);
+
+    // create white background behind black maze background
+    ws.placeImageXY(ImageCache.rectangle(this.viewWidth(),
+            this.viewHeight() + 200, Color.WHITE), this.viewWidth() / 2 + 100,
+        this.viewHeight() / 2 + 100);
+
+    // when racing, draw both searches side by side on a black background
+    if (this.racing) {
+      ws.placeImageXY(ImageCache.rectangle(this.viewWidth(),
+              this.viewHeight(), Color.BLACK), this.viewWidth() / 2,
+          this.viewHeight() / 2);
+      this.drawRace(ws);
+      return ws;
+    }
+
+    // draw the maze, repainting the cells that changed since the last frame
+    ws.placeImageXY(this.renderer.draw(this), this.viewWidth() / 2,
+        this.viewHeight() / 2);
+
+    // display the current mode
+    if (this.animatingDfs) {
+      ws.placeImageXY(ImageCache.text("Mode: DFS", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.animatingBfs) {
+      ws.placeImageXY(ImageCache.text("Mode: BFS", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.animatingCheapest) {
+      ws.placeImageXY(ImageCache.text("Mode: Cheapest", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.dynamic) {
+      ws.placeImageXY(ImageCache.text("Mode: Dynamic", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.manualGameplay && this.chase) {
+      ws.placeImageXY(ImageCache.text("Mode: Chase", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.manualGameplay && this.collecting) {
+      ws.placeImageXY(ImageCache.text("Mode: Keys", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.manualGameplay && this.fog) {
+      ws.placeImageXY(ImageCache.text("Mode: Fog", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.manualGameplay && this.autoRun) {
+      ws.placeImageXY(ImageCache.text("Mode: Auto-run", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else if (this.manualGameplay) {
+      ws.placeImageXY(ImageCache.text("Mode: Manual", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    } else {
+      ws.placeImageXY(ImageCache.text("Mode: None", 15, Color.BLACK),
+          60, this.viewHeight() + 20);
+    }
+    // and the keys collected so far, against the shortest route
+    if (this.manualGameplay && this.collecting) {
+      ws.placeImageXY(ImageCache.text(this.keysStatus(), 15, KEY_COLOR.darker()),
+          this.viewWidth() / 2 + 60, this.viewHeight() + 20);
+    }
+
+    // write the winning message under the maze if the player has won
+    if (this.playerWon) {
+      ws.placeImageXY(ImageCache.text("You won!", this.viewWidth() / 20,
+              Color.GREEN),
+          this.viewWidth() / 2, this.viewHeight() + 70);
+      ws.placeImageXY(ImageCache.text(this.collecting
+              ? "You took " + this.keyMoves + " moves, and the shortest route was "
+                  + this.keyRoute.length + "!"
+              : "You only needed " + this.routeMoves() + " moves!",
+              this.viewWidth() / 30, Color.GREEN),
+          this.viewWidth() / 2, this.viewHeight() + 120);
+      ws.placeImageXY(ImageCache.text("Press 'esc' and then 'd' or 'b' to see the shortest path",
+              this.viewWidth() / 30, Color.GREEN),
+          this.viewWidth() / 2, this.viewHeight() + 165);
+    } else if (this.playerCaught) {
+      ws.placeImageXY(ImageCache.text("Caught!", this.viewWidth() / 20, PURSUER_COLOR),
+          this.viewWidth() / 2, this.viewHeight() + 70);
+      ws.placeImageXY(ImageCache.text("Press 'esc' to try again",
+              this.viewWidth() / 30, PURSUER_COLOR),
+          this.viewWidth() / 2, this.viewHeight() + 120);
+    } else if (this.dfsView.progress.phase == SolverProgress.SOLVED && this.animatingDfs) {
+      ws.placeImageXY(ImageCache.text(this.shortestPathStatus(this.dfsView.progress),
+              this.viewWidth() / 50, Color.BLUE),
+          this.viewWidth() / 2, this.viewHeight() + 65);
+      ws.placeImageXY(ImageCache.text("Depth First Search visited",
+              this.viewWidth() / 50, Color.CYAN),
+          this.viewWidth() / 2, this.viewHeight() + 100);
+      ws.placeImageXY(ImageCache.text(this.offPathStatus(this.dfsView.progress),
+              this.viewWidth() / 50, Color.CYAN),
+          this.viewWidth() / 2, this.viewHeight() + 135);
+    } else if (this.bfsView.progress.phase == SolverProgress.SOLVED && this.animatingBfs) {
+      ws.placeImageXY(ImageCache.text(this.shortestPathStatus(this.bfsView.progress),
+              this.viewWidth() / 50, Color.MAGENTA),
+          this.viewWidth() / 2, this.viewHeight() + 65);
+      ws.placeImageXY(ImageCache.text("Breadth First Search visited",
+              this.viewWidth() / 50, Color.PINK),
+          this.viewWidth() / 2, this.viewHeight() + 100);
+      ws.placeImageXY(ImageCache.text(this.offPathStatus(this.bfsView.progress),
+              this.viewWidth() / 50, Color.PINK),
+          this.viewWidth() / 2, this.viewHeight() + 135);
+    } else if (this.dynamic) {
+      ws.placeImageXY(ImageCache.text(this.dynamicStatus(),
+              this.viewWidth() / 50, Color.BLUE),
+          this.viewWidth() / 2, this.viewHeight() + 65);
+      ws.placeImageXY(ImageCache.text("The last wall flip was replanned in "
+              + (this.lastReplanNanos / 1000) + " us, expanding "
+              + this.planner.expanded + " cells",
+              this.viewWidth() / 50, Color.BLACK),
+          this.viewWidth() / 2, this.viewHeight() + 100);
+      ws.placeImageXY(ImageCache.text("Press 'f' to flip a wall now, 'y' to leave dynamic mode",
+              this.viewWidth() / 50, Color.BLACK),
+          this.viewWidth() / 2, this.viewHeight() + 135);
+    } else if (this.cheapestView.progress.phase == SolverProgress.SOLVED
+        && this.animatingCheapest) {
+      ws.placeImageXY(ImageCache.text(this.cheapestStatus(this.cheapestView.progress),
+              this.viewWidth() / 50, Color.ORANGE),
+          this.viewWidth() / 2, this.viewHeight() + 65);
+      ws.placeImageXY(ImageCache.text("Dijkstra's algorithm visited",
+              this.viewWidth() / 50, Color.BLACK),
+          this.viewWidth() / 2, this.viewHeight() + 100);
+      ws.placeImageXY(ImageCache.text(this.cheapestView.progress.visitedCount
+              + " cells before solving the maze",
+              this.viewWidth() / 50, Color.BLACK),
+          this.viewWidth() / 2, this.viewHeight() + 135);
+    } else {
+      // write instructions in the bottom left under the maze
+      if (!this.manualGameplay) {
+        ws.placeImageXY(ImageCache.text("Press 'm' to enter manual gameplay",
+                this.viewWidth() / 50, Color.BLACK),
+            this.viewWidth() / 2, this.viewHeight() + 45);
+        ws.placeImageXY(ImageCache.text(
+                "Press 'd'/'b' to toggle between depth/breadth first search",
+                this.viewWidth() / 50, Color.BLACK),
+            this.viewWidth() / 2, this.viewHeight() + 85);
+      } else {
+        ws.placeImageXY(ImageCache.text("Press 'esc' to exit manual gameplay",
+                this.viewWidth() / 50, Color.BLACK),
+            this.viewWidth() / 2, this.viewHeight() + 45);
+        ws.placeImageXY(ImageCache.text("Use arrow keys to move through maze",
+                this.viewWidth() / 50, Color.BLACK),
+            this.viewWidth() / 2, this.viewHeight() + 85);
+      }
+      ws.placeImageXY(ImageCache.text("Press 'r' to reset and create new maze",
+              this.viewWidth() / 50, Color.BLACK),
+          this.viewWidth() / 2, this.viewHeight() + 125);
+      ws.placeImageXY(ImageCache.text("Press 'w' for weighted terrain, 'k' for the cheapest path",
+              this.viewWidth() / 50, Color.BLACK),
+          this.viewWidth() / 2, this.viewHeight() + 165);
+    }
+
+    return ws;
+  }
+
+  // draw the depth and breadth first searches side by side at half size,
+  // with their progress and solving times underneath
+  void drawRace(WorldScene ws) {
+    int size = Math.max(this.cellSize / 2, 3);
+    int top = this.viewHeight() / 4;
+    this.drawRacePanel(ws, this.dfsView, 0, top, size, Color.CYAN, Color.BLUE);
+    this.drawRacePanel(ws, this.bfsView, this.viewWidth() / 2, top, size,
+        Color.PINK, Color.MAGENTA);
+
+    ws.placeImageXY(ImageCache.text("Mode: Race", 15, Color.BLACK),
+        60, this.viewHeight() + 20);
+    ws.placeImageXY(ImageCache.text(this.raceStatus("Depth First Search", this.dfsView.progress),
+            this.viewWidth() / 50, Color.BLUE),
+        this.viewWidth() / 2, this.viewHeight() + 65);
+    ws.placeImageXY(ImageCache.text(this.raceStatus("Breadth First Search", this.bfsView.progress),
+            this.viewWidth() / 50, Color.MAGENTA),
+        this.viewWidth() / 2, this.viewHeight() + 100);
+    ws.placeImageXY(ImageCache.text("Press 'd'/'b' to show one search, 'r' to reset",
+            this.viewWidth() / 50, Color.BLACK),
+        this.viewWidth() / 2, this.viewHeight() + 135);
+  }
+
+  // draw one search over a copy of the maze with the given cell size,
+  // whose top left corner is at the given position, one rectangle for each
+  // stretch of a corridor whose cells and passages share a color
+  void drawRacePanel(WorldScene ws, SolverView view, int left, int top, int size,
+      Color visitedColor, Color pathColor) {
+    CorridorRuns runs = this.corridors();
+    for (int i = 0; i < runs.rowCount; i++) {
+      this.drawRaceRun(ws, view, runs.rowStart[i], runs.rowLength[i], 1,
+          left, top, size, visitedColor, pathColor);
+    }
+    for (int i = 0; i < runs.columnCount; i++) {
+      this.drawRaceRun(ws, view, runs.columnStart[i], runs.columnLength[i], this.graph.width,
+          left, top, size, visitedColor, pathColor);
+    }
+  }
+
+  // draw the corridor of the given length that starts at the given cell, whose
+  // next cell is the given step of ids away, split where its color changes
+  void drawRaceRun(WorldScene ws, SolverView view, int start, int length, int step,
+      int left, int top, int size, Color visitedColor, Color pathColor) {
+    int first = 0;
+    Color c = this.raceColor(view, start, visitedColor, pathColor);
+    for (int i = 1; i <= length; i++) {
+      Color next = null;
+      if (i < length) {
+        next = this.raceColor(view, start + i * step, visitedColor, pathColor);
+      }
+      if (!c.equals(next)) {
+        // the cells from first to i - 1, and the passages between them
+        int x = this.graph.xOf(start + first * step);
+        int y = this.graph.yOf(start + first * step);
+        int cells = i - first;
+        if (step == 1) {
+          ws.placeImageXY(ImageCache.rectangle(cells * size - 2, size - 2, c),
+              left + x * size + cells * size / 2, top + y * size + size / 2);
+        } else {
+          ws.placeImageXY(ImageCache.rectangle(size - 2, cells * size - 2, c),
+              left + x * size + size / 2, top + y * size + cells * size / 2);
+        }
+        if (i < length) {
+          // the passage into the next stretch
+          int source = start + (i - 1) * step;
+          int destination = start + i * step;
+          Color p = Color.WHITE;
+          if (view.onPath(source) && view.onPath(destination)) {
+            p = pathColor;
+          } else if (view.isVisited(source) && view.isVisited(destination)) {
+            p = visitedColor;
+          }
+          if (step == 1) {
+            ws.placeImageXY(ImageCache.rectangle(2, size - 2, p),
+                left + this.graph.xOf(destination) * size,
+                top + this.graph.yOf(destination) * size + size / 2);
+          } else {
+            ws.placeImageXY(ImageCache.rectangle(size - 2, 2, p),
+                left + this.graph.xOf(destination) * size + size / 2,
+                top + this.graph.yOf(destination) * size);
+          }
+        }
+        first = i;
+        c = next;
+      }
+    }
+  }
+
+  // the color of the given cell in a racing search's panel
+  Color raceColor(SolverView view, int cell, Color visitedColor, Color pathColor) {
+    if (cell == this.start) {
+      return Color.GREEN;
+    } else if (this.isExit[cell]) {
+      return Color.RED;
+    } else if (view.onPath(cell)) {
+      return pathColor;
+    } else if (view.isVisited(cell)) {
+      return visitedColor;
+    } else {
+      return Color.WHITE;
+    }
+  }
+
+  // the maze's corridors, built the first time they are needed after the
+  // maze last changed
+  CorridorRuns corridors() {
+    if (this.corridors == null) {
+      this.corridors = new CorridorRuns(this.graph);
+    }
+    return this.corridors;
+  }
+
+  // where the player slides to along the maze's corridors, found the first
+  // time it is needed after the maze last changed
+  CorridorSlides slides() {
+    if (this.slides == null) {
+      int keys = this.collecting ? this.keyCells.length : 0;
+      int[] stops = Arrays.copyOf(this.exits, this.exits.length + 1 + keys);
+      stops[this.exits.length] = this.start;
+      for (int i = 0; i < keys; i++) {
+        stops[this.exits.length + 1 + i] = this.keyCells[i];
+      }
+      this.slides = new CorridorSlides(this.graph, stops);
+    }
+    return this.slides;
+  }
+
+  // describe the planned path in dynamic mode
+  String dynamicStatus() {
+    if (this.planner.pathLength == 0) {
+      return "The walls have cut off the end of the maze";
+    } else {
+      return "The shortest path is " + (this.planner.pathLength - 1) + " moves long, costing "
+          + this.planner.g[this.planner.goal];
+    }
+  }
+
+  // describe the shortest path a solved search found, in moves as the
+  // player's route counts them, one fewer than the cells on it
+  String shortestPathStatus(SolverProgress progress) {
+    return "The shortest path is " + (progress.pathLength - 1) + " moves long";
+  }
+
+  // describe the cells a solved search visited that are not on its path
+  String offPathStatus(SolverProgress progress) {
+    return (progress.visitedCount - progress.pathLength)
+        + " cells off the path before solving the maze";
+  }
+
+  // describe the path a solved cheapest path search found, in moves
+  String cheapestStatus(SolverProgress progress) {
+    return "The cheapest path costs " + progress.pathCost + " over "
+        + (progress.pathLength - 1) + " moves";
+  }
+
+  // describe the progress of a racing search
+  String raceStatus(String name, SolverProgress progress) {
+    if (progress.phase == SolverProgress.SEARCHING) {
+      return name + ": searching, " + progress.visitedCount + " cells visited";
+    } else if (progress.phase == SolverProgress.RECONSTRUCTING) {
+      return name + ": found the end after " + progress.visitedCount + " cells";
+    } else if (progress.phase == SolverProgress.SOLVED) {
+      return name + ": solved in " + String.format("%.3f", progress.elapsedNanos / 1000000.0)
+          + " ms, " + progress.visitedCount + " cells visited";
+    } else {
+      return name + ": stopped after " + progress.visitedCount + " cells";
+    }
+  }
+}
+
+
+// to represent the window onto the drawn maze as a persistent back buffer
+// that is only repainted where cells have changed: changes are recorded by
+// touching cells, and each frame repaints just the touched cells and the
+// passages around them, then copies those regions to the single image that
+// the scene places; cells outside the window are never painted, and touching
+// them records nothing, so a frame costs the same however big the maze is;
+// zoomed out past single cells, it paints tiles of the world's pyramid instead
+class MazeRenderer {
+  BufferedImage back;
+  // the back buffer's own pixels, read directly, since reading them one at a
+  // time through the image allocates for each
+  int[] pixels;
+  ComputedPixelImage front;
+  // the pixels last set in the front, which javalib can only set one at a
+  // time, allocating for each, so that only the changed ones are set again
+  int[] shown;
+  // the level of detail and the tiles in the window, as of the last full
+  // repaint; at level 0, the tiles are the cells
+  int level;
+  int mazeWidth;
+  int firstColumn;
+  int firstRow;
+  int columns;
+  int rows;
+  // the touched cells in the window, without repeats, or everything;
+  // isDirty is indexed by position in the window
+  int[] dirty;
+  boolean[] isDirty;
+  int dirtyCount;
+  boolean allDirty;
+
+  // constructor
+  MazeRenderer(int width, int height) {
+    this.back = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    this.pixels = ((DataBufferInt) this.back.getRaster().getDataBuffer()).getData();
+    this.front = new ComputedPixelImage(width, height);
+    this.shown = new int[width * height];
+    this.level = 0;
+    this.mazeWidth = 1;
+    this.firstColumn = 0;
+    this.firstRow = 0;
+    this.columns = 0;
+    this.rows = 0;
+    this.dirty = new int[0];
+    this.isDirty = new boolean[0];
+    this.dirtyCount = 0;
+    this.allDirty = true;
+  }
+
+  // record that the given cell, or a passage beside it, has changed
+  void touch(int cell) {
+    if (this.allDirty) {
+      return;
+    }
+    int column = (cell % this.mazeWidth >> this.level) - this.firstColumn;
+    int row = (cell / this.mazeWidth >> this.level) - this.firstRow;
+    if (column >= 0 && column < this.columns && row >= 0 && row < this.rows
+        && !this.isDirty[row * this.columns + column]) {
+      this.isDirty[row * this.columns + column] = true;
+      this.dirty[this.dirtyCount] = cell;
+      this.dirtyCount++;
+    }
+  }
+
+  // record that everything has changed
+  void invalidate() {
+    this.allDirty = true;
+  }
+
+  // repaint what has changed in the given world, returning the image to place
+  WorldImage draw(MazeWorld world) {
+    Graphics2D g = this.back.createGraphics();
+    if (world.lodLevel > 0) {
+      world.pyramid();
+    }
+    if (this.allDirty) {
+      // find the tiles that the window shows, even in part
+      int size = world.cellSize;
+      this.level = world.lodLevel;
+      this.mazeWidth = world.graph.width;
+      this.firstColumn = world.cameraX / size;
+      this.firstRow = world.cameraY / size;
+      this.columns = Math.min((world.cameraX + this.back.getWidth() - 1) / size + 1,
+          ((world.graph.width - 1) >> this.level) + 1) - this.firstColumn;
+      this.rows = Math.min((world.cameraY + this.back.getHeight() - 1) / size + 1,
+          ((world.graph.height - 1) >> this.level) + 1) - this.firstRow;
+      if (this.isDirty.length != this.columns * this.rows) {
+        this.dirty = new int[this.columns * this.rows];
+        this.isDirty = new boolean[this.columns * this.rows];
+      } else {
+        Arrays.fill(this.isDirty, false);
+      }
+
+      g.setColor(Color.BLACK);
+      g.fillRect(0, 0, this.back.getWidth(), this.back.getHeight());
+      for (int y = this.firstRow; y < this.firstRow + this.rows; y++) {
+        for (int x = this.firstColumn; x < this.firstColumn + this.columns; x++) {
+          this.paint(world, g, x, y);
+        }
+      }
+      this.copy(0, 0, this.back.getWidth(), this.back.getHeight());
+    } else {
+      for (int i = 0; i < this.dirtyCount; i++) {
+        this.paint(world, g, world.graph.xOf(this.dirty[i]) >> this.level,
+            world.graph.yOf(this.dirty[i]) >> this.level);
+      }
+      for (int i = 0; i < this.dirtyCount; i++) {
+        int column = world.graph.xOf(this.dirty[i]) >> this.level;
+        int row = world.graph.yOf(this.dirty[i]) >> this.level;
+        this.copy(column * world.cellSize - world.cameraX - 1,
+            row * world.cellSize - world.cameraY - 1, world.cellSize + 2, world.cellSize + 2);
+        this.isDirty[(row - this.firstRow) * this.columns + column - this.firstColumn] = false;
+      }
+    }
+    g.dispose();
+    this.dirtyCount = 0;
+    this.allDirty = false;
+    return this.front;
+  }
+
+  // paint the tile at the given position, which is a cell at level 0
+  void paint(MazeWorld world, Graphics2D g, int x, int y) {
+    if (this.level == 0) {
+      this.paintCell(world, g, world.graph.id(x, y));
+    } else {
+      g.setColor(world.tileColor(this.level, x, y));
+      g.fillRect(x * world.cellSize - world.cameraX, y * world.cellSize - world.cameraY,
+          world.cellSize, world.cellSize);
+    }
+  }
+
+  // paint the given cell and the passages or walls on each of its sides
+  void paintCell(MazeWorld world, Graphics2D g, int cell) {
+    int size = world.cellSize;
+    int left = world.graph.xOf(cell) * size - world.cameraX;
+    int top = world.graph.yOf(cell) * size - world.cameraY;
+    g.setColor(world.cellColor(cell));
+    g.fillRect(left + 1, top + 1, size - 2, size - 2);
+    for (int dir = 0; dir < 4; dir++) {
+      int x = world.graph.xOf(cell) + MazeGraph.DX[dir];
+      int y = world.graph.yOf(cell) + MazeGraph.DY[dir];
+      if (x >= 0 && x < world.width && y >= 0 && y < world.height) {
+        Color c = Color.BLACK;
+        int neighbor = world.graph.id(x, y);
+        if (world.isFogged(cell) && world.isFogged(neighbor)) {
+          // between two hidden cells, even the wall is hidden
+          c = MazeWorld.FOG_COLOR;
+        } else if (world.graph.isOpen(cell, dir)) {
+          c = world.overlayColor(cell, neighbor);
+          if (c == null) {
+            c = world.passageColor(cell, neighbor);
+          }
+        }
+        g.setColor(c);
+        if (dir == MazeGraph.UP) {
+          g.fillRect(left + 1, top - 1, size - 2, 2);
+        } else if (dir == MazeGraph.DOWN) {
+          g.fillRect(left + 1, top + size - 1, size - 2, 2);
+        } else if (dir == MazeGraph.LEFT) {
+          g.fillRect(left - 1, top + 1, 2, size - 2);
+        } else {
+          g.fillRect(left + size - 1, top + 1, 2, size - 2);
+        }
+      }
+    }
+  }
+
+  // copy the pixels that have changed in the given region of the back buffer,
+  // clipped to its bounds, to the front, in shared colors
+  void copy(int left, int top, int width, int height) {
+    int right = Math.min(left + width, this.back.getWidth());
+    int bottom = Math.min(top + height, this.back.getHeight());
+    for (int y = Math.max(top, 0); y < bottom; y++) {
+      int row = y * this.back.getWidth();
+      for (int x = Math.max(left, 0); x < right; x++) {
+        int rgb = 0xFF000000 | this.pixels[row + x];
+        if (this.shown[row + x] != rgb) {
+          this.shown[row + x] = rgb;
+          this.front.setPixel(x, y, ImageCache.color(rgb));
+        }
+      }
+    }
+  }
+}
+
+// to represent a maze at coarser and coarser levels of detail, like the
+// levels of a mipmap: at level k, each tile stands for the up to 2^k x 2^k
+// cells whose coordinates, shifted right by k, are its own, and records how
+// many of their passages are open, how many of them a search view has visited,
+// and whether the view's path crosses them; level 0, the cells themselves,
+// is read from the maze and the view rather than stored
+class MazePyramid {
+  MazeGraph graph;
+  // the number of levels, counting level 0; the last is a single tile
+  int levels;
+  // the size of each level in tiles
+  int[] across;
+  int[] down;
+  // for each level above 0 and each of its tiles, in row-major order, the
+  // fractions from 0 to 255 of the passages right and down from its cells that
+  // are open and of its cells that the view has visited, and 1 if the view's
+  // path crosses it; each level above 1 averages the level below
+  byte[][] open;
+  byte[][] visited;
+  byte[][] path;
+  // the search view whose progress the pyramid shows, or null for none
+  SolverView view;
+  // the tiles waiting to be summarized again, without repeats: all of them at
+  // one level, from which each summary adds its parent
+  int[] pending;
+  int pendingCount;
+  boolean[][] isPending;
+
+  // summarize the given maze, showing no search
+  MazePyramid(MazeGraph graph) {
+    this.graph = graph;
+    this.levels = 1;
+    while (((graph.width - 1) | (graph.height - 1)) >> (this.levels - 1) > 0) {
+      this.levels++;
+    }
+    this.across = new int[this.levels];
+    this.down = new int[this.levels];
+    this.open = new byte[this.levels][];
+    this.visited = new byte[this.levels][];
+    this.path = new byte[this.levels][];
+    this.isPending = new boolean[this.levels][];
+    for (int level = 0; level < this.levels; level++) {
+      this.across[level] = ((graph.width - 1) >> level) + 1;
+      this.down[level] = ((graph.height - 1) >> level) + 1;
+      if (level > 0) {
+        this.open[level] = new byte[this.across[level] * this.down[level]];
+        this.visited[level] = new byte[this.across[level] * this.down[level]];
+        this.path[level] = new byte[this.across[level] * this.down[level]];
+        this.isPending[level] = new boolean[this.across[level] * this.down[level]];
+      }
+    }
+    this.pending = new int[16];
+    this.pendingCount = 0;
+    this.refresh(null);
+  }
+
+  // show the progress of the given view, or of none, summarizing every level again
+  void refresh(SolverView view) {
+    this.view = view;
+    for (int i = 0; i < this.pendingCount; i++) {
+      this.isPending[1][this.pending[i]] = false;
+    }
+    this.pendingCount = 0;
+    for (int level = 1; level < this.levels; level++) {
+      for (int y = 0; y < this.down[level]; y++) {
+        for (int x = 0; x < this.across[level]; x++) {
+          this.summarize(level, x, y);
+        }
+      }
+    }
+  }
+
+  // record that the tiles over the given cell must be summarized again, after
+  // its walls change or the view marks it
+  void update(int cell) {
+    if (this.levels == 1) {
+      return;
+    }
+    int tile = (this.graph.yOf(cell) >> 1) * this.across[1] + (this.graph.xOf(cell) >> 1);
+    if (!this.isPending[1][tile]) {
+      this.isPending[1][tile] = true;
+      if (this.pendingCount == this.pending.length) {
+        this.pending = Arrays.copyOf(this.pending, 2 * this.pending.length);
+      }
+      this.pending[this.pendingCount] = tile;
+      this.pendingCount++;
+    }
+  }
+
+  // summarize the pending tiles again one level at a time, so that a tile over
+  // many changed cells is summarized once however many of them changed
+  void flush() {
+    for (int level = 1; level < this.levels && this.pendingCount > 0; level++) {
+      int count = this.pendingCount;
+      this.pendingCount = 0;
+      for (int i = 0; i < count; i++) {
+        // each parent is written at or before the tile already read
+        int tile = this.pending[i];
+        int x = tile % this.across[level];
+        int y = tile / this.across[level];
+        this.isPending[level][tile] = false;
+        this.summarize(level, x, y);
+        if (level + 1 < this.levels) {
+          int parent = (y >> 1) * this.across[level + 1] + (x >> 1);
+          if (!this.isPending[level + 1][parent]) {
+            this.isPending[level + 1][parent] = true;
+            this.pending[this.pendingCount] = parent;
+            this.pendingCount++;
+          }
+        }
+      }
+    }
+  }
+
+  // summarize the tile at the given position in the given level from the
+  // up to four tiles, or cells, under it
+  void summarize(int level, int x, int y) {
+    int open = 0;
+    int visited = 0;
+    int path = 0;
+    int count = 0;
+    for (int dy = 0; dy < 2; dy++) {
+      for (int dx = 0; dx < 2; dx++) {
+        int childX = 2 * x + dx;
+        int childY = 2 * y + dy;
+        if (childX < this.across[level - 1] && childY < this.down[level - 1]) {
+          count++;
+          if (level == 1) {
+            int cell = this.graph.id(childX, childY);
+            open += (this.graph.isOpen(cell, MazeGraph.RIGHT) ? 128 : 0)
+                + (this.graph.isOpen(cell, MazeGraph.DOWN) ? 127 : 0);
+            if (this.view != null) {
+              visited += this.view.isVisited(cell) ? 255 : 0;
+              path |= this.view.onPath(cell) ? 1 : 0;
+            }
+          } else {
+            int child = childY * this.across[level - 1] + childX;
+            open += this.open[level - 1][child] & 0xFF;
+            visited += this.visited[level - 1][child] & 0xFF;
+            path |= this.path[level - 1][child];
+          }
+        }
+      }
+    }
+    int tile = y * this.across[level] + x;
+    this.open[level][tile] = (byte) ((open + count / 2) / count);
+    this.visited[level][tile] = (byte) ((visited + count / 2) / count);
+    this.path[level][tile] = (byte) path;
+  }
+
+  // the color of the tile at the given position in the given level: gray,
+  // lighter the more of its passages are open, blended towards the given
+  // visited color by how much of it is visited, or the path color if the
+  // path crosses it
+  Color tileColor(int level, int x, int y, Color visitedColor, Color pathColor) {
+    int tile = y * this.across[level] + x;
+    if (this.path[level][tile] != 0) {
+      return pathColor;
+    }
+    int shade = this.open[level][tile] & 0xFF;
+    int visited = this.visited[level][tile] & 0xFF;
+    return new Color(shade + (visitedColor.getRed() - shade) * visited / 255,
+        shade + (visitedColor.getGreen() - shade) * visited / 255,
+        shade + (visitedColor.getBlue() - shade) * visited / 255);
+  }
+}
+
+// to write a maze, and optionally a search's visited cells and path, straight
+// to a PNG file without a display: cells are squares of cellSize pixels whose
+// last row and column are the passages or walls below and to their right, in
+// a palette image of one byte per pixel; the image is rendered and compressed
+// in bands of rows on a pool of threads, each band's deflate stream ending in
+// a sync flush so that the bands join into the one zlib stream that the file
+// needs, and only a few bands are held at once, however big the maze
+class PngExporter {
+  // the palette indices; walls are 0, so that new rows start as walls
+  static final byte WALL = 0;
+  static final byte PASSAGE = 1;
+  static final byte VISITED = 2;
+  static final byte PATH = 3;
+  static final byte START = 4;
+  static final byte END = 5;
+
+  MazeGraph graph;
+  // the cell the searches start from, and whether each cell is an end
+  int start;
+  boolean[] isEnd;
+  // the search whose marks are drawn, or null for none
+  SolverView view;
+  Color[] palette;
+  int cellSize;
+  // the rows of cells in each band, and the threads that render them
+  int bandRows;
+  int threads;
+
+  // export the given maze, from the given start to the given ends, with the
+  // given search's marks, if any, in the given colors, with cells of the given
+  // size of at least 2 pixels
+  PngExporter(MazeGraph graph, int start, int[] ends, SolverView view, Color visitedColor,
+      Color pathColor, int cellSize) {
+    if (cellSize < 2) {
+      throw new IllegalArgumentException("Cells must be at least 2 pixels across");
+    }
+    this.graph = graph;
+    this.start = start;
+    this.isEnd = new boolean[graph.size()];
+    for (int end : ends) {
+      this.isEnd[end] = true;
+    }
+    this.view = view;
+    this.palette = new Color[] {Color.BLACK, Color.WHITE, visitedColor, pathColor, Color.GREEN,
+        Color.RED};
+    this.cellSize = cellSize;
+    this.bandRows = 64;
+    this.threads = Runtime.getRuntime().availableProcessors();
+  }
+
+  // export a new maze of the given width and height, with cells of the given
+  // size, solved by "dfs", "bfs" or neither, to the given file, as in
+  // java PngExporter 2000 2000 2 bfs maze.png
+  public static void main(String[] args) throws IOException {
+    MazeGraph graph = MazeGraph.generate(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        new Random());
+    SolverView view = null;
+    Color visitedColor = Color.PINK;
+    Color pathColor = Color.MAGENTA;
+    if (args[3].equals("dfs") || args[3].equals("bfs")) {
+      MazeSolver solver;
+      if (args[3].equals("dfs")) {
+        solver = new DfsSolver(graph, 0, graph.size() - 1);
+        visitedColor = Color.CYAN;
+        pathColor = Color.BLUE;
+      } else {
+        solver = new BfsSolver(graph, 0, graph.size() - 1);
+      }
+      SolverWorker worker = new SolverWorker(solver, Integer.MAX_VALUE, 0);
+      worker.run();
+      view = new SolverView(graph.size());
+      view.sync(worker);
+    }
+    new PngExporter(graph, 0, new int[] {graph.size() - 1}, view, visitedColor, pathColor,
+        Integer.parseInt(args[2]))
+        .export(new File(args[4]));
+  }
+
+  // write the PNG file
+  void export(File file) throws IOException {
+    int bands = (this.graph.height + this.bandRows - 1) / this.bandRows;
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    try {
+      out.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+      byte[] ihdr = new byte[13];
+      this.putInt(ihdr, 0, this.graph.width * this.cellSize + 1);
+      this.putInt(ihdr, 4, this.graph.height * this.cellSize + 1);
+      ihdr[8] = 8;
+      ihdr[9] = 3;
+      this.writeChunk(out, "IHDR", ihdr, ihdr.length);
+      byte[] plte = new byte[3 * this.palette.length];
+      for (int i = 0; i < this.palette.length; i++) {
+        plte[3 * i] = (byte) this.palette[i].getRed();
+        plte[3 * i + 1] = (byte) this.palette[i].getGreen();
+        plte[3 * i + 2] = (byte) this.palette[i].getBlue();
+      }
+      this.writeChunk(out, "PLTE", plte, plte.length);
+
+      // the zlib header, the bands in order as they finish, and the checksum
+      this.writeChunk(out, "IDAT", new byte[] {0x78, 0x01}, 2);
+      ArrayDeque<Future<PngBand>> inFlight = new ArrayDeque<Future<PngBand>>();
+      long adler = 1;
+      int submitted = 0;
+      for (int i = 0; i < bands; i++) {
+        while (submitted < bands && submitted < i + 2 * this.threads) {
+          int first = submitted * this.bandRows;
+          inFlight.addLast(pool.submit(new PngBand(this, first,
+              Math.min(this.bandRows, this.graph.height - first), submitted == bands - 1)));
+          submitted++;
+        }
+        PngBand band = this.await(inFlight.removeFirst());
+        this.writeChunk(out, "IDAT", band.compressed, band.compressedLength);
+        adler = PngExporter.combineAdler(adler, band.adler, band.rawLength);
+      }
+      byte[] checksum = new byte[4];
+      this.putInt(checksum, 0, (int) adler);
+      this.writeChunk(out, "IDAT", checksum, 4);
+      this.writeChunk(out, "IEND", new byte[0], 0);
+    } finally {
+      pool.shutdownNow();
+      out.close();
+    }
+  }
+
+  // the band the given future computes, with its failure as an IOException
+  PngBand await(Future<PngBand> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while exporting");
+    } catch (ExecutionException e) {
+      throw new IOException("Could not render a band of the maze", e.getCause());
+    }
+  }
+
+  // the unfiltered scanlines of the given rows of cells, after the border
+  // above the maze if they start at the top
+  byte[] render(int firstRow, int rows) {
+    int size = this.cellSize;
+    int stride = this.graph.width * size + 2;
+    int line = firstRow == 0 ? 1 : 0;
+    byte[] raw = new byte[(line + rows * size) * stride];
+    for (int y = firstRow; y < firstRow + rows; y++) {
+      for (int r = 0; r < size; r++) {
+        // after the filter byte and the border on the left
+        int at = line * stride + 2;
+        for (int x = 0; x < this.graph.width; x++) {
+          int cell = this.graph.id(x, y);
+          if (r < size - 1) {
+            Arrays.fill(raw, at, at + size - 1, this.cellIndex(cell));
+            if (this.graph.isOpen(cell, MazeGraph.RIGHT)) {
+              raw[at + size - 1] = this.passageIndex(cell, cell + 1);
+            }
+          } else if (this.graph.isOpen(cell, MazeGraph.DOWN)) {
+            Arrays.fill(raw, at, at + size - 1, this.passageIndex(cell, cell + this.graph.width));
+          }
+          at += size;
+        }
+        line++;
+      }
+    }
+    return raw;
+  }
+
+  // the palette index of the given cell
+  byte cellIndex(int cell) {
+    if (cell == this.start) {
+      return START;
+    } else if (this.isEnd[cell]) {
+      return END;
+    } else if (this.view != null && this.view.onPath(cell)) {
+      return PATH;
+    } else if (this.view != null && this.view.isVisited(cell)) {
+      return VISITED;
+    } else {
+      return PASSAGE;
+    }
+  }
+
+  // the palette index of the open passage between the given cells
+  byte passageIndex(int source, int destination) {
+    if (this.view != null && this.view.onPath(source) && this.view.onPath(destination)) {
+      return PATH;
+    } else if (this.view != null && this.view.isVisited(source)
+        && this.view.isVisited(destination)) {
+      return VISITED;
+    } else {
+      return PASSAGE;
+    }
+  }
+
+  // write a chunk of the given type holding the given bytes
+  void writeChunk(DataOutputStream out, String type, byte[] data, int length)
+      throws IOException {
+    byte[] name = type.getBytes("US-ASCII");
+    CRC32 crc = new CRC32();
+    crc.update(name);
+    crc.update(data, 0, length);
+    out.writeInt(length);
+    out.write(name);
+    out.write(data, 0, length);
+    out.writeInt((int) crc.getValue());
+  }
+
+  // store the given int at the given position, most significant byte first
+  void putInt(byte[] bytes, int at, int value) {
+    bytes[at] = (byte) (value >>> 24);
+    bytes[at + 1] = (byte) (value >>> 16);
+    bytes[at + 2] = (byte) (value >>> 8);
+    bytes[at + 3] = (byte) value;
+  }
+
+  // the Adler-32 checksum of two pieces of data one after the other, given
+  // each one's checksum and the length of the second, as zlib combines them
+  static long combineAdler(long first, long second, long secondLength) {
+    long base = 65521;
+    long remainder = secondLength % base;
+    long sum1 = first & 0xFFFF;
+    long sum2 = remainder * sum1 % base;
+    sum1 += (second & 0xFFFF) + base - 1;
+    sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + base - remainder;
+    if (sum1 >= base) {
+      sum1 -= base;
+    }
+    if (sum1 >= base) {
+      sum1 -= base;
+    }
+    if (sum2 >= base << 1) {
+      sum2 -= base << 1;
+    }
+    if (sum2 >= base) {
+      sum2 -= base;
+    }
+    return sum1 | (sum2 << 16);
+  }
+}
+
+// to represent one band of rows of cells of an exported PNG, rendered and
+// deflated on a pool thread
+class PngBand implements Callable<PngBand> {
+  PngExporter exporter;
+  int firstRow;
+  int rows;
+  // is this the last band, whose deflate stream ends the zlib stream?
+  boolean last;
+  // the results: the deflated bytes, and the checksum and length of the raw ones
+  byte[] compressed;
+  int compressedLength;
+  long adler;
+  int rawLength;
+
+  // constructor
+  PngBand(PngExporter exporter, int firstRow, int rows, boolean last) {
+    this.exporter = exporter;
+    this.firstRow = firstRow;
+    this.rows = rows;
+    this.last = last;
+  }
+
+  // render and deflate this band
+  public PngBand call() {
+    byte[] raw = this.exporter.render(this.firstRow, this.rows);
+    Adler32 checksum = new Adler32();
+    checksum.update(raw, 0, raw.length);
+    this.adler = checksum.getValue();
+    this.rawLength = raw.length;
+
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    deflater.setInput(raw);
+    if (this.last) {
+      deflater.finish();
+    }
+    this.compressed = new byte[raw.length / 4 + 64];
+    this.compressedLength = 0;
+    boolean done = false;
+    while (!done) {
+      if (this.compressedLength == this.compressed.length) {
+        this.compressed = Arrays.copyOf(this.compressed, 2 * this.compressed.length);
+      }
+      int space = this.compressed.length - this.compressedLength;
+      if (this.last) {
+        this.compressedLength += deflater.deflate(this.compressed, this.compressedLength, space);
+        done = deflater.finished();
+      } else {
+        // a sync flush ends on a byte boundary without ending the stream,
+        // and is complete once it leaves room in the buffer
+        int written = deflater.deflate(this.compressed, this.compressedLength, space,
+            Deflater.SYNC_FLUSH);
+        this.compressedLength += written;
+        done = written < space;
+      }
+    }
+    deflater.end();
+    return this;
+  }
+}
+
+// to simulate thousands of bot players at once on one maze that none of them
+// changes: each agent is an index into parallel arrays of state, and agents
+// never affect each other, so blocks of them step for many ticks on separate
+// threads, sharing nothing but the read-only maze, and end the same way on
+// any number of threads
+class AgentSwarm {
+  // kinds of agent
+  static final byte RANDOM_WALKER = 0;
+  static final byte WALL_FOLLOWER = 1;
+  static final byte GREEDY = 2;
+  static final String[] KIND_NAMES = {"random walkers", "wall followers", "greedy agents"};
+  // the sides in clockwise order, and each side's place in it
+  static final int[] CLOCKWISE = {MazeGraph.UP, MazeGraph.RIGHT, MazeGraph.DOWN,
+    MazeGraph.LEFT};
+  static final int[] TURN = {0, 2, 3, 1};
+
+  MazeGraph graph;
+  int exit;
+  int count;
+  // the state of each agent: its cell, kind, the side it last moved to, its
+  // random number generator, and the tick it reached the exit on, or -1
+  int[] cell;
+  byte[] kind;
+  byte[] heading;
+  int[] seed;
+  int[] exitTick;
+  // the ticks run so far
+  int ticks;
+  int threads;
+  int blockSize;
+
+  // the given number of agents at the start of the given maze, heading for
+  // the given exit, of each kind in turn, with generators from the given seed
+  AgentSwarm(MazeGraph graph, int exit, int count, long seed) {
+    this.graph = graph;
+    this.exit = exit;
+    this.count = count;
+    this.cell = new int[count];
+    this.kind = new byte[count];
+    this.heading = new byte[count];
+    this.seed = new int[count];
+    this.exitTick = new int[count];
+    Random rand = new Random(seed);
+    for (int i = 0; i < count; i++) {
+      this.kind[i] = (byte) (i % KIND_NAMES.length);
+      this.heading[i] = (byte) MazeGraph.RIGHT;
+      this.seed[i] = rand.nextInt() | 1;
+      this.exitTick[i] = -1;
+    }
+    this.ticks = 0;
+    this.threads = Runtime.getRuntime().availableProcessors();
+    this.blockSize = 4096;
+  }
+
+  // run the given number of agents on a new maze of the given size for the
+  // given number of ticks, as in java AgentSwarm 1000 1000 30000 100000
+  public static void main(String[] args) {
+    MazeGraph graph = MazeGraph.generate(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        new Random());
+    AgentSwarm swarm = new AgentSwarm(graph, graph.size() - 1, Integer.parseInt(args[2]),
+        System.nanoTime());
+    long start = System.nanoTime();
+    long steps = swarm.run(Integer.parseInt(args[3]));
+    long elapsed = System.nanoTime() - start;
+    System.out.println(steps + " agent-steps in " + elapsed / 1000000 + " ms, "
+        + steps * 1000 / Math.max(elapsed / 1000000, 1) + " per second on "
+        + swarm.threads + " threads");
+    for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+      System.out.println("  " + swarm.exitReport(kind));
+    }
+  }
+
+  // run every agent for the given number of ticks, and return the moves made
+  long run(int ticks) {
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+    ArrayList<Future<Long>> blocks = new ArrayList<Future<Long>>();
+    final int fromTick = this.ticks;
+    final int forTicks = ticks;
+    try {
+      for (int first = 0; first < this.count; first += this.blockSize) {
+        final int from = first;
+        final int to = Math.min(first + this.blockSize, this.count);
+        blocks.add(pool.submit(new Callable<Long>() {
+          public Long call() {
+            return AgentSwarm.this.stepBlock(from, to, fromTick, forTicks);
+          }
+        }));
+      }
+      long steps = 0;
+      for (Future<Long> block : blocks) {
+        steps += block.get();
+      }
+      this.ticks += ticks;
+      return steps;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while stepping agents");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not step a block of agents", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  // step the agents from first up to last for the given number of ticks after
+  // the given tick, one agent at a time, and return the moves made
+  long stepBlock(int first, int last, int fromTick, int ticks) {
+    long steps = 0;
+    for (int agent = first; agent < last; agent++) {
+      if (this.exitTick[agent] >= 0) {
+        continue;
+      }
+      int at = this.cell[agent];
+      int side = this.heading[agent];
+      int random = this.seed[agent];
+      byte kind = this.kind[agent];
+      for (int tick = 1; tick <= ticks; tick++) {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        if (kind == WALL_FOLLOWER) {
+          side = this.followWall(at, side);
+        } else if (kind == GREEDY && (random & 3) != 0) {
+          side = this.closerSide(at);
+        } else {
+          side = this.randomSide(at, random >>> 2);
+        }
+        if (side < 0) {
+          break;
+        }
+        at = this.graph.neighbor(at, side);
+        steps++;
+        if (at == this.exit) {
+          this.exitTick[agent] = fromTick + tick;
+          break;
+        }
+      }
+      this.cell[agent] = at;
+      this.heading[agent] = (byte) Math.max(side, 0);
+      this.seed[agent] = random;
+    }
+    return steps;
+  }
+
+  // the first open side of the given cell, trying to the right of the given
+  // heading first, then straight on, then left, then back, or -1
+  int followWall(int at, int heading) {
+    int turn = TURN[heading];
+    for (int i = 1; i <= 4; i++) {
+      int side = CLOCKWISE[(turn + 6 - i) % 4];
+      if (this.graph.isOpen(at, side)) {
+        return side;
+      }
+    }
+    return -1;
+  }
+
+  // the open side of the given cell leading closest to the exit as the crow
+  // flies, or -1
+  int closerSide(int at) {
+    int best = -1;
+    int bestDistance = Integer.MAX_VALUE;
+    for (int side = 0; side < 4; side++) {
+      if (this.graph.isOpen(at, side)) {
+        int next = this.graph.neighbor(at, side);
+        int distance = Math.abs(this.graph.xOf(next) - this.graph.xOf(this.exit))
+            + Math.abs(this.graph.yOf(next) - this.graph.yOf(this.exit));
+        if (distance < bestDistance) {
+          best = side;
+          bestDistance = distance;
+        }
+      }
+    }
+    return best;
+  }
+
+  // one of the open sides of the given cell, chosen by the given random
+  // number, or -1
+  int randomSide(int at, int random) {
+    int open = this.graph.open[at] & 0xF;
+    int sides = Integer.bitCount(open);
+    if (sides == 0) {
+      return -1;
+    }
+    for (int skip = random % sides; skip > 0; skip--) {
+      open &= open - 1;
+    }
+    return Integer.numberOfTrailingZeros(open);
+  }
+
+  // the ticks the agents of the given kind that have reached the exit took,
+  // in order
+  int[] exitTimes(int kind) {
+    int[] times = new int[this.count];
+    int exited = 0;
+    for (int agent = 0; agent < this.count; agent++) {
+      if (this.kind[agent] == kind && this.exitTick[agent] >= 0) {
+        times[exited] = this.exitTick[agent];
+        exited++;
+      }
+    }
+    times = Arrays.copyOf(times, exited);
+    Arrays.sort(times);
+    return times;
+  }
+
+  // how many agents of the given kind have reached the exit, and how long
+  // they took at the median, the 90th percentile and the most
+  String exitReport(int kind) {
+    int[] times = this.exitTimes(kind);
+    int agents = (this.count - kind + KIND_NAMES.length - 1) / KIND_NAMES.length;
+    String report = KIND_NAMES[kind] + ": " + times.length + " of " + agents + " out";
+    if (times.length == 0) {
+      return report;
+    }
+    return report + ", exit ticks median " + times[times.length / 2] + ", 90th percentile "
+        + times[times.length * 9 / 10] + ", most " + times[times.length - 1];
+  }
+}
+
+// to train and evaluate navigation agents on many mazes at once, without the
+// game: a batch of environments, each one agent in its own maze of the same
+// size, starting at the top left and heading for the bottom right, all
+// stepped in lockstep by one call that takes an action for each. Every
+// environment's state lives in flat arrays indexed by environment, its maze
+// walls included, so that a step is a few array reads and writes, split
+// into blocks across a pool of threads. An episode ends at the exit or
+// after maxSteps steps, and the agent then starts over in the same maze,
+// so the observation after the last step of an episode is the first of
+// the next; reset gives every environment a new maze
+class MazeEnvironments {
+  // the ints of each environment's observation: the agent's column and row,
+  // its cell's open sides as a bitmask, and the steps taken in the episode
+  static final int OBSERVATION_SIZE = 4;
+  // the reward for each step, and for the step that reaches the exit
+  static final float STEP_REWARD = -0.01f;
+  static final float EXIT_REWARD = 1f;
+
+  int width;
+  int height;
+  int count;
+  int maxSteps;
+  // the open sides of each cell of every maze, environment i's from
+  // i * width * height
+  byte[] open;
+  // the state of each environment: the agent's cell in its maze, and the
+  // steps taken in the episode
+  int[] cell;
+  int[] steps;
+  // the results of the last step: each environment's reward, 1 where the
+  // episode ended, and the observations, OBSERVATION_SIZE ints each
+  float[] rewards;
+  byte[] dones;
+  int[] observations;
+  int threads;
+  int blockSize;
+  // the threads stepping blocks of environments, started on the first step
+  // that needs more than one
+  ExecutorService pool;
+
+  // the given number of environments with mazes of the given size, whose
+  // episodes end after the given number of steps, with no mazes until reset
+  MazeEnvironments(int count, int width, int height, int maxSteps) {
+    this.width = width;
+    this.height = height;
+    this.count = count;
+    this.maxSteps = maxSteps;
+    this.open = new byte[count * width * height];
+    this.cell = new int[count];
+    this.steps = new int[count];
+    this.rewards = new float[count];
+    this.dones = new byte[count];
+    this.observations = new int[count * OBSERVATION_SIZE];
+    this.threads = Runtime.getRuntime().availableProcessors();
+    this.blockSize = 16384;
+    this.pool = null;
+  }
+
+  // step the given number of environments of the given size, taking random
+  // actions, as in java MazeEnvironments 4096 16 16 10000
+  public static void main(String[] args) {
+    MazeEnvironments envs = new MazeEnvironments(Integer.parseInt(args[0]),
+        Integer.parseInt(args[1]), Integer.parseInt(args[2]), 1000);
+    try {
+      envs.reset(System.nanoTime());
+      int[][] actions = randomActions(envs.count, 64, new Random());
+      int steps = Integer.parseInt(args[3]);
+      int episodes = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < steps; i++) {
+        envs.step(actions[i % actions.length]);
+        for (int env = 0; env < envs.count; env++) {
+          episodes += envs.dones[env];
+        }
+      }
+      long elapsed = System.nanoTime() - start;
+      System.out.println((long) steps * envs.count + " env-steps in " + elapsed / 1000000
+          + " ms, " + (long) steps * envs.count * 1000 / Math.max(elapsed / 1000000, 1)
+          + " per second on " + envs.threads + " threads, " + episodes + " episodes ended");
+    } finally {
+      envs.close();
+    }
+  }
+
+  // the given number of arrays of random actions for the given number of
+  // environments
+  static int[][] randomActions(int count, int arrays, Random rand) {
+    int[][] actions = new int[arrays][count];
+    for (int[] array : actions) {
+      for (int env = 0; env < count; env++) {
+        array[env] = rand.nextInt(4);
+      }
+    }
+    return actions;
+  }
+
+  // give every environment a new maze, from a generator seeded by the given
+  // seed and the environment's index, and start every episode over
+  void reset(long seed) {
+    this.runBlocks(null, seed);
+  }
+
+  // take the given action in each environment: a side to move to, which
+  // stays put at a wall, or any other number, which waits; then fill in the
+  // rewards, the ends of episodes and the observations
+  void step(int[] actions) {
+    if (actions.length != this.count) {
+      throw new IllegalArgumentException("Expected " + this.count + " actions, got "
+          + actions.length);
+    }
+    this.runBlocks(actions, 0);
+  }
+
+  // step every block of environments with the given actions, or, given none,
+  // reset them from the given seed; on this thread if there is one block or
+  // one thread, and otherwise on the pool
+  void runBlocks(final int[] actions, final long seed) {
+    if (this.threads == 1 || this.count <= this.blockSize) {
+      this.runBlock(0, this.count, actions, seed);
+      return;
+    }
+    if (this.pool == null) {
+      this.pool = Executors.newFixedThreadPool(this.threads);
+    }
+    ArrayList<Future<Long>> blocks = new ArrayList<Future<Long>>();
+    for (int first = 0; first < this.count; first += this.blockSize) {
+      final int from = first;
+      final int to = Math.min(first + this.blockSize, this.count);
+      blocks.add(this.pool.submit(new Callable<Long>() {
+        public Long call() {
+          MazeEnvironments.this.runBlock(from, to, actions, seed);
+          return 0L;
+        }
+      }));
+    }
+    try {
+      for (Future<Long> block : blocks) {
+        block.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while stepping environments");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Could not step a block of environments", e.getCause());
+    }
+  }
+
+  // step the environments from first up to last with the given actions, or,
+  // given none, reset them from the given seed
+  void runBlock(int first, int last, int[] actions, long seed) {
+    int cells = this.width * this.height;
+    for (int env = first; env < last; env++) {
+      if (actions == null) {
+        MazeGraph graph = MazeGraph.generate(this.width, this.height,
+            new Random(seed * 31 + env));
+        System.arraycopy(graph.open, 0, this.open, env * cells, cells);
+        this.cell[env] = 0;
+        this.steps[env] = 0;
+        this.rewards[env] = 0;
+        this.dones[env] = 0;
+      } else {
+        int at = this.cell[env];
+        int action = actions[env];
+        if (action >= 0 && action < 4 && (this.open[env * cells + at] & (1 << action)) != 0) {
+          at += MazeGraph.DX[action] + MazeGraph.DY[action] * this.width;
+        }
+        int steps = this.steps[env] + 1;
+        if (at == cells - 1) {
+          this.rewards[env] = EXIT_REWARD;
+          this.dones[env] = 1;
+        } else {
+          this.rewards[env] = STEP_REWARD;
+          this.dones[env] = (byte) (steps == this.maxSteps ? 1 : 0);
+        }
+        if (this.dones[env] == 1) {
+          at = 0;
+          steps = 0;
+        }
+        this.cell[env] = at;
+        this.steps[env] = steps;
+      }
+      this.observe(env);
+    }
+  }
+
+  // fill in the observation of the given environment
+  void observe(int env) {
+    int at = this.cell[env];
+    int first = env * OBSERVATION_SIZE;
+    this.observations[first] = at % this.width;
+    this.observations[first + 1] = at / this.width;
+    this.observations[first + 2] = this.open[env * this.width * this.height + at];
+    this.observations[first + 3] = this.steps[env];
+  }
+
+  // stop the pool's threads, if it was started
+  void close() {
+    if (this.pool != null) {
+      this.pool.shutdownNow();
+      this.pool = null;
+    }
+  }
+}
+
+// to record every key a player presses, with the tick it came on, together
+// with the size and seed of their maze, so that the session can be replayed:
+// a header, then for each key the ticks since the one before and the key's
+// index in KEYS, and perhaps the last tick marked by END; keys that do nothing
+// are left out, keys are only ever added to the end of KEYS so that older logs
+// still replay, and each key is flushed as it comes, so the log is whole
+// whenever the game is closed
+class InputLog {
+  static final int MAGIC = 0x4D415A52;
+  static final int END = 0xFF;
+  static final String[] KEYS = {"up", "down", "left", "right", "a", "b", "c", "d", "escape",
+    "f", "k", "m", "r", "w", "y", "=", "+", "-", "g", "p", "o", "e"};
+
+  DataOutputStream out;
+  long lastTick;
+
+  // start a log of the keys pressed on a maze of the given size, generated
+  // from the given seed
+  InputLog(OutputStream out, int width, int height, long seed) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.out.writeInt(MAGIC);
+    this.out.writeInt(width);
+    this.out.writeInt(height);
+    this.out.writeLong(seed);
+    this.out.flush();
+    this.lastTick = 0;
+  }
+
+  // record the given key, pressed on the given tick, refusing a key that is
+  // not in KEYS, since its replay would go another way; keys and the end of
+  // the session may come from different threads
+  synchronized void record(long tick, String key) throws IOException {
+    int index = InputLog.keyIndex(key);
+    if (index < 0) {
+      throw new IllegalArgumentException("key " + key + " is not in InputLog.KEYS");
+    }
+    AnimationExporter.writeNumber(this.out, (int) (tick - this.lastTick));
+    this.out.writeByte(index);
+    this.out.flush();
+    this.lastTick = tick;
+  }
+
+  // the index of the given key in KEYS, or -1
+  static int keyIndex(String key) {
+    for (int i = 0; i < KEYS.length; i++) {
+      if (KEYS[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // mark the given tick as the last of the session, and close the log
+  synchronized void close(long tick) throws IOException {
+    AnimationExporter.writeNumber(this.out, (int) (tick - this.lastTick));
+    this.out.writeByte(END);
+    this.out.close();
+  }
+}
+
+// to replay a log written by InputLog against a fresh world on this thread,
+// ticking as fast as it can: the maze is rebuilt from its seed, and the
+// searches step in lockstep with the ticks, each tick standing for
+// TICK_NANOS, so that a replay always ends in the same state
+class InputReplay {
+  static final long TICK_NANOS = 1000000;
+
+  DataInputStream in;
+  int width;
+  int height;
+  long seed;
+
+  // read the header of the given log
+  InputReplay(byte[] log) throws IOException {
+    this.in = new DataInputStream(new ByteArrayInputStream(log));
+    if (log.length < 20 || this.in.readInt() != InputLog.MAGIC) {
+      throw new IOException("not a maze input log");
+    }
+    this.width = this.in.readInt();
+    this.height = this.in.readInt();
+    this.seed = this.in.readLong();
+  }
+
+  // replay the given log the given number of times, as in
+  // java InputReplay session.mzr 100
+  public static void main(String[] args) throws IOException {
+    byte[] log = Files.readAllBytes(new File(args[0]).toPath());
+    int times = Integer.parseInt(args[1]);
+    MazeWorld world = null;
+    long start = System.nanoTime();
+    for (int i = 0; i < times; i++) {
+      world = new InputReplay(log).run();
+    }
+    long elapsed = System.nanoTime() - start;
+    System.out.println(times + " replays of " + world.ticks + " ticks in " + elapsed / 1000000
+        + " ms, " + world.ticks * TICK_NANOS * times / Math.max(elapsed, 1)
+        + " times real time; " + InputReplay.describe(world));
+  }
+
+  // a fresh world for the logged maze, with its searches in lockstep
+  MazeWorld newWorld() {
+    MazeWorld world = new MazeWorld(this.width, this.height, new Random(this.seed));
+    world.lockstepNanos = TICK_NANOS;
+    return world;
+  }
+
+  // replay every key in the log at its tick on a fresh world, up to the
+  // last tick if the log marks one, and return the world
+  MazeWorld run() throws IOException {
+    MazeWorld world = this.newWorld();
+    long tick = 0;
+    while (this.in.available() > 0) {
+      tick += AnimationExporter.readNumber(this.in);
+      int index = this.in.readUnsignedByte();
+      while (world.ticks < tick) {
+        world.onTick();
+      }
+      if (index == InputLog.END) {
+        break;
+      }
+      world.onKeyEvent(InputLog.KEYS[index]);
+    }
+    return world;
+  }
+
+  // the state of the given world that a replay checks
+  static String describe(MazeWorld world) {
+    return "player at " + world.graph.id(world.player) + " after " + world.routeMoves()
+        + " moves" + (world.playerWon ? ", won" : "") + ", bfs visited "
+        + world.bfsView.progress.visitedCount + ", dfs visited "
+        + world.dfsView.progress.visitedCount + ", " + world.exits.length + " exits"
+        + (world.fog ? ", fog" : "") + (world.chase ? ", chase" : "")
+        + (world.playerCaught ? ", caught" : "")
+        + (world.collecting ? ", " + world.keysLeft + " keys left" : "");
+  }
+}
+
+// to record a search's animation headlessly as a stream of frames, one for
+// every few steps, where each frame holds only the cells whose marks changed
+// since the one before: the maze's start, ends and walls come first, then for
+// each frame the number of changed cells plus one, and each changed cell as
+// the gap from the one before it and its new marks, all as variable-length
+// numbers in a deflated stream that ends with a zero; recording costs the
+// steps taken, not the maze's area, per frame
+class AnimationExporter {
+  // "MAZE"; files from before the start and ends were stored began "MAZD"
+  static final int MAGIC = 0x4D415A45;
+
+  MazeGraph graph;
+  int start;
+  int[] ends;
+  MazeSolver solver;
+  int stepsPerFrame;
+  // the marks as of the last frame written, and the cells changed since,
+  // without repeats
+  byte[] marks;
+  int[] changed;
+  boolean[] isChanged;
+  int changedCount;
+  // how far into the search's visited cells and path the frames have got
+  int seenVisited;
+  int seenPath;
+
+  // record the given search over the given maze, from the given start to the
+  // given ends, taking the given number of steps between frames
+  AnimationExporter(MazeGraph graph, int start, int[] ends, MazeSolver solver,
+      int stepsPerFrame) {
+    this.graph = graph;
+    this.start = start;
+    this.ends = ends;
+    this.solver = solver;
+    this.stepsPerFrame = stepsPerFrame;
+    this.marks = new byte[graph.size()];
+    this.changed = new int[16];
+    this.isChanged = new boolean[graph.size()];
+    this.changedCount = 0;
+    this.seenVisited = 0;
+    this.seenPath = 0;
+  }
+
+  // record a new maze of the given width and height searched by "dfs" or
+  // "bfs", with the given steps per frame, to the given file, as in
+  // java AnimationExporter 1000 1000 bfs 1 bfs.mzd
+  public static void main(String[] args) throws IOException {
+    MazeGraph graph = MazeGraph.generate(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        new Random());
+    int[] ends = {graph.size() - 1};
+    MazeSolver solver;
+    if (args[2].equals("dfs")) {
+      solver = new DfsSolver(graph, new int[] {0}, ends);
+    } else {
+      solver = new BfsSolver(graph, new int[] {0}, ends);
+    }
+    int frames = new AnimationExporter(graph, 0, ends, solver, Integer.parseInt(args[3]))
+        .export(new File(args[4]));
+    System.out.println(frames + " frames written to " + args[4]);
+  }
+
+  // run the search to the end, writing its frames to the given file,
+  // and return the number of frames after the first, empty one
+  int export(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new DeflaterOutputStream(new FileOutputStream(file), new Deflater(Deflater.BEST_SPEED),
+            1 << 16), 1 << 16));
+    int frames = 0;
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(this.graph.width);
+      out.writeInt(this.graph.height);
+      AnimationExporter.writeNumber(out, this.start);
+      AnimationExporter.writeNumber(out, this.ends.length);
+      for (int end : this.ends) {
+        AnimationExporter.writeNumber(out, end);
+      }
+      // the passages right and down from each cell, four cells to a byte
+      for (int cell = 0; cell < this.graph.size(); cell += 4) {
+        int walls = 0;
+        for (int i = 0; i < 4 && cell + i < this.graph.size(); i++) {
+          walls |= (this.graph.isOpen(cell + i, MazeGraph.RIGHT) ? 1 : 0) << (2 * i);
+          walls |= (this.graph.isOpen(cell + i, MazeGraph.DOWN) ? 2 : 0) << (2 * i);
+        }
+        out.writeByte(walls);
+      }
+      SolverProgress progress = new SolverProgress();
+      while (!this.solver.isDone()) {
+        this.solver.step(this.stepsPerFrame);
+        this.solver.snapshot(progress);
+        this.writeFrame(out, progress);
+        frames++;
+      }
+      AnimationExporter.writeNumber(out, 0);
+    } finally {
+      out.close();
+    }
+    return frames;
+  }
+
+  // write the cells that the given progress has marked since the last frame
+  void writeFrame(DataOutputStream out, SolverProgress progress) throws IOException {
+    for (int i = this.seenVisited; i < progress.visitedCount; i++) {
+      this.mark(this.solver.visitedCell(i), AGraphSearch.VISITED);
+    }
+    for (int i = this.seenPath; i < progress.pathLength; i++) {
+      this.mark(this.solver.pathCell(i), AGraphSearch.PATH);
+    }
+    this.seenVisited = progress.visitedCount;
+    this.seenPath = progress.pathLength;
+
+    Arrays.sort(this.changed, 0, this.changedCount);
+    AnimationExporter.writeNumber(out, this.changedCount + 1);
+    int previous = -1;
+    for (int i = 0; i < this.changedCount; i++) {
+      int cell = this.changed[i];
+      AnimationExporter.writeNumber(out, cell - previous - 1);
+      out.writeByte(this.marks[cell]);
+      this.isChanged[cell] = false;
+      previous = cell;
+    }
+    this.changedCount = 0;
+  }
+
+  // add the given mark to the given cell, recording it as changed
+  void mark(int cell, int mark) {
+    this.marks[cell] |= mark;
+    if (!this.isChanged[cell]) {
+      this.isChanged[cell] = true;
+      if (this.changedCount == this.changed.length) {
+        this.changed = Arrays.copyOf(this.changed, 2 * this.changed.length);
+      }
+      this.changed[this.changedCount] = cell;
+      this.changedCount++;
+    }
+  }
+
+  // write the given non-negative number in seven bit groups, lowest first,
+  // with the high bit of each byte set when more follow
+  static void writeNumber(DataOutputStream out, int number) throws IOException {
+    while (number >= 0x80) {
+      out.writeByte((number & 0x7F) | 0x80);
+      number >>>= 7;
+    }
+    out.writeByte(number);
+  }
+
+  // read a number written by writeNumber
+  static int readNumber(DataInputStream in) throws IOException {
+    int number = 0;
+    int shift = 0;
+    int b = in.readUnsignedByte();
+    while ((b & 0x80) != 0) {
+      number |= (b & 0x7F) << shift;
+      shift += 7;
+      b = in.readUnsignedByte();
+    }
+    return number | (b << shift);
+  }
+}
+
+// to play back an animation written by AnimationExporter one frame at a
+// time, keeping the maze and the marks of the current frame in a view that
+// PngExporter can draw
+class AnimationPlayer {
+  DataInputStream in;
+  MazeGraph graph;
+  int start;
+  int[] ends;
+  SolverView view;
+  // the current frame, counting the first, empty one as 0
+  int frame;
+  boolean ended;
+
+  // read the maze at the start of the given file
+  AnimationPlayer(File file) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(
+        new InflaterInputStream(new FileInputStream(file)), 1 << 16));
+    if (this.in.readInt() != AnimationExporter.MAGIC) {
+      this.in.close();
+      throw new IOException(file + " is not a maze animation");
+    }
+    int width = this.in.readInt();
+    int height = this.in.readInt();
+    this.start = AnimationExporter.readNumber(this.in);
+    this.ends = new int[AnimationExporter.readNumber(this.in)];
+    for (int i = 0; i < this.ends.length; i++) {
+      this.ends[i] = AnimationExporter.readNumber(this.in);
+    }
+    this.graph = new MazeGraph(width, height, new ArrayList<Edge>());
+    for (int cell = 0; cell < this.graph.size(); cell += 4) {
+      int walls = this.in.readUnsignedByte();
+      for (int i = 0; i < 4 && cell + i < this.graph.size(); i++) {
+        if ((walls & (1 << (2 * i))) != 0) {
+          this.graph.setOpen(cell + i, cell + i + 1, true);
+        }
+        if ((walls & (2 << (2 * i))) != 0) {
+          this.graph.setOpen(cell + i, cell + i + width, true);
+        }
+      }
+    }
+    this.view = new SolverView(this.graph.size());
+    this.frame = 0;
+    this.ended = false;
+  }
+
+  // write every given number of frames of the given animation, and its
+  // last frame, as PNG files in the given directory, as in
+  // java AnimationPlayer bfs.mzd frames 1000
+  public static void main(String[] args) throws IOException {
+    AnimationPlayer player = new AnimationPlayer(new File(args[0]));
+    int every = Integer.parseInt(args[2]);
+    try {
+      while (player.nextFrame()) {
+        if (player.frame % every == 0) {
+          player.writePng(new File(args[1], String.format("frame%08d.png", player.frame)));
+        }
+      }
+      if (player.frame % every != 0) {
+        player.writePng(new File(args[1], String.format("frame%08d.png", player.frame)));
+      }
+    } finally {
+      player.close();
+    }
+  }
+
+  // apply the next frame's changes, returning false if there are no more
+  boolean nextFrame() throws IOException {
+    if (this.ended) {
+      return false;
+    }
+    int count = AnimationExporter.readNumber(this.in) - 1;
+    if (count < 0) {
+      this.ended = true;
+      return false;
+    }
+    int cell = -1;
+    for (int i = 0; i < count; i++) {
+      cell += AnimationExporter.readNumber(this.in) + 1;
+      this.view.marks[cell] = this.in.readByte();
+    }
+    this.frame++;
+    return true;
+  }
+
+  // draw the current frame to the given PNG file
+  void writePng(File file) throws IOException {
+    new PngExporter(this.graph, this.start, this.ends, this.view, Color.PINK, Color.MAGENTA, 2)
+        .export(file);
+  }
+
+  // close the file
+  void close() throws IOException {
+    this.in.close();
+  }
+}
+
+// to represent the open corridors of a maze as maximal runs of cells joined
+// by passages along a row or down a column, so that a run of one color can be
+// drawn as one long rectangle rather than one image per cell and per passage;
+// the row runs cover every cell, and the column runs add the vertical passages;
+// the runs through a cell are also all that can be seen from it
+class CorridorRuns {
+  // the first cell and length of each run along a row
+  int[] rowStart;
+  int[] rowLength;
+  int rowCount;
+  // the first cell and length of each run of two or more cells down a column
+  int[] columnStart;
+  int[] columnLength;
+  int columnCount;
+  // the row run through each cell, and the column run, or -1 if it has none
+  int[] rowRunOf;
+  int[] columnRunOf;
+
+  // find the runs of the given maze
+  CorridorRuns(MazeGraph graph) {
+    this.rowStart = new int[graph.size()];
+    this.rowLength = new int[graph.size()];
+    this.rowCount = 0;
+    this.rowRunOf = new int[graph.size()];
+    this.columnRunOf = new int[graph.size()];
+    Arrays.fill(this.columnRunOf, -1);
+    for (int y = 0; y < graph.height; y++) {
+      int x = 0;
+      while (x < graph.width) {
+        int length = 1;
+        while (graph.isOpen(graph.id(x + length - 1, y), MazeGraph.RIGHT)) {
+          length++;
+        }
+        this.rowStart[this.rowCount] = graph.id(x, y);
+        this.rowLength[this.rowCount] = length;
+        Arrays.fill(this.rowRunOf, graph.id(x, y), graph.id(x, y) + length, this.rowCount);
+        this.rowCount++;
+        x += length;
+      }
+    }
+    this.columnStart = new int[graph.size() / 2];
+    this.columnLength = new int[graph.size() / 2];
+    this.columnCount = 0;
+    for (int x = 0; x < graph.width; x++) {
+      int y = 0;
+      while (y < graph.height) {
+        int length = 1;
+        while (graph.isOpen(graph.id(x, y + length - 1), MazeGraph.DOWN)) {
+          length++;
+        }
+        if (length > 1) {
+          this.columnStart[this.columnCount] = graph.id(x, y);
+          this.columnLength[this.columnCount] = length;
+          for (int i = 0; i < length; i++) {
+            this.columnRunOf[graph.id(x, y + i)] = this.columnCount;
+          }
+          this.columnCount++;
+        }
+        y += length;
+      }
+    }
+    this.rowStart = Arrays.copyOf(this.rowStart, this.rowCount);
+    this.rowLength = Arrays.copyOf(this.rowLength, this.rowCount);
+    this.columnStart = Arrays.copyOf(this.columnStart, this.columnCount);
+    this.columnLength = Arrays.copyOf(this.columnLength, this.columnCount);
+  }
+}
+
+// to find, for every cell and open side, where a player sliding out of the
+// cell that way stops: the first cell beyond with other than two passages,
+// or one of the given stops, and how many moves away it is; each corridor is
+// walked once from each end, so the table takes time linear in the maze,
+// and a cycle of corridor cells with no stop on it has no entries
+class CorridorSlides {
+  // indexed by 4 * cell + side; the stopping cell, or -1, and the moves to it
+  int[] end;
+  int[] length;
+  // is each cell one of the given stops?
+  boolean[] stop;
+
+  // find the slides of the given maze, stopping at the given cells as well
+  CorridorSlides(MazeGraph graph, int[] stops) {
+    this.stop = new boolean[graph.size()];
+    for (int cell : stops) {
+      this.stop[cell] = true;
+    }
+    this.end = new int[4 * graph.size()];
+    this.length = new int[4 * graph.size()];
+    Arrays.fill(this.end, -1);
+    int[] cells = new int[graph.size()];
+    int[] sides = new int[graph.size()];
+    for (int stop = 0; stop < graph.size(); stop++) {
+      if (!this.isStop(graph, stop)) {
+        continue;
+      }
+      for (int side = 0; side < 4; side++) {
+        if (!graph.isOpen(stop, side)) {
+          continue;
+        }
+        // walk the corridor, noting the side each cell of it is left by
+        int count = 0;
+        int previous = stop;
+        int cell = graph.neighbor(stop, side);
+        while (!this.isStop(graph, cell)) {
+          cells[count] = cell;
+          sides[count] = this.onward(graph, cell, previous);
+          previous = cell;
+          cell = graph.neighbor(cell, sides[count]);
+          count++;
+        }
+        this.end[4 * stop + side] = cell;
+        this.length[4 * stop + side] = count + 1;
+        for (int i = 0; i < count; i++) {
+          this.end[4 * cells[i] + sides[i]] = cell;
+          this.length[4 * cells[i] + sides[i]] = count - i;
+        }
+      }
+    }
+  }
+
+  // does a slide stop at the given cell?
+  boolean isStop(MazeGraph graph, int cell) {
+    return Integer.bitCount(graph.open[cell]) != 2 || this.stop[cell];
+  }
+
+  // the side by which a slide leaves the given corridor cell, entered from
+  // the given neighbor
+  int onward(MazeGraph graph, int cell, int previous) {
+    int side = 0;
+    while (!graph.isOpen(cell, side) || graph.neighbor(cell, side) == previous) {
+      side++;
+    }
+    return side;
+  }
+
+  // the cell a slide out of the given cell by the given side stops at,
+  // or -1 if that side is a wall or the corridor never stops
+  int end(int cell, int side) {
+    return this.end[4 * cell + side];
+  }
+
+  // the moves in a slide out of the given cell by the given side, or 0
+  int length(int cell, int side) {
+    return this.length[4 * cell + side];
+  }
+}
+
+// the way to the player from every cell of a maze, shared by any number of
+// pursuers, each of which finds its next step in O(1); the field points
+// each cell at its neighbor on a shortest path to the player. In a maze
+// without loops, the path between two cells is unique, so when the player
+// steps to a neighbor only the two cells of that step turn to point the
+// other way, and the field is kept up in O(1); in a maze with loops, or
+// after a jump, it is rebuilt by a breadth first search from the player
+class PursuitField {
+  MazeGraph graph;
+  // the side of each cell leading to the player, or -1 at the player and at
+  // cells cut off from them
+  byte[] toward;
+  // the player's cell
+  int target;
+  // does the maze have no loops, with every cell reachable?
+  boolean tree;
+  // the breadth first search's queue, reused by every rebuild, and the
+  // number of rebuilds so far
+  int[] queue;
+  int rebuilds;
+
+  // the field of the given maze around the given cell
+  PursuitField(MazeGraph graph, int target) {
+    this.graph = graph;
+    this.toward = new byte[graph.size()];
+    this.queue = new int[graph.size()];
+    int passages = 0;
+    for (int cell = 0; cell < graph.size(); cell++) {
+      passages += Integer.bitCount(graph.open[cell]);
+    }
+    this.rebuilds = 0;
+    this.tree = this.rebuild(target) == graph.size() && passages / 2 == graph.size() - 1;
+  }
+
+  // point every cell at the given one, by a breadth first search out from it,
+  // returning the number of cells reached
+  int rebuild(int target) {
+    this.target = target;
+    this.rebuilds++;
+    Arrays.fill(this.toward, (byte) -1);
+    this.queue[0] = target;
+    int head = 0;
+    int tail = 1;
+    while (head < tail) {
+      int cell = this.queue[head];
+      head++;
+      for (int side = 0; side < 4; side++) {
+        if (!this.graph.isOpen(cell, side)) {
+          continue;
+        }
+        int next = this.graph.neighbor(cell, side);
+        if (next != target && this.toward[next] == -1) {
+          this.toward[next] = (byte) (side ^ 1);
+          this.queue[tail] = next;
+          tail++;
+        }
+      }
+    }
+    return tail;
+  }
+
+  // follow the player to the given cell, turning only the step between the
+  // cells when the maze has no loops and they are neighbors
+  void moveTo(int cell) {
+    if (cell == this.target) {
+      return;
+    }
+    int side = this.graph.direction(this.target, cell);
+    if (this.tree && this.graph.isOpen(this.target, side)
+        && this.graph.neighbor(this.target, side) == cell) {
+      this.toward[this.target] = (byte) side;
+      this.toward[cell] = -1;
+      this.target = cell;
+    } else {
+      this.rebuild(cell);
+    }
+  }
+
+  // the cell one step from the given one toward the player, or the given
+  // cell itself at the player or cut off from them
+  int step(int cell) {
+    int side = this.toward[cell];
+    return side < 0 ? cell : this.graph.neighbor(cell, side);
+  }
+
+  // the number of steps from the given cell to the player, or -1 if they are
+  // cut off, walking the field; for tests and benchmarks
+  int distance(int cell) {
+    int steps = 0;
+    while (cell != this.target) {
+      if (this.toward[cell] < 0) {
+        return -1;
+      }
+      cell = this.step(cell);
+      steps++;
+    }
+    return steps;
+  }
+}
+
+// the shortest route from a cell through every one of some keys, in any
+// order, and on to the nearest exit. The distances between the cell and the
+// keys come from one depth first search of a maze without loops: the
+// distance between two cells of a tree is their depths less twice the depth
+// of their lowest common ancestor, and Tarjan's offline algorithm finds the
+// ancestors of every pair in the one search; a maze with loops takes one
+// breadth first search from each instead. One breadth first search out from
+// all the exits at once gives every key's distance to the nearest. The order
+// is then exact, by dynamic programming over the subsets of the keys, for
+// up to DP_LIMIT keys, and otherwise the nearest key first, improved by
+// reversing parts of the order while that shortens the route
+class KeyRoute {
+  // the most keys whose order is found exactly
+  static final int DP_LIMIT = 16;
+
+  // the targets: the cell the route starts from, then the keys
+  int[] targets;
+  // the moves between each pair of targets, and from each to the nearest exit
+  int[][] distance;
+  int[] exitDistance;
+  // the keys in the order the route takes them, as indexes into the keys
+  int[] order;
+  // the moves along the route
+  int length;
+  // is the order certainly the best?
+  boolean exact;
+
+  // the route through the given keys from the given cell of the given
+  // connected maze to the nearest of the given exits
+  KeyRoute(MazeGraph graph, int from, int[] keys, int[] exits) {
+    this.targets = new int[keys.length + 1];
+    this.targets[0] = from;
+    System.arraycopy(keys, 0, this.targets, 1, keys.length);
+    this.distance = new int[this.targets.length][this.targets.length];
+    int passages = 0;
+    for (int cell = 0; cell < graph.size(); cell++) {
+      passages += Integer.bitCount(graph.open[cell]);
+    }
+    if (passages / 2 == graph.size() - 1) {
+      this.treeDistances(graph);
+    } else {
+      for (int i = 0; i < this.targets.length; i++) {
+        int[] moves = distances(graph, new int[] {this.targets[i]});
+        for (int j = 0; j < this.targets.length; j++) {
+          this.distance[i][j] = moves[this.targets[j]];
+        }
+      }
+    }
+    int[] toExit = distances(graph, exits);
+    this.exitDistance = new int[this.targets.length];
+    for (int i = 0; i < this.targets.length; i++) {
+      this.exitDistance[i] = toExit[this.targets[i]];
+    }
+    this.exact = keys.length <= DP_LIMIT;
+    if (this.exact) {
+      this.solveExactly();
+    } else {
+      this.solveNearestFirst();
+    }
+  }
+
+  // the moves from the nearest of the given cells to every cell of the given
+  // maze, by one breadth first search out from all of them, or -1 for cells
+  // cut off from them
+  static int[] distances(MazeGraph graph, int[] sources) {
+    int[] moves = new int[graph.size()];
+    Arrays.fill(moves, -1);
+    int[] queue = new int[graph.size()];
+    int tail = 0;
+    for (int source : sources) {
+      if (moves[source] == -1) {
+        moves[source] = 0;
+        queue[tail] = source;
+        tail++;
+      }
+    }
+    for (int head = 0; head < tail; head++) {
+      int cell = queue[head];
+      for (int side = 0; side < 4; side++) {
+        if (graph.isOpen(cell, side) && moves[graph.neighbor(cell, side)] == -1) {
+          moves[graph.neighbor(cell, side)] = moves[cell] + 1;
+          queue[tail] = graph.neighbor(cell, side);
+          tail++;
+        }
+      }
+    }
+    return moves;
+  }
+
+  // find the distances between every pair of targets in a maze without
+  // loops, rooted at the first target, by one depth first search: when a
+  // target is finished, the lowest common ancestor of it and each finished
+  // target is the ancestor recorded for the other's set, whose cells are
+  // merged into their parent's as each finishes
+  void treeDistances(MazeGraph graph) {
+    int[] targetIndex = new int[graph.size()];
+    Arrays.fill(targetIndex, -1);
+    for (int i = 0; i < this.targets.length; i++) {
+      targetIndex[this.targets[i]] = i;
+    }
+    int[] depth = new int[graph.size()];
+    int[] sets = new int[graph.size()];
+    int[] ancestor = new int[graph.size()];
+    byte[] state = new byte[graph.size()];
+    int[] stack = new int[graph.size()];
+    int[] nextSide = new int[graph.size()];
+    int size = 1;
+    int root = this.targets[0];
+    stack[0] = root;
+    sets[root] = root;
+    ancestor[root] = root;
+    state[root] = 1;
+    while (size > 0) {
+      int cell = stack[size - 1];
+      int side = nextSide[size - 1];
+      while (side < 4
+          && (!graph.isOpen(cell, side) || state[graph.neighbor(cell, side)] != 0)) {
+        side++;
+      }
+      nextSide[size - 1] = side + 1;
+      if (side < 4) {
+        int child = graph.neighbor(cell, side);
+        depth[child] = depth[cell] + 1;
+        sets[child] = child;
+        ancestor[child] = child;
+        state[child] = 1;
+        stack[size] = child;
+        nextSide[size] = 0;
+        size++;
+        continue;
+      }
+      // every cell below this one is finished
+      state[cell] = 2;
+      size--;
+      int i = targetIndex[cell];
+      if (i >= 0) {
+        for (int j = 0; j < this.targets.length; j++) {
+          int other = this.targets[j];
+          if (state[other] == 2) {
+            int common = ancestor[MazeGraph.findRoot(sets, other)];
+            this.distance[i][j] = depth[cell] + depth[other] - 2 * depth[common];
+            this.distance[j][i] = this.distance[i][j];
+          }
+        }
+      }
+      if (size > 0) {
+        int parent = stack[size - 1];
+        int parentSet = MazeGraph.findRoot(sets, parent);
+        sets[MazeGraph.findRoot(sets, cell)] = parentSet;
+        ancestor[parentSet] = parent;
+      }
+    }
+  }
+
+  // find the best order by dynamic programming: the shortest route from the
+  // start through each subset of the keys, ending at each key of it, is the
+  // shortest through the subset without that key, ending at another, plus
+  // the moves between the two
+  void solveExactly() {
+    int keys = this.targets.length - 1;
+    this.order = new int[keys];
+    if (keys == 0) {
+      this.length = this.exitDistance[0];
+      return;
+    }
+    int[][] best = new int[1 << keys][keys];
+    int[][] previous = new int[1 << keys][keys];
+    for (int[] row : best) {
+      Arrays.fill(row, Integer.MAX_VALUE);
+    }
+    for (int last = 0; last < keys; last++) {
+      best[1 << last][last] = this.distance[0][last + 1];
+      previous[1 << last][last] = -1;
+    }
+    for (int subset = 1; subset < 1 << keys; subset++) {
+      for (int last = 0; last < keys; last++) {
+        if (best[subset][last] == Integer.MAX_VALUE) {
+          continue;
+        }
+        for (int next = 0; next < keys; next++) {
+          if ((subset & (1 << next)) != 0) {
+            continue;
+          }
+          int moves = best[subset][last] + this.distance[last + 1][next + 1];
+          if (moves < best[subset | (1 << next)][next]) {
+            best[subset | (1 << next)][next] = moves;
+            previous[subset | (1 << next)][next] = last;
+          }
+        }
+      }
+    }
+    int all = (1 << keys) - 1;
+    int last = 0;
+    for (int key = 1; key < keys; key++) {
+      if (best[all][key] + this.exitDistance[key + 1]
+          < best[all][last] + this.exitDistance[last + 1]) {
+        last = key;
+      }
+    }
+    this.length = best[all][last] + this.exitDistance[last + 1];
+    for (int i = keys - 1; i >= 0; i--) {
+      this.order[i] = last;
+      int before = previous[all][last];
+      all &= ~(1 << last);
+      last = before;
+    }
+  }
+
+  // find a good order: the nearest key not yet taken each time, then
+  // reverse any run of the order whose reversal shortens the route, until
+  // none does
+  void solveNearestFirst() {
+    int keys = this.targets.length - 1;
+    this.order = new int[keys];
+    boolean[] taken = new boolean[keys];
+    int at = 0;
+    for (int i = 0; i < keys; i++) {
+      int nearest = -1;
+      for (int key = 0; key < keys; key++) {
+        if (!taken[key] && (nearest == -1
+            || this.distance[at][key + 1] < this.distance[at][nearest + 1])) {
+          nearest = key;
+        }
+      }
+      taken[nearest] = true;
+      this.order[i] = nearest;
+      at = nearest + 1;
+    }
+    boolean improved = true;
+    while (improved) {
+      improved = false;
+      for (int i = 0; i < keys - 1; i++) {
+        int before = (i == 0) ? 0 : this.order[i - 1] + 1;
+        for (int j = i + 1; j < keys; j++) {
+          int first = this.order[i] + 1;
+          int last = this.order[j] + 1;
+          // the moves into the run and out of it, before and after reversing
+          int now = this.distance[before][first];
+          int reversed = this.distance[before][last];
+          if (j == keys - 1) {
+            now += this.exitDistance[last];
+            reversed += this.exitDistance[first];
+          } else {
+            now += this.distance[last][this.order[j + 1] + 1];
+            reversed += this.distance[first][this.order[j + 1] + 1];
+          }
+          if (reversed < now) {
+            for (int k = 0; i + k < j - k; k++) {
+              int temp = this.order[i + k];
+              this.order[i + k] = this.order[j - k];
+              this.order[j - k] = temp;
+            }
+            improved = true;
+          }
+        }
+      }
+    }
+    this.length = this.distance[0][this.order[0] + 1]
+        + this.exitDistance[this.order[keys - 1] + 1];
+    for (int i = 1; i < keys; i++) {
+      this.length += this.distance[this.order[i - 1] + 1][this.order[i] + 1];
+    }
+  }
+}
+
+// to share the images that frames draw over and over: javalib images are
+// immutable, so one solid rectangle of each size and color, and one bold text
+// image of each string, size and color, can be placed in every scene that
+// needs it, and a frame in a steady state allocates almost no images; colors
+// are shared too, so that copying pixels allocates none
+class ImageCache {
+  // the most images of each kind kept before the cache starts over, so that
+  // text that changes every frame cannot grow it without bound
+  static final int CAPACITY = 4096;
+
+  // rectangles, in an open addressing table keyed by their packed size and color
+  static long[] rectangleKeys = new long[2 * CAPACITY];
+  static WorldImage[] rectangles = new WorldImage[2 * CAPACITY];
+  static int rectangleCount = 0;
+  // colors, in an open addressing table keyed by their packed RGB value
+  static int[] colorKeys = new int[2 * CAPACITY];
+  static Color[] colors = new Color[2 * CAPACITY];
+  static int colorCount = 0;
+  // text, in chains of the sizes and colors each string is drawn in
+  static HashMap<String, CachedText> texts = new HashMap<String, CachedText>();
+  static int textCount = 0;
+
+  // the solid rectangle of the given size and color
+  static WorldImage rectangle(int width, int height, Color c) {
+    long key = ((long) width << 48) | ((long) height << 32) | (c.getRGB() & 0xFFFFFFFFL);
+    int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & (rectangles.length - 1);
+    while (rectangles[slot] != null) {
+      if (rectangleKeys[slot] == key) {
+        return rectangles[slot];
+      }
+      slot = (slot + 1) & (rectangles.length - 1);
+    }
+    if (rectangleCount == CAPACITY) {
+      Arrays.fill(rectangles, null);
+      rectangleCount = 0;
+    }
+    WorldImage image = new RectangleImage(width, height, OutlineMode.SOLID, c);
+    rectangleKeys[slot] = key;
+    rectangles[slot] = image;
+    rectangleCount++;
+    return image;
+  }
+
+  // the color of the given packed RGB value
+  static Color color(int rgb) {
+    int slot = (rgb * 0x9E3779B9 >>> 16) & (colors.length - 1);
+    while (colors[slot] != null) {
+      if (colorKeys[slot] == rgb) {
+        return colors[slot];
+      }
+      slot = (slot + 1) & (colors.length - 1);
+    }
+    if (colorCount == CAPACITY) {
+      Arrays.fill(colors, null);
+      colorCount = 0;
+    }
+    Color c = new Color(rgb, true);
+    colorKeys[slot] = rgb;
+    colors[slot] = c;
+    colorCount++;
+    return c;
+  }
+
+  // the given string in bold, at the given size and in the given color
+  static WorldImage text(String text, int size, Color c) {
+    CachedText first = texts.get(text);
+    for (CachedText t = first; t != null; t = t.next) {
+      if (t.size == size && t.color.equals(c)) {
+        return t.image;
+      }
+    }
+    if (textCount == CAPACITY) {
+      texts.clear();
+      textCount = 0;
+      first = null;
+    }
+    WorldImage image = new TextImage(text, size, FontStyle.BOLD, c);
+    texts.put(text, new CachedText(size, c, image, first));
+    textCount++;
+    return image;
+  }
+}
+
+// to represent one cached text image, and the next size or color of its string
+class CachedText {
+  int size;
+  Color color;
+  WorldImage image;
+  CachedText next;
+
+  // constructor
+  CachedText(int size, Color color, WorldImage image, CachedText next) {
+    this.size = size;
+    this.color = color;
+    this.image = image;
+    this.next = next;
+  }
+}
+
+// compare two edges to sort from least to greatest
+class CompareEdge implements Comparator<Edge> {
+  // compare two edges by their weight
+  public int compare(Edge e1, Edge e2) {
+    if (e1.weight < e2.weight) {
+      return -1;
+    } else if (e1.weight > e2.weight) {
+      return 1;
+    } else {
+      return 0;
+    }
+  }
+}
+
+// to represent a search through a maze that is advanced a few steps at a time
+// by whichever client owns it (the game, a test, or a headless tool)
+interface MazeSolver {
+  // advance this search by at most the given number of steps,
+  // returning the number of steps taken
+  int step(int budget);
+
+  // has this search solved the maze, run out of cells, or been cancelled?
+  boolean isDone();
+
+  // stop this search; any further steps do nothing
+  void cancel();
+
+  // copy the current progress of this search into the given snapshot
+  void snapshot(SolverProgress into);
+
+  // has this search visited the given cell?
+  boolean isVisited(int cell);
+
+  // is the given cell on the path reconstructed so far?
+  boolean onPath(int cell);
+
+  // the i-th cell this search visited; once a snapshot counts it,
+  // it is never overwritten, so other threads may read it after the snapshot
+  int visitedCell(int i);
+
+  // the i-th cell of the path, from the end back towards the start;
+  // like visited cells, it is never overwritten once counted by a snapshot
+  int pathCell(int i);
+}
+
+// to represent a snapshot of a search's progress,
+// filled in place so that polling it does not allocate
+class SolverProgress {
+  // search phases
+  static final int SEARCHING = 0;
+  static final int RECONSTRUCTING = 1;
+  static final int SOLVED = 2;
+  static final int UNSOLVABLE = 3;
+  static final int CANCELLED = 4;
+
+  int phase;
+  int visitedCount;
+  int pathLength;
+  int pathCost;
+  int stepsTaken;
+  // time spent stepping, when the search runs on a SolverWorker
+  long elapsedNanos;
+
+  // constructor
+  SolverProgress() {
+    this.phase = SEARCHING;
+    this.visitedCount = 0;
+    this.pathLength = 0;
+    this.pathCost = 0;
+    this.stepsTaken = 0;
+    this.elapsedNanos = 0;
+  }
+}
+
+// to represent a search that visits one cell per step, then walks back
+// from the end to the start one path cell per step;
+// subclasses decide the order in which discovered cells are visited.
+// It may start from several cells at once and stop at whichever of several
+// ends it visits first, so that one search finds the nearest end to any start
+abstract class AGraphSearch implements MazeSolver {
+  // cell marks; END marks the ends before the search starts
+  static final byte VISITED = 1;
+  static final byte PATH = 2;
+  static final byte END = 4;
+
+  MazeGraph graph;
+  int[] starts;
+  // the end the search reached, or -1 until it reaches one
+  int end;
+  // the cell each cell was first discovered from
+  int[] cameFrom;
+  byte[] marks;
+  // the visited cells, in the order they were visited
+  int[] visitOrder;
+  // the reconstructed path, from the end back towards the start
+  int[] path;
+  int pathLength;
+  // the total weight of the passages on the path so far
+  int pathCost;
+  int visitedCount;
+  int stepsTaken;
+  int phase;
+
+  // constructor, for a search from the given starts to the nearest of the
+  // given ends; each start is its own cameFrom
+  AGraphSearch(MazeGraph graph, int[] starts, int[] ends) {
+    this.graph = graph;
+    this.starts = starts;
+    this.end = -1;
+    this.cameFrom = new int[graph.size()];
+    Arrays.fill(this.cameFrom, -1);
+    for (int start : starts) {
+      this.cameFrom[start] = start;
+    }
+    this.marks = new byte[graph.size()];
+    for (int end : ends) {
+      this.marks[end] |= END;
+    }
+    this.visitOrder = new int[graph.size()];
+    this.path = new int[graph.size()];
+    this.pathLength = 0;
+    this.pathCost = 0;
+    this.visitedCount = 0;
+    this.stepsTaken = 0;
+    this.phase = SolverProgress.SEARCHING;
+  }
+
+  // is the worklist empty?
+  abstract boolean worklistEmpty();
+
+  // remove the next cell to visit from the worklist
+  abstract int takeNext();
+
+  // add a discovered cell to the worklist
+  abstract void addToWorklist(int cell);
+
+  // advance this search by at most the given number of steps
+  public int step(int budget) {
+    int taken = 0;
+    while (taken < budget && !this.isDone()) {
+      if (this.phase == SolverProgress.SEARCHING) {
+        if (this.visitNext()) {
+          taken++;
+        }
+      } else {
+        this.reconstructStep();
+        taken++;
+      }
+    }
+    this.stepsTaken += taken;
+    return taken;
+  }
+
+  // visit the next unvisited cell of the worklist, returning false if
+  // the worklist only held an already visited cell
+  boolean visitNext() {
+    if (this.worklistEmpty()) {
+      this.phase = SolverProgress.UNSOLVABLE;
+      return false;
+    }
+    int next = this.takeNext();
+    // if next has already been visited, discard it
+    if ((this.marks[next] & VISITED) != 0) {
+      return false;
+    }
+    this.marks[next] |= VISITED;
+    this.visitOrder[this.visitedCount] = next;
+    this.visitedCount++;
+    if ((this.marks[next] & END) != 0) {
+      // start walking back from the end to show the path
+      this.end = next;
+      this.addToPath(next);
+      this.phase = (this.cameFrom[next] == next)
+          ? SolverProgress.SOLVED : SolverProgress.RECONSTRUCTING;
+    } else {
+      this.discoverNeighbors(next);
+    }
+    return true;
+  }
+
+  // for each open side of the given cell, add the unvisited neighbor to the
+  // worklist and record that it was discovered from the given cell
+  void discoverNeighbors(int cell) {
+    for (int dir = 0; dir < 4; dir++) {
+      if (this.graph.isOpen(cell, dir)) {
+        int neighbor = this.graph.neighbor(cell, dir);
+        if ((this.marks[neighbor] & VISITED) == 0) {
+          this.addToWorklist(neighbor);
+          if (this.cameFrom[neighbor] == -1) {
+            this.cameFrom[neighbor] = cell;
+          }
+        }
+      }
+    }
+  }
+
+  // add the cell that the last path cell was discovered from to the path
+  void reconstructStep() {
+    int last = this.path[this.pathLength - 1];
+    int previous = this.cameFrom[last];
+    this.pathCost += this.graph.weight(previous, this.graph.direction(previous, last));
+    this.addToPath(previous);
+    if (this.cameFrom[previous] == previous) {
+      this.phase = SolverProgress.SOLVED;
+    }
+  }
+
+  // add the given cell to the path
+  void addToPath(int cell) {
+    this.path[this.pathLength] = cell;
+    this.pathLength++;
+    this.marks[cell] |= PATH;
+  }
+
+  // has this search solved the maze, run out of cells, or been cancelled?
+  public boolean isDone() {
+    return this.phase >= SolverProgress.SOLVED;
+  }
+
+  // stop this search
+  public void cancel() {
+    if (!this.isDone()) {
+      this.phase = SolverProgress.CANCELLED;
+    }
+  }
+
+  // copy the current progress of this search into the given snapshot
+  public void snapshot(SolverProgress into) {
+    into.phase = this.phase;
+    into.visitedCount = this.visitedCount;
+    into.pathLength = this.pathLength;
+    into.pathCost = this.pathCost;
+    into.stepsTaken = this.stepsTaken;
+  }
+
+  // has this search visited the given cell?
+  public boolean isVisited(int cell) {
+    return (this.marks[cell] & VISITED) != 0;
+  }
+
+  // is the given cell on the path reconstructed so far?
+  public boolean onPath(int cell) {
+    return (this.marks[cell] & PATH) != 0;
+  }
+
+  // the i-th cell this search visited
+  public int visitedCell(int i) {
+    return this.visitOrder[i];
+  }
+
+  // the i-th cell of the path
+  public int pathCell(int i) {
+    return this.path[i];
+  }
+}
+
+// to represent a depth first search, whose worklist is a stack
+class DfsSolver extends AGraphSearch {
+  // every visit pushes at most four cells after the starts, so the stack
+  // never overflows
+  int[] worklist;
+  int size;
+
+  // constructor
+  DfsSolver(MazeGraph graph, int start, int end) {
+    this(graph, new int[] {start}, new int[] {end});
+  }
+
+  // constructor, for a search from all the given starts at once
+  DfsSolver(MazeGraph graph, int[] starts, int[] ends) {
+    super(graph, starts, ends);
+    this.worklist = new int[4 * graph.size() + starts.length];
+    this.size = 0;
+    for (int start : starts) {
+      this.addToWorklist(start);
+    }
+  }
+
+  // is the stack empty?
+  boolean worklistEmpty() {
+    return this.size == 0;
+  }
+
+  // pop the top of the stack
+  int takeNext() {
+    this.size--;
+    return this.worklist[this.size];
+  }
+
+  // push the given cell onto the stack
+  void addToWorklist(int cell) {
+    this.worklist[this.size] = cell;
+    this.size++;
+  }
+}
+
+// to represent a breadth first search, whose worklist is a queue
+class BfsSolver extends AGraphSearch {
+  // every visit enqueues at most four cells after the starts, so the queue
+  // never overflows
+  int[] worklist;
+  int head;
+  int tail;
+
+  // constructor
+  BfsSolver(MazeGraph graph, int start, int end) {
+    this(graph, new int[] {start}, new int[] {end});
+  }
+
+  // constructor, for a search from all the given starts at once
+  BfsSolver(MazeGraph graph, int[] starts, int[] ends) {
+    super(graph, starts, ends);
+    this.worklist = new int[4 * graph.size() + starts.length];
+    this.head = 0;
+    this.tail = 0;
+    for (int start : starts) {
+      this.addToWorklist(start);
+    }
+  }
+
+  // is the queue empty?
+  boolean worklistEmpty() {
+    return this.head == this.tail;
+  }
+
+  // dequeue the head of the queue
+  int takeNext() {
+    this.head++;
+    return this.worklist[this.head - 1];
+  }
+
+  // enqueue the given cell at the tail of the queue
+  void addToWorklist(int cell) {
+    this.worklist[this.tail] = cell;
+    this.tail++;
+  }
+}
+
+// to represent a search that visits cells in order of their cost from the
+// start along weighted passages, as in Dijkstra's algorithm;
+// subclasses supply the priority queue, where a cell may be queued again
+// whenever its cost drops and stale entries are skipped once it is visited
+abstract class AWeightedSearch extends AGraphSearch {
+  // the cheapest known cost of reaching each cell
+  int[] cost;
+
+  // constructor
+  AWeightedSearch(MazeGraph graph, int[] starts, int[] ends) {
+    super(graph, starts, ends);
+    this.cost = new int[graph.size()];
+    Arrays.fill(this.cost, Integer.MAX_VALUE);
+    for (int start : starts) {
+      this.cost[start] = 0;
+    }
+  }
+
+  // for each open side of the given cell, if going through the given cell is
+  // the cheapest way yet to reach the unvisited neighbor, record it and queue
+  // the neighbor at its new cost
+  void discoverNeighbors(int cell) {
+    for (int dir = 0; dir < 4; dir++) {
+      if (this.graph.isOpen(cell, dir)) {
+        int neighbor = this.graph.neighbor(cell, dir);
+        int newCost = this.cost[cell] + this.graph.weight(cell, dir);
+        if ((this.marks[neighbor] & VISITED) == 0 && newCost < this.cost[neighbor]) {
+          this.cost[neighbor] = newCost;
+          this.cameFrom[neighbor] = cell;
+          this.addToWorklist(neighbor);
+        }
+      }
+    }
+  }
+}
+
+// to represent Dial's algorithm: Dijkstra's algorithm over a bucket queue.
+// Every passage costs at most MazeGraph.MAX_WEIGHT, so every queued cost is
+// within MAX_WEIGHT of the cheapest one, and a ring of MAX_WEIGHT + 1 buckets
+// indexed by cost holds them all; the cheapest is found by scanning forward
+class DialSolver extends AWeightedSearch {
+  // the first entry of each bucket, or -1 if it is empty
+  int[] bucketHead;
+  // the queued entries, as linked lists threaded through these arrays;
+  // every visit queues at most four entries after the starts, so they never
+  // overflow
+  int[] entryCell;
+  int[] entryNext;
+  int entries;
+  int queued;
+  // the cost of the bucket being emptied
+  int current;
+
+  // constructor
+  DialSolver(MazeGraph graph, int start, int end) {
+    this(graph, new int[] {start}, new int[] {end});
+  }
+
+  // constructor, for a search from all the given starts at once
+  DialSolver(MazeGraph graph, int[] starts, int[] ends) {
+    super(graph, starts, ends);
+    this.bucketHead = new int[MazeGraph.MAX_WEIGHT + 1];
+    Arrays.fill(this.bucketHead, -1);
+    this.entryCell = new int[4 * graph.size() + starts.length];
+    this.entryNext = new int[4 * graph.size() + starts.length];
+    this.entries = 0;
+    this.queued = 0;
+    this.current = 0;
+    for (int start : starts) {
+      this.addToWorklist(start);
+    }
+  }
+
+  // are all the buckets empty?
+  boolean worklistEmpty() {
+    return this.queued == 0;
+  }
+
+  // take an entry from the cheapest non-empty bucket
+  int takeNext() {
+    int bucket = this.current % this.bucketHead.length;
+    while (this.bucketHead[bucket] == -1) {
+      this.current++;
+      bucket = this.current % this.bucketHead.length;
+    }
+    int entry = this.bucketHead[bucket];
+    this.bucketHead[bucket] = this.entryNext[entry];
+    this.queued--;
+    return this.entryCell[entry];
+  }
+
+  // put the given cell in the bucket for its current cost
+  void addToWorklist(int cell) {
+    int bucket = this.cost[cell] % this.bucketHead.length;
+    this.entryCell[this.entries] = cell;
+    this.entryNext[this.entries] = this.bucketHead[bucket];
+    this.bucketHead[bucket] = this.entries;
+    this.entries++;
+    this.queued++;
+  }
+}
+
+// to represent Dijkstra's algorithm over a binary heap of (cost, cell) pairs,
+// packed into longs with the cost in the high half so that they order by cost
+class HeapDijkstraSolver extends AWeightedSearch {
+  // every visit pushes at most four pairs after the starts, so the heap never
+  // overflows
+  long[] heap;
+  int size;
+
+  // constructor
+  HeapDijkstraSolver(MazeGraph graph, int start, int end) {
+    this(graph, new int[] {start}, new int[] {end});
+  }
+
+  // constructor, for a search from all the given starts at once
+  HeapDijkstraSolver(MazeGraph graph, int[] starts, int[] ends) {
+    super(graph, starts, ends);
+    this.heap = new long[4 * graph.size() + starts.length];
+    this.size = 0;
+    for (int start : starts) {
+      this.addToWorklist(start);
+    }
+  }
+
+  // is the heap empty?
+  boolean worklistEmpty() {
+    return this.size == 0;
+  }
+
+  // remove the cheapest pair from the heap
+  int takeNext() {
+    long top = this.heap[0];
+    this.size--;
+    long last = this.heap[this.size];
+    int i = 0;
+    // sift the last pair down from the root
+    while (2 * i + 1 < this.size) {
+      int child = 2 * i + 1;
+      if (child + 1 < this.size && this.heap[child + 1] < this.heap[child]) {
+        child++;
+      }
+      if (this.heap[child] >= last) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      i = child;
+    }
+    this.heap[i] = last;
+    return (int) top;
+  }
+
+  // push the given cell at its current cost
+  void addToWorklist(int cell) {
+    long pair = ((long) this.cost[cell] << 32) | cell;
+    int i = this.size;
+    this.size++;
+    // sift the new pair up from the bottom
+    while (i > 0 && this.heap[(i - 1) / 2] > pair) {
+      this.heap[i] = this.heap[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    this.heap[i] = pair;
+  }
+}
+
+// to represent a shortest path between two fixed cells that is repaired when
+// walls open or close instead of being searched for from scratch, using
+// Lifelong Planning A* (Koenig and Likhachev): every cell keeps its cost from
+// the start (g) and a one step lookahead of that cost (rhs), and only cells
+// whose two costs disagree after a change are expanded again
+class LpaStarPlanner {
+  // the cost of an unreachable cell, small enough that adding to it cannot overflow
+  static final int INF = Integer.MAX_VALUE / 2;
+
+  MazeGraph graph;
+  int start;
+  int goal;
+  int[] g;
+  int[] rhs;
+  // a binary heap of the cells whose costs disagree, ordered by their keys,
+  // with each cell's position in it (or -1) so that keys can change in place
+  int[] heap;
+  long[] heapKey;
+  int[] heapIndex;
+  int heapSize;
+  // the number of cells expanded by the last replan
+  int expanded;
+  // the path from the goal back to the start, as of the last tracePath
+  int[] path;
+  int pathLength;
+  boolean[] onPath;
+
+  // constructor
+  LpaStarPlanner(MazeGraph graph, int start, int goal) {
+    this.graph = graph;
+    this.start = start;
+    this.goal = goal;
+    this.g = new int[graph.size()];
+    this.rhs = new int[graph.size()];
+    Arrays.fill(this.g, INF);
+    Arrays.fill(this.rhs, INF);
+    this.heap = new int[graph.size()];
+    this.heapKey = new long[graph.size()];
+    this.heapIndex = new int[graph.size()];
+    Arrays.fill(this.heapIndex, -1);
+    this.heapSize = 0;
+    this.expanded = 0;
+    this.path = new int[graph.size()];
+    this.pathLength = 0;
+    this.onPath = new boolean[graph.size()];
+    this.rhs[start] = 0;
+    this.heapPut(start, this.key(start));
+  }
+
+  // the priority of the given cell: its best known cost plus the distance
+  // left to the goal, with ties broken by its best known cost
+  long key(int cell) {
+    int best = Math.min(this.g[cell], this.rhs[cell]);
+    int h = Math.abs(this.graph.xOf(cell) - this.graph.xOf(this.goal))
+        + Math.abs(this.graph.yOf(cell) - this.graph.yOf(this.goal));
+    return ((long) (best + h) << 32) | best;
+  }
+
+  // recompute the lookahead cost of the given cell from its neighbors,
+  // and queue it if it now disagrees with its cost
+  void updateCell(int cell) {
+    if (cell != this.start) {
+      int best = INF;
+      for (int dir = 0; dir < 4; dir++) {
+        if (this.graph.isOpen(cell, dir)) {
+          int neighbor = this.graph.neighbor(cell, dir);
+          best = Math.min(best, this.g[neighbor] + this.graph.weight(cell, dir));
+        }
+      }
+      this.rhs[cell] = Math.min(best, INF);
+    }
+    if (this.g[cell] != this.rhs[cell]) {
+      this.heapPut(cell, this.key(cell));
+    } else if (this.heapIndex[cell] != -1) {
+      this.heapRemove(cell);
+    }
+  }
+
+  // update the neighbors of the given cell after its cost changed
+  void updateNeighbors(int cell) {
+    for (int dir = 0; dir < 4; dir++) {
+      if (this.graph.isOpen(cell, dir)) {
+        this.updateCell(this.graph.neighbor(cell, dir));
+      }
+    }
+  }
+
+  // notify this planner that the wall between the adjacent cells a and b
+  // has opened, closed, or changed its cost
+  void wallChanged(int a, int b) {
+    this.updateCell(a);
+    this.updateCell(b);
+  }
+
+  // expand disagreeing cells until the goal's cost is correct,
+  // returning that cost, or INF if the goal cannot be reached
+  int replan() {
+    this.expanded = 0;
+    while (this.heapSize > 0
+        && (this.heapKey[0] < this.key(this.goal) || this.rhs[this.goal] != this.g[this.goal])) {
+      int cell = this.heap[0];
+      this.heapRemove(cell);
+      this.expanded++;
+      if (this.g[cell] > this.rhs[cell]) {
+        // the cell got cheaper: settle it and tell its neighbors
+        this.g[cell] = this.rhs[cell];
+        this.updateNeighbors(cell);
+      } else {
+        // the cell got more expensive: forget its cost and work it out again
+        this.g[cell] = INF;
+        this.updateCell(cell);
+        this.updateNeighbors(cell);
+      }
+    }
+    return this.g[this.goal];
+  }
+
+  // walk back from the goal to the start through the cheapest neighbors,
+  // recording the path; it is empty if the goal cannot be reached
+  void tracePath() {
+    for (int i = 0; i < this.pathLength; i++) {
+      this.onPath[this.path[i]] = false;
+    }
+    this.pathLength = 0;
+    if (this.g[this.goal] >= INF) {
+      return;
+    }
+    int cell = this.goal;
+    this.addToPath(cell);
+    while (cell != this.start && this.pathLength < this.path.length) {
+      int next = cell;
+      int best = INF;
+      for (int dir = 0; dir < 4; dir++) {
+        if (this.graph.isOpen(cell, dir)) {
+          int neighbor = this.graph.neighbor(cell, dir);
+          int cost = this.g[neighbor] + this.graph.weight(cell, dir);
+          if (cost < best) {
+            best = cost;
+            next = neighbor;
+          }
+        }
+      }
+      cell = next;
+      this.addToPath(cell);
+    }
+  }
+
+  // add the given cell to the path
+  void addToPath(int cell) {
+    this.path[this.pathLength] = cell;
+    this.pathLength++;
+    this.onPath[cell] = true;
+  }
+
+  // queue the given cell with the given key, or change its key if it is queued
+  void heapPut(int cell, long key) {
+    int i = this.heapIndex[cell];
+    if (i == -1) {
+      i = this.heapSize;
+      this.heapSize++;
+      this.heap[i] = cell;
+      this.heapIndex[cell] = i;
+    }
+    this.heapKey[i] = key;
+    this.siftUp(i);
+    this.siftDown(this.heapIndex[cell]);
+  }
+
+  // take the given cell out of the queue
+  void heapRemove(int cell) {
+    int i = this.heapIndex[cell];
+    this.heapSize--;
+    this.heapIndex[cell] = -1;
+    if (i < this.heapSize) {
+      int last = this.heap[this.heapSize];
+      this.heapMove(this.heapSize, i);
+      this.siftUp(i);
+      this.siftDown(this.heapIndex[last]);
+    }
+  }
+
+  // move the entry at position from to position to
+  void heapMove(int from, int to) {
+    this.heap[to] = this.heap[from];
+    this.heapKey[to] = this.heapKey[from];
+    this.heapIndex[this.heap[to]] = to;
+  }
+
+  // move the entry at position i up while it is smaller than its parent
+  void siftUp(int i) {
+    int cell = this.heap[i];
+    long key = this.heapKey[i];
+    while (i > 0 && this.heapKey[(i - 1) / 2] > key) {
+      this.heapMove((i - 1) / 2, i);
+      i = (i - 1) / 2;
+    }
+    this.heap[i] = cell;
+    this.heapKey[i] = key;
+    this.heapIndex[cell] = i;
+  }
+
+  // move the entry at position i down while it is larger than a child
+  void siftDown(int i) {
+    int cell = this.heap[i];
+    long key = this.heapKey[i];
+    while (2 * i + 1 < this.heapSize) {
+      int child = 2 * i + 1;
+      if (child + 1 < this.heapSize && this.heapKey[child + 1] < this.heapKey[child]) {
+        child++;
+      }
+      if (this.heapKey[child] >= key) {
+        break;
+      }
+      this.heapMove(child, i);
+      i = child;
+    }
+    this.heap[i] = cell;
+    this.heapKey[i] = key;
+    this.heapIndex[cell] = i;
+  }
+}
+
+// to represent a two level map of a maze, for path queries on mazes too large
+// to search cell by cell (HPA*, Botea, Mueller and Schaeffer): the grid is
+// split into square clusters, every open passage between two clusters is an
+// entrance, and each cluster keeps the costs between its entrances through
+// its own cells. A query searches the much smaller graph of entrances, then
+// fills in cells only within the clusters that its path crosses. Since every
+// passage between clusters is an entrance, the paths found are the cheapest.
+class HierarchicalPlanner {
+  MazeGraph graph;
+  int clusterSize;
+  int clustersWide;
+  int clustersHigh;
+  // the entrance cells of each cluster, in increasing order
+  int[][] entrances;
+  // the costs between the entrances of each cluster, as lists of
+  // (target, cost) pairs: entrance i's run from edgeStart[i] to edgeStart[i + 1].
+  // A cost is only kept when the cheapest way does not pass through another
+  // entrance, since it can then be found through that entrance instead
+  int[][] edgeStart;
+  int[][] edgeTarget;
+  int[][] edgeCost;
+
+  // scratch space for searching within one cluster, indexed by each cell's
+  // position within its cluster
+  int[] localCost;
+  int[] localFrom;
+  boolean[] localPassed;
+  boolean[] localEntrance;
+  // the cluster search's bucket queue, as in DialSolver
+  int[] localBucketHead;
+  int[] localEntryCell;
+  int[] localEntryNext;
+  int localEntries;
+  int localQueued;
+
+  // scratch space for searching the entrances: every cluster has room for
+  // 4 * clusterSize entrances, followed by one node each for the start and goal;
+  // a node's cost is only valid if its stamp is the current query's
+  int startNode;
+  int goalNode;
+  int[] nodeCost;
+  int[] nodeFrom;
+  int[] nodeStamp;
+  int query;
+  long[] heap;
+  int heapSize;
+
+  // the cells of the path found by the last query, from the start to the goal
+  int[] path;
+  int pathLength;
+  // the entrances expanded by the last query
+  int expanded;
+
+  // constructor
+  HierarchicalPlanner(MazeGraph graph, int clusterSize) {
+    this.graph = graph;
+    this.clusterSize = clusterSize;
+    this.clustersWide = (graph.width + clusterSize - 1) / clusterSize;
+    this.clustersHigh = (graph.height + clusterSize - 1) / clusterSize;
+    int clusters = this.clustersWide * this.clustersHigh;
+    this.entrances = new int[clusters][];
+    this.edgeStart = new int[clusters][];
+    this.edgeTarget = new int[clusters][];
+    this.edgeCost = new int[clusters][];
+    this.localCost = new int[clusterSize * clusterSize];
+    this.localFrom = new int[clusterSize * clusterSize];
+    this.localPassed = new boolean[clusterSize * clusterSize];
+    this.localEntrance = new boolean[clusterSize * clusterSize];
+    this.localBucketHead = new int[MazeGraph.MAX_WEIGHT + 1];
+    this.localEntryCell = new int[4 * clusterSize * clusterSize + 1];
+    this.localEntryNext = new int[4 * clusterSize * clusterSize + 1];
+    this.localEntries = 0;
+    this.localQueued = 0;
+    this.startNode = clusters * 4 * clusterSize;
+    this.goalNode = this.startNode + 1;
+    this.nodeCost = new int[this.startNode + 2];
+    this.nodeFrom = new int[this.startNode + 2];
+    this.nodeStamp = new int[this.startNode + 2];
+    this.query = 0;
+    this.heap = new long[64];
+    this.heapSize = 0;
+    this.path = new int[16];
+    this.pathLength = 0;
+    this.expanded = 0;
+    for (int cluster = 0; cluster < clusters; cluster++) {
+      this.rebuildCluster(cluster);
+    }
+  }
+
+  // the cluster holding the given cell
+  int clusterOf(int cell) {
+    return (this.graph.yOf(cell) / this.clusterSize) * this.clustersWide
+        + this.graph.xOf(cell) / this.clusterSize;
+  }
+
+  // the position of the given cell within its cluster
+  int local(int cell) {
+    return (this.graph.yOf(cell) % this.clusterSize) * this.clusterSize
+        + this.graph.xOf(cell) % this.clusterSize;
+  }
+
+  // the cell at the given position within the given cluster
+  int cellAt(int cluster, int local) {
+    return this.graph.id((cluster % this.clustersWide) * this.clusterSize
+        + local % this.clusterSize, (cluster / this.clustersWide) * this.clusterSize
+        + local / this.clusterSize);
+  }
+
+  // the search node of the i-th entrance of the given cluster
+  int node(int cluster, int i) {
+    return cluster * 4 * this.clusterSize + i;
+  }
+
+  // the cell of the given search node
+  int nodeCell(int node, int start, int goal) {
+    if (node == this.startNode) {
+      return start;
+    } else if (node == this.goalNode) {
+      return goal;
+    } else {
+      int cluster = node / (4 * this.clusterSize);
+      return this.entrances[cluster][node % (4 * this.clusterSize)];
+    }
+  }
+
+  // notify this planner that the wall between the adjacent cells a and b has
+  // opened, closed, or changed its cost; only the clusters on either side of
+  // it are rebuilt
+  void wallChanged(int a, int b) {
+    this.rebuildCluster(this.clusterOf(a));
+    if (this.clusterOf(b) != this.clusterOf(a)) {
+      this.rebuildCluster(this.clusterOf(b));
+    }
+  }
+
+  // find the entrances of the given cluster and the costs between them
+  void rebuildCluster(int cluster) {
+    int left = (cluster % this.clustersWide) * this.clusterSize;
+    int top = (cluster / this.clustersWide) * this.clusterSize;
+    int right = Math.min(left + this.clusterSize, this.graph.width);
+    int bottom = Math.min(top + this.clusterSize, this.graph.height);
+    int[] found = new int[4 * this.clusterSize];
+    int count = 0;
+    for (int y = top; y < bottom; y++) {
+      for (int x = left; x < right; x++) {
+        int cell = this.graph.id(x, y);
+        boolean entrance = (x == left && this.graph.isOpen(cell, MazeGraph.LEFT))
+            || (x == right - 1 && this.graph.isOpen(cell, MazeGraph.RIGHT))
+            || (y == top && this.graph.isOpen(cell, MazeGraph.UP))
+            || (y == bottom - 1 && this.graph.isOpen(cell, MazeGraph.DOWN));
+        if (entrance) {
+          found[count] = cell;
+          count++;
+        }
+      }
+    }
+    int[] starts = new int[count + 1];
+    int[] targets = new int[4 * count];
+    int[] costs = new int[4 * count];
+    int edges = 0;
+    for (int i = 0; i < count; i++) {
+      starts[i] = edges;
+      this.searchCluster(found[i], found, count);
+      for (int j = 0; j < count; j++) {
+        int l = this.local(found[j]);
+        if (j != i && this.localCost[l] < LpaStarPlanner.INF && !this.localPassed[l]) {
+          if (edges == targets.length) {
+            targets = Arrays.copyOf(targets, 2 * edges);
+            costs = Arrays.copyOf(costs, 2 * edges);
+          }
+          targets[edges] = j;
+          costs[edges] = this.localCost[l];
+          edges++;
+        }
+      }
+    }
+    starts[count] = edges;
+    this.entrances[cluster] = Arrays.copyOf(found, count);
+    this.edgeStart[cluster] = starts;
+    this.edgeTarget[cluster] = Arrays.copyOf(targets, edges);
+    this.edgeCost[cluster] = Arrays.copyOf(costs, edges);
+  }
+
+  // find the cheapest costs from the given cell to every cell of its cluster
+  // without leaving the cluster, as in DialSolver, noting which of
+  // them are cheapest through one of the given entrances
+  void searchCluster(int source, int[] clusterEntrances, int count) {
+    int cluster = this.clusterOf(source);
+    int left = (cluster % this.clustersWide) * this.clusterSize;
+    int top = (cluster / this.clustersWide) * this.clusterSize;
+    int w = Math.min(this.clusterSize, this.graph.width - left);
+    int h = Math.min(this.clusterSize, this.graph.height - top);
+    for (int i = 0; i < count; i++) {
+      this.localEntrance[this.local(clusterEntrances[i])] = true;
+    }
+    Arrays.fill(this.localCost, LpaStarPlanner.INF);
+    Arrays.fill(this.localFrom, -1);
+    Arrays.fill(this.localPassed, false);
+    int sourceLocal = this.local(source);
+    this.localCost[sourceLocal] = 0;
+    Arrays.fill(this.localBucketHead, -1);
+    this.localEntries = 0;
+    this.localQueued = 0;
+    this.localEnqueue(sourceLocal, 0);
+    int cost = 0;
+    while (this.localQueued > 0) {
+      int bucket = cost % this.localBucketHead.length;
+      if (this.localBucketHead[bucket] == -1) {
+        cost++;
+        continue;
+      }
+      int entry = this.localBucketHead[bucket];
+      this.localBucketHead[bucket] = this.localEntryNext[entry];
+      this.localQueued--;
+      int l = this.localEntryCell[entry];
+      if (cost > this.localCost[l]) {
+        continue;
+      }
+      int lx = l % this.clusterSize;
+      int ly = l / this.clusterSize;
+      int cell = (top + ly) * this.graph.width + left + lx;
+      boolean passed = this.localPassed[l] || (l != sourceLocal && this.localEntrance[l]);
+      for (int dir = 0; dir < 4; dir++) {
+        int nx = lx + MazeGraph.DX[dir];
+        int ny = ly + MazeGraph.DY[dir];
+        if (nx >= 0 && nx < w && ny >= 0 && ny < h && this.graph.isOpen(cell, dir)) {
+          int neighbor = ny * this.clusterSize + nx;
+          int newCost = cost + this.graph.weight(cell, dir);
+          if (newCost < this.localCost[neighbor]) {
+            this.localCost[neighbor] = newCost;
+            this.localFrom[neighbor] = l;
+            this.localPassed[neighbor] = passed;
+            this.localEnqueue(neighbor, newCost);
+          }
+        }
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      this.localEntrance[this.local(clusterEntrances[i])] = false;
+    }
+  }
+
+  // queue the given position at the given cost in the cluster search's buckets
+  void localEnqueue(int local, int cost) {
+    int bucket = cost % this.localBucketHead.length;
+    this.localEntryCell[this.localEntries] = local;
+    this.localEntryNext[this.localEntries] = this.localBucketHead[bucket];
+    this.localBucketHead[bucket] = this.localEntries;
+    this.localEntries++;
+    this.localQueued++;
+  }
+
+  // find the cheapest path from start to goal, leaving its cells in path;
+  // returns its cost, or LpaStarPlanner.INF if the goal cannot be reached
+  int findPath(int start, int goal) {
+    this.expanded = 0;
+    this.pathLength = 0;
+    this.query++;
+    this.heapSize = 0;
+
+    // the costs from the goal to the entrances of its cluster
+    int goalCluster = this.clusterOf(goal);
+    int[] goalEntrances = this.entrances[goalCluster];
+    this.searchCluster(goal, goalEntrances, goalEntrances.length);
+    int[] goalCosts = new int[goalEntrances.length];
+    for (int i = 0; i < goalEntrances.length; i++) {
+      goalCosts[i] = this.localCost[this.local(goalEntrances[i])];
+    }
+    // the costs from the start to the entrances of its cluster, and to the goal
+    // if it is in the same cluster
+    int startCluster = this.clusterOf(start);
+    int[] startEntrances = this.entrances[startCluster];
+    this.searchCluster(start, startEntrances, startEntrances.length);
+    this.nodeStamp[this.startNode] = this.query;
+    this.nodeCost[this.startNode] = 0;
+    for (int i = 0; i < startEntrances.length; i++) {
+      int l = this.local(startEntrances[i]);
+      if (!this.localPassed[l]) {
+        this.relax(this.node(startCluster, i), this.localCost[l], this.startNode,
+            startEntrances[i], goal);
+      }
+    }
+    if (startCluster == goalCluster) {
+      this.relax(this.goalNode, this.localCost[this.local(goal)], this.startNode, goal, goal);
+    }
+
+    while (this.heapSize > 0) {
+      long top = this.heapPop();
+      int node = (int) top;
+      int cost = this.nodeCost[node];
+      int cell = this.nodeCell(node, start, goal);
+      if ((top >>> 32) != cost + this.estimate(cell, goal)) {
+        // a stale entry for a node since reached more cheaply
+        continue;
+      }
+      this.expanded++;
+      if (node == this.goalNode) {
+        break;
+      }
+      // through the entrance's own cluster to its other entrances, or the goal
+      int cluster = node / (4 * this.clusterSize);
+      int i = node % (4 * this.clusterSize);
+      int[] clusterEntrances = this.entrances[cluster];
+      for (int e = this.edgeStart[cluster][i]; e < this.edgeStart[cluster][i + 1]; e++) {
+        int j = this.edgeTarget[cluster][e];
+        this.relax(this.node(cluster, j), cost + this.edgeCost[cluster][e], node,
+            clusterEntrances[j], goal);
+      }
+      if (cluster == goalCluster) {
+        this.relax(this.goalNode, cost + goalCosts[i], node, goal, goal);
+      }
+      // across the passages into neighboring clusters
+      for (int dir = 0; dir < 4; dir++) {
+        if (this.graph.isOpen(cell, dir)) {
+          int neighbor = this.graph.neighbor(cell, dir);
+          int neighborCluster = this.clusterOf(neighbor);
+          if (neighborCluster != cluster) {
+            this.relax(this.node(neighborCluster,
+                Arrays.binarySearch(this.entrances[neighborCluster], neighbor)),
+                cost + this.graph.weight(cell, dir), node, neighbor, goal);
+          }
+        }
+      }
+    }
+    if (this.nodeStamp[this.goalNode] != this.query) {
+      return LpaStarPlanner.INF;
+    }
+    this.refine(start, goal);
+    return this.nodeCost[this.goalNode];
+  }
+
+  // record a cheaper way to reach the given node, whose cell is given, if the
+  // cost is one
+  void relax(int node, int cost, int previous, int cell, int goal) {
+    if (cost < LpaStarPlanner.INF
+        && (this.nodeStamp[node] != this.query || cost < this.nodeCost[node])) {
+      this.nodeStamp[node] = this.query;
+      this.nodeCost[node] = cost;
+      this.nodeFrom[node] = previous;
+      this.heapPush(((long) (cost + this.estimate(cell, goal)) << 32) | node);
+    }
+  }
+
+  // a lower bound on the cost from the given cell to the goal,
+  // since every passage costs at least 1
+  int estimate(int cell, int goal) {
+    return Math.abs(this.graph.xOf(cell) - this.graph.xOf(goal))
+        + Math.abs(this.graph.yOf(cell) - this.graph.yOf(goal));
+  }
+
+  // push the given pair onto the entrance search's heap, growing it if needed
+  void heapPush(long pair) {
+    if (this.heapSize == this.heap.length) {
+      this.heap = Arrays.copyOf(this.heap, 2 * this.heap.length);
+    }
+    int i = this.heapSize;
+    this.heapSize++;
+    while (i > 0 && this.heap[(i - 1) / 2] > pair) {
+      this.heap[i] = this.heap[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    this.heap[i] = pair;
+  }
+
+  // remove the cheapest pair from the entrance search's heap
+  long heapPop() {
+    long top = this.heap[0];
+    this.heapSize--;
+    long last = this.heap[this.heapSize];
+    int i = 0;
+    while (2 * i + 1 < this.heapSize) {
+      int child = 2 * i + 1;
+      if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+        child++;
+      }
+      if (this.heap[child] >= last) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      i = child;
+    }
+    this.heap[i] = last;
+    return top;
+  }
+
+  // fill in the cells between the entrances of the path found to the goal
+  void refine(int start, int goal) {
+    int waypoints = 0;
+    for (int node = this.goalNode; node != this.startNode; node = this.nodeFrom[node]) {
+      waypoints++;
+    }
+    int[] nodes = new int[waypoints];
+    int node = this.goalNode;
+    for (int w = waypoints - 1; w >= 0; w--) {
+      nodes[w] = node;
+      node = this.nodeFrom[node];
+    }
+    this.addToPath(start);
+    int previous = start;
+    for (int w = 0; w < waypoints; w++) {
+      int next = this.nodeCell(nodes[w], start, goal);
+      int cluster = this.clusterOf(previous);
+      if (cluster != this.clusterOf(next)) {
+        this.addToPath(next);
+      } else if (next != previous) {
+        this.searchCluster(previous, this.entrances[cluster], 0);
+        int first = this.pathLength;
+        for (int l = this.local(next); l != this.local(previous); l = this.localFrom[l]) {
+          this.addToPath(this.cellAt(cluster, l));
+        }
+        // the cells were added from next back to previous
+        for (int i = first, j = this.pathLength - 1; i < j; i++, j--) {
+          int temp = this.path[i];
+          this.path[i] = this.path[j];
+          this.path[j] = temp;
+        }
+      }
+      previous = next;
+    }
+  }
+
+  // add the given cell to the path, growing it if needed
+  void addToPath(int cell) {
+    if (this.pathLength == this.path.length) {
+      this.path = Arrays.copyOf(this.path, 2 * this.path.length);
+    }
+    this.path[this.pathLength] = cell;
+    this.pathLength++;
+  }
+}
+
+// to pace a search so that its animation takes about the same time on any
+// size of maze: once a frame, the search takes the steps that have fallen due
+// since the last, at a rate that would visit the given number of cells in the
+// given duration, but stops when it has stepped for the given budget, so a
+// search that cannot keep pace finishes late instead of starving the frames
+class StepSchedule {
+  static final long FRAME_NANOS = 1000000000L / 60;
+  static final long DURATION_NANOS = 10000000000L;
+  static final long BUDGET_NANOS = 2000000L;
+
+  long totalSteps;
+  long durationNanos;
+  long frameNanos;
+  long budgetNanos;
+
+  // constructor
+  StepSchedule(long totalSteps, long durationNanos, long frameNanos, long budgetNanos) {
+    this.totalSteps = totalSteps;
+    this.durationNanos = durationNanos;
+    this.frameNanos = frameNanos;
+    this.budgetNanos = budgetNanos;
+  }
+
+  // a schedule that would visit every cell of the given maze in the default
+  // duration, with the default frame rate and budget
+  static StepSchedule forMaze(MazeGraph graph) {
+    return new StepSchedule(graph.size(), DURATION_NANOS, FRAME_NANOS, BUDGET_NANOS);
+  }
+
+  // the number of steps due the given time after the search started; after
+  // the whole duration every step is due, including those of the path
+  long stepsDue(long elapsedNanos) {
+    if (elapsedNanos >= this.durationNanos) {
+      return Long.MAX_VALUE;
+    }
+    return (long) ((double) this.totalSteps * elapsedNanos / this.durationNanos);
+  }
+}
+
+// to represent a search running on its own thread, publishing a fresh
+// snapshot of its progress after every batch of steps, or, when it has a
+// schedule, after the steps of every frame;
+// the search itself is only ever touched by the worker thread
+class SolverWorker implements Runnable {
+  static final int SCHEDULED_BATCH = 256;
+
+  MazeSolver solver;
+  int batchSize;
+  long pauseNanos;
+  StepSchedule schedule;
+  // time spent stepping and steps taken, only touched by the worker thread
+  long elapsedNanos;
+  long stepsTaken;
+  // when stepped inline by the ticks instead of on a thread, the time the
+  // ticks have stood for since it started
+  boolean inline;
+  long inlineNanos;
+  // requests from other threads, and the latest published progress
+  volatile boolean cancelled;
+  volatile SolverProgress latest;
+  Thread thread;
+
+  // constructor
+  SolverWorker(MazeSolver solver, int batchSize, long pauseNanos) {
+    this.solver = solver;
+    this.batchSize = batchSize;
+    this.pauseNanos = pauseNanos;
+    this.schedule = null;
+    this.elapsedNanos = 0;
+    this.stepsTaken = 0;
+    this.inline = false;
+    this.inlineNanos = 0;
+    this.cancelled = false;
+    this.latest = new SolverProgress();
+  }
+
+  // a worker paced by the given schedule, checking the clock every
+  // SCHEDULED_BATCH steps
+  SolverWorker(MazeSolver solver, StepSchedule schedule) {
+    this(solver, SCHEDULED_BATCH, 0);
+    this.schedule = schedule;
+  }
+
+  // run this worker's search on a new daemon thread with the given name
+  void start(String name) {
+    this.thread = new Thread(this, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  // mark this worker as stepped inline by stepInline instead of on a thread
+  void startInline() {
+    this.inline = true;
+  }
+
+  // has this worker been started on its own thread, or inline?
+  boolean isStarted() {
+    return this.thread != null || this.inline;
+  }
+
+  // is this worker stepped inline?
+  boolean isInline() {
+    return this.inline;
+  }
+
+  // advance this inline worker's clock by the given time and take every step
+  // its schedule has made due, all at once, with no budget or pause, so that
+  // the same ticks always take the same steps
+  void stepInline(long nanos) {
+    if (this.solver.isDone()) {
+      return;
+    }
+    if (this.cancelled) {
+      this.solver.cancel();
+    } else {
+      this.inlineNanos += nanos;
+      long due = this.schedule.stepsDue(this.inlineNanos) - this.stepsTaken;
+      while (due > 0 && !this.solver.isDone()) {
+        int taken = this.solver.step((int) Math.min(due, this.batchSize));
+        this.stepsTaken += taken;
+        due -= taken;
+      }
+    }
+    this.publish();
+  }
+
+  // step the search in batches until it is done or cancelled,
+  // pausing between batches so that it can be watched
+  public void run() {
+    long started = System.nanoTime();
+    while (!this.solver.isDone()) {
+      if (this.cancelled) {
+        this.solver.cancel();
+      } else if (this.schedule != null) {
+        this.runFrame(System.nanoTime() - started);
+      } else {
+        long before = System.nanoTime();
+        this.solver.step(this.batchSize);
+        this.elapsedNanos += System.nanoTime() - before;
+        this.publish();
+        if (this.pauseNanos > 0 && !this.solver.isDone()) {
+          LockSupport.parkNanos(this.pauseNanos);
+        }
+      }
+    }
+    this.publish();
+  }
+
+  // take the steps the schedule has made due by the given time since the
+  // search started, within the schedule's budget, then wait out the frame
+  void runFrame(long sinceStart) {
+    long due = this.schedule.stepsDue(sinceStart) - this.stepsTaken;
+    long before = System.nanoTime();
+    long now = before;
+    while (due > 0 && !this.solver.isDone() && now - before < this.schedule.budgetNanos) {
+      int taken = this.solver.step((int) Math.min(due, this.batchSize));
+      this.stepsTaken += taken;
+      due -= taken;
+      now = System.nanoTime();
+    }
+    if (now != before) {
+      this.elapsedNanos += now - before;
+      this.publish();
+    }
+    if (!this.solver.isDone()) {
+      LockSupport.parkNanos(this.schedule.frameNanos - (now - before));
+    }
+  }
+
+  // publish the search's current progress; the volatile write makes every
+  // cell the snapshot counts visible to any thread that reads it
+  void publish() {
+    SolverProgress progress = new SolverProgress();
+    this.solver.snapshot(progress);
+    progress.elapsedNanos = this.elapsedNanos;
+    this.latest = progress;
+  }
+
+  // ask the search to stop at its next batch
+  void cancel() {
+    this.cancelled = true;
+  }
+
+  // wait for the search to finish, giving up after the given time
+  void awaitDone(long timeoutMillis) {
+    if (this.thread != null) {
+      try {
+        this.thread.join(timeoutMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
+
+// to represent one thread's copy of the cells a worker's search has visited
+// and put on its path, caught up from the worker's published snapshots
+class SolverView {
+  byte[] marks;
+  int seenVisited;
+  int seenPath;
+  SolverProgress progress;
+
+  // constructor
+  SolverView(int size) {
+    this.marks = new byte[size];
+    this.seenVisited = 0;
+    this.seenPath = 0;
+    this.progress = new SolverProgress();
+  }
+
+  // mark the cells the worker has published since the last sync
+  void sync(SolverWorker worker) {
+    SolverProgress latest = worker.latest;
+    for (int i = this.seenVisited; i < latest.visitedCount; i++) {
+      this.marks[worker.solver.visitedCell(i)] |= AGraphSearch.VISITED;
+    }
+    for (int i = this.seenPath; i < latest.pathLength; i++) {
+      this.marks[worker.solver.pathCell(i)] |= AGraphSearch.PATH;
+    }
+    this.seenVisited = latest.visitedCount;
+    this.seenPath = latest.pathLength;
+    this.progress = latest;
+  }
+
+  // has the search visited the given cell, as of the last sync?
+  boolean isVisited(int cell) {
+    return (this.marks[cell] & AGraphSearch.VISITED) != 0;
+  }
+
+  // is the given cell on the search's path, as of the last sync?
+  boolean onPath(int cell) {
+    return (this.marks[cell] & AGraphSearch.PATH) != 0;
+  }
+}
+
+// to run timing comparisons on large generated mazes, outside of the game:
+//   java MazeBenchmarks
+class MazeBenchmarks {
+  // run every benchmark
+  public static void main(String[] args) throws IOException {
+    new MazeBenchmarks().compareDijkstra(1000, 1000, 5);
+    new MazeBenchmarks().replanLatency(1000, 1000, 2000);
+    new MazeBenchmarks().hierarchicalQueries(2000, 2000, 32, 10);
+    new MazeBenchmarks().frameTime(100, 60, 500);
+    new MazeBenchmarks().viewportTime(50, new int[] {150, 200, 250}, 200);
+    new MazeBenchmarks().levelOfDetailTime(4000, 4000, 20000, 100);
+    new MazeBenchmarks().pngExport(4000, 4000, 2);
+    new MazeBenchmarks().animationExport(1000, 1000, new int[] {1, 100});
+    new MazeBenchmarks().scheduledDuration(new int[] {10, 100, 1000}, 2000000000L);
+    new MazeBenchmarks().playerMoveTime(60, 60, 1000000, 30);
+    new MazeBenchmarks().fogMoveTime(60, 60, 1000000);
+    new MazeBenchmarks().pursuitTime(1000, 1000, 500, 2000);
+    new MazeBenchmarks().nearestExit(2000, 2000, 16);
+    new MazeBenchmarks().keyRouteTime(2000, 2000, new int[] {8, 16, 64});
+    new MazeBenchmarks().corridorSlides(2000, 2000);
+    new MazeBenchmarks().replaySpeed(60, 60, 200000, 5);
+    new MazeBenchmarks().agentSwarm(100, 100, 3000, 50000);
+    new MazeBenchmarks().environmentSteps(65536, 16, 16, 2000);
+  }
+
+  // a world of the given size whose breadth first search has been run to the
+  // end on this thread, with the player's path fully drawn as well
+  MazeWorld solvedWorld(int width, int height) {
+    MazeWorld world = new MazeWorld(width, height, new Random(1));
+    world.bfsWorker = new SolverWorker(
+        new BfsSolver(world.graph, 0, world.graph.size() - 1), 1000, 0);
+    world.bfsWorker.run();
+    world.animatingBfs = true;
+    world.onTick();
+    for (int i = world.bfsView.progress.pathLength - 2; i >= 0; i--) {
+      world.extendRoute(world.bfsWorker.solver.pathCell(i));
+    }
+    world.playerReconstruct = true;
+    while (world.playerReconstruct) {
+      world.reconstructPlayerPath();
+    }
+    return world;
+  }
+
+  // time drawing the scene of a new world, and of a solved one
+  void frameTime(int width, int height, int frames) {
+    String[] none = {};
+    this.frameTime("new", new MazeWorld(width, height, new Random(1)), frames, none);
+    this.frameTime("solved", this.solvedWorld(width, height), frames, none);
+    // the whole window repainted on every frame, switching between the
+    // searches, as the keys that change the mode do
+    this.frameTime("repainted", this.solvedWorld(width, height), frames,
+        new String[] {"d", "b"});
+
+    // a search advancing a few cells per frame, as while it is animating
+    MazeWorld world = new MazeWorld(width, height, new Random(1));
+    world.bfsWorker = new SolverWorker(
+        new BfsSolver(world.graph, 0, world.graph.size() - 1), 1000, 0);
+    world.animatingBfs = true;
+    world.makeScene();
+    long start = System.nanoTime();
+    for (int i = 0; i < frames; i++) {
+      world.bfsWorker.solver.step(3);
+      world.bfsWorker.publish();
+      world.onTick();
+      world.makeScene();
+    }
+    System.out.println(width + "x" + height + " searching frame: "
+        + (System.nanoTime() - start) / frames / 1000 + " us");
+
+    // both searches side by side, each drawn from the maze's corridors
+    MazeWorld race = new MazeWorld(width, height, new Random(1));
+    race.racing = true;
+    CorridorRuns runs = race.corridors();
+    System.out.println(width + "x" + height + " race panel: " + (runs.rowCount + runs.columnCount)
+        + " corridor runs for " + (race.graph.size() + race.edges.size())
+        + " cells and passages");
+    this.frameTime("racing", race, frames, none);
   }
 
-  // breadth first search to find the shortest path from the start to the end
-  void bfs() {
-    // get the next vertex from the head of the queue
-    Vertex next = this.bfsWorklist.remove();
-
-    // if next has already been visited, discard it
-    if (this.bfsVisited.contains(next)) {
-      return;
-    } else if (next.equals(this.vertices.get(this.width - 1).get(this.height - 1))) {
-      // reconstruct the path from the end to the start to show the shortest path
-      this.solvingBfs = false;
-      this.reconstructBfs = true;
-    } else {
-      // get edges of next
-      ArrayList<Edge> nextEdges = new ArrayList<Edge>();
-      for (Edge e : this.edges) {
-        if (e.hasVertex(next)) {
-          nextEdges.add(e);
-        }
+  // time drawing the given world's scene, pressing the given keys in turn
+  // before each frame if there are any, and count the bytes each frame
+  // allocates, after drawing it enough to warm up
+  void frameTime(String name, MazeWorld world, int frames, String[] keys) {
+    for (int i = 0; i < frames; i++) {
+      if (keys.length > 0) {
+        world.onKeyEvent(keys[i % keys.length]);
       }
-      // for each neighbor n of next
-      for (Edge e : nextEdges) {
-        Vertex neighbor = (e.source.equals(next)) ? e.destination : e.source;
-        // add n to the worklist
-        this.bfsWorklist.add(neighbor);
-        // record the edge from next to n in the cameFromEdge map
-        this.cameFromEdgeBfs.putIfAbsent(neighbor, e);
+      world.makeScene();
+    }
+    long bytes = this.allocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < frames; i++) {
+      if (keys.length > 0) {
+        world.onKeyEvent(keys[i % keys.length]);
       }
+      world.makeScene();
     }
+    long elapsed = System.nanoTime() - start;
+    System.out.println(world.width + "x" + world.height + " " + name + " frame: "
+        + elapsed / frames / 1000 + " us, "
+        + (this.allocatedBytes() - bytes) / frames + " bytes allocated");
+  }
 
-    //update the visited vertices
-    this.bfsVisited.add(next);
+  // the bytes this thread has allocated so far
+  long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
   }
 
-  // reconstruct the path from the end to the start to show the shortest path (DFS)
-  void reconstructDfsPath(Vertex current) {
-    if (!current.equals(this.vertices.get(0).get(0))) {
-      Edge e = this.cameFromEdgeDfs.get(current);
-      Vertex neighbor = (e.source.equals(current)) ? e.destination : e.source;
-      this.dfsPath.add(neighbor);
-    } else {
-      this.reconstructDfs = false;
-      this.finalStateDfs = true;
+  // time repainting the whole window, as after every pan, for mazes of the
+  // given heights that are all seen through windows of the same size
+  void viewportTime(int width, int[] heights, int frames) {
+    for (int height : heights) {
+      MazeWorld world = new MazeWorld(width, height, new Random(1));
+      world.onKeyEvent("down");
+      long start = System.nanoTime();
+      for (int i = 0; i < frames; i++) {
+        world.renderer.invalidate();
+        world.makeScene();
+      }
+      System.out.println(width + "x" + height + " at cell size " + world.cellSize + ": "
+          + (System.nanoTime() - start) / frames / 1000 + " us to repaint "
+          + world.renderer.columns * world.renderer.rows + " cells in the window");
     }
   }
 
-  // reconstruct the path from the end to the start to show the shortest path (BFS)
-  void reconstructBfsPath(Vertex current) {
-    if (!current.equals(this.vertices.get(0).get(0))) {
-      Edge e = this.cameFromEdgeBfs.get(current);
-      Vertex neighbor = (e.source.equals(current)) ? e.destination : e.source;
-      this.bfsPath.add(neighbor);
-    } else {
-      this.reconstructBfs = false;
-      this.finalStateBfs = true;
+  // time summarizing a huge maze in a MazePyramid, then frames of a breadth
+  // first search advancing the given number of cells per frame, each frame
+  // updating the pyramid and painting the level that fits the whole maze into
+  // a window as MazeRenderer paints tiles
+  void levelOfDetailTime(int width, int height, int cellsPerFrame, int frames) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    long start = System.nanoTime();
+    MazePyramid pyramid = new MazePyramid(graph);
+    SolverWorker worker = new SolverWorker(new BfsSolver(graph, 0, graph.size() - 1), 1, 0);
+    SolverView view = new SolverView(graph.size());
+    pyramid.refresh(view);
+    int level = 0;
+    while (pyramid.across[level] * MazeWorld.MIN_CELL_SIZE > MazeWorld.VIEW_WIDTH
+        || pyramid.down[level] * MazeWorld.MIN_CELL_SIZE > MazeWorld.VIEW_HEIGHT) {
+      level++;
+    }
+    System.out.println(width + "x" + height + " pyramid of " + pyramid.levels + " levels: built in "
+        + (System.nanoTime() - start) / 1000000 + " ms, drawn at level " + level + " in "
+        + pyramid.across[level] + "x" + pyramid.down[level] + " tiles");
+
+    BufferedImage image = new BufferedImage(MazeWorld.VIEW_WIDTH, MazeWorld.VIEW_HEIGHT,
+        BufferedImage.TYPE_INT_RGB);
+    long updating = 0;
+    long painting = 0;
+    for (int frame = 0; frame < frames; frame++) {
+      int seen = view.seenVisited;
+      worker.solver.step(cellsPerFrame);
+      worker.publish();
+      view.sync(worker);
+      start = System.nanoTime();
+      for (int i = seen; i < view.seenVisited; i++) {
+        pyramid.update(worker.solver.visitedCell(i));
+      }
+      pyramid.flush();
+      updating += System.nanoTime() - start;
+      start = System.nanoTime();
+      Graphics2D g = image.createGraphics();
+      int size = MazeWorld.MIN_CELL_SIZE;
+      for (int y = 0; y < pyramid.down[level]; y++) {
+        for (int x = 0; x < pyramid.across[level]; x++) {
+          g.setColor(pyramid.tileColor(level, x, y, Color.PINK, Color.MAGENTA));
+          g.fillRect(x * size, y * size, size, size);
+        }
+      }
+      g.dispose();
+      painting += System.nanoTime() - start;
     }
+    System.out.println("  per frame of " + cellsPerFrame + " cells: " + updating / frames / 1000
+        + " us updating the pyramid, " + painting / frames / 1000 + " us painting every tile, "
+        + view.seenVisited + " cells visited in all");
   }
 
-  // reconstruct the path from the end to the start to show the shortest path (Player)
-  void reconstructPlayerPath() {
-    if (this.playerPath.size() == 0) {
-      this.playerReconstruct = false;
-      this.finalStatePlayer = true;
-      return;
-    }
-    this.playerPathAnimator.add(this.playerPath.remove(this.playerPath.size() - 1));
+  // time exporting a maze with cells of the given size to a PNG file, solved by
+  // breadth first search, with one thread and then with every processor
+  void pngExport(int width, int height, int cellSize) throws IOException {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    SolverWorker worker = new SolverWorker(new BfsSolver(graph, 0, graph.size() - 1),
+        Integer.MAX_VALUE, 0);
+    worker.run();
+    SolverView view = new SolverView(graph.size());
+    view.sync(worker);
+    File file = File.createTempFile("maze", ".png");
+    file.deleteOnExit();
+    PngExporter exporter = new PngExporter(graph, 0, new int[] {graph.size() - 1}, view,
+        Color.PINK, Color.MAGENTA, cellSize);
+    int threads = exporter.threads;
+    exporter.threads = 1;
+    long start = System.nanoTime();
+    exporter.export(file);
+    System.out.println(width + "x" + height + " PNG of " + (width * cellSize + 1) + "x"
+        + (height * cellSize + 1) + " pixels: " + (System.nanoTime() - start) / 1000000
+        + " ms on 1 thread, " + file.length() / 1024 + " KB");
+    exporter.threads = threads;
+    start = System.nanoTime();
+    exporter.export(file);
+    System.out.println("  " + (System.nanoTime() - start) / 1000000 + " ms on " + threads
+        + " threads");
   }
 
-  // move player up
-  void moveUp() {
-    if (this.player.y > 0) {
-      Vertex next = this.vertices.get(this.player.x).get(this.player.y - 1);
-      for (Edge e : this.edges) {
-        if (e.hasVertex(this.player) && e.hasVertex(next)) {
-          this.player = next;
-          this.playerPath.add(this.player);
-          break;
-        }
-      }
-      if (this.player.equals(this.vertices.get(this.width - 1).get(this.height - 1))) {
-        this.playerReconstruct = true;
-        this.playerWon = true;
+  // time recording a breadth first search of a new maze with each given number
+  // of steps per frame, and playing it back, against the size of full frames
+  void animationExport(int width, int height, int[] stepsPerFrame) throws IOException {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    File file = File.createTempFile("maze", ".mzd");
+    file.deleteOnExit();
+    for (int steps : stepsPerFrame) {
+      AnimationExporter exporter = new AnimationExporter(graph, 0,
+          new int[] {graph.size() - 1}, new BfsSolver(graph, 0, graph.size() - 1), steps);
+      long start = System.nanoTime();
+      int frames = exporter.export(file);
+      long recording = System.nanoTime() - start;
+      AnimationPlayer player = new AnimationPlayer(file);
+      start = System.nanoTime();
+      while (player.nextFrame()) {
+        // only the changes are read
       }
+      long playing = System.nanoTime() - start;
+      player.close();
+      System.out.println(width + "x" + height + " search at " + steps + " steps per frame: "
+          + frames + " frames in " + file.length() / 1024 + " KB, "
+          + recording / frames + " ns recording and " + playing / frames
+          + " ns playing per frame; full frames would take "
+          + (long) frames * graph.size() / 1024 / 1024 + " MB");
     }
   }
 
-  // move player down
-  void moveDown() {
-    if (this.player.y < this.height - 1) {
-      Vertex next = this.vertices.get(this.player.x).get(this.player.y + 1);
-      for (Edge e : this.edges) {
-        if (e.hasVertex(this.player) && e.hasVertex(next)) {
-          this.player = next;
-          this.playerPath.add(this.player);
-          break;
-        }
+  // time the player's random moves on a maze of the given size, made the
+  // given number at a time as a tick makes the moves queued by key repeat
+  void playerMoveTime(int width, int height, int moves, int movesPerTick) {
+    MazeWorld world = new MazeWorld(width, height, new Random(1));
+    world.manualGameplay = true;
+    Random rand = new Random(2);
+    long start = System.nanoTime();
+    for (int i = 0; i < moves; i += movesPerTick) {
+      for (int j = 0; j < movesPerTick; j++) {
+        world.queueMove(rand.nextInt(4));
       }
-      if (this.player.equals(this.vertices.get(this.width - 1).get(this.height - 1))) {
-        this.playerReconstruct = true;
-        this.playerWon = true;
+      world.applyMoves();
+      if (world.playerWon) {
+        world.resetPlayer();
+        world.manualGameplay = true;
       }
     }
+    System.out.println(width + "x" + height + " player moves: "
+        + (System.nanoTime() - start) / moves + " ns per move, " + movesPerTick
+        + " moves per tick");
   }
 
-  // move player left
-  void moveLeft() {
-    if (this.player.x > 0) {
-      Vertex next = this.vertices.get(this.player.x - 1).get(this.player.y);
-      for (Edge e : this.edges) {
-        if (e.hasVertex(this.player) && e.hasVertex(next)) {
-          this.player = next;
-          this.playerPath.add(this.player);
-          break;
-        }
-      }
-      if (this.player.equals(this.vertices.get(this.width - 1).get(this.height - 1))) {
-        this.playerReconstruct = true;
-        this.playerWon = true;
+  // time random moves of the manual player on a maze of the given size
+  // under fog of war, and count the cells each move reveals
+  void fogMoveTime(int width, int height, int moves) {
+    MazeWorld world = new MazeWorld(width, height, new Random(1));
+    world.manualGameplay = true;
+    world.toggleFog();
+    Random rand = new Random(2);
+    long start = System.nanoTime();
+    for (int i = 0; i < moves; i++) {
+      world.queueMove(rand.nextInt(4));
+      world.applyMoves();
+      if (world.playerWon) {
+        world.resetPlayer();
+        world.manualGameplay = true;
+        world.toggleFog();
       }
     }
+    System.out.println(width + "x" + height + " fogged player moves: "
+        + (System.nanoTime() - start) / moves + " ns per move, " + world.revealedCount
+        + " of " + world.graph.size() + " cells revealed");
   }
 
-  // move player right
-  void moveRight() {
-    if (this.player.x < this.width - 1) {
-      Vertex next = this.vertices.get(this.player.x + 1).get(this.player.y);
-      for (Edge e : this.edges) {
-        if (e.hasVertex(this.player) && e.hasVertex(next)) {
-          this.player = next;
-          this.playerPath.add(this.player);
-          break;
-        }
+  // time planning the shortest route through each given number of random
+  // keys on a new maze of the given size, against finding the distances
+  // between the keys by one breadth first search from each
+  void keyRouteTime(int width, int height, int[] counts) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    for (int count : counts) {
+      Random rand = new Random(2);
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = 1 + rand.nextInt(graph.size() - 1);
       }
-      if (this.player.equals(this.vertices.get(this.width - 1).get(this.height - 1))) {
-        this.playerReconstruct = true;
-        this.playerWon = true;
+      long start = System.nanoTime();
+      KeyRoute route = new KeyRoute(graph, 0, keys, new int[] {graph.size() - 1});
+      long planning = System.nanoTime() - start;
+      start = System.nanoTime();
+      KeyRoute.distances(graph, new int[] {0});
+      for (int key : keys) {
+        KeyRoute.distances(graph, new int[] {key});
       }
+      long searching = System.nanoTime() - start;
+      System.out.println(width + "x" + height + " route through " + count + " keys: "
+          + planning / 1000000 + " ms to plan, " + (route.exact ? "exact" : "heuristic")
+          + ", " + route.length + " moves; " + searching / 1000000
+          + " ms for a search from each key");
     }
   }
 
-  // reset entire world
-  void reset() {
-    // reset maze fields
-    this.vertices = new ArrayList<ArrayList<Vertex>>();
-    this.representatives = new HashMap<Vertex, Vertex>();
-    for (int i = 0; i < this.width; i++) {
-      this.vertices.add(new ArrayList<Vertex>());
-      for (int j = 0; j < this.height; j++) {
-        Vertex v = new Vertex(i, j);
-        this.vertices.get(i).add(v);
-        this.representatives.put(v, v);
-      }
+  // time finding the nearest of the given number of random exits from the
+  // start of a new maze of the given size, by one breadth first search to
+  // all of them and by one search per exit
+  void nearestExit(int width, int height, int exits) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    Random rand = new Random(2);
+    int[] ends = new int[exits];
+    for (int i = 0; i < exits; i++) {
+      ends[i] = rand.nextInt(graph.size());
     }
-    this.edges = this.kruskals();
-
-    // reset dfs, bfs, and player fields
-    // depth first search fields
-    this.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    this.dfsPath = new ArrayList<Vertex>();
-    this.dfsPath.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.dfsVisited = new ArrayList<Vertex>();
-    this.dfsWorklist = new Stack<Vertex>();
-    this.animatingDfs = false;
-    this.reconstructDfs = false;
-    this.finalStateDfs = false;
-    this.solvingDfs = false;
-    // breadth first search fields
-    this.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    this.bfsPath = new ArrayList<Vertex>();
-    this.bfsPath.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.bfsVisited = new ArrayList<Vertex>();
-    this.bfsWorklist = new LinkedList<Vertex>();
-    this.animatingBfs = false;
-    this.reconstructBfs = false;
-    this.finalStateBfs = false;
-    this.solvingBfs = false;
-    // manual player fields
-    this.playerPathAnimator = new ArrayList<Vertex>();
-    this.playerPathAnimator.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.playerPath = new ArrayList<Vertex>();
-    this.player = this.vertices.get(0).get(0);
-    this.playerPath.add(this.player);
-    this.playerReconstruct = false;
-    this.finalStatePlayer = false;
-    this.manualGameplay = false;
-    this.playerWon = false;
+    long start = System.nanoTime();
+    BfsSolver solver = new BfsSolver(graph, new int[] {0}, ends);
+    solver.step(Integer.MAX_VALUE);
+    long together = System.nanoTime() - start;
+    start = System.nanoTime();
+    int nearest = Integer.MAX_VALUE;
+    long visited = 0;
+    for (int end : ends) {
+      BfsSolver single = new BfsSolver(graph, 0, end);
+      single.step(Integer.MAX_VALUE);
+      nearest = Math.min(nearest, single.pathLength);
+      visited += single.visitedCount;
+    }
+    long apart = System.nanoTime() - start;
+    System.out.println(width + "x" + height + " nearest of " + exits + " exits: one search "
+        + together / 1000000 + " ms, " + solver.visitedCount + " cells visited; one per exit "
+        + apart / 1000000 + " ms, " + visited + " cells visited; path "
+        + (solver.pathLength - 1) + " moves, checked " + (nearest - 1));
   }
 
-  // reset player world only to exit manual gameplay
-  void resetPlayer() {
-    // reset manual player fields
-    this.playerPathAnimator = new ArrayList<Vertex>();
-    this.playerPathAnimator.add(this.vertices.get(this.width - 1).get(this.height - 1));
-    this.playerPath = new ArrayList<Vertex>();
-    this.player = this.vertices.get(0).get(0);
-    this.playerPath.add(this.player);
-    this.playerReconstruct = false;
-    this.finalStatePlayer = false;
-    this.manualGameplay = false;
-    this.playerWon = false;
+  // time ticks of a chase on a new maze of the given size, where the player
+  // walks at random and the given number of pursuers step toward them every
+  // tick, keeping the field up as the player moves, and then rebuilding it
+  // by a breadth first search on every tick, as one search per pursuer would
+  // at best
+  void pursuitTime(int width, int height, int pursuers, int ticks) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    for (int run = 0; run < 2; run++) {
+      Random rand = new Random(2);
+      PursuitField field = new PursuitField(graph, 0);
+      int[] cells = new int[pursuers];
+      for (int i = 0; i < pursuers; i++) {
+        cells[i] = rand.nextInt(graph.size());
+      }
+      int player = 0;
+      long start = System.nanoTime();
+      for (int tick = 0; tick < ticks; tick++) {
+        int side = rand.nextInt(4);
+        if (graph.isOpen(player, side)) {
+          player = graph.neighbor(player, side);
+          if (run == 0) {
+            field.moveTo(player);
+          } else {
+            field.rebuild(player);
+          }
+        }
+        for (int i = 0; i < pursuers; i++) {
+          cells[i] = field.step(cells[i]);
+        }
+      }
+      System.out.println(width + "x" + height + " chase with " + pursuers + " pursuers, "
+          + (run == 0 ? "kept" : "rebuilt") + " field: "
+          + (System.nanoTime() - start) / ticks + " ns per tick, " + field.rebuilds
+          + " searches");
+    }
   }
 
-  // on key event, handle accordingly
-  public void onKeyEvent(String key) {
-    if (key.equals("d")) {
-      // if already solving, toggle animation
-      if (this.animatingDfs || this.animatingBfs) {
-        this.animatingDfs = true;
-        this.animatingBfs = false;
-        return;
+  // time stepping the given number of environments with mazes of the given
+  // size for the given number of steps, with random actions, on one thread
+  // and then on every processor
+  void environmentSteps(int count, int width, int height, int steps) {
+    int[][] actions = MazeEnvironments.randomActions(count, 64, new Random(1));
+    for (int run = 0; run < 2; run++) {
+      MazeEnvironments envs = new MazeEnvironments(count, width, height, 1000);
+      if (run == 0) {
+        envs.threads = 1;
       }
-      // setup for dfs and bfs if not already solving
-      // depth first search starts
-      this.animatingDfs = true;
-
-      // dfs
-      this.solvingDfs = true;
-      this.dfsWorklist = new Stack<Vertex>();
-      this.dfsWorklist.push(this.vertices.get(0).get(0));
-      this.dfsVisited = new ArrayList<Vertex>();
-      // bfs
-      this.solvingBfs = true;
-      this.bfsWorklist = new LinkedList<Vertex>();
-      this.bfsWorklist.add(this.vertices.get(0).get(0));
-      this.bfsVisited = new ArrayList<Vertex>();
-    } else if (key.equals("b")) {
-      // if already solving, toggle animation
-      if (this.animatingDfs || this.animatingBfs) {
-        this.animatingBfs = true;
-        this.animatingDfs = false;
-        return;
+      try {
+        long start = System.nanoTime();
+        envs.reset(2);
+        long resetting = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+          envs.step(actions[i % actions.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(count + " environments of " + width + "x" + height + " on "
+            + envs.threads + " threads: " + resetting / 1000000 + " ms to reset, "
+            + (long) steps * count / Math.max(elapsed / 1000, 1)
+            + " million env-steps per second");
+      } finally {
+        envs.close();
       }
-      // setup for dfs and bfs if not already solving
-      // breadth first search starts
-      this.animatingBfs = true;
-
-      // bfs
-      this.solvingBfs = true;
-      this.bfsWorklist = new LinkedList<Vertex>();
-      this.bfsWorklist.add(this.vertices.get(0).get(0));
-      this.bfsVisited = new ArrayList<Vertex>();
-      // dfs
-      this.solvingDfs = true;
-      this.dfsWorklist = new Stack<Vertex>();
-      this.dfsWorklist.push(this.vertices.get(0).get(0));
-      this.dfsVisited = new ArrayList<Vertex>();
-    } else if (key.equals("m") && !animatingDfs && !animatingBfs) {
-      this.manualGameplay = true;
-    } else if (key.equals("up") && this.manualGameplay && !this.finalStatePlayer) {
-      this.moveUp();
-    } else if (key.equals("down") && this.manualGameplay && !this.finalStatePlayer) {
-      this.moveDown();
-    } else if (key.equals("left") && this.manualGameplay && !this.finalStatePlayer) {
-      this.moveLeft();
-    } else if (key.equals("right") && this.manualGameplay && !this.finalStatePlayer) {
-      this.moveRight();
-    } else if (key.equals("escape")) {
-      this.resetPlayer();
-    } else if (key.equals("r")) {
-      this.reset();
     }
   }
 
-  // on tick
-  public void onTick() {
-    if (this.solvingDfs) {
-      this.dfs();
+  // time the given number of agents on a new maze of the given size for the
+  // given number of ticks, on one thread and then on every processor
+  void agentSwarm(int width, int height, int agents, int ticks) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int run = 0; run < 2; run++) {
+      AgentSwarm swarm = new AgentSwarm(graph, graph.size() - 1, agents, 2);
+      swarm.threads = run == 0 ? 1 : threads;
+      long start = System.nanoTime();
+      long steps = swarm.run(ticks);
+      long elapsed = System.nanoTime() - start;
+      System.out.println(width + "x" + height + " with " + agents + " agents for " + ticks
+          + " ticks on " + swarm.threads + " threads: " + steps / Math.max(elapsed / 1000, 1)
+          + " million agent-steps per second");
+      if (run == 1) {
+        for (int kind = 0; kind < AgentSwarm.KIND_NAMES.length; kind++) {
+          System.out.println("  " + swarm.exitReport(kind));
+        }
+      }
     }
-    if (this.solvingBfs) {
-      this.bfs();
+  }
+
+  // record a session of the given number of ticks on a maze of the given
+  // size, with a random arrow key every few ticks and then a breadth first
+  // search, and time replaying it the given number of times
+  void replaySpeed(int width, int height, int ticks, int times) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    MazeWorld world = new MazeWorld(width, height, new Random(1));
+    world.lockstepNanos = InputReplay.TICK_NANOS;
+    world.log = new InputLog(bytes, width, height, 1);
+    String[] keys = {"up", "down", "left", "right"};
+    Random rand = new Random(2);
+    world.onKeyEvent("m");
+    while (world.ticks < ticks / 2) {
+      world.onTick();
+      if (world.ticks % 5 == 0) {
+        world.onKeyEvent(keys[rand.nextInt(4)]);
+      }
     }
-    if (this.reconstructDfs) {
-      this.reconstructDfsPath(this.dfsPath.get(this.dfsPath.size() - 1));
+    world.onKeyEvent("escape");
+    world.onKeyEvent("b");
+    while (world.ticks < ticks) {
+      world.onTick();
     }
-    if (this.reconstructBfs) {
-      this.reconstructBfsPath(this.bfsPath.get(this.bfsPath.size() - 1));
+    world.log.close(world.ticks);
+    byte[] log = bytes.toByteArray();
+    long start = System.nanoTime();
+    MazeWorld replayed = null;
+    for (int i = 0; i < times; i++) {
+      replayed = new InputReplay(log).run();
     }
-    if (this.playerReconstruct) {
-      this.reconstructPlayerPath();
+    long elapsed = (System.nanoTime() - start) / times;
+    start = System.nanoTime();
+    for (int i = 0; i < times; i++) {
+      new InputReplay(log).newWorld();
     }
+    long building = (System.nanoTime() - start) / times;
+    long ticking = Math.max(elapsed - building, 1);
+    System.out.println(width + "x" + height + " replay of " + ticks + " ticks from a "
+        + log.length + " byte log: " + elapsed / 1000 + " us, " + building / 1000
+        + " us of it building the maze; the ticks ran "
+        + ticks * InputReplay.TICK_NANOS / ticking + " times real time, same end state: "
+        + InputReplay.describe(replayed).equals(InputReplay.describe(world)));
   }
 
-  // draw the world
-  public WorldScene makeScene() {
-    WorldScene ws = new WorldScene(this.width * this.cellSize,
-        this.height * this.cellSize + 200);
-
-    // create white background behind black maze background
-    ws.placeImageXY(new RectangleImage(this.width * cellSize,
-            this.height * cellSize + 200,
-            OutlineMode.SOLID, Color.WHITE), this.width * cellSize / 2 + 100,
-        this.height * cellSize / 2 + 100);
-
-    // create black background
-    ws.placeImageXY(new RectangleImage(this.width * cellSize,
-            this.height * cellSize,
-            OutlineMode.SOLID, Color.BLACK), this.width * cellSize / 2,
-        this.height * cellSize / 2);
-
-    // draw maze vertices
-    for (int x = 0; x < this.vertices.size(); x++) {
-      for (int y = 0; y < this.vertices.get(x).size(); y++) {
-        if (this.player.equals(this.vertices.get(x).get(y))
-            && this.manualGameplay) { // color manual player
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.ORANGE, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        } else if (this.dfsPath.contains(this.vertices.get(x).get(y))
-            && (this.reconstructDfs || this.finalStateDfs)
-            && this.animatingDfs) { // color dfs path reconstruction
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.BLUE, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        } else if (this.bfsPath.contains(this.vertices.get(x).get(y))
-            && (this.reconstructBfs || this.finalStateBfs)
-            && this.animatingBfs) { // color bfs path reconstruction
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.MAGENTA, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        } else if (this.playerPathAnimator.contains(this.vertices.get(x).get(y))
-            && (this.playerReconstruct || this.finalStatePlayer)) {
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.ORANGE, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        } else if (this.dfsVisited.contains(this.vertices.get(x).get(y))
-            && this.animatingDfs) { // color dfs visited vertices
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.CYAN, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        } else if (this.bfsVisited.contains(this.vertices.get(x).get(y))
-            && this.animatingBfs) { // color bfs visited vertices
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.PINK, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        } else { // color blank cells
-          ws.placeImageXY(this.vertices.get(x).get(y).drawVertex(Color.WHITE, this.cellSize),
-              (this.vertices.get(x).get(y).x * cellSize) + cellSize / 2,
-              (this.vertices.get(x).get(y).y * cellSize) + cellSize / 2);
-        }
-      }
-    }
-
-    // draw the edges of the maze
-    for (Edge e : this.edges) {
-      this.drawEdge(e, ws);
-    }
-
-    // highlight the beginning and ending of the maze
-    if (!(this.player.equals(this.vertices.get(0).get(0)) && this.manualGameplay)) {
-      ws.placeImageXY(this.vertices.get(0).get(0)
-              .drawVertex(Color.GREEN, this.cellSize),
-          (this.vertices.get(0).get(0).x * cellSize) + cellSize / 2,
-          (this.vertices.get(0).get(0).y * cellSize) + cellSize / 2);
+  // time finding the slides of a new maze, and count the key presses needed
+  // to walk its shortest path one cell at a time and in auto-run
+  void corridorSlides(int width, int height) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    long start = System.nanoTime();
+    CorridorSlides slides = new CorridorSlides(graph, new int[] {0, graph.size() - 1});
+    long building = System.nanoTime() - start;
+    BfsSolver solver = new BfsSolver(graph, 0, graph.size() - 1);
+    while (!solver.isDone()) {
+      solver.step(Integer.MAX_VALUE);
     }
-    if (!(this.player.equals(this.vertices.get(this.width - 1).get(this.height - 1))
-        && this.manualGameplay)) {
-      ws.placeImageXY(this.vertices.get(this.width - 1).get(this.height - 1)
-              .drawVertex(Color.RED, this.cellSize),
-          (this.vertices.get(this.width - 1).get(this.height - 1).x * cellSize) + cellSize / 2,
-          (this.vertices.get(this.width - 1).get(this.height - 1).y * cellSize) + cellSize / 2);
+    SolverProgress progress = new SolverProgress();
+    solver.snapshot(progress);
+    // the path runs from the end back to the start; a slide stops at each stop
+    int presses = 0;
+    for (int i = progress.pathLength - 1; i > 0; i--) {
+      if (slides.isStop(graph, solver.pathCell(i))) {
+        presses++;
+      }
     }
+    System.out.println(width + "x" + height + " corridor slides: " + building / 1000000
+        + " ms to build, shortest path of " + (progress.pathLength - 1) + " moves in "
+        + presses + " auto-run presses");
+  }
 
-    // display the current mode
-    if (this.animatingDfs) {
-      ws.placeImageXY(new TextImage("Mode: DFS", 15, FontStyle.BOLD, Color.BLACK),
-          60, this.height * this.cellSize + 20);
-    } else if (this.animatingBfs) {
-      ws.placeImageXY(new TextImage("Mode: BFS", 15, FontStyle.BOLD, Color.BLACK),
-          60, this.height * this.cellSize + 20);
-    } else if (this.manualGameplay) {
-      ws.placeImageXY(new TextImage("Mode: Manual", 15, FontStyle.BOLD, Color.BLACK),
-          60, this.height * this.cellSize + 20);
-    } else {
-      ws.placeImageXY(new TextImage("Mode: None", 15, FontStyle.BOLD, Color.BLACK),
-          60, this.height * this.cellSize + 20);
+  // time scheduled breadth first searches of square mazes of each given side,
+  // each paced to visit every cell in the given duration, and count the
+  // frames in which each published progress
+  void scheduledDuration(int[] sides, long durationNanos) {
+    for (int side : sides) {
+      MazeGraph graph = MazeGraph.generate(side, side, new Random(1));
+      SolverWorker worker = new SolverWorker(new BfsSolver(graph, 0, graph.size() - 1),
+          new StepSchedule(graph.size(), durationNanos, StepSchedule.FRAME_NANOS,
+              StepSchedule.BUDGET_NANOS));
+      long start = System.nanoTime();
+      int frames = 0;
+      SolverProgress seen = worker.latest;
+      worker.start("scheduled-solver");
+      while (worker.latest.phase < SolverProgress.SOLVED) {
+        LockSupport.parkNanos(StepSchedule.FRAME_NANOS);
+        if (worker.latest != seen) {
+          seen = worker.latest;
+          frames++;
+        }
+      }
+      System.out.println(side + "x" + side + " scheduled search: "
+          + (System.nanoTime() - start) / 1000000 + " ms, " + frames + " frames, "
+          + worker.stepsTaken + " steps, " + worker.elapsedNanos / 1000000 + " ms stepping");
     }
+  }
 
+  // time Dial's algorithm against a binary heap on the same weighted maze
+  // with loops, checking that both find paths of the same cost
+  void compareDijkstra(int width, int height, int rounds) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    graph.addLoops(0.1, new Random(2));
+    graph.randomizeWeights(new Random(3));
+    for (int round = 0; round < rounds; round++) {
+      long dial = this.timeSolve(new DialSolver(graph, 0, graph.size() - 1));
+      long heap = this.timeSolve(new HeapDijkstraSolver(graph, 0, graph.size() - 1));
+      System.out.println(width + "x" + height + " round " + round
+          + ": dial " + dial / 1000000 + " ms, heap " + heap / 1000000 + " ms");
+    }
+  }
 
-    // write the winning message under the maze if the player has won
-    if (this.playerWon) {
-      ws.placeImageXY(new TextImage("You won!", (this.width * this.cellSize) / 20,
-              FontStyle.BOLD, Color.GREEN),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 70);
-      ws.placeImageXY(new TextImage("You only needed " + this.playerPathAnimator.size() + " moves!",
-              (this.width * this.cellSize) / 30, FontStyle.BOLD, Color.GREEN),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 120);
-      ws.placeImageXY(new TextImage("Press 'esc' and then 'd' or 'b' to see the shortest path",
-              (this.width * this.cellSize) / 30, FontStyle.BOLD, Color.GREEN),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 165);
-    } else if (this.finalStateDfs && this.animatingDfs) {
-      ws.placeImageXY(new TextImage("The shortest path is " + this.dfsPath.size() + " moves long",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.BLUE),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 65);
-      ws.placeImageXY(new TextImage("Depth First Search took",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.CYAN),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 100);
-      ws.placeImageXY(new TextImage((this.dfsVisited.size() - this.dfsPath.size())
-              + " wrong moves before solving the maze",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.CYAN),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 135);
-    } else if (this.finalStateBfs && this.animatingBfs) {
-      ws.placeImageXY(new TextImage("The shortest path is " + this.bfsPath.size() + " moves long",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.MAGENTA),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 65);
-      ws.placeImageXY(new TextImage("Breadth First Search took",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.PINK),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 100);
-      ws.placeImageXY(new TextImage((this.bfsVisited.size() - this.bfsPath.size())
-              + " wrong moves before solving the maze",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.PINK),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 135);
-    } else {
-      // write instructions in the bottom left under the maze
-      if (!this.manualGameplay) {
-        ws.placeImageXY(new TextImage("Press 'm' to enter manual gameplay",
-                (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.BLACK),
-            this.width * this.cellSize / 2, this.height * this.cellSize + 45);
-        ws.placeImageXY(new TextImage("Press 'd'/'b' to toggle between depth/breadth first search",
-                (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.BLACK),
-            this.width * this.cellSize / 2, this.height * this.cellSize + 85);
-      } else {
-        ws.placeImageXY(new TextImage("Press 'esc' to exit manual gameplay",
-                (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.BLACK),
-            this.width * this.cellSize / 2, this.height * this.cellSize + 45);
-        ws.placeImageXY(new TextImage("Use arrow keys to move through maze",
-                (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.BLACK),
-            this.width * this.cellSize / 2, this.height * this.cellSize + 85);
+  // time LPA* repairing its path after each of many random wall flips
+  // on a weighted maze with loops, against solving the final maze from scratch
+  void replanLatency(int width, int height, int flips) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    graph.addLoops(0.1, new Random(2));
+    graph.randomizeWeights(new Random(3));
+    Random rand = new Random(4);
+    LpaStarPlanner planner = new LpaStarPlanner(graph, 0, graph.size() - 1);
+    long start = System.nanoTime();
+    planner.replan();
+    System.out.println(width + "x" + height + " first plan: "
+        + (System.nanoTime() - start) / 1000000 + " ms, " + planner.expanded + " cells expanded");
+
+    long[] latencies = new long[flips];
+    long totalExpanded = 0;
+    for (int i = 0; i < flips; i++) {
+      int cell = rand.nextInt(graph.size());
+      int dir = rand.nextBoolean() ? MazeGraph.RIGHT : MazeGraph.DOWN;
+      if (graph.xOf(cell) + MazeGraph.DX[dir] >= width
+          || graph.yOf(cell) + MazeGraph.DY[dir] >= height) {
+        dir = dir ^ 1;
       }
-      ws.placeImageXY(new TextImage("Press 'r' to reset and create new maze",
-              (this.width * this.cellSize) / 50, FontStyle.BOLD, Color.BLACK),
-          this.width * this.cellSize / 2, this.height * this.cellSize + 125);
+      int neighbor = graph.neighbor(cell, dir);
+      start = System.nanoTime();
+      graph.setOpen(cell, neighbor, !graph.isOpen(cell, dir));
+      planner.wallChanged(cell, neighbor);
+      planner.replan();
+      latencies[i] = System.nanoTime() - start;
+      totalExpanded += planner.expanded;
     }
-
-    return ws;
+    Arrays.sort(latencies);
+    System.out.println("  per flip: median " + latencies[flips / 2] / 1000 + " us, 99th "
+        + latencies[flips * 99 / 100] / 1000 + " us, max " + latencies[flips - 1] / 1000
+        + " us, " + totalExpanded / flips + " cells expanded on average");
+    System.out.println("  from scratch: "
+        + this.timeSolve(new DialSolver(graph, 0, graph.size() - 1)) / 1000 + " us"
+        + ", incremental cost " + planner.g[planner.goal]);
   }
-}
 
+  // time path queries between random cells through a HierarchicalPlanner,
+  // against searching the whole maze, and rebuilding a cluster after a flip
+  void hierarchicalQueries(int width, int height, int clusterSize, int queries) {
+    MazeGraph graph = MazeGraph.generate(width, height, new Random(1));
+    graph.addLoops(0.1, new Random(2));
+    graph.randomizeWeights(new Random(3));
+    long start = System.nanoTime();
+    HierarchicalPlanner planner = new HierarchicalPlanner(graph, clusterSize);
+    System.out.println(width + "x" + height + " in " + clusterSize + "x" + clusterSize
+        + " clusters: built in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+    Random rand = new Random(4);
+    long hierarchical = 0;
+    long flat = 0;
+    for (int i = 0; i < queries; i++) {
+      int from = rand.nextInt(graph.size());
+      int to = rand.nextInt(graph.size());
+      start = System.nanoTime();
+      int cost = planner.findPath(from, to);
+      hierarchical += System.nanoTime() - start;
+      MazeSolver dial = new DialSolver(graph, from, to);
+      start = System.nanoTime();
+      dial.step(Integer.MAX_VALUE);
+      flat += System.nanoTime() - start;
+      SolverProgress progress = new SolverProgress();
+      dial.snapshot(progress);
+      System.out.println("  query " + i + ": cost " + cost + " (flat " + progress.pathCost
+          + "), " + planner.expanded + " entrances expanded, " + progress.visitedCount
+          + " cells visited flat");
+    }
+    System.out.println("  per query: hierarchical " + hierarchical / queries / 1000
+        + " us, flat " + flat / queries / 1000 + " us");
+
+    start = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      int cell = graph.id(rand.nextInt(width - 1), rand.nextInt(height));
+      graph.setOpen(cell, cell + 1, !graph.isOpen(cell, MazeGraph.RIGHT));
+      planner.wallChanged(cell, cell + 1);
+    }
+    System.out.println("  per wall flip: " + (System.nanoTime() - start) / 100 / 1000
+        + " us to rebuild the clusters it touches");
+  }
 
-// compare two edges to sort from least to greatest
-class CompareEdge implements Comparator<Edge> {
-  // compare two edges by their weight
-  public int compare(Edge e1, Edge e2) {
-    if (e1.weight < e2.weight) {
-      return -1;
-    } else if (e1.weight > e2.weight) {
-      return 1;
-    } else {
-      return 0;
+  // the time taken to run the given search to the end
+  long timeSolve(MazeSolver solver) {
+    long start = System.nanoTime();
+    while (!solver.isDone()) {
+      solver.step(Integer.MAX_VALUE);
     }
+    long elapsed = System.nanoTime() - start;
+    SolverProgress progress = new SolverProgress();
+    solver.snapshot(progress);
+    System.out.println("  " + solver.getClass().getSimpleName() + ": cost " + progress.pathCost
+        + ", " + progress.visitedCount + " cells visited");
+    return elapsed;
   }
 }
 
@@ -793,7 +6065,7 @@ class ExamplesMaze {
   // test big bang and the makeScene method
   void testMazeBigBang(Tester t) {
     MazeWorld maze = new MazeWorld(50, 25, new Random());
-    maze.bigBang(maze.cellSize * maze.width, maze.cellSize * maze.height + 200, 0.001);
+    maze.bigBang(maze.viewWidth(), maze.viewHeight() + 200, 0.001);
   }
 
   // TESTS FOR THE VERTEX CLASS
@@ -915,6 +6187,105 @@ class ExamplesMaze {
     t.checkExpect(this.e5.hasVertex(this.v5), true);
   }
 
+  // TESTS FOR THE MAZE GRAPH CLASS
+  // a 3 x 2 maze with a loop around its left four cells
+  // and no passage into its top right cell
+  MazeGraph g1;
+
+  // initialize the maze graph
+  void initGraph() {
+    this.initEdges();
+    this.g1 = new MazeGraph(3, 2,
+        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5)));
+  }
+
+  // test the MazeGraph class
+  void testMazeGraph(Tester t) {
+    this.initGraph();
+    t.checkExpect(this.g1.size(), 6);
+    t.checkExpect(this.g1.id(this.v1), 0);
+    t.checkExpect(this.g1.id(this.v4), 4);
+    t.checkExpect(this.g1.id(2, 1), 5);
+    t.checkExpect(this.g1.xOf(5), 2);
+    t.checkExpect(this.g1.yOf(5), 1);
+    t.checkExpect(this.g1.neighbor(4, MazeGraph.UP), 1);
+    t.checkExpect(this.g1.neighbor(4, MazeGraph.LEFT), 3);
+    t.checkExpect(this.g1.direction(4, 5), MazeGraph.RIGHT);
+    t.checkExpect(this.g1.direction(4, 1), MazeGraph.UP);
+
+    // every edge opens the walls on both of its sides
+    t.checkExpect(this.g1.isOpen(0, MazeGraph.RIGHT), true);
+    t.checkExpect(this.g1.isOpen(1, MazeGraph.LEFT), true);
+    t.checkExpect(this.g1.isOpen(0, MazeGraph.DOWN), true);
+    t.checkExpect(this.g1.isOpen(3, MazeGraph.UP), true);
+    t.checkExpect(this.g1.isOpen(1, MazeGraph.RIGHT), false);
+    t.checkExpect(this.g1.isOpen(5, MazeGraph.UP), false);
+    t.checkExpect(this.g1.open[2], (byte) 0);
+
+    // walls can be closed and reopened
+    this.g1.setOpen(4, 5, false);
+    t.checkExpect(this.g1.isOpen(4, MazeGraph.RIGHT), false);
+    t.checkExpect(this.g1.isOpen(5, MazeGraph.LEFT), false);
+    this.g1.setOpen(5, 4, true);
+    t.checkExpect(this.g1.isOpen(4, MazeGraph.RIGHT), true);
+    t.checkExpect(this.g1.isOpen(5, MazeGraph.LEFT), true);
+
+    // a generated maze opens exactly one wall pair per edge
+    this.initMazeWorlds();
+    int openSides = 0;
+    for (int cell = 0; cell < this.mw1.graph.size(); cell++) {
+      for (int dir = 0; dir < 4; dir++) {
+        if (this.mw1.graph.isOpen(cell, dir)) {
+          openSides++;
+        }
+      }
+    }
+    t.checkExpect(openSides, 2 * this.mw1.edges.size());
+
+    // passages cost 1 until they are given a weight on both sides
+    t.checkExpect(this.g1.weight(4, MazeGraph.RIGHT), 1);
+    this.g1.setWeight(5, 4, 7);
+    t.checkExpect(this.g1.weight(4, MazeGraph.RIGHT), 7);
+    t.checkExpect(this.g1.weight(5, MazeGraph.LEFT), 7);
+    t.checkExpect(this.g1.weight(4, MazeGraph.UP), 1);
+
+    // a generated maze is a spanning tree: it opens one wall fewer than it
+    // has cells, and every cell can be reached from the start
+    MazeGraph generated = MazeGraph.generate(40, 30, new Random(5));
+    openSides = 0;
+    for (int cell = 0; cell < generated.size(); cell++) {
+      for (int dir = 0; dir < 4; dir++) {
+        if (generated.isOpen(cell, dir)) {
+          openSides++;
+        }
+      }
+    }
+    t.checkExpect(openSides, 2 * (generated.size() - 1));
+    MazeSolver bfs = new BfsSolver(generated, 0, generated.size() - 1);
+    bfs.step(Integer.MAX_VALUE);
+    SolverProgress progress = new SolverProgress();
+    bfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.SOLVED);
+
+    // loops open the remaining walls, and random weights stay in range
+    generated.addLoops(1.0, new Random(6));
+    t.checkExpect(generated.isOpen(0, MazeGraph.RIGHT), true);
+    t.checkExpect(generated.isOpen(0, MazeGraph.DOWN), true);
+    t.checkExpect(generated.isOpen(generated.size() - 1, MazeGraph.UP), true);
+    generated.randomizeWeights(new Random(7));
+    boolean inRange = true;
+    for (int cell = 0; cell < generated.size(); cell++) {
+      for (int dir = 0; dir < 4; dir++) {
+        if (generated.isOpen(cell, dir)) {
+          int weight = generated.weight(cell, dir);
+          inRange = inRange && weight >= 1 && weight <= MazeGraph.MAX_WEIGHT
+              && weight == generated.weight(generated.neighbor(cell, dir), dir ^ 1);
+        }
+      }
+    }
+    t.checkExpect(inRange, true);
+  }
+
   // TEST THE COMPARE EDGE CLASS
   CompareEdge ce = new CompareEdge();
 
@@ -995,27 +6366,22 @@ class ExamplesMaze {
     }
     t.checkExpect(this.mw1.vertices, verticesTest1);
     t.checkExpect(this.mw1.representatives.keySet().size(), 100);
-    t.checkExpect(mw1.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw1.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw1.vertices.get(mw1.width - 1).get(mw1.height - 1))));
-    t.checkExpect(mw1.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw1.dfsWorklist, new Stack<Vertex>());
+    t.checkExpect(mw1.graph, new MazeGraph(mw1.width, mw1.height, mw1.edges));
+    t.checkExpect(mw1.dfsWorker.solver,
+        new DfsSolver(mw1.graph, 0, mw1.width * mw1.height - 1));
+    t.checkExpect(mw1.dfsWorker.isStarted(), false);
+    t.checkExpect(mw1.dfsView, new SolverView(mw1.width * mw1.height));
     t.checkExpect(mw1.animatingDfs, false);
-    t.checkExpect(mw1.reconstructDfs, false);
-    t.checkExpect(mw1.finalStateDfs, false);
-    t.checkExpect(mw1.solvingDfs, false);
-    t.checkExpect(mw1.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw1.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw1.vertices.get(mw1.width - 1).get(mw1.height - 1))));
-    t.checkExpect(mw1.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw1.bfsWorklist, new LinkedList<Vertex>());
+    t.checkExpect(mw1.bfsWorker.solver,
+        new BfsSolver(mw1.graph, 0, mw1.width * mw1.height - 1));
+    t.checkExpect(mw1.bfsWorker.isStarted(), false);
+    t.checkExpect(mw1.bfsView, new SolverView(mw1.width * mw1.height));
     t.checkExpect(mw1.animatingBfs, false);
-    t.checkExpect(mw1.reconstructBfs, false);
-    t.checkExpect(mw1.finalStateBfs, false);
-    t.checkExpect(mw1.solvingBfs, false);
-    t.checkExpect(mw1.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw1.vertices.get(mw1.width - 1).get(mw1.height - 1))));
-    t.checkExpect(mw1.playerPath, new ArrayList<Vertex>(Arrays.asList(mw1.player)));
+    t.checkExpect(mw1.racing, false);
+    t.checkExpect(mw1.playerReplayed, 0);
+    t.checkExpect(mw1.playerTrail[mw1.width * mw1.height - 1], (byte) 1);
+    t.checkExpect(mw1.playerRouteLength, 1);
+    t.checkExpect(mw1.playerRoute[0], 0);
     t.checkExpect(mw1.player, mw1.vertices.get(0).get(0));
     t.checkExpect(mw1.playerReconstruct, false);
     t.checkExpect(mw1.finalStatePlayer, false);
@@ -1037,27 +6403,22 @@ class ExamplesMaze {
     }
     t.checkExpect(this.mw2.vertices, verticesTest2);
     t.checkExpect(this.mw2.representatives.keySet().size(), 200);
-    t.checkExpect(mw2.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw2.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw2.vertices.get(mw2.width - 1).get(mw2.height - 1))));
-    t.checkExpect(mw2.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw2.dfsWorklist, new Stack<Vertex>());
+    t.checkExpect(mw2.graph, new MazeGraph(mw2.width, mw2.height, mw2.edges));
+    t.checkExpect(mw2.dfsWorker.solver,
+        new DfsSolver(mw2.graph, 0, mw2.width * mw2.height - 1));
+    t.checkExpect(mw2.dfsWorker.isStarted(), false);
+    t.checkExpect(mw2.dfsView, new SolverView(mw2.width * mw2.height));
     t.checkExpect(mw2.animatingDfs, false);
-    t.checkExpect(mw2.reconstructDfs, false);
-    t.checkExpect(mw2.finalStateDfs, false);
-    t.checkExpect(mw2.solvingDfs, false);
-    t.checkExpect(mw2.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw2.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw2.vertices.get(mw2.width - 1).get(mw2.height - 1))));
-    t.checkExpect(mw2.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw2.bfsWorklist, new LinkedList<Vertex>());
+    t.checkExpect(mw2.bfsWorker.solver,
+        new BfsSolver(mw2.graph, 0, mw2.width * mw2.height - 1));
+    t.checkExpect(mw2.bfsWorker.isStarted(), false);
+    t.checkExpect(mw2.bfsView, new SolverView(mw2.width * mw2.height));
     t.checkExpect(mw2.animatingBfs, false);
-    t.checkExpect(mw2.reconstructBfs, false);
-    t.checkExpect(mw2.finalStateBfs, false);
-    t.checkExpect(mw2.solvingBfs, false);
-    t.checkExpect(mw2.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw2.vertices.get(mw2.width - 1).get(mw2.height - 1))));
-    t.checkExpect(mw2.playerPath, new ArrayList<Vertex>(Arrays.asList(mw2.player)));
+    t.checkExpect(mw2.racing, false);
+    t.checkExpect(mw2.playerReplayed, 0);
+    t.checkExpect(mw2.playerTrail[mw2.width * mw2.height - 1], (byte) 1);
+    t.checkExpect(mw2.playerRouteLength, 1);
+    t.checkExpect(mw2.playerRoute[0], 0);
     t.checkExpect(mw2.player, mw2.vertices.get(0).get(0));
     t.checkExpect(mw2.playerReconstruct, false);
     t.checkExpect(mw2.finalStatePlayer, false);
@@ -1079,27 +6440,22 @@ class ExamplesMaze {
     }
     t.checkExpect(this.mw3.vertices, verticesTest3);
     t.checkExpect(this.mw3.representatives.keySet().size(), 1500);
-    t.checkExpect(mw3.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw3.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw3.vertices.get(mw3.width - 1).get(mw3.height - 1))));
-    t.checkExpect(mw3.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw3.dfsWorklist, new Stack<Vertex>());
+    t.checkExpect(mw3.graph, new MazeGraph(mw3.width, mw3.height, mw3.edges));
+    t.checkExpect(mw3.dfsWorker.solver,
+        new DfsSolver(mw3.graph, 0, mw3.width * mw3.height - 1));
+    t.checkExpect(mw3.dfsWorker.isStarted(), false);
+    t.checkExpect(mw3.dfsView, new SolverView(mw3.width * mw3.height));
     t.checkExpect(mw3.animatingDfs, false);
-    t.checkExpect(mw3.reconstructDfs, false);
-    t.checkExpect(mw3.finalStateDfs, false);
-    t.checkExpect(mw3.solvingDfs, false);
-    t.checkExpect(mw3.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw3.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw3.vertices.get(mw3.width - 1).get(mw3.height - 1))));
-    t.checkExpect(mw3.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw3.bfsWorklist, new LinkedList<Vertex>());
+    t.checkExpect(mw3.bfsWorker.solver,
+        new BfsSolver(mw3.graph, 0, mw3.width * mw3.height - 1));
+    t.checkExpect(mw3.bfsWorker.isStarted(), false);
+    t.checkExpect(mw3.bfsView, new SolverView(mw3.width * mw3.height));
     t.checkExpect(mw3.animatingBfs, false);
-    t.checkExpect(mw3.reconstructBfs, false);
-    t.checkExpect(mw3.finalStateBfs, false);
-    t.checkExpect(mw3.solvingBfs, false);
-    t.checkExpect(mw3.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw3.vertices.get(mw3.width - 1).get(mw3.height - 1))));
-    t.checkExpect(mw3.playerPath, new ArrayList<Vertex>(Arrays.asList(mw3.player)));
+    t.checkExpect(mw3.racing, false);
+    t.checkExpect(mw3.playerReplayed, 0);
+    t.checkExpect(mw3.playerTrail[mw3.width * mw3.height - 1], (byte) 1);
+    t.checkExpect(mw3.playerRouteLength, 1);
+    t.checkExpect(mw3.playerRoute[0], 0);
     t.checkExpect(mw3.player, mw3.vertices.get(0).get(0));
     t.checkExpect(mw3.playerReconstruct, false);
     t.checkExpect(mw3.finalStatePlayer, false);
@@ -1121,27 +6477,31 @@ class ExamplesMaze {
     }
     t.checkExpect(this.mw4.vertices, verticesTest4);
     t.checkExpect(this.mw4.representatives.keySet().size(), 2500);
-    t.checkExpect(mw4.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw4.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw4.vertices.get(mw4.width - 1).get(mw4.height - 1))));
-    t.checkExpect(mw4.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw4.dfsWorklist, new Stack<Vertex>());
+    t.checkExpect(mw4.graph, new MazeGraph(mw4.width, mw4.height, mw4.edges));
+    t.checkExpect(mw4.dfsWorker.solver,
+        new DfsSolver(mw4.graph, 0, mw4.width * mw4.height - 1));
+    t.checkExpect(mw4.dfsWorker.isStarted(), false);
+    t.checkExpect(mw4.dfsView, new SolverView(mw4.width * mw4.height));
     t.checkExpect(mw4.animatingDfs, false);
-    t.checkExpect(mw4.reconstructDfs, false);
-    t.checkExpect(mw4.finalStateDfs, false);
-    t.checkExpect(mw4.solvingDfs, false);
-    t.checkExpect(mw4.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw4.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw4.vertices.get(mw4.width - 1).get(mw4.height - 1))));
-    t.checkExpect(mw4.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw4.bfsWorklist, new LinkedList<Vertex>());
+    t.checkExpect(mw4.bfsWorker.solver,
+        new BfsSolver(mw4.graph, 0, mw4.width * mw4.height - 1));
+    t.checkExpect(mw4.bfsWorker.isStarted(), false);
+    t.checkExpect(mw4.bfsView, new SolverView(mw4.width * mw4.height));
     t.checkExpect(mw4.animatingBfs, false);
-    t.checkExpect(mw4.reconstructBfs, false);
-    t.checkExpect(mw4.finalStateBfs, false);
-    t.checkExpect(mw4.solvingBfs, false);
-    t.checkExpect(mw4.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw4.vertices.get(mw4.width - 1).get(mw4.height - 1))));
-    t.checkExpect(mw4.playerPath, new ArrayList<Vertex>(Arrays.asList(mw4.player)));
+    t.checkExpect(mw4.cheapestWorker.solver,
+        new DialSolver(mw4.graph, 0, mw4.width * mw4.height - 1));
+    t.checkExpect(mw4.cheapestWorker.isStarted(), false);
+    t.checkExpect(mw4.cheapestView, new SolverView(mw4.width * mw4.height));
+    t.checkExpect(mw4.animatingCheapest, false);
+    t.checkExpect(mw4.weighted, false);
+    t.checkExpect(mw4.racing, false);
+    t.checkExpect(mw4.dynamic, false);
+    t.checkExpect(mw4.planner, null);
+    t.checkExpect(mw4.ticksUntilFlip, MazeWorld.FLIP_TICKS);
+    t.checkExpect(mw4.playerReplayed, 0);
+    t.checkExpect(mw4.playerTrail[mw4.width * mw4.height - 1], (byte) 1);
+    t.checkExpect(mw4.playerRouteLength, 1);
+    t.checkExpect(mw4.playerRoute[0], 0);
     t.checkExpect(mw4.player, mw4.vertices.get(0).get(0));
     t.checkExpect(mw4.playerReconstruct, false);
     t.checkExpect(mw4.finalStatePlayer, false);
@@ -1163,27 +6523,22 @@ class ExamplesMaze {
     }
     t.checkExpect(this.mw5.vertices, verticesTest5);
     t.checkExpect(this.mw5.representatives.keySet().size(), 4200);
-    t.checkExpect(mw5.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw5.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw5.vertices.get(mw5.width - 1).get(mw5.height - 1))));
-    t.checkExpect(mw5.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw5.dfsWorklist, new Stack<Vertex>());
+    t.checkExpect(mw5.graph, new MazeGraph(mw5.width, mw5.height, mw5.edges));
+    t.checkExpect(mw5.dfsWorker.solver,
+        new DfsSolver(mw5.graph, 0, mw5.width * mw5.height - 1));
+    t.checkExpect(mw5.dfsWorker.isStarted(), false);
+    t.checkExpect(mw5.dfsView, new SolverView(mw5.width * mw5.height));
     t.checkExpect(mw5.animatingDfs, false);
-    t.checkExpect(mw5.reconstructDfs, false);
-    t.checkExpect(mw5.finalStateDfs, false);
-    t.checkExpect(mw5.solvingDfs, false);
-    t.checkExpect(mw5.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw5.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw5.vertices.get(mw5.width - 1).get(mw5.height - 1))));
-    t.checkExpect(mw5.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw5.bfsWorklist, new LinkedList<Vertex>());
+    t.checkExpect(mw5.bfsWorker.solver,
+        new BfsSolver(mw5.graph, 0, mw5.width * mw5.height - 1));
+    t.checkExpect(mw5.bfsWorker.isStarted(), false);
+    t.checkExpect(mw5.bfsView, new SolverView(mw5.width * mw5.height));
     t.checkExpect(mw5.animatingBfs, false);
-    t.checkExpect(mw5.reconstructBfs, false);
-    t.checkExpect(mw5.finalStateBfs, false);
-    t.checkExpect(mw5.solvingBfs, false);
-    t.checkExpect(mw5.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw5.vertices.get(mw5.width - 1).get(mw5.height - 1))));
-    t.checkExpect(mw5.playerPath, new ArrayList<Vertex>(Arrays.asList(mw5.player)));
+    t.checkExpect(mw5.racing, false);
+    t.checkExpect(mw5.playerReplayed, 0);
+    t.checkExpect(mw5.playerTrail[mw5.width * mw5.height - 1], (byte) 1);
+    t.checkExpect(mw5.playerRouteLength, 1);
+    t.checkExpect(mw5.playerRoute[0], 0);
     t.checkExpect(mw5.player, mw5.vertices.get(0).get(0));
     t.checkExpect(mw5.playerReconstruct, false);
     t.checkExpect(mw5.finalStatePlayer, false);
@@ -1436,18 +6791,36 @@ class ExamplesMaze {
     t.checkExpect(this.mw1.moreThanOneTree(), true);
   }
 
+  // make the given maze world search the small graph from its start to its
+  // end, without pausing
+  void searchSmallGraph(MazeWorld mw) {
+    mw.graph = this.g1;
+    mw.setEnds(0, new int[] {5});
+    mw.dfsWorker = new SolverWorker(new DfsSolver(this.g1, 0, 5), 1, 0);
+    mw.bfsWorker = new SolverWorker(new BfsSolver(this.g1, 0, 5), 1, 0);
+    mw.dfsView = new SolverView(this.g1.size());
+    mw.bfsView = new SolverView(this.g1.size());
+  }
+
+  // advance the given worker's search on this thread, publish its progress,
+  // and catch the given view up with it
+  void advance(SolverWorker worker, SolverView view, int steps) {
+    worker.solver.step(steps);
+    worker.publish();
+    view.sync(worker);
+  }
+
   // test drawEdge method
   void testDrawEdge(Tester t) {
     this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
+    this.initGraph();
 
-    // test mw1
+    // test mw1 with depth first search
+    this.searchSmallGraph(this.mw1);
+    this.mw1.animatingDfs = true;
     WorldScene testWS1 = this.mw1.getEmptyScene();
     WorldScene expectedWS1 = this.mw1.getEmptyScene();
-    this.mw1.dfsVisited.add(this.v1);
-    this.mw1.dfsVisited.add(this.v2);
-    this.mw1.animatingDfs = true;
+    this.advance(this.mw1.dfsWorker, this.mw1.dfsView, 2);
     mw1.drawEdge(e1, testWS1);
     Vertex v1 = (e1.source.x > e1.destination.x) ? e1.source : e1.destination;
     expectedWS1.placeImageXY(
@@ -1458,7 +6831,7 @@ class ExamplesMaze {
 
     testWS1 = this.mw1.getEmptyScene();
     expectedWS1 = this.mw1.getEmptyScene();
-    this.mw1.dfsPath.add(this.v1);
+    this.advance(this.mw1.dfsWorker, this.mw1.dfsView, 100);
     mw1.drawEdge(e1, testWS1);
     expectedWS1.placeImageXY(
         new RectangleImage(2, mw1.cellSize - 2, OutlineMode.SOLID, Color.BLUE),
@@ -1466,171 +6839,55 @@ class ExamplesMaze {
         (v1.y * mw1.cellSize) + mw1.cellSize / 2);
     t.checkExpect(testWS1, expectedWS1);
 
+    // test mw1 with breadth first search
     testWS1 = this.mw1.getEmptyScene();
     expectedWS1 = this.mw1.getEmptyScene();
     this.mw1.animatingDfs = false;
     this.mw1.animatingBfs = true;
-    this.mw1.bfsVisited.add(this.v1);
-    this.mw1.bfsVisited.add(this.v2);
-    mw1.drawEdge(e1, testWS1);
+    this.advance(this.mw1.bfsWorker, this.mw1.bfsView, 2);
+    mw1.drawEdge(e2, testWS1);
+    Vertex v2 = (e2.source.y > e2.destination.y) ? e2.source : e2.destination;
     expectedWS1.placeImageXY(
-        new RectangleImage(2, mw1.cellSize - 2, OutlineMode.SOLID, Color.PINK),
-        v1.x * mw1.cellSize,
-        (v1.y * mw1.cellSize) + mw1.cellSize / 2);
+        new RectangleImage(mw1.cellSize - 2, 2, OutlineMode.SOLID, Color.PINK),
+        (v2.x * mw1.cellSize) + mw1.cellSize / 2,
+        v2.y * mw1.cellSize);
     t.checkExpect(testWS1, expectedWS1);
 
     testWS1 = this.mw1.getEmptyScene();
     expectedWS1 = this.mw1.getEmptyScene();
-    this.mw1.bfsPath.add(this.v1);
-    mw1.drawEdge(e1, testWS1);
+    this.advance(this.mw1.bfsWorker, this.mw1.bfsView, 100);
+    mw1.drawEdge(e2, testWS1);
     expectedWS1.placeImageXY(
-        new RectangleImage(2, mw1.cellSize - 2, OutlineMode.SOLID, Color.MAGENTA),
-        v1.x * mw1.cellSize,
-        (v1.y * mw1.cellSize) + mw1.cellSize / 2);
+        new RectangleImage(mw1.cellSize - 2, 2, OutlineMode.SOLID, Color.MAGENTA),
+        (v2.x * mw1.cellSize) + mw1.cellSize / 2,
+        v2.y * mw1.cellSize);
     t.checkExpect(testWS1, expectedWS1);
 
-    // test mw2
+    // test mw2, where a path edge leaves the visited cells
+    this.searchSmallGraph(this.mw2);
+    this.mw2.animatingDfs = true;
+    this.advance(this.mw2.dfsWorker, this.mw2.dfsView, 100);
     WorldScene testWS2 = this.mw2.getEmptyScene();
     WorldScene expectedWS2 = this.mw2.getEmptyScene();
-    this.mw2.dfsVisited.add(this.v1);
-    this.mw2.dfsVisited.add(this.v3);
-    this.mw2.animatingDfs = true;
-    mw2.drawEdge(e2, testWS2);
-    Vertex v2 = (e2.source.y > e2.destination.y) ? e2.source : e2.destination;
-    expectedWS2.placeImageXY(
-        new RectangleImage(mw2.cellSize - 2, 2, OutlineMode.SOLID, Color.CYAN),
-        (v2.x * mw2.cellSize) + mw2.cellSize / 2,
-        v2.y * mw2.cellSize);
-    t.checkExpect(testWS2, expectedWS2);
-
-    testWS2 = this.mw2.getEmptyScene();
-    expectedWS2 = this.mw2.getEmptyScene();
-    this.mw2.dfsPath.add(this.v1);
-    mw2.drawEdge(e2, testWS2);
+    mw2.drawEdge(e4, testWS2);
+    Vertex v4 = (e4.source.x > e4.destination.x) ? e4.source : e4.destination;
     expectedWS2.placeImageXY(
-        new RectangleImage(mw2.cellSize - 2, 2, OutlineMode.SOLID, Color.BLUE),
-        (v2.x * mw2.cellSize) + mw2.cellSize / 2,
-        v2.y * mw2.cellSize);
+        new RectangleImage(2, mw2.cellSize - 2, OutlineMode.SOLID, Color.BLUE),
+        v4.x * mw2.cellSize,
+        (v4.y * mw2.cellSize) + mw2.cellSize / 2);
     t.checkExpect(testWS2, expectedWS2);
 
+    // no search is shown once animation is turned off
     testWS2 = this.mw2.getEmptyScene();
     expectedWS2 = this.mw2.getEmptyScene();
     this.mw2.animatingDfs = false;
-    this.mw2.animatingBfs = true;
-    this.mw2.bfsVisited.add(this.v1);
-    this.mw2.bfsVisited.add(this.v3);
-    mw2.drawEdge(e2, testWS2);
-    expectedWS2.placeImageXY(
-        new RectangleImage(mw2.cellSize - 2, 2, OutlineMode.SOLID, Color.PINK),
-        (v2.x * mw2.cellSize) + mw2.cellSize / 2,
-        v2.y * mw2.cellSize);
-    t.checkExpect(testWS2, expectedWS2);
-
-    testWS2 = this.mw2.getEmptyScene();
-    expectedWS2 = this.mw2.getEmptyScene();
-    this.mw2.bfsPath.add(this.v1);
     mw2.drawEdge(e2, testWS2);
     expectedWS2.placeImageXY(
-        new RectangleImage(mw2.cellSize - 2, 2, OutlineMode.SOLID, Color.MAGENTA),
+        new RectangleImage(mw2.cellSize - 2, 2, OutlineMode.SOLID, Color.WHITE),
         (v2.x * mw2.cellSize) + mw2.cellSize / 2,
         v2.y * mw2.cellSize);
     t.checkExpect(testWS2, expectedWS2);
 
-
-    // test mw3
-    WorldScene testWS3 = this.mw3.getEmptyScene();
-    WorldScene expectedWS3 = this.mw3.getEmptyScene();
-    this.mw3.dfsVisited.add(this.v1);
-    this.mw3.dfsVisited.add(this.v4);
-    this.mw3.animatingDfs = true;
-    mw3.drawEdge(e3, testWS3);
-    Vertex v3 = (e3.source.y > e3.destination.y) ? e3.source : e3.destination;
-    expectedWS3.placeImageXY(
-        new RectangleImage(mw3.cellSize - 2, 2, OutlineMode.SOLID, Color.CYAN),
-        (v3.x * mw3.cellSize) + mw3.cellSize / 2,
-        v3.y * mw3.cellSize);
-    t.checkExpect(testWS3, expectedWS3);
-
-    testWS3 = this.mw3.getEmptyScene();
-    expectedWS3 = this.mw3.getEmptyScene();
-    this.mw3.dfsPath.add(this.v1);
-    mw3.drawEdge(e3, testWS3);
-    expectedWS3.placeImageXY(
-        new RectangleImage(mw3.cellSize - 2, 2, OutlineMode.SOLID, Color.BLUE),
-        (v3.x * mw3.cellSize) + mw3.cellSize / 2,
-        v3.y * mw3.cellSize);
-    t.checkExpect(testWS3, expectedWS3);
-
-    testWS3 = this.mw3.getEmptyScene();
-    expectedWS3 = this.mw3.getEmptyScene();
-    this.mw3.animatingDfs = false;
-    this.mw3.animatingBfs = true;
-    this.mw3.bfsVisited.add(this.v1);
-    this.mw3.bfsVisited.add(this.v4);
-    mw3.drawEdge(e3, testWS3);
-    expectedWS3.placeImageXY(
-        new RectangleImage(mw3.cellSize - 2, 2, OutlineMode.SOLID, Color.PINK),
-        (v3.x * mw3.cellSize) + mw3.cellSize / 2,
-        v3.y * mw3.cellSize);
-    t.checkExpect(testWS3, expectedWS3);
-
-    testWS3 = this.mw3.getEmptyScene();
-    expectedWS3 = this.mw3.getEmptyScene();
-    this.mw3.bfsPath.add(this.v1);
-    mw3.drawEdge(e3, testWS3);
-    expectedWS3.placeImageXY(
-        new RectangleImage(mw3.cellSize - 2, 2, OutlineMode.SOLID, Color.MAGENTA),
-        (v3.x * mw3.cellSize) + mw3.cellSize / 2,
-        v3.y * mw3.cellSize);
-    t.checkExpect(testWS3, expectedWS3);
-
-    // test mw4
-    WorldScene testWS4 = this.mw4.getEmptyScene();
-    WorldScene expectedWS4 = this.mw4.getEmptyScene();
-    this.mw4.dfsVisited.add(this.v3);
-    this.mw4.dfsVisited.add(this.v5);
-    this.mw4.animatingDfs = true;
-    mw4.drawEdge(e4, testWS4);
-    Vertex v4 = (e4.source.x > e4.destination.x) ? e4.source : e4.destination;
-    expectedWS4.placeImageXY(
-        new RectangleImage(2, mw4.cellSize - 2, OutlineMode.SOLID, Color.CYAN),
-        v4.x * mw4.cellSize,
-        (v4.y * mw4.cellSize) + mw4.cellSize / 2);
-    t.checkExpect(testWS4, expectedWS4);
-
-    testWS4 = this.mw4.getEmptyScene();
-    expectedWS4 = this.mw4.getEmptyScene();
-    this.mw4.dfsPath.add(this.v3);
-    mw4.drawEdge(e4, testWS4);
-    expectedWS4.placeImageXY(
-        new RectangleImage(2, mw4.cellSize - 2, OutlineMode.SOLID, Color.BLUE),
-        v4.x * mw4.cellSize,
-        (v4.y * mw4.cellSize) + mw4.cellSize / 2);
-    t.checkExpect(testWS4, expectedWS4);
-
-    testWS4 = this.mw4.getEmptyScene();
-    expectedWS4 = this.mw4.getEmptyScene();
-    this.mw4.animatingDfs = false;
-    this.mw4.animatingBfs = true;
-    this.mw4.bfsVisited.add(this.v3);
-    this.mw4.bfsVisited.add(this.v5);
-    mw4.drawEdge(e4, testWS4);
-    expectedWS4.placeImageXY(
-        new RectangleImage(2, mw4.cellSize - 2, OutlineMode.SOLID, Color.PINK),
-        v4.x * mw4.cellSize,
-        (v4.y * mw4.cellSize) + mw4.cellSize / 2);
-    t.checkExpect(testWS4, expectedWS4);
-
-    testWS4 = this.mw4.getEmptyScene();
-    expectedWS4 = this.mw4.getEmptyScene();
-    this.mw4.bfsPath.add(this.v3);
-    mw4.drawEdge(e4, testWS4);
-    expectedWS4.placeImageXY(
-        new RectangleImage(2, mw4.cellSize - 2, OutlineMode.SOLID, Color.MAGENTA),
-        v4.x * mw4.cellSize,
-        (v4.y * mw4.cellSize) + mw4.cellSize / 2);
-    t.checkExpect(testWS4, expectedWS4);
-
     // test mw5
     WorldScene testWS5 = this.mw5.getEmptyScene();
     WorldScene expectedWS5 = this.mw5.getEmptyScene();
@@ -1641,6 +6898,119 @@ class ExamplesMaze {
         v5.x * mw5.cellSize,
         (v5.y * mw5.cellSize) + mw5.cellSize / 2);
     t.checkExpect(testWS5, expectedWS5);
+
+    // passages between cells on the player's trail are orange
+    testWS5 = this.mw5.getEmptyScene();
+    expectedWS5 = this.mw5.getEmptyScene();
+    this.mw5.playerTrail[this.mw5.graph.id(e5.source)] = 1;
+    this.mw5.playerTrail[this.mw5.graph.id(e5.destination)] = 1;
+    this.mw5.drawEdge(e5, testWS5);
+    expectedWS5.placeImageXY(
+        new RectangleImage(2, mw5.cellSize - 2, OutlineMode.SOLID, Color.ORANGE),
+        v5.x * mw5.cellSize,
+        (v5.y * mw5.cellSize) + mw5.cellSize / 2);
+    t.checkExpect(testWS5, expectedWS5);
+  }
+
+  // test the overlayColor and passageColor methods
+  void testOverlayColor(Tester t) {
+    this.initMazeWorlds();
+    Edge e = this.mw1.edges.get(0);
+    t.checkExpect(this.mw1.overlayColor(e), null);
+    t.checkExpect(this.mw1.passageColor(e), Color.WHITE);
+    this.mw1.playerTrail[this.mw1.graph.id(e.source)] = 1;
+    this.mw1.playerTrail[this.mw1.graph.id(e.destination)] = 1;
+    t.checkExpect(this.mw1.overlayColor(e), Color.ORANGE);
+
+    // weighted passages are shaded by their cost in the maze layer
+    this.mw1.weighted = true;
+    this.mw1.graph.setWeight(this.mw1.graph.id(e.source), this.mw1.graph.id(e.destination),
+        MazeGraph.MAX_WEIGHT);
+    t.checkExpect(this.mw1.passageColor(e), this.mw1.terrainColor(MazeGraph.MAX_WEIGHT));
+  }
+
+  // test the MazeRenderer class
+  void testMazeRenderer(Tester t) {
+    this.initMazeWorlds();
+    MazeRenderer renderer = this.mw1.renderer;
+    t.checkExpect(renderer.allDirty, true);
+    ComputedPixelImage front = (ComputedPixelImage) renderer.draw(this.mw1);
+    t.checkExpect(front.getWidth(), 600.0);
+    t.checkExpect(renderer.allDirty, false);
+    // cells are white inside a black border, except the start and the end
+    t.checkExpect(front.getPixel(0, 0), Color.BLACK);
+    t.checkExpect(front.getPixel(30, 0), Color.BLACK);
+    t.checkExpect(front.getPixel(30, 30), Color.GREEN);
+    t.checkExpect(front.getPixel(90, 90), Color.WHITE);
+    t.checkExpect(front.getPixel(570, 570), Color.RED);
+    // the border between two cells is white only where there is a passage
+    boolean matches = true;
+    for (int x = 0; x < 9; x++) {
+      for (int y = 0; y < 10; y++) {
+        boolean open = this.mw1.graph.isOpen(this.mw1.graph.id(x, y), MazeGraph.RIGHT);
+        matches = matches
+            && front.getPixel(x * 60 + 60, y * 60 + 30).equals(open ? Color.WHITE : Color.BLACK);
+      }
+    }
+    t.checkExpect(matches, true);
+
+    // only touched cells are repainted, once each
+    this.mw1.playerReconstruct = true;
+    this.mw1.playerTrail[11] = 1;
+    this.mw1.playerTrail[12] = 1;
+    renderer.touch(11);
+    renderer.touch(11);
+    t.checkExpect(renderer.dirtyCount, 1);
+    renderer.draw(this.mw1);
+    t.checkExpect(renderer.dirtyCount, 0);
+    t.checkExpect(renderer.isDirty[11], false);
+    t.checkExpect(front.getPixel(90, 90), Color.ORANGE);
+    t.checkExpect(front.getPixel(150, 90), Color.WHITE);
+    renderer.invalidate();
+    renderer.draw(this.mw1);
+    t.checkExpect(front.getPixel(150, 90), Color.ORANGE);
+    // the front's pixels are remembered, so that a full repaint sets only the
+    // ones that changed
+    t.checkExpect(renderer.shown[90 * 600 + 150], Color.ORANGE.getRGB());
+    t.checkExpect(renderer.shown[30 * 600 + 30], Color.GREEN.getRGB());
+    t.checkExpect(renderer.shown[0], Color.BLACK.getRGB());
+    this.mw1.playerTrail[12] = 0;
+    renderer.invalidate();
+    renderer.draw(this.mw1);
+    t.checkExpect(front.getPixel(150, 90), Color.WHITE);
+    t.checkExpect(renderer.shown[90 * 600 + 150], Color.WHITE.getRGB());
+
+    // each tick touches the cells that the shown search has newly marked
+    this.initGraph();
+    this.searchSmallGraph(this.mw2);
+    this.mw2.renderer.draw(this.mw2);
+    this.mw2.animatingBfs = true;
+    this.mw2.bfsWorker.solver.step(3);
+    this.mw2.bfsWorker.publish();
+    this.mw2.onTick();
+    t.checkExpect(this.mw2.renderer.dirtyCount, 3);
+    this.mw2.dfsWorker.solver.step(3);
+    this.mw2.dfsWorker.publish();
+    this.mw2.onTick();
+    t.checkExpect(this.mw2.renderer.dirtyCount, 3);
+    ComputedPixelImage front2 = (ComputedPixelImage) this.mw2.renderer.draw(this.mw2);
+    t.checkExpect(front2.getPixel(45, 15), Color.PINK);
+    t.checkExpect(front2.getPixel(15, 45), Color.PINK);
+
+    // moving the player touches its old and new cells, other keys touch everything
+    this.mw3.renderer.draw(this.mw3);
+    this.mw3.onKeyEvent("m");
+    t.checkExpect(this.mw3.renderer.allDirty, true);
+    this.mw3.renderer.draw(this.mw3);
+    this.mw3.onKeyEvent(this.mw3.graph.isOpen(0, MazeGraph.RIGHT) ? "right" : "down");
+    t.checkExpect(this.mw3.renderer.dirtyCount, 0);
+    this.mw3.onTick();
+    t.checkExpect(this.mw3.renderer.dirtyCount, 2);
+    t.checkExpect(this.mw3.renderer.isDirty[0], true);
+
+    // resetting repaints everything
+    this.mw1.reset();
+    t.checkExpect(renderer.allDirty, true);
   }
 
   // test containsCycle method
@@ -1671,493 +7041,612 @@ class ExamplesMaze {
     this.mw4.representatives.put(this.v1, this.v2);
     this.mw4.representatives.put(this.v2, this.v3);
     this.mw4.representatives.put(this.v3, this.v4);
-    this.mw4.representatives.put(this.v4, this.v4);
-    t.checkExpect(this.mw4.containsCycle(this.v1, this.v2), false);
-
-    // test mw5
-    this.mw5.representatives = new HashMap<Vertex, Vertex>();
-    this.mw5.representatives.put(this.v1, this.v2);
-    this.mw5.representatives.put(this.v2, this.v3);
-    this.mw5.representatives.put(this.v3, this.v4);
-    this.mw5.representatives.put(this.v4, this.v5);
-    this.mw5.representatives.put(this.v5, this.v1);
-    t.checkExpect(this.mw5.containsCycle(this.v1, this.v3), true);
-  }
-
-  // test dfs method
-  void testDfs(Tester t) {
-    this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
-
-    // test mw1
-    this.mw1.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw1.dfsVisited = new ArrayList<Vertex>();
-    this.mw1.dfsWorklist = new Stack<Vertex>();
-    this.mw1.dfsWorklist.add(this.v1);
-    this.mw1.vertices.get(mw1.width - 1).set(mw1.height - 1, v1);
-    this.mw1.solvingDfs = true;
-    this.mw1.dfs();
-    t.checkExpect(this.mw1.solvingDfs, false);
-    t.checkExpect(this.mw1.reconstructDfs, true);
-    t.checkExpect(this.mw1.dfsWorklist.size(), 0);
-    t.checkExpect(this.mw1.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    // test mw2
-    this.mw2.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw2.dfsVisited = new ArrayList<Vertex>();
-    this.mw2.dfsWorklist = new Stack<Vertex>();
-    this.mw2.dfsWorklist.add(this.v1);
-    this.mw2.vertices.get(mw2.width - 1).set(mw2.height - 1, v2);
-    this.mw2.dfs();
-    t.checkExpect(this.mw2.dfsWorklist.size(), 2);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw2.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-
-    this.mw2.dfs();
-    t.checkExpect(this.mw2.dfsWorklist.size(), 3);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw2.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1, this.v3)));
-
-    // test mw3
-    this.mw3.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw3.dfsVisited = new ArrayList<Vertex>();
-    this.mw3.dfsWorklist = new Stack<Vertex>();
-    this.mw3.dfsWorklist.add(this.v1);
-    this.mw3.vertices.get(mw3.width - 1).set(mw3.height - 1, v3);
-    this.mw3.dfs();
-    t.checkExpect(this.mw3.dfsWorklist.size(), 2);
-    t.checkExpect(this.mw3.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw3.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw3.dfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw3.cameFromEdgeDfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw3.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    this.mw3.solvingDfs = true;
-    this.mw3.dfs();
-    t.checkExpect(this.mw3.solvingDfs, false);
-    t.checkExpect(this.mw3.reconstructDfs, true);
-    t.checkExpect(this.mw3.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1, this.v3)));
-
-    // test mw4
-    this.mw4.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw4.dfsVisited = new ArrayList<Vertex>(Arrays.asList(this.v4));
-    this.mw4.dfsWorklist = new Stack<Vertex>();
-    this.mw4.dfsWorklist.add(this.v3);
-    this.mw4.vertices.get(mw4.width - 1).set(mw4.height - 1, v1);
-    this.mw4.dfs();
-    t.checkExpect(this.mw4.dfsWorklist.size(), 2);
-    t.checkExpect(this.mw4.dfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw4.cameFromEdgeDfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw4.dfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw4.cameFromEdgeDfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw4.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v4, this.v3)));
-
-    this.mw4.dfs();
-    t.checkExpect(this.mw4.dfsWorklist.size(), 1);
-    t.checkExpect(this.mw4.dfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw4.cameFromEdgeDfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw4.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v4, this.v3)));
-
-    this.mw4.solvingDfs = true;
-    this.mw4.dfs();
-    t.checkExpect(this.mw4.dfsWorklist.size(), 0);
-    t.checkExpect(this.mw4.solvingDfs, false);
-    t.checkExpect(this.mw4.reconstructDfs, true);
-    t.checkExpect(this.mw4.dfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v4, this.v3, this.v1)));
-
-    // test mw5
-    this.mw5.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw5.dfsVisited = new ArrayList<Vertex>();
-    this.mw5.dfsWorklist = new Stack<Vertex>();
-    this.mw5.dfsWorklist.add(this.v1);
-    this.mw5.vertices.get(mw5.width - 1).set(mw5.height - 1, v5);
-    this.mw5.dfs();
-    t.checkExpect(this.mw5.dfsWorklist.size(), 2);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw5.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    this.mw5.dfs();
-    t.checkExpect(this.mw5.dfsWorklist.size(), 3);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw5.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1, this.v3)));
-
-    this.mw5.dfs();
-    t.checkExpect(this.mw5.dfsWorklist.size(), 5);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v5), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v5), true);
-    t.checkExpect(this.mw5.dfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v1, this.v3, this.v4)));
-
-    this.mw5.dfs();
-    t.checkExpect(this.mw5.dfsWorklist.size(), 4);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw5.dfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v1, this.v3, this.v4, this.v5)));
-
-    this.mw5.dfs();
-    t.checkExpect(this.mw5.dfsWorklist.size(), 3);
-    t.checkExpect(this.mw5.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw5.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw5.dfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v1, this.v3, this.v4, this.v5)));
-  }
-
-  // test the bfs method
-  void testBfs(Tester t) {
-    this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
-
-    // test mw1
-    this.mw1.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw1.bfsVisited = new ArrayList<Vertex>();
-    this.mw1.bfsWorklist = new LinkedList<Vertex>();
-    this.mw1.bfsWorklist.add(this.v1);
-    this.mw1.vertices.get(mw1.width - 1).set(mw1.height - 1, v1);
-    this.mw1.solvingBfs = true;
-    this.mw1.bfs();
-    t.checkExpect(this.mw1.solvingBfs, false);
-    t.checkExpect(this.mw1.reconstructBfs, true);
-    t.checkExpect(this.mw1.bfsWorklist.size(), 0);
-    t.checkExpect(this.mw1.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-
-    // test mw2
-    this.mw2.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw2.bfsVisited = new ArrayList<Vertex>();
-    this.mw2.bfsWorklist = new LinkedList<Vertex>();
-    this.mw2.bfsWorklist.add(this.v1);
-    this.mw2.vertices.get(mw2.width - 1).set(mw2.height - 1, v2);
-    this.mw2.bfs();
-    t.checkExpect(this.mw2.bfsWorklist.size(), 2);
-    t.checkExpect(this.mw2.bfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw2.cameFromEdgeBfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw2.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw2.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw2.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    this.mw2.solvingBfs = true;
-    this.mw2.bfs();
-    t.checkExpect(this.mw2.bfsWorklist.size(), 1);
-    t.checkExpect(this.mw2.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw2.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw2.solvingDfs, false);
-    t.checkExpect(this.mw2.reconstructBfs, true);
-    t.checkExpect(this.mw2.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1, this.v2)));
+    this.mw4.representatives.put(this.v4, this.v4);
+    t.checkExpect(this.mw4.containsCycle(this.v1, this.v2), false);
 
+    // test mw5
+    this.mw5.representatives = new HashMap<Vertex, Vertex>();
+    this.mw5.representatives.put(this.v1, this.v2);
+    this.mw5.representatives.put(this.v2, this.v3);
+    this.mw5.representatives.put(this.v3, this.v4);
+    this.mw5.representatives.put(this.v4, this.v5);
+    this.mw5.representatives.put(this.v5, this.v1);
+    t.checkExpect(this.mw5.containsCycle(this.v1, this.v3), true);
+  }
 
-    // test mw3
-    this.mw3.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw3.bfsVisited = new ArrayList<Vertex>();
-    this.mw3.bfsWorklist = new LinkedList<Vertex>();
-    this.mw3.bfsWorklist.add(this.v1);
-    this.mw3.vertices.get(mw3.width - 1).set(mw3.height - 1, v3);
-    this.mw3.bfs();
-    t.checkExpect(this.mw3.bfsWorklist.size(), 2);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw3.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    this.mw3.bfs();
-    t.checkExpect(this.mw3.bfsWorklist.size(), 3);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw3.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1, this.v2)));
+  // test the DfsSolver class
+  void testDfsSolver(Tester t) {
+    this.initGraph();
+    SolverProgress progress = new SolverProgress();
+
+    // the first step visits the start
+    MazeSolver dfs = new DfsSolver(this.g1, 0, 5);
+    t.checkExpect(dfs.step(1), 1);
+    t.checkExpect(dfs.isVisited(0), true);
+    t.checkExpect(dfs.isVisited(1), false);
+    t.checkExpect(dfs.isVisited(3), false);
+    t.checkExpect(dfs.isDone(), false);
+
+    // the most recently discovered cell is visited next
+    t.checkExpect(dfs.step(1), 1);
+    t.checkExpect(dfs.isVisited(1), true);
+    t.checkExpect(dfs.isVisited(3), false);
+
+    // reaching the end starts the path
+    t.checkExpect(dfs.step(2), 2);
+    t.checkExpect(dfs.isVisited(4), true);
+    t.checkExpect(dfs.isVisited(5), true);
+    dfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.RECONSTRUCTING);
+    t.checkExpect(progress.visitedCount, 4);
+    t.checkExpect(progress.pathLength, 1);
+    t.checkExpect(dfs.onPath(5), true);
+    t.checkExpect(dfs.onPath(4), false);
+
+    // the path is walked back one cell per step
+    t.checkExpect(dfs.step(1), 1);
+    t.checkExpect(dfs.onPath(4), true);
+    t.checkExpect(dfs.onPath(1), false);
+    t.checkExpect(dfs.step(100), 2);
+    t.checkExpect(dfs.onPath(1), true);
+    t.checkExpect(dfs.onPath(0), true);
+    t.checkExpect(dfs.onPath(3), false);
+    t.checkExpect(dfs.isVisited(3), false);
+    t.checkExpect(dfs.isDone(), true);
+    dfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(progress.visitedCount, 4);
+    t.checkExpect(progress.pathLength, 4);
+    t.checkExpect(progress.stepsTaken, 7);
+
+    // a finished search takes no more steps, and cannot be cancelled
+    t.checkExpect(dfs.step(5), 0);
+    dfs.cancel();
+    dfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.SOLVED);
+
+    // a search starting at the end is solved in one step
+    dfs = new DfsSolver(this.g1, 4, 4);
+    t.checkExpect(dfs.step(100), 1);
+    dfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(progress.pathLength, 1);
+
+    // a search for an unreachable end visits every reachable cell
+    dfs = new DfsSolver(this.g1, 0, 2);
+    t.checkExpect(dfs.step(100), 5);
+    t.checkExpect(dfs.isDone(), true);
+    dfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.UNSOLVABLE);
+    t.checkExpect(progress.visitedCount, 5);
+    t.checkExpect(progress.pathLength, 0);
+
+    // a cancelled search takes no more steps
+    dfs = new DfsSolver(this.g1, 0, 5);
+    dfs.step(1);
+    dfs.cancel();
+    t.checkExpect(dfs.isDone(), true);
+    t.checkExpect(dfs.step(100), 0);
+    t.checkExpect(dfs.isVisited(1), false);
+    dfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.CANCELLED);
+    t.checkExpect(progress.visitedCount, 1);
+  }
 
+  // test the BfsSolver class
+  void testBfsSolver(Tester t) {
+    this.initGraph();
+    SolverProgress progress = new SolverProgress();
+
+    // the first step visits the start
+    MazeSolver bfs = new BfsSolver(this.g1, 0, 5);
+    t.checkExpect(bfs.step(1), 1);
+    t.checkExpect(bfs.isVisited(0), true);
+    t.checkExpect(bfs.isDone(), false);
+
+    // the earliest discovered cell is visited next
+    t.checkExpect(bfs.step(1), 1);
+    t.checkExpect(bfs.isVisited(3), true);
+    t.checkExpect(bfs.isVisited(1), false);
+    t.checkExpect(bfs.step(1), 1);
+    t.checkExpect(bfs.isVisited(1), true);
+    t.checkExpect(bfs.isVisited(4), false);
+
+    // a cell discovered twice is only visited once
+    t.checkExpect(bfs.step(2), 2);
+    t.checkExpect(bfs.isVisited(4), true);
+    t.checkExpect(bfs.isVisited(5), true);
+    bfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.RECONSTRUCTING);
+    t.checkExpect(progress.visitedCount, 5);
+    t.checkExpect(progress.pathLength, 1);
+    t.checkExpect(bfs.onPath(5), true);
+
+    // the path follows the cells each cell was first discovered from
+    t.checkExpect(bfs.step(100), 3);
+    t.checkExpect(bfs.onPath(4), true);
+    t.checkExpect(bfs.onPath(3), true);
+    t.checkExpect(bfs.onPath(0), true);
+    t.checkExpect(bfs.onPath(1), false);
+    t.checkExpect(bfs.isDone(), true);
+    bfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(progress.visitedCount, 5);
+    t.checkExpect(progress.pathLength, 4);
+    t.checkExpect(progress.pathCost, 3);
+    t.checkExpect(progress.stepsTaken, 8);
+
+    // a search for an unreachable end visits every reachable cell
+    bfs = new BfsSolver(this.g1, 5, 2);
+    t.checkExpect(bfs.step(100), 5);
+    bfs.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.UNSOLVABLE);
+
+    // a cancelled search takes no more steps
+    bfs = new BfsSolver(this.g1, 0, 5);
+    bfs.cancel();
+    t.checkExpect(bfs.step(100), 0);
+    t.checkExpect(bfs.isVisited(0), false);
+  }
 
-    // test mw4
-    this.mw4.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw4.bfsVisited = new ArrayList<Vertex>();
-    this.mw4.bfsWorklist = new LinkedList<Vertex>();
-    this.mw4.bfsWorklist.add(this.v1);
-    this.mw4.vertices.get(mw4.width - 1).set(mw4.height - 1, v4);
-    this.mw4.bfs();
-    t.checkExpect(this.mw4.bfsWorklist.size(), 2);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw4.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    this.mw4.bfs();
-    t.checkExpect(this.mw4.bfsWorklist.size(), 3);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw4.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1, this.v2)));
-
-    this.mw4.bfs();
-    t.checkExpect(this.mw4.bfsWorklist.size(), 4);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw4.bfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v1, this.v2, this.v3)));
-
-    this.mw4.bfs();
-    t.checkExpect(this.mw4.bfsWorklist.size(), 3);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw4.bfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw4.cameFromEdgeBfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw4.bfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v1, this.v2, this.v3)));
-
-    this.mw4.solvingBfs = true;
-    this.mw4.bfs();
-    t.checkExpect(this.mw4.bfsWorklist.size(), 2);
-    t.checkExpect(this.mw4.solvingBfs, false);
-    t.checkExpect(this.mw4.reconstructBfs, true);
-    t.checkExpect(this.mw4.bfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v1, this.v2, this.v3, this.v4)));
+  // give the loop in g1 a cheap way round through cell 3 and an expensive
+  // way round through cell 1, which is the way breadth first search finds
+  void initWeightedGraph() {
+    this.initGraph();
+    this.g1.setWeight(0, 1, 1);
+    this.g1.setWeight(1, 4, 9);
+    this.g1.setWeight(0, 3, 2);
+    this.g1.setWeight(3, 4, 2);
+  }
 
+  // check that the given search, started from 0 towards 5 in the weighted g1,
+  // finds the cheapest path rather than the first one it discovers
+  void checkCheapestPath(Tester t, MazeSolver solver) {
+    SolverProgress progress = new SolverProgress();
+
+    // cells are visited in order of cost: 0 (0), 1 (1), 3 (2)
+    t.checkExpect(solver.step(3), 3);
+    t.checkExpect(solver.isVisited(1), true);
+    t.checkExpect(solver.isVisited(3), true);
+    t.checkExpect(solver.visitedCell(1), 1);
+    t.checkExpect(solver.visitedCell(2), 3);
+
+    // cell 4 was first reached through 1 at cost 10, but is visited at
+    // the cheaper cost of 4 through 3, then the end at cost 5
+    t.checkExpect(solver.step(2), 2);
+    t.checkExpect(solver.visitedCell(3), 4);
+    t.checkExpect(solver.visitedCell(4), 5);
+    solver.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.RECONSTRUCTING);
+
+    // the path goes the cheap way round
+    t.checkExpect(solver.step(100), 3);
+    t.checkExpect(solver.onPath(3), true);
+    t.checkExpect(solver.onPath(1), false);
+    solver.snapshot(progress);
+    t.checkExpect(progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(progress.visitedCount, 5);
+    t.checkExpect(progress.pathLength, 4);
+    t.checkExpect(progress.pathCost, 5);
+    t.checkExpect(progress.stepsTaken, 8);
+  }
 
-    // test mw5
-    this.mw5.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw5.bfsVisited = new ArrayList<Vertex>();
-    this.mw5.bfsWorklist = new LinkedList<Vertex>();
-    this.mw5.bfsWorklist.add(this.v4);
-    this.mw5.vertices.get(mw5.width - 1).set(mw5.height - 1, v3);
-    this.mw5.bfs();
-    t.checkExpect(this.mw5.bfsWorklist.size(), 3);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v5), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v5), true);
-    t.checkExpect(this.mw5.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v4)));
-
-    this.mw5.bfs();
-    t.checkExpect(this.mw5.bfsWorklist.size(), 4);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v1), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v1), true);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v4), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v4), true);
-    t.checkExpect(this.mw5.bfsWorklist.contains(this.v5), true);
-    t.checkExpect(this.mw5.cameFromEdgeBfs.containsKey(this.v5), true);
-    t.checkExpect(this.mw5.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v4, this.v2)));
-
-    this.mw5.solvingBfs = true;
-    this.mw5.bfs();
-    t.checkExpect(this.mw5.bfsWorklist.size(), 3);
-    t.checkExpect(this.mw5.solvingBfs, false);
-    t.checkExpect(this.mw5.reconstructBfs, true);
-    t.checkExpect(this.mw5.bfsVisited,
-        new ArrayList<Vertex>(Arrays.asList(this.v4, this.v2, this.v3)));
-  }
-
-  // test the reconstructDfs method
-  void testReconstructDfs(Tester t) {
-    this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
+  // test the DialSolver class
+  void testDialSolver(Tester t) {
+    this.initWeightedGraph();
+    DialSolver dial = new DialSolver(this.g1, 0, 5);
+    t.checkExpect(dial.cost[0], 0);
+    t.checkExpect(dial.cost[5], Integer.MAX_VALUE);
+    t.checkExpect(dial.queued, 1);
+    this.checkCheapestPath(t, dial);
+    t.checkExpect(dial.cost[4], 4);
+    // the stale entry for cell 4 at cost 10 is still queued
+    t.checkExpect(dial.queued, 1);
+
+    // a search for an unreachable end visits every reachable cell
+    MazeSolver unreachable = new DialSolver(this.g1, 5, 2);
+    t.checkExpect(unreachable.step(100), 5);
+    t.checkExpect(unreachable.isDone(), true);
+  }
 
-    // test mw1
-    this.mw1.reconstructDfs = true;
-    this.mw1.finalStateDfs = false;
-    this.mw1.vertices.get(0).set(0, v1);
-    this.mw1.reconstructDfsPath(v1);
-    t.checkExpect(this.mw1.reconstructDfs, false);
-    t.checkExpect(this.mw1.finalStateDfs, true);
+  // test the HeapDijkstraSolver class
+  void testHeapDijkstraSolver(Tester t) {
+    this.initWeightedGraph();
+    HeapDijkstraSolver heap = new HeapDijkstraSolver(this.g1, 0, 5);
+    t.checkExpect(heap.size, 1);
+    t.checkExpect(heap.heap[0], 0L);
+    this.checkCheapestPath(t, heap);
+    t.checkExpect(heap.size, 1);
+    t.checkExpect(heap.heap[0], (10L << 32) | 4);
+
+    // a search for an unreachable end visits every reachable cell
+    MazeSolver unreachable = new HeapDijkstraSolver(this.g1, 5, 2);
+    t.checkExpect(unreachable.step(100), 5);
+    t.checkExpect(unreachable.isDone(), true);
+  }
 
-    // test mw2
-    this.mw2.vertices.get(0).set(0, v2);
-    this.mw2.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    this.mw2.cameFromEdgeDfs.put(v1, e1);
-    this.mw2.dfsPath = new ArrayList<Vertex>();
-    this.mw2.reconstructDfsPath(v1);
-    t.checkExpect(this.mw2.dfsPath, new ArrayList<Vertex>(Arrays.asList(v2)));
+  // test the LpaStarPlanner class
+  void testLpaStarPlanner(Tester t) {
+    this.initWeightedGraph();
+    LpaStarPlanner planner = new LpaStarPlanner(this.g1, 0, 5);
+    t.checkExpect(planner.rhs[0], 0);
+    t.checkExpect(planner.g[0], LpaStarPlanner.INF);
+    t.checkExpect(planner.heapSize, 1);
+
+    // the first plan takes the cheap way round the loop
+    t.checkExpect(planner.replan(), 5);
+    planner.tracePath();
+    t.checkExpect(planner.pathLength, 4);
+    t.checkExpect(planner.path[0], 5);
+    t.checkExpect(planner.path[2], 3);
+    t.checkExpect(planner.onPath[1], false);
+
+    // closing the cheap way round makes the path go the expensive way
+    this.g1.setOpen(3, 4, false);
+    planner.wallChanged(3, 4);
+    t.checkExpect(planner.replan(), 11);
+    planner.tracePath();
+    t.checkExpect(planner.pathLength, 4);
+    t.checkExpect(planner.onPath[1], true);
+    t.checkExpect(planner.onPath[3], false);
+
+    // opening a shortcut through the top right cell only expands that corner
+    this.g1.setOpen(1, 2, true);
+    planner.wallChanged(1, 2);
+    this.g1.setOpen(2, 5, true);
+    planner.wallChanged(2, 5);
+    t.checkExpect(planner.replan(), 3);
+    t.checkExpect(planner.expanded <= 3, true);
+    planner.tracePath();
+    t.checkExpect(planner.path[1], 2);
+    t.checkExpect(planner.onPath[4], false);
+
+    // cutting the end off leaves no path
+    this.g1.setOpen(2, 5, false);
+    planner.wallChanged(2, 5);
+    this.g1.setOpen(4, 5, false);
+    planner.wallChanged(4, 5);
+    t.checkExpect(planner.replan(), LpaStarPlanner.INF);
+    planner.tracePath();
+    t.checkExpect(planner.pathLength, 0);
+    t.checkExpect(planner.onPath[0], false);
+
+    // after many random flips, the repaired cost matches a search from scratch
+    MazeGraph graph = MazeGraph.generate(30, 20, new Random(8));
+    graph.addLoops(0.2, new Random(9));
+    graph.randomizeWeights(new Random(10));
+    planner = new LpaStarPlanner(graph, 0, graph.size() - 1);
+    planner.replan();
+    Random rand = new Random(11);
+    boolean matches = true;
+    for (int i = 0; i < 200; i++) {
+      int cell = rand.nextInt(graph.size());
+      int neighbor = (graph.xOf(cell) < graph.width - 1) ? cell + 1 : cell - 1;
+      graph.setOpen(cell, neighbor, !graph.isOpen(cell, graph.direction(cell, neighbor)));
+      planner.wallChanged(cell, neighbor);
+      int cost = planner.replan();
+      MazeSolver dial = new DialSolver(graph, 0, graph.size() - 1);
+      dial.step(Integer.MAX_VALUE);
+      SolverProgress progress = new SolverProgress();
+      dial.snapshot(progress);
+      matches = matches && (progress.phase == SolverProgress.SOLVED
+          ? cost == progress.pathCost : cost == LpaStarPlanner.INF);
+    }
+    t.checkExpect(matches, true);
+  }
 
-    // test mw3
-    this.mw3.vertices.get(0).set(0, v3);
-    this.mw3.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    this.mw3.cameFromEdgeDfs.put(v1, e1);
-    this.mw3.cameFromEdgeDfs.put(v2, e3);
-    this.mw3.dfsPath = new ArrayList<Vertex>();
-    this.mw3.reconstructDfsPath(v1);
-    t.checkExpect(this.mw3.dfsPath, new ArrayList<Vertex>(Arrays.asList(v2)));
-    this.mw3.reconstructDfsPath(v2);
-    t.checkExpect(this.mw3.dfsPath, new ArrayList<Vertex>(Arrays.asList(v2, v4)));
+  // check that the planner's last path runs from start to goal through open
+  // passages, with the given cost
+  boolean validPath(HierarchicalPlanner planner, int start, int goal, int cost) {
+    boolean valid = planner.path[0] == start && planner.path[planner.pathLength - 1] == goal;
+    int sum = 0;
+    for (int i = 1; i < planner.pathLength && valid; i++) {
+      int dir = planner.graph.direction(planner.path[i - 1], planner.path[i]);
+      valid = planner.graph.neighbor(planner.path[i - 1], dir) == planner.path[i]
+          && planner.graph.isOpen(planner.path[i - 1], dir);
+      sum += planner.graph.weight(planner.path[i - 1], dir);
+    }
+    return valid && sum == cost;
+  }
 
-    // test mw4
-    this.mw4.reconstructDfs = true;
-    this.mw4.finalStateDfs = false;
-    this.mw4.vertices.get(0).set(0, v5);
-    this.mw4.reconstructDfsPath(v5);
-    t.checkExpect(this.mw4.reconstructDfs, false);
-    t.checkExpect(this.mw4.finalStateDfs, true);
+  // test the HierarchicalPlanner class
+  void testHierarchicalPlanner(Tester t) {
+    this.initWeightedGraph();
+    // g1 in 2 x 2 clusters: the only passage between them is from 4 to 5
+    HierarchicalPlanner planner = new HierarchicalPlanner(this.g1, 2);
+    t.checkExpect(planner.clustersWide, 2);
+    t.checkExpect(planner.clustersHigh, 1);
+    t.checkExpect(planner.clusterOf(4), 0);
+    t.checkExpect(planner.clusterOf(5), 1);
+    t.checkExpect(planner.local(5), 2);
+    t.checkExpect(planner.cellAt(1, 2), 5);
+    t.checkExpect(planner.entrances[0], new int[] {4});
+    t.checkExpect(planner.entrances[1], new int[] {5});
+    t.checkExpect(planner.edgeStart[0], new int[] {0, 0});
+
+    // the path goes the cheap way round the loop
+    t.checkExpect(planner.findPath(0, 5), 5);
+    t.checkExpect(planner.pathLength, 4);
+    t.checkExpect(planner.path[1], 3);
+    t.checkExpect(this.validPath(planner, 0, 5, 5), true);
+    t.checkExpect(planner.findPath(1, 3), 3);
+    t.checkExpect(planner.pathLength, 3);
+    t.checkExpect(planner.findPath(5, 5), 0);
+    t.checkExpect(planner.pathLength, 1);
+    t.checkExpect(planner.findPath(0, 2), LpaStarPlanner.INF);
+
+    // opening a wall between the clusters adds entrances on both sides
+    this.g1.setOpen(1, 2, true);
+    planner.wallChanged(1, 2);
+    t.checkExpect(planner.entrances[0], new int[] {1, 4});
+    t.checkExpect(planner.entrances[1], new int[] {2, 5});
+    t.checkExpect(planner.findPath(0, 2), 2);
+    t.checkExpect(planner.findPath(3, 2), 4);
+    t.checkExpect(this.validPath(planner, 3, 2, 4), true);
+
+    // on a larger maze, paths match searches of the whole maze, before and
+    // after walls change, and the rebuilt clusters match a fresh planner
+    MazeGraph graph = MazeGraph.generate(30, 21, new Random(12));
+    graph.addLoops(0.2, new Random(13));
+    graph.randomizeWeights(new Random(14));
+    planner = new HierarchicalPlanner(graph, 4);
+    Random rand = new Random(15);
+    boolean matches = true;
+    for (int i = 0; i < 100; i++) {
+      if (i >= 50) {
+        int cell = graph.id(rand.nextInt(graph.width), rand.nextInt(graph.height - 1));
+        graph.setOpen(cell, cell + graph.width, !graph.isOpen(cell, MazeGraph.DOWN));
+        planner.wallChanged(cell, cell + graph.width);
+      }
+      int start = rand.nextInt(graph.size());
+      int goal = rand.nextInt(graph.size());
+      int cost = planner.findPath(start, goal);
+      MazeSolver dial = new DialSolver(graph, start, goal);
+      dial.step(Integer.MAX_VALUE);
+      SolverProgress progress = new SolverProgress();
+      dial.snapshot(progress);
+      if (progress.phase == SolverProgress.SOLVED) {
+        matches = matches && cost == progress.pathCost
+            && this.validPath(planner, start, goal, cost);
+      } else {
+        matches = matches && cost == LpaStarPlanner.INF;
+      }
+    }
+    t.checkExpect(matches, true);
+    HierarchicalPlanner fresh = new HierarchicalPlanner(graph, 4);
+    t.checkExpect(planner.entrances, fresh.entrances);
+    t.checkExpect(planner.edgeTarget, fresh.edgeTarget);
+    t.checkExpect(planner.edgeCost, fresh.edgeCost);
+  }
 
-    // test mw5
-    this.mw5.vertices.get(0).set(0, v5);
-    this.mw5.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    this.mw5.cameFromEdgeDfs.put(v2, e3);
-    this.mw5.cameFromEdgeDfs.put(v4, e5);
-    this.mw5.dfsPath = new ArrayList<Vertex>();
-    this.mw5.reconstructDfsPath(v2);
-    t.checkExpect(this.mw5.dfsPath, new ArrayList<Vertex>(Arrays.asList(v4)));
-    this.mw5.reconstructDfsPath(v4);
-    t.checkExpect(this.mw5.dfsPath, new ArrayList<Vertex>(Arrays.asList(v4, v5)));
-    this.mw5.reconstructDfs = true;
-    this.mw5.finalStateDfs = false;
-    this.mw5.reconstructDfsPath(v5);
-    t.checkExpect(this.mw5.reconstructDfs, false);
-    t.checkExpect(this.mw5.finalStateDfs, true);
-  }
-
-  // test the reconstructBfs method
-  void testReconstructBfs(Tester t) {
+  // test the toggleDynamic method
+  void testToggleDynamic(Tester t) {
     this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
-
-    // test mw1
-    this.mw1.reconstructBfs = true;
-    this.mw1.finalStateBfs = false;
-    this.mw1.vertices.get(0).set(0, v1);
-    this.mw1.reconstructBfsPath(v1);
-    t.checkExpect(this.mw1.reconstructBfs, false);
-    t.checkExpect(this.mw1.finalStateBfs, true);
+    mw1.animatingDfs = true;
+    SolverWorker oldDfs = mw1.dfsWorker;
 
-    // test mw2
-    this.mw2.vertices.get(0).set(0, v2);
-    this.mw2.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    this.mw2.cameFromEdgeBfs.put(v1, e1);
-    this.mw2.bfsPath = new ArrayList<Vertex>();
-    this.mw2.reconstructBfsPath(v1);
-    t.checkExpect(this.mw2.bfsPath, new ArrayList<Vertex>(Arrays.asList(v2)));
+    // the searches stop, and the planner finds the only path through the tree
+    mw1.toggleDynamic();
+    t.checkExpect(oldDfs.cancelled, true);
+    t.checkExpect(mw1.animatingDfs, false);
+    t.checkExpect(mw1.dynamic, true);
+    MazeSolver bfs = new BfsSolver(mw1.graph, 0, mw1.graph.size() - 1);
+    bfs.step(Integer.MAX_VALUE);
+    SolverProgress progress = new SolverProgress();
+    bfs.snapshot(progress);
+    t.checkExpect(mw1.planner.pathLength, progress.pathLength);
+    t.checkExpect(mw1.planner.g[mw1.planner.goal], progress.pathLength - 1);
+
+    mw1.toggleDynamic();
+    t.checkExpect(mw1.dynamic, false);
+    t.checkExpect(mw1.planner, null);
+  }
 
-    // test mw3
-    this.mw3.vertices.get(0).set(0, v3);
-    this.mw3.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    this.mw3.cameFromEdgeBfs.put(v1, e1);
-    this.mw3.cameFromEdgeBfs.put(v2, e3);
-    this.mw3.bfsPath = new ArrayList<Vertex>();
-    this.mw3.reconstructBfsPath(v1);
-    t.checkExpect(this.mw3.bfsPath, new ArrayList<Vertex>(Arrays.asList(v2)));
-    this.mw3.reconstructBfsPath(v2);
-    t.checkExpect(this.mw3.bfsPath, new ArrayList<Vertex>(Arrays.asList(v2, v4)));
+  // test the flipWall and flipRandomWall methods
+  void testFlipWall(Tester t) {
+    this.initMazeWorlds();
+    mw1.toggleDynamic();
+    Vertex last = mw1.vertices.get(mw1.width - 1).get(mw1.height - 1);
+    Vertex above = mw1.vertices.get(mw1.width - 1).get(mw1.height - 2);
+    Vertex left = mw1.vertices.get(mw1.width - 2).get(mw1.height - 1);
+    int end = mw1.graph.size() - 1;
+
+    // walling in the end leaves no path
+    if (mw1.graph.isOpen(end, MazeGraph.UP)) {
+      mw1.flipWall(last, above);
+    }
+    if (mw1.graph.isOpen(end, MazeGraph.LEFT)) {
+      mw1.flipWall(last, left);
+    }
+    t.checkExpect(mw1.graph.isOpen(end, MazeGraph.UP), false);
+    t.checkExpect(mw1.planner.pathLength, 0);
+    t.checkExpect(mw1.dynamicStatus(), "The walls have cut off the end of the maze");
+
+    // opening a wall adds an edge, and the path comes back through it
+    int edges = mw1.edges.size();
+    mw1.flipWall(last, above);
+    t.checkExpect(mw1.edges.size(), edges + 1);
+    t.checkExpect(mw1.graph.isOpen(end, MazeGraph.UP), true);
+    t.checkExpect(mw1.planner.onPath[end - mw1.width], true);
+    t.checkExpect(mw1.dynamicStatus(), "The shortest path is " + (mw1.planner.pathLength - 1)
+        + " moves long, costing " + (mw1.planner.pathLength - 1));
+
+    // closing it again removes that edge
+    mw1.flipWall(above, last);
+    t.checkExpect(mw1.edges.size(), edges);
+    t.checkExpect(mw1.graph.isOpen(end, MazeGraph.UP), false);
+
+    // a random flip changes exactly one wall
+    mw1.flipRandomWall();
+    t.checkExpect(Math.abs(mw1.edges.size() - edges), 1);
+
+    // a maze one cell wide only has walls between the cells of its column,
+    // and timed flips there keep going
+    MazeWorld column = new MazeWorld(1, 5, new Random(3));
+    column.onKeyEvent("y");
+    t.checkExpect(column.dynamic, true);
+    column.flipRandomWall();
+    t.checkExpect(column.edges.size(), 3);
+    column.flipRandomWall();
+    t.checkExpect(column.edges.size() == 2 || column.edges.size() == 4, true);
+    for (int i = 0; i < 3 * MazeWorld.FLIP_TICKS; i++) {
+      column.onTick();
+    }
+    t.checkExpect(column.dynamic, true);
+    MazeWorld row = new MazeWorld(5, 1, new Random(3));
+    row.toggleDynamic();
+    row.flipRandomWall();
+    t.checkExpect(row.edges.size(), 3);
+    // and a single cell has nothing to flip
+    MazeWorld cell = new MazeWorld(1, 1, new Random(3));
+    cell.toggleDynamic();
+    cell.flipRandomWall();
+    t.checkExpect(cell.edges.size(), 0);
+  }
 
-    // test mw4
-    this.mw4.reconstructBfs = true;
-    this.mw4.finalStateBfs = false;
-    this.mw4.vertices.get(0).set(0, v5);
-    this.mw4.reconstructBfsPath(v5);
-    t.checkExpect(this.mw4.reconstructBfs, false);
-    t.checkExpect(this.mw4.finalStateBfs, true);
+  // test the weighTerrain method
+  void testWeighTerrain(Tester t) {
+    this.initMazeWorlds();
+    mw1.weighTerrain();
+
+    // loops are added to the spanning tree, and opened in the graph
+    t.checkExpect(mw1.edges.size() > 99, true);
+    int openSides = 0;
+    boolean costsMatch = true;
+    for (int cell = 0; cell < mw1.graph.size(); cell++) {
+      for (int dir = 0; dir < 4; dir++) {
+        if (mw1.graph.isOpen(cell, dir)) {
+          openSides++;
+        }
+      }
+    }
+    for (Edge e : mw1.edges) {
+      int source = mw1.graph.id(e.source);
+      int cost = mw1.graph.weight(source,
+          mw1.graph.direction(source, mw1.graph.id(e.destination)));
+      costsMatch = costsMatch && cost == 1 + e.weight * MazeGraph.MAX_WEIGHT / 1000;
+    }
+    t.checkExpect(openSides, 2 * mw1.edges.size());
+    t.checkExpect(costsMatch, true);
 
-    // test mw5
-    this.mw5.vertices.get(0).set(0, v5);
-    this.mw5.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    this.mw5.cameFromEdgeBfs.put(v2, e3);
-    this.mw5.cameFromEdgeBfs.put(v4, e5);
-    this.mw5.bfsPath = new ArrayList<Vertex>();
-    this.mw5.reconstructBfsPath(v2);
-    t.checkExpect(this.mw5.bfsPath, new ArrayList<Vertex>(Arrays.asList(v4)));
-    this.mw5.reconstructBfsPath(v4);
-    t.checkExpect(this.mw5.bfsPath, new ArrayList<Vertex>(Arrays.asList(v4, v5)));
-    this.mw5.reconstructBfs = true;
-    this.mw5.finalStateBfs = false;
-    this.mw5.reconstructBfsPath(v5);
-    t.checkExpect(this.mw5.reconstructBfs, false);
-    t.checkExpect(this.mw5.finalStateBfs, true);
+    // passages are shaded by cost
+    t.checkExpect(mw1.terrainColor(1), Color.WHITE);
+    t.checkExpect(mw1.terrainColor(MazeGraph.MAX_WEIGHT), new Color(95, 95, 95));
   }
 
   // test reconstructPlayerPath method
   void testReconstructPlayerPath(Tester t) {
     this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
 
-    // test mw1
+    // test mw1: a route holding only the start is replayed in one tick
     this.mw1.playerReconstruct = true;
     this.mw1.finalStatePlayer = false;
-    this.mw1.playerPath = new ArrayList<Vertex>();
+    this.mw1.reconstructPlayerPath();
+    t.checkExpect(this.mw1.playerReplayed, 1);
+    t.checkExpect(this.mw1.playerTrail[0], (byte) 1);
     this.mw1.reconstructPlayerPath();
     t.checkExpect(this.mw1.playerReconstruct, false);
     t.checkExpect(this.mw1.finalStatePlayer, true);
 
-    // test mw2
-    this.mw2.playerPath = new ArrayList<Vertex>(Arrays.asList(v1));
-    this.mw2.playerPathAnimator = new ArrayList<Vertex>();
-    this.mw2.reconstructPlayerPath();
-    t.checkExpect(this.mw2.playerPathAnimator, new ArrayList<Vertex>(Arrays.asList(v1)));
-    t.checkExpect(this.mw2.playerPath, new ArrayList<Vertex>());
+    // test mw5: the route is replayed from the end back to the start
+    this.mw5.extendRoute(1);
+    this.mw5.extendRoute(71);
+    this.mw5.playerReconstruct = true;
+    this.mw5.reconstructPlayerPath();
+    t.checkExpect(this.mw5.playerReplayed, 1);
+    t.checkExpect(this.mw5.playerRouteLength, 3);
+    // each replayed cell is marked on the trail, along with the end
+    t.checkExpect(this.mw5.playerTrail[71], (byte) 1);
+    t.checkExpect(this.mw5.playerTrail[1], (byte) 0);
+    t.checkExpect(this.mw5.playerTrail[this.mw5.graph.size() - 1], (byte) 1);
+    this.mw5.reconstructPlayerPath();
+    this.mw5.reconstructPlayerPath();
+    t.checkExpect(this.mw5.playerTrail[1], (byte) 1);
+    t.checkExpect(this.mw5.playerTrail[0], (byte) 1);
+    t.checkExpect(this.mw5.playerReconstruct, true);
+    this.mw5.reconstructPlayerPath();
+    t.checkExpect(this.mw5.playerReconstruct, false);
+    t.checkExpect(this.mw5.finalStatePlayer, true);
+  }
 
-    // test mw3
-    this.mw3.playerReconstruct = true;
-    this.mw3.finalStatePlayer = false;
-    this.mw3.playerPath = new ArrayList<Vertex>();
-    this.mw3.reconstructPlayerPath();
-    t.checkExpect(this.mw3.playerReconstruct, false);
-    t.checkExpect(this.mw3.finalStatePlayer, true);
+  // test the initPlayerTrail method
+  void testInitPlayerTrail(Tester t) {
+    this.initMazeWorlds();
+    this.mw1.extendRoute(1);
+    this.mw1.reconstructPlayerPath();
+    t.checkExpect(this.mw1.playerTrail[1], (byte) 1);
+    this.mw1.initPlayerTrail();
+    t.checkExpect(this.mw1.playerReplayed, 0);
+    t.checkExpect(this.mw1.playerRouteLength, 1);
+    t.checkExpect(this.mw1.onRoute(1), false);
+    t.checkExpect(this.mw1.playerTrail[1], (byte) 0);
+    t.checkExpect(this.mw1.playerTrail[99], (byte) 1);
+  }
 
-    // test mw4
-    this.mw4.playerPath = new ArrayList<Vertex>(Arrays.asList(v1, v2));
-    this.mw4.playerPathAnimator = new ArrayList<Vertex>();
-    this.mw4.reconstructPlayerPath();
-    t.checkExpect(this.mw4.playerPathAnimator, new ArrayList<Vertex>(Arrays.asList(v2)));
-    t.checkExpect(this.mw4.playerPath, new ArrayList<Vertex>(Arrays.asList(v1)));
+  // test that the player's moves and the searches' shortest paths are counted
+  // the same way, once the player walks a shortest path
+  void testPathStatus(Tester t) {
+    this.initMazeWorlds();
+    this.initGraph();
+    this.searchSmallGraph(this.mw1);
+    this.mw1.move(MazeGraph.RIGHT);
+    this.mw1.move(MazeGraph.DOWN);
+    this.mw1.move(MazeGraph.RIGHT);
+    t.checkExpect(this.mw1.playerWon, true);
+    t.checkExpect(this.mw1.routeMoves(), 3);
+    this.advance(this.mw1.bfsWorker, this.mw1.bfsView, 100);
+    this.advance(this.mw1.dfsWorker, this.mw1.dfsView, 100);
+    t.checkExpect(this.mw1.bfsView.progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(this.mw1.shortestPathStatus(this.mw1.bfsView.progress),
+        "The shortest path is " + this.mw1.routeMoves() + " moves long");
+    t.checkExpect(this.mw1.shortestPathStatus(this.mw1.dfsView.progress),
+        "The shortest path is " + this.mw1.routeMoves() + " moves long");
+    t.checkExpect(this.mw1.offPathStatus(this.mw1.bfsView.progress),
+        (this.mw1.bfsView.progress.visitedCount - 4)
+            + " cells off the path before solving the maze");
+  }
 
-    // test mw5
-    this.mw5.playerPath = new ArrayList<Vertex>(Arrays.asList(v3, v1, v2));
-    this.mw5.playerPathAnimator = new ArrayList<Vertex>();
-    this.mw5.reconstructPlayerPath();
-    t.checkExpect(this.mw5.playerPathAnimator, new ArrayList<Vertex>(Arrays.asList(v2)));
-    t.checkExpect(this.mw5.playerPath, new ArrayList<Vertex>(Arrays.asList(v3, v1)));
+  // test that the cheapest path is counted in moves, as the dynamic status is
+  void testCheapestStatus(Tester t) {
+    this.initMazeWorlds();
+    this.initGraph();
+    this.searchSmallGraph(this.mw1);
+    this.mw1.cheapestWorker = new SolverWorker(new DialSolver(this.g1, 0, 5), 1, 0);
+    this.mw1.cheapestView = new SolverView(this.g1.size());
+    this.advance(this.mw1.cheapestWorker, this.mw1.cheapestView, 100);
+    t.checkExpect(this.mw1.cheapestView.progress.pathLength, 4);
+    t.checkExpect(this.mw1.cheapestStatus(this.mw1.cheapestView.progress),
+        "The cheapest path costs " + this.mw1.cheapestView.progress.pathCost + " over 3 moves");
+  }
+
+  // test the player's route, which erases every loop the player walks
+  void testExtendRoute(Tester t) {
+    this.initMazeWorlds();
+    t.checkExpect(this.mw1.onRoute(0), true);
+    t.checkExpect(this.mw1.routeMoves(), 0);
+    this.mw1.extendRoute(1);
+    this.mw1.extendRoute(2);
+    this.mw1.extendRoute(12);
+    this.mw1.extendRoute(11);
+    t.checkExpect(this.mw1.routeMoves(), 4);
+    t.checkExpect(this.mw1.routeIndex[12], 4);
+    // walking back into the route cuts off the loop
+    this.mw1.extendRoute(1);
+    t.checkExpect(this.mw1.routeMoves(), 1);
+    t.checkExpect(this.mw1.onRoute(2), false);
+    t.checkExpect(this.mw1.onRoute(12), false);
+    t.checkExpect(this.mw1.onRoute(11), false);
+    t.checkExpect(this.mw1.onRoute(1), true);
+    this.mw1.extendRoute(11);
+    t.checkExpect(this.mw1.playerRoute[2], 11);
+    t.checkExpect(this.mw1.routeIndex[11], 3);
+    // and back to the start erases everything
+    this.mw1.extendRoute(0);
+    t.checkExpect(this.mw1.routeMoves(), 0);
+    t.checkExpect(this.mw1.onRoute(11), false);
   }
 
-  // test the moveUp method
+  // test moving the player up
   void testMoveUp(Tester t) {
     this.initMazeWorlds();
 
@@ -2175,56 +7664,61 @@ class ExamplesMaze {
     this.mw1.width = 2;
     this.mw1.height = 2;
     this.mw1.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw1.graph = new MazeGraph(2, 2, this.mw1.edges);
     this.mw1.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw1.playerPath = new ArrayList<Vertex>();
+    this.mw1.setEnds(0, new int[] {3});
     this.mw1.player = v4;
-    this.mw1.moveUp();
+    this.mw1.move(MazeGraph.UP);
     t.checkExpect(this.mw1.player, v3);
-    t.checkExpect(this.mw1.playerPath, new ArrayList<Vertex>(Arrays.asList(v3)));
+    t.checkExpect(this.mw1.playerRouteLength, 2);
+    t.checkExpect(this.mw1.playerRoute[1], this.mw1.graph.id(v3));
 
     // test mw2
     this.mw2.width = 2;
     this.mw2.height = 2;
     this.mw2.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw2.graph = new MazeGraph(2, 2, this.mw2.edges);
     this.mw2.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw2.playerPath = new ArrayList<Vertex>();
+    this.mw2.setEnds(0, new int[] {3});
     this.mw2.player = v2;
-    this.mw2.moveUp();
+    this.mw2.move(MazeGraph.UP);
     t.checkExpect(this.mw2.player, v1);
-    t.checkExpect(this.mw2.playerPath, new ArrayList<Vertex>(Arrays.asList(v1)));
+    t.checkExpect(this.mw2.playerRouteLength, 1);
 
     // test mw3
     this.mw3.width = 2;
     this.mw3.height = 2;
     this.mw3.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw3.graph = new MazeGraph(2, 2, this.mw3.edges);
     this.mw3.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw3.playerPath = new ArrayList<Vertex>();
+    this.mw3.setEnds(0, new int[] {3});
     this.mw3.player = v1;
-    this.mw3.moveUp();
+    this.mw3.move(MazeGraph.UP);
     t.checkExpect(this.mw3.player, v1);
-    t.checkExpect(this.mw3.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw3.playerRouteLength, 1);
 
     // test mw4
     this.mw4.width = 2;
     this.mw4.height = 2;
     this.mw4.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw4.graph = new MazeGraph(2, 2, this.mw4.edges);
     this.mw4.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw4.playerPath = new ArrayList<Vertex>();
+    this.mw4.setEnds(0, new int[] {3});
     this.mw4.player = v3;
-    this.mw4.moveUp();
+    this.mw4.move(MazeGraph.UP);
     t.checkExpect(this.mw4.player, v3);
-    t.checkExpect(this.mw4.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw4.playerRouteLength, 1);
   }
 
-  // test the moveDown method
+  // test moving the player down
   void testMoveDown(Tester t) {
     this.initMazeWorlds();
 
@@ -2242,56 +7736,62 @@ class ExamplesMaze {
     this.mw1.width = 2;
     this.mw1.height = 2;
     this.mw1.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw1.graph = new MazeGraph(2, 2, this.mw1.edges);
     this.mw1.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw1.playerPath = new ArrayList<Vertex>();
+    this.mw1.setEnds(0, new int[] {3});
     this.mw1.player = v4;
-    this.mw1.moveDown();
+    this.mw1.move(MazeGraph.DOWN);
     t.checkExpect(this.mw1.player, v4);
-    t.checkExpect(this.mw1.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw1.playerRouteLength, 1);
 
     // test mw2
     this.mw2.width = 2;
     this.mw2.height = 2;
     this.mw2.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw2.graph = new MazeGraph(2, 2, this.mw2.edges);
     this.mw2.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw2.playerPath = new ArrayList<Vertex>();
+    this.mw2.setEnds(0, new int[] {3});
     this.mw2.player = v2;
-    this.mw2.moveDown();
+    this.mw2.move(MazeGraph.DOWN);
     t.checkExpect(this.mw2.player, v2);
-    t.checkExpect(this.mw2.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw2.playerRouteLength, 1);
 
     // test mw3
     this.mw3.width = 2;
     this.mw3.height = 2;
     this.mw3.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw3.graph = new MazeGraph(2, 2, this.mw3.edges);
     this.mw3.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw3.playerPath = new ArrayList<Vertex>();
+    this.mw3.setEnds(0, new int[] {3});
     this.mw3.player = v1;
-    this.mw3.moveDown();
+    this.mw3.move(MazeGraph.DOWN);
     t.checkExpect(this.mw3.player, v2);
-    t.checkExpect(this.mw3.playerPath, new ArrayList<Vertex>(Arrays.asList(v2)));
+    t.checkExpect(this.mw3.playerRouteLength, 2);
+    t.checkExpect(this.mw3.playerRoute[1], this.mw3.graph.id(v2));
 
     // test mw4
     this.mw4.width = 2;
     this.mw4.height = 2;
     this.mw4.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw4.graph = new MazeGraph(2, 2, this.mw4.edges);
     this.mw4.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw4.playerPath = new ArrayList<Vertex>();
+    this.mw4.setEnds(0, new int[] {3});
     this.mw4.player = v3;
-    this.mw4.moveDown();
+    this.mw4.move(MazeGraph.DOWN);
     t.checkExpect(this.mw4.player, v4);
-    t.checkExpect(this.mw4.playerPath, new ArrayList<Vertex>(Arrays.asList(v4)));
+    t.checkExpect(this.mw4.playerRouteLength, 2);
+    t.checkExpect(this.mw4.playerRoute[1], this.mw4.graph.id(v4));
   }
 
-  // test the moveLeft method
+  // test moving the player left
   void testMoveLeft(Tester t) {
     this.initMazeWorlds();
 
@@ -2309,56 +7809,61 @@ class ExamplesMaze {
     this.mw1.width = 2;
     this.mw1.height = 2;
     this.mw1.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw1.graph = new MazeGraph(2, 2, this.mw1.edges);
     this.mw1.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw1.playerPath = new ArrayList<Vertex>();
+    this.mw1.setEnds(0, new int[] {3});
     this.mw1.player = v4;
-    this.mw1.moveLeft();
+    this.mw1.move(MazeGraph.LEFT);
     t.checkExpect(this.mw1.player, v2);
-    t.checkExpect(this.mw1.playerPath, new ArrayList<Vertex>(Arrays.asList(v2)));
+    t.checkExpect(this.mw1.playerRouteLength, 2);
+    t.checkExpect(this.mw1.playerRoute[1], this.mw1.graph.id(v2));
 
     // test mw2
     this.mw2.width = 2;
     this.mw2.height = 2;
     this.mw2.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw2.graph = new MazeGraph(2, 2, this.mw2.edges);
     this.mw2.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw2.playerPath = new ArrayList<Vertex>();
+    this.mw2.setEnds(0, new int[] {3});
     this.mw2.player = v2;
-    this.mw2.moveLeft();
+    this.mw2.move(MazeGraph.LEFT);
     t.checkExpect(this.mw2.player, v2);
-    t.checkExpect(this.mw2.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw2.playerRouteLength, 1);
 
     // test mw3
     this.mw3.width = 2;
     this.mw3.height = 2;
     this.mw3.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw3.graph = new MazeGraph(2, 2, this.mw3.edges);
     this.mw3.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw3.playerPath = new ArrayList<Vertex>();
+    this.mw3.setEnds(0, new int[] {3});
     this.mw3.player = v1;
-    this.mw3.moveLeft();
+    this.mw3.move(MazeGraph.LEFT);
     t.checkExpect(this.mw3.player, v1);
-    t.checkExpect(this.mw3.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw3.playerRouteLength, 1);
 
     // test mw4
     this.mw4.width = 2;
     this.mw4.height = 2;
     this.mw4.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw4.graph = new MazeGraph(2, 2, this.mw4.edges);
     this.mw4.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw4.playerPath = new ArrayList<Vertex>();
+    this.mw4.setEnds(0, new int[] {3});
     this.mw4.player = v3;
-    this.mw4.moveLeft();
+    this.mw4.move(MazeGraph.LEFT);
     t.checkExpect(this.mw4.player, v1);
-    t.checkExpect(this.mw4.playerPath, new ArrayList<Vertex>(Arrays.asList(v1)));
+    t.checkExpect(this.mw4.playerRouteLength, 1);
   }
 
-  // test the moveRight method
+  // test moving the player right
   void testMoveRight(Tester t) {
     this.initMazeWorlds();
 
@@ -2376,127 +7881,105 @@ class ExamplesMaze {
     this.mw1.width = 2;
     this.mw1.height = 2;
     this.mw1.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw1.graph = new MazeGraph(2, 2, this.mw1.edges);
     this.mw1.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw1.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw1.playerPath = new ArrayList<Vertex>();
+    this.mw1.setEnds(0, new int[] {3});
     this.mw1.player = v4;
-    this.mw1.moveRight();
+    this.mw1.move(MazeGraph.RIGHT);
     t.checkExpect(this.mw1.player, v4);
-    t.checkExpect(this.mw1.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw1.playerRouteLength, 1);
 
     // test mw2
     this.mw2.width = 2;
     this.mw2.height = 2;
     this.mw2.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw2.graph = new MazeGraph(2, 2, this.mw2.edges);
     this.mw2.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw2.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw2.playerPath = new ArrayList<Vertex>();
+    this.mw2.setEnds(0, new int[] {3});
     this.mw2.player = v2;
-    this.mw2.moveRight();
+    this.mw2.move(MazeGraph.RIGHT);
     t.checkExpect(this.mw2.player, v4);
-    t.checkExpect(this.mw2.playerPath, new ArrayList<Vertex>(Arrays.asList(v4)));
+    t.checkExpect(this.mw2.playerRouteLength, 2);
+    t.checkExpect(this.mw2.playerRoute[1], this.mw2.graph.id(v4));
 
     // test mw3
     this.mw3.width = 2;
     this.mw3.height = 2;
     this.mw3.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw3.graph = new MazeGraph(2, 2, this.mw3.edges);
     this.mw3.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw3.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw3.playerPath = new ArrayList<Vertex>();
+    this.mw3.setEnds(0, new int[] {3});
     this.mw3.player = v1;
-    this.mw3.moveRight();
+    this.mw3.move(MazeGraph.RIGHT);
     t.checkExpect(this.mw3.player, v3);
-    t.checkExpect(this.mw3.playerPath, new ArrayList<Vertex>(Arrays.asList(v3)));
+    t.checkExpect(this.mw3.playerRouteLength, 2);
+    t.checkExpect(this.mw3.playerRoute[1], this.mw3.graph.id(v3));
 
     // test mw4
     this.mw4.width = 2;
     this.mw4.height = 2;
     this.mw4.edges = new ArrayList<Edge>(Arrays.asList(e1, e2, e3, e4));
+    this.mw4.graph = new MazeGraph(2, 2, this.mw4.edges);
     this.mw4.vertices = new ArrayList<ArrayList<Vertex>>();
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v1, v2)));
     this.mw4.vertices.add(new ArrayList<Vertex>(Arrays.asList(v3, v4)));
-    this.mw4.playerPath = new ArrayList<Vertex>();
+    this.mw4.setEnds(0, new int[] {3});
     this.mw4.player = v3;
-    this.mw4.moveRight();
+    this.mw4.move(MazeGraph.RIGHT);
     t.checkExpect(this.mw4.player, v3);
-    t.checkExpect(this.mw4.playerPath, new ArrayList<Vertex>());
+    t.checkExpect(this.mw4.playerRouteLength, 1);
   }
 
   // test the reset method
   void testReset(Tester t) {
     this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
-
-    mw1.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    mw1.cameFromEdgeDfs.put(v1, e1);
-    mw1.cameFromEdgeDfs.put(v2, e2);
-    mw1.cameFromEdgeDfs.put(v3, e3);
-    mw1.cameFromEdgeDfs.put(v4, e4);
-    mw1.cameFromEdgeDfs.put(v5, e5);
-
-    mw1.dfsPath = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw1.dfsVisited = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw1.dfsWorklist = new Stack<Vertex>();
-    mw1.dfsWorklist.push(v1);
-    mw1.dfsWorklist.push(v2);
-    mw1.dfsWorklist.push(v3);
-    mw1.dfsWorklist.push(v4);
-    mw1.dfsWorklist.push(v5);
 
     mw1.animatingDfs = true;
-    mw1.reconstructDfs = true;
-    mw1.finalStateDfs = true;
-    mw1.solvingDfs = true;
-
-    mw1.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    mw1.cameFromEdgeBfs.put(v1, e1);
-    mw1.cameFromEdgeBfs.put(v2, e2);
-    mw1.cameFromEdgeBfs.put(v3, e3);
-    mw1.cameFromEdgeBfs.put(v4, e4);
-    mw1.cameFromEdgeBfs.put(v5, e5);
-
-    mw1.bfsPath = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw1.bfsVisited = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw1.bfsWorklist = new LinkedList<Vertex>();
-    mw1.bfsWorklist.add(v1);
-    mw1.bfsWorklist.add(v2);
-    mw1.bfsWorklist.add(v3);
-    mw1.bfsWorklist.add(v4);
-    mw1.bfsWorklist.add(v5);
-
     mw1.animatingBfs = true;
-    mw1.reconstructBfs = true;
-    mw1.finalStateBfs = true;
-    mw1.solvingBfs = true;
+    mw1.racing = true;
+    SolverWorker oldDfs = mw1.dfsWorker;
+    SolverWorker oldBfs = mw1.bfsWorker;
+    SolverWorker oldCheapest = mw1.cheapestWorker;
 
     mw1.reset();
 
-    t.checkExpect(mw1.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw1.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw1.vertices.get(mw1.width - 1).get(mw1.height - 1))));
-    t.checkExpect(mw1.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw1.dfsWorklist, new Stack<Vertex>());
+    // the old searches are cancelled and replaced by fresh ones
+    t.checkExpect(oldDfs.cancelled, true);
+    t.checkExpect(oldBfs.cancelled, true);
+    t.checkExpect(oldCheapest.cancelled, true);
+    t.checkExpect(mw1.graph, new MazeGraph(mw1.width, mw1.height, mw1.edges));
+    t.checkExpect(mw1.dfsWorker.solver,
+        new DfsSolver(mw1.graph, 0, mw1.width * mw1.height - 1));
+    t.checkExpect(mw1.dfsWorker.isStarted(), false);
+    t.checkExpect(mw1.dfsView, new SolverView(mw1.width * mw1.height));
     t.checkExpect(mw1.animatingDfs, false);
-    t.checkExpect(mw1.reconstructDfs, false);
-    t.checkExpect(mw1.finalStateDfs, false);
-    t.checkExpect(mw1.solvingDfs, false);
-    t.checkExpect(mw1.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw1.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw1.vertices.get(mw1.width - 1).get(mw1.height - 1))));
-    t.checkExpect(mw1.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw1.bfsWorklist, new LinkedList<Vertex>());
+    t.checkExpect(mw1.bfsWorker.solver,
+        new BfsSolver(mw1.graph, 0, mw1.width * mw1.height - 1));
+    t.checkExpect(mw1.bfsWorker.isStarted(), false);
+    t.checkExpect(mw1.bfsView, new SolverView(mw1.width * mw1.height));
     t.checkExpect(mw1.animatingBfs, false);
-    t.checkExpect(mw1.reconstructBfs, false);
-    t.checkExpect(mw1.finalStateBfs, false);
-    t.checkExpect(mw1.solvingBfs, false);
+    t.checkExpect(mw1.cheapestWorker.solver,
+        new DialSolver(mw1.graph, 0, mw1.width * mw1.height - 1));
+    t.checkExpect(mw1.animatingCheapest, false);
+    t.checkExpect(mw1.racing, false);
+
+    // resetting leaves dynamic mode
+    mw1.toggleDynamic();
+    mw1.reset();
+    t.checkExpect(mw1.dynamic, false);
+    t.checkExpect(mw1.planner, null);
+
+    // a weighted maze stays weighted, with loops, when it is reset
+    mw1.weighted = true;
+    mw1.reset();
+    t.checkExpect(mw1.weighted, true);
+    t.checkExpect(mw1.edges.size() > 99, true);
   }
 
   // test the resetPlayer method
@@ -2505,8 +7988,8 @@ class ExamplesMaze {
     this.initVertices();
     this.initEdges();
 
-    mw1.playerPathAnimator = new ArrayList<Vertex>();
-    mw1.playerPath = new ArrayList<Vertex>();
+    mw1.extendRoute(1);
+    mw1.playerReplayed = 1;
     mw1.player = v3;
     mw1.playerReconstruct = true;
     mw1.finalStatePlayer = true;
@@ -2515,9 +7998,10 @@ class ExamplesMaze {
 
     mw1.resetPlayer();
 
-    t.checkExpect(mw1.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw1.vertices.get(mw1.width - 1).get(mw1.height - 1))));
-    t.checkExpect(mw1.playerPath, new ArrayList<Vertex>(Arrays.asList(mw1.player)));
+    t.checkExpect(mw1.playerReplayed, 0);
+    t.checkExpect(mw1.playerTrail[mw1.width * mw1.height - 1], (byte) 1);
+    t.checkExpect(mw1.playerRouteLength, 1);
+    t.checkExpect(mw1.playerRoute[0], 0);
     t.checkExpect(mw1.player, mw1.vertices.get(0).get(0));
     t.checkExpect(mw1.playerReconstruct, false);
     t.checkExpect(mw1.finalStatePlayer, false);
@@ -2550,178 +8034,1621 @@ class ExamplesMaze {
     t.checkExpect(mw3.manualGameplay, true);
 
     // test mw4
-    mw4.playerPathAnimator = new ArrayList<Vertex>();
-    mw4.playerPath = new ArrayList<Vertex>();
+    mw4.extendRoute(1);
+    mw4.playerReplayed = 1;
     mw4.player = v3;
     mw4.playerReconstruct = true;
     mw4.finalStatePlayer = true;
     mw4.manualGameplay = true;
     mw4.playerWon = true;
     mw4.onKeyEvent("escape");
-    t.checkExpect(mw4.playerPathAnimator,
-        new ArrayList<Vertex>(Arrays.asList(mw4.vertices.get(mw4.width - 1).get(mw4.height - 1))));
-    t.checkExpect(mw4.playerPath, new ArrayList<Vertex>(Arrays.asList(mw4.player)));
+    t.checkExpect(mw4.playerReplayed, 0);
+    t.checkExpect(mw4.playerTrail[mw4.width * mw4.height - 1], (byte) 1);
+    t.checkExpect(mw4.playerRouteLength, 1);
+    t.checkExpect(mw4.playerRoute[0], 0);
     t.checkExpect(mw4.player, mw4.vertices.get(0).get(0));
     t.checkExpect(mw4.playerReconstruct, false);
     t.checkExpect(mw4.finalStatePlayer, false);
     t.checkExpect(mw4.manualGameplay, false);
     t.checkExpect(mw4.playerWon, false);
 
-    // test mw5
-    mw5.cameFromEdgeDfs = new HashMap<Vertex, Edge>();
-    mw5.cameFromEdgeDfs.put(v1, e1);
-    mw5.cameFromEdgeDfs.put(v2, e2);
-    mw5.cameFromEdgeDfs.put(v3, e3);
-    mw5.cameFromEdgeDfs.put(v4, e4);
-    mw5.cameFromEdgeDfs.put(v5, e5);
-
-    mw5.dfsPath = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw5.dfsVisited = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw5.dfsWorklist = new Stack<Vertex>();
-    mw5.dfsWorklist.push(v1);
-    mw5.dfsWorklist.push(v2);
-    mw5.dfsWorklist.push(v3);
-    mw5.dfsWorklist.push(v4);
-    mw5.dfsWorklist.push(v5);
-
-    mw5.animatingDfs = true;
-    mw5.reconstructDfs = true;
-    mw5.finalStateDfs = true;
-    mw5.solvingDfs = true;
-
-    mw5.cameFromEdgeBfs = new HashMap<Vertex, Edge>();
-    mw5.cameFromEdgeBfs.put(v1, e1);
-    mw5.cameFromEdgeBfs.put(v2, e2);
-    mw5.cameFromEdgeBfs.put(v3, e3);
-    mw5.cameFromEdgeBfs.put(v4, e4);
-    mw5.cameFromEdgeBfs.put(v5, e5);
-
-    mw5.bfsPath = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw5.bfsVisited = new ArrayList<Vertex>(Arrays.asList(v1, v2, v3, v4, v5));
-
-    mw5.bfsWorklist = new LinkedList<Vertex>();
-    mw5.bfsWorklist.add(v1);
-    mw5.bfsWorklist.add(v2);
-    mw5.bfsWorklist.add(v3);
-    mw5.bfsWorklist.add(v4);
-    mw5.bfsWorklist.add(v5);
-
-    mw5.animatingBfs = true;
-    mw5.reconstructBfs = true;
-    mw5.finalStateBfs = true;
-    mw5.solvingBfs = true;
+    // test mw5, whose searches run on their own threads
+    mw5.onKeyEvent("d");
+    t.checkExpect(mw5.animatingDfs, true);
+    t.checkExpect(mw5.animatingBfs, false);
+    t.checkExpect(mw5.dfsWorker.isStarted(), true);
+    t.checkExpect(mw5.bfsWorker.isStarted(), true);
+    SolverWorker oldDfs = mw5.dfsWorker;
+    SolverWorker oldBfs = mw5.bfsWorker;
+
+    // racing shows both searches without restarting them
+    mw5.onKeyEvent("c");
+    t.checkExpect(mw5.racing, true);
+    t.checkExpect(mw5.animatingDfs, false);
+    t.checkExpect(mw5.dfsWorker, oldDfs);
+    mw5.onKeyEvent("m");
+    t.checkExpect(mw5.manualGameplay, false);
+    mw5.onKeyEvent("b");
+    t.checkExpect(mw5.racing, false);
+    t.checkExpect(mw5.animatingBfs, true);
 
     mw5.onKeyEvent("r");
 
-    t.checkExpect(mw5.cameFromEdgeDfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw5.dfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw5.vertices.get(mw5.width - 1).get(mw5.height - 1))));
-    t.checkExpect(mw5.dfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw5.dfsWorklist, new Stack<Vertex>());
+    t.checkExpect(oldDfs.cancelled, true);
+    t.checkExpect(oldBfs.cancelled, true);
+    oldDfs.awaitDone(10000);
+    oldBfs.awaitDone(10000);
+    t.checkExpect(oldDfs.solver.isDone(), true);
+    t.checkExpect(oldBfs.solver.isDone(), true);
+    t.checkExpect(mw5.dfsWorker.isStarted(), false);
+    t.checkExpect(mw5.bfsWorker.isStarted(), false);
     t.checkExpect(mw5.animatingDfs, false);
-    t.checkExpect(mw5.reconstructDfs, false);
-    t.checkExpect(mw5.finalStateDfs, false);
-    t.checkExpect(mw5.solvingDfs, false);
-    t.checkExpect(mw5.cameFromEdgeBfs, new HashMap<Vertex, Edge>());
-    t.checkExpect(mw5.bfsPath,
-        new ArrayList<Vertex>(Arrays.asList(mw5.vertices.get(mw5.width - 1).get(mw5.height - 1))));
-    t.checkExpect(mw5.bfsVisited, new ArrayList<Vertex>());
-    t.checkExpect(mw5.bfsWorklist, new LinkedList<Vertex>());
     t.checkExpect(mw5.animatingBfs, false);
-    t.checkExpect(mw5.reconstructBfs, false);
-    t.checkExpect(mw5.finalStateBfs, false);
-    t.checkExpect(mw5.solvingBfs, false);
 
+    // racing can also start the searches
+    mw5.onKeyEvent("c");
+    t.checkExpect(mw5.racing, true);
+    t.checkExpect(mw5.dfsWorker.isStarted(), true);
+    t.checkExpect(mw5.cheapestWorker.isStarted(), true);
+
+    // the cheapest path search can be shown instead, and blocks manual mode
+    mw5.onKeyEvent("k");
+    t.checkExpect(mw5.animatingCheapest, true);
+    t.checkExpect(mw5.racing, false);
+    mw5.onKeyEvent("m");
+    t.checkExpect(mw5.manualGameplay, false);
+    mw5.onKeyEvent("d");
+    t.checkExpect(mw5.animatingCheapest, false);
+    t.checkExpect(mw5.animatingDfs, true);
+
+    // weighted terrain toggles on a new maze with loops
+    mw5.onKeyEvent("w");
+    t.checkExpect(mw5.weighted, true);
+    t.checkExpect(mw5.edges.size() > mw5.width * mw5.height - 1, true);
+    t.checkExpect(mw5.animatingDfs, false);
+    mw5.onKeyEvent("w");
+    t.checkExpect(mw5.weighted, false);
+    t.checkExpect(mw5.edges.size(), mw5.width * mw5.height - 1);
+
+    // dynamic mode holds off the searches until it ends
+    mw5.onKeyEvent("y");
+    t.checkExpect(mw5.dynamic, true);
+    mw5.onKeyEvent("d");
+    t.checkExpect(mw5.animatingDfs, false);
+    t.checkExpect(mw5.dfsWorker.isStarted(), false);
+    mw5.onKeyEvent("f");
+    t.checkExpect(mw5.edges.size() == mw5.width * mw5.height - 1, false);
+    mw5.onKeyEvent("y");
+    t.checkExpect(mw5.dynamic, false);
   }
 
   // test onTick method
   void testOnTick(Tester t) {
     this.initMazeWorlds();
-    this.initVertices();
-    this.initEdges();
+    this.initGraph();
 
-    // test mw2 dfs
-    this.mw2.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw2.dfsVisited = new ArrayList<Vertex>();
-    this.mw2.dfsWorklist = new Stack<Vertex>();
-    this.mw2.dfsWorklist.add(this.v1);
-    this.mw2.vertices.get(mw2.width - 1).set(mw2.height - 1, v2);
-    this.mw2.solvingDfs = true;
-    this.mw2.solvingBfs = false;
-    this.mw2.reconstructDfs = false;
-    this.mw2.reconstructBfs = false;
-    this.mw2.playerReconstruct = false;
+    // nothing is shown before the searches publish any progress
+    this.searchSmallGraph(this.mw2);
+    this.mw2.animatingDfs = true;
     this.mw2.onTick();
-    t.checkExpect(this.mw2.dfsWorklist.size(), 2);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw2.dfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw2.cameFromEdgeDfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw2.dfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    // test mw3 dfs
-    this.mw3.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw3.dfsVisited = new ArrayList<Vertex>();
-    this.mw3.dfsWorklist = new Stack<Vertex>();
-    this.mw3.dfsWorklist.add(this.v1);
-    this.mw3.vertices.get(mw3.width - 1).set(mw3.height - 1, v3);
-    this.mw3.onTick();
-    this.mw3.solvingDfs = true;
-    this.mw3.solvingBfs = false;
-    this.mw3.reconstructDfs = false;
-    this.mw3.reconstructBfs = false;
-    this.mw3.playerReconstruct = false;
-    t.checkExpect(this.mw3.dfsWorklist.size(), 1);
-    t.checkExpect(this.mw3.dfsWorklist.contains(this.v2), false);
-    t.checkExpect(this.mw3.cameFromEdgeDfs.containsKey(this.v2), false);
-    t.checkExpect(this.mw3.dfsWorklist.contains(this.v3), false);
-    t.checkExpect(this.mw3.cameFromEdgeDfs.containsKey(this.v3), false);
-    t.checkExpect(this.mw3.dfsVisited, new ArrayList<Vertex>());
-
-    // test mw2 bfs
-    this.mw2.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw2.bfsVisited = new ArrayList<Vertex>();
-    this.mw2.bfsWorklist = new LinkedList<Vertex>();
-    this.mw2.bfsWorklist.add(this.v1);
-    this.mw2.vertices.get(mw2.width - 1).set(mw2.height - 1, v2);
-    this.mw2.solvingDfs = false;
-    this.mw2.solvingBfs = true;
-    this.mw2.reconstructDfs = false;
-    this.mw2.reconstructBfs = false;
-    this.mw2.playerReconstruct = false;
+    t.checkExpect(this.mw2.dfsView.isVisited(0), false);
+    t.checkExpect(this.mw2.bfsView.isVisited(0), false);
+
+    // each tick catches the views up with what has been published
+    this.mw2.dfsWorker.solver.step(2);
+    this.mw2.bfsWorker.solver.step(2);
     this.mw2.onTick();
-    t.checkExpect(this.mw2.bfsWorklist.size(), 2);
-    t.checkExpect(this.mw2.bfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw2.cameFromEdgeBfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw2.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw2.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw2.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
-
-    // test mw3 bfs
-    this.mw3.edges =
-        new ArrayList<Edge>(Arrays.asList(this.e1, this.e2, this.e3, this.e4, this.e5));
-    this.mw3.bfsVisited = new ArrayList<Vertex>();
-    this.mw3.bfsWorklist = new LinkedList<Vertex>();
-    this.mw3.bfsWorklist.add(this.v1);
-    this.mw3.vertices.get(mw3.width - 1).set(mw3.height - 1, v3);
-    this.mw3.solvingDfs = false;
-    this.mw3.solvingBfs = true;
-    this.mw3.reconstructDfs = false;
-    this.mw3.reconstructBfs = false;
-    this.mw3.playerReconstruct = false;
+    t.checkExpect(this.mw2.dfsView.isVisited(0), false);
+    this.mw2.dfsWorker.publish();
+    this.mw2.bfsWorker.publish();
+    this.mw2.onTick();
+    t.checkExpect(this.mw2.dfsView.isVisited(0), true);
+    t.checkExpect(this.mw2.dfsView.isVisited(1), true);
+    t.checkExpect(this.mw2.dfsView.isVisited(3), false);
+    t.checkExpect(this.mw2.bfsView.isVisited(3), true);
+    t.checkExpect(this.mw2.bfsView.isVisited(1), false);
+
+    // a worker run to completion shows the whole search and its path
+    this.searchSmallGraph(this.mw3);
+    this.mw3.animatingBfs = true;
+    this.mw3.dfsWorker.run();
+    this.mw3.bfsWorker.run();
+    this.mw3.onTick();
+    t.checkExpect(this.mw3.dfsView.progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(this.mw3.bfsView.progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(this.mw3.bfsView.onPath(3), true);
+    t.checkExpect(this.mw3.bfsView.onPath(1), false);
+    t.checkExpect(this.mw3.dfsView.onPath(1), true);
+
+    // the player's path is reconstructed one cell per tick
+    this.mw4.playerReconstruct = true;
+    this.mw4.extendRoute(1);
+    this.mw4.onTick();
+    t.checkExpect(this.mw4.playerReplayed, 1);
+    t.checkExpect(this.mw4.playerTrail[1], (byte) 1);
+    t.checkExpect(this.mw4.playerTrail[0], (byte) 0);
+    t.checkExpect(this.mw4.dfsView.isVisited(0), false);
+
+    // in dynamic mode, a wall flips every FLIP_TICKS ticks
+    this.mw1.toggleDynamic();
+    int edges = this.mw1.edges.size();
+    for (int i = 1; i < MazeWorld.FLIP_TICKS; i++) {
+      this.mw1.onTick();
+    }
+    t.checkExpect(this.mw1.edges.size(), edges);
+    t.checkExpect(this.mw1.ticksUntilFlip, 1);
+    this.mw1.onTick();
+    t.checkExpect(Math.abs(this.mw1.edges.size() - edges), 1);
+    t.checkExpect(this.mw1.ticksUntilFlip, MazeWorld.FLIP_TICKS);
+  }
+
+  // test the CorridorRuns class
+  void testCorridorRuns(Tester t) {
+    this.initGraph();
+    CorridorRuns runs = new CorridorRuns(this.g1);
+    t.checkExpect(runs.rowCount, 3);
+    t.checkExpect(runs.rowStart, new int[] {0, 2, 3});
+    t.checkExpect(runs.rowLength, new int[] {2, 1, 3});
+    t.checkExpect(runs.columnCount, 2);
+    t.checkExpect(runs.columnStart, new int[] {0, 1});
+    t.checkExpect(runs.columnLength, new int[] {2, 2});
+
+    // the runs are kept until the maze changes
+    this.initMazeWorlds();
+    CorridorRuns cached = this.mw1.corridors();
+    t.checkExpect(this.mw1.corridors() == cached, true);
+    int cells = 0;
+    for (int i = 0; i < cached.rowCount; i++) {
+      cells += cached.rowLength[i];
+    }
+    t.checkExpect(cells, 100);
+    this.mw1.reset();
+    t.checkExpect(this.mw1.corridors, null);
+    t.checkExpect(this.mw1.corridors() == cached, false);
+  }
+
+  // test the drawRacePanel method
+  void testDrawRacePanel(Tester t) {
+    this.initMazeWorlds();
+    this.initGraph();
+    this.searchSmallGraph(this.mw1);
+    WorldScene ws = new WorldScene(30, 20);
+    this.mw1.drawRacePanel(ws, this.mw1.bfsView, 0, 0, 10, Color.PINK, Color.MAGENTA);
+    WorldScene expected = new WorldScene(30, 20);
+    // the row runs: the start and its neighbor, the top right cell, and the
+    // bottom row, whose two white cells are one rectangle
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.GREEN), 5, 5);
+    expected.placeImageXY(new RectangleImage(2, 8, OutlineMode.SOLID, Color.WHITE), 10, 5);
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.WHITE), 15, 5);
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.WHITE), 25, 5);
+    expected.placeImageXY(new RectangleImage(18, 8, OutlineMode.SOLID, Color.WHITE), 10, 15);
+    expected.placeImageXY(new RectangleImage(2, 8, OutlineMode.SOLID, Color.WHITE), 20, 15);
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.RED), 25, 15);
+    // the column runs
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.GREEN), 5, 5);
+    expected.placeImageXY(new RectangleImage(8, 2, OutlineMode.SOLID, Color.WHITE), 5, 10);
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.WHITE), 5, 15);
+    expected.placeImageXY(new RectangleImage(8, 18, OutlineMode.SOLID, Color.WHITE), 15, 10);
+    t.checkExpect(ws, expected);
+
+    // once solved, the path along the bottom row is one rectangle
+    this.advance(this.mw1.bfsWorker, this.mw1.bfsView, 100);
+    ws = new WorldScene(30, 20);
+    this.mw1.drawRaceRun(ws, this.mw1.bfsView, 3, 3, 1, 0, 0, 10, Color.PINK, Color.MAGENTA);
+    expected = new WorldScene(30, 20);
+    expected.placeImageXY(new RectangleImage(18, 8, OutlineMode.SOLID, Color.MAGENTA), 10, 15);
+    expected.placeImageXY(new RectangleImage(2, 8, OutlineMode.SOLID, Color.MAGENTA), 20, 15);
+    expected.placeImageXY(new RectangleImage(8, 8, OutlineMode.SOLID, Color.RED), 25, 15);
+    t.checkExpect(ws, expected);
+  }
+
+  // test the ImageCache class
+  void testImageCache(Tester t) {
+    WorldImage white = ImageCache.rectangle(8, 8, Color.WHITE);
+    t.checkExpect(white, new RectangleImage(8, 8, OutlineMode.SOLID, Color.WHITE));
+    t.checkExpect(ImageCache.rectangle(8, 8, Color.WHITE) == white, true);
+    t.checkExpect(ImageCache.rectangle(8, 8, new Color(255, 255, 255)) == white, true);
+    t.checkExpect(ImageCache.rectangle(8, 8, Color.BLACK) == white, false);
+    t.checkExpect(ImageCache.rectangle(8, 2, Color.WHITE) == white, false);
+    t.checkExpect(ImageCache.rectangle(2, 8, Color.WHITE),
+        new RectangleImage(2, 8, OutlineMode.SOLID, Color.WHITE));
+
+    WorldImage mode = ImageCache.text("Mode: None", 15, Color.BLACK);
+    t.checkExpect(mode, new TextImage("Mode: None", 15, FontStyle.BOLD, Color.BLACK));
+    t.checkExpect(ImageCache.text("Mode: None", 15, Color.BLACK) == mode, true);
+    t.checkExpect(ImageCache.text("Mode: None", 12, Color.BLACK) == mode, false);
+    t.checkExpect(ImageCache.text("Mode: None", 15, Color.RED),
+        new TextImage("Mode: None", 15, FontStyle.BOLD, Color.RED));
+    t.checkExpect(ImageCache.text("Mode: None", 15, Color.BLACK) == mode, true);
+
+    // a full cache starts over rather than growing
+    for (int i = 0; i <= ImageCache.CAPACITY; i++) {
+      ImageCache.text("frame " + i, 10, Color.BLACK);
+      ImageCache.rectangle(i, 1, Color.BLACK);
+    }
+    t.checkExpect(ImageCache.textCount <= ImageCache.CAPACITY, true);
+    t.checkExpect(ImageCache.rectangleCount <= ImageCache.CAPACITY, true);
+    t.checkExpect(ImageCache.text("Mode: None", 15, Color.BLACK) == mode, false);
+    t.checkExpect(ImageCache.rectangle(8, 8, Color.WHITE), white);
+
+    // colors are shared by their RGB value
+    Color pink = ImageCache.color(Color.PINK.getRGB());
+    t.checkExpect(pink, Color.PINK);
+    t.checkExpect(ImageCache.color(new Color(255, 175, 175).getRGB()) == pink, true);
+    t.checkExpect(ImageCache.color(Color.BLACK.getRGB()), Color.BLACK);
+    t.checkExpect(ImageCache.color(Color.BLACK.getRGB()) == pink, false);
+    for (int i = 0; i <= ImageCache.CAPACITY; i++) {
+      ImageCache.color(0xFF000000 | i);
+    }
+    t.checkExpect(ImageCache.colorCount <= ImageCache.CAPACITY, true);
+    t.checkExpect(ImageCache.color(Color.PINK.getRGB()), Color.PINK);
+
+    // the same scene drawn twice places the same images
+    this.initMazeWorlds();
+    t.checkExpect(this.mw1.makeScene(), this.mw1.makeScene());
+  }
+
+  // test the viewport of a maze too tall for the window
+  void testViewport(Tester t) {
+    this.initMazeWorlds();
+    MazeWorld tall = new MazeWorld(10, 200, new Random(1));
+    t.checkExpect(tall.cellSize, 4);
+    t.checkExpect(tall.viewWidth(), 40);
+    t.checkExpect(tall.viewHeight(), 600);
+    t.checkExpect(this.mw1.viewWidth(), 600);
+    t.checkExpect(this.mw5.viewWidth(), 700);
+
+    // the arrow keys pan by a quarter window, staying inside the maze
+    tall.onKeyEvent("down");
+    t.checkExpect(tall.cameraY, 150);
+    t.checkExpect(tall.renderer.allDirty, true);
+    tall.onKeyEvent("down");
+    tall.onKeyEvent("down");
+    t.checkExpect(tall.cameraY, 200);
+    ComputedPixelImage front = (ComputedPixelImage) tall.renderer.draw(tall);
+    t.checkExpect(front.getHeight(), 600.0);
+    t.checkExpect(front.getPixel(38, 598), Color.RED);
+    tall.onKeyEvent("left");
+    t.checkExpect(tall.cameraX, 0);
+    tall.onKeyEvent("up");
+    t.checkExpect(tall.cameraY, 50);
+
+    // only the cells in the window are painted, and touched
+    tall.renderer.draw(tall);
+    t.checkExpect(tall.renderer.firstRow, 12);
+    t.checkExpect(tall.renderer.rows, 151);
+    t.checkExpect(tall.renderer.columns, 10);
+    tall.renderer.touch(0);
+    t.checkExpect(tall.renderer.dirtyCount, 0);
+    tall.renderer.touch(tall.graph.id(3, 100));
+    t.checkExpect(tall.renderer.dirtyCount, 1);
+    tall.playerTrail[tall.graph.id(3, 100)] = 1;
+    tall.playerReconstruct = true;
+    tall.renderer.draw(tall);
+    t.checkExpect(front.getPixel(14, 100 * 4 - 50 + 2), Color.ORANGE);
+
+    // zooming keeps the middle of the window in place
+    tall.onKeyEvent("=");
+    t.checkExpect(tall.cellSize, 8);
+    t.checkExpect(tall.viewWidth(), 80);
+    t.checkExpect(tall.cameraY, 400);
+    t.checkExpect(tall.renderer.front.getWidth(), 80.0);
+    tall.onKeyEvent("-");
+    t.checkExpect(tall.cellSize, 4);
+    t.checkExpect(tall.cameraY, 50);
+    tall.onKeyEvent("-");
+    t.checkExpect(tall.cellSize, 4);
+    t.checkExpect(tall.lodLevel, 1);
+    tall.onKeyEvent("=");
+    t.checkExpect(tall.lodLevel, 0);
+    this.mw1.onKeyEvent("=");
+    this.mw1.onKeyEvent("=");
+    t.checkExpect(this.mw1.cellSize, 120);
+    t.checkExpect(this.mw1.viewWidth(), 1000);
+    t.checkExpect(this.mw1.cameraX, 100);
+
+    // in manual gameplay, the window follows the player
+    tall.onKeyEvent("m");
+    t.checkExpect(tall.cameraY, 0);
+    tall.player = tall.vertices.get(5).get(150);
+    tall.follow();
+    t.checkExpect(tall.cameraY, 150 * 4 + 4 + 150 - 600);
+    tall.player = tall.vertices.get(5).get(199);
+    tall.follow();
+    t.checkExpect(tall.cameraY, 200);
+    tall.player = tall.vertices.get(5).get(100);
+    tall.follow();
+    t.checkExpect(tall.cameraY, 200);
+  }
+
+  // test the MazePyramid class
+  void testMazePyramid(Tester t) {
+    this.initGraph();
+    MazePyramid pyramid = new MazePyramid(this.g1);
+    t.checkExpect(pyramid.levels, 3);
+    t.checkExpect(pyramid.across, new int[] {3, 2, 1});
+    t.checkExpect(pyramid.down, new int[] {2, 1, 1});
+    // the left square has five of its eight passages right and down open,
+    // counting the one from cell 4 to 5, and the right column none of its four
+    t.checkExpect(pyramid.open[1], new byte[] {(byte) 160, 0});
+    t.checkExpect(pyramid.open[2], new byte[] {80});
+    t.checkExpect(pyramid.visited[1], new byte[] {0, 0});
+    t.checkExpect(pyramid.path[2], new byte[] {0});
+    t.checkExpect(pyramid.tileColor(1, 0, 0, Color.PINK, Color.MAGENTA),
+        new Color(160, 160, 160));
+
+    // marks from the view are summarized once flushed, each tile once
+    SolverWorker worker = new SolverWorker(new BfsSolver(this.g1, 0, 5), 1, 0);
+    SolverView view = new SolverView(this.g1.size());
+    pyramid.refresh(view);
+    this.advance(worker, view, 2);
+    t.checkExpect(pyramid.visited[1], new byte[] {0, 0});
+    pyramid.update(worker.solver.visitedCell(0));
+    pyramid.update(worker.solver.visitedCell(1));
+    t.checkExpect(pyramid.pendingCount, 1);
+    t.checkExpect(pyramid.visited[1], new byte[] {0, 0});
+    pyramid.flush();
+    t.checkExpect(pyramid.pendingCount, 0);
+    t.checkExpect(pyramid.visited[1], new byte[] {(byte) 128, 0});
+    t.checkExpect(pyramid.visited[2], new byte[] {64});
+    t.checkExpect(pyramid.tileColor(1, 0, 0, Color.BLACK, Color.MAGENTA),
+        new Color(80, 80, 80));
+    this.advance(worker, view, 100);
+    pyramid.refresh(view);
+    t.checkExpect(pyramid.visited[1], new byte[] {(byte) 255, (byte) 128});
+    t.checkExpect(pyramid.path[1], new byte[] {1, 1});
+    t.checkExpect(pyramid.tileColor(2, 0, 0, Color.PINK, Color.MAGENTA), Color.MAGENTA);
+
+    // a wall change is summarized again up the levels from the cell left of
+    // or above it, whose passages right and down count it
+    this.g1.setOpen(1, 2, true);
+    pyramid.update(2);
+    pyramid.flush();
+    t.checkExpect(pyramid.open[1][0], (byte) 160);
+    pyramid.update(1);
+    pyramid.flush();
+    t.checkExpect(pyramid.open[1][0], (byte) 192);
+    t.checkExpect(pyramid.open[2][0], (byte) 96);
+  }
+
+  // test drawing a maze zoomed out past single cells
+  void testLevelOfDetail(Tester t) {
+    MazeWorld tall = new MazeWorld(10, 200, new Random(1));
+    tall.onKeyEvent("-");
+    t.checkExpect(tall.lodLevel, 1);
+    t.checkExpect(tall.drawnWidth(), 20);
+    t.checkExpect(tall.drawnHeight(), 400);
+    t.checkExpect(tall.viewHeight(), 400);
+    t.checkExpect(tall.pyramid, null);
+    // the whole maze fits now, so zooming out further does nothing
+    tall.onKeyEvent("-");
+    t.checkExpect(tall.lodLevel, 1);
+
+    // each 4 pixel square is a tile of four cells
+    ComputedPixelImage front = (ComputedPixelImage) tall.renderer.draw(tall);
+    t.checkExpect(tall.pyramid.levels, 9);
+    t.checkExpect(tall.renderer.rows, 100);
+    t.checkExpect(tall.renderer.columns, 5);
+    t.checkExpect(front.getPixel(0, 0), Color.GREEN);
+    t.checkExpect(front.getPixel(19, 399), Color.RED);
+    int shade = tall.pyramid.open[1][5] & 0xFF;
+    t.checkExpect(front.getPixel(2, 6), new Color(shade, shade, shade));
+
+    // the shown search is summarized as it advances, repainting its tiles
+    tall.bfsWorker = new SolverWorker(new BfsSolver(tall.graph, 0, tall.graph.size() - 1), 1, 0);
+    tall.onKeyEvent("b");
+    tall.renderer.draw(tall);
+    t.checkExpect(tall.pyramid.view, tall.bfsView);
+    tall.bfsWorker.solver.step(30);
+    tall.bfsWorker.publish();
+    tall.onTick();
+    t.checkExpect(tall.renderer.dirtyCount > 0, true);
+    tall.renderer.draw(tall);
+    int cell = tall.bfsWorker.solver.visitedCell(29);
+    int x = tall.graph.xOf(cell) >> 1;
+    int y = tall.graph.yOf(cell) >> 1;
+    t.checkExpect(front.getPixel(x * 4 + 1, y * 4 + 1),
+        tall.pyramid.tileColor(1, x, y, Color.PINK, Color.MAGENTA));
+    t.checkExpect(tall.pyramid.visited[1][y * 5 + x] != 0, true);
+
+    // zooming back in draws cells again
+    tall.onKeyEvent("=");
+    t.checkExpect(tall.lodLevel, 0);
+    t.checkExpect(tall.drawnHeight(), 800);
+    tall.reset();
+    t.checkExpect(tall.pyramid, null);
+  }
+
+  // test the PngExporter class
+  void testPngExporter(Tester t) throws IOException {
+    this.initGraph();
+    SolverWorker worker = new SolverWorker(new BfsSolver(this.g1, 0, 5), 1, 0);
+    SolverView view = new SolverView(this.g1.size());
+    this.advance(worker, view, 100);
+    PngExporter exporter = new PngExporter(this.g1, 0, new int[] {5}, view, Color.PINK,
+        Color.MAGENTA, 3);
+    exporter.bandRows = 1;
+    exporter.threads = 2;
+    t.checkExpect(exporter.cellIndex(0), PngExporter.START);
+    t.checkExpect(exporter.cellIndex(4), PngExporter.PATH);
+    t.checkExpect(exporter.cellIndex(2), PngExporter.PASSAGE);
+    t.checkExpect(exporter.passageIndex(4, 5), PngExporter.PATH);
+    // the start and ends are wherever the maze has them, not only in the corners
+    PngExporter moved = new PngExporter(this.g1, 4, new int[] {0, 3}, null, Color.PINK,
+        Color.MAGENTA, 3);
+    t.checkExpect(moved.cellIndex(4), PngExporter.START);
+    t.checkExpect(moved.cellIndex(0), PngExporter.END);
+    t.checkExpect(moved.cellIndex(3), PngExporter.END);
+    t.checkExpect(moved.cellIndex(5), PngExporter.PASSAGE);
+
+    File file = File.createTempFile("maze", ".png");
+    file.deleteOnExit();
+    exporter.export(file);
+    BufferedImage image = ImageIO.read(file);
+    t.checkExpect(image.getWidth(), 10);
+    t.checkExpect(image.getHeight(), 7);
+    // the border, the start, the passage right of it, and the walls below it
+    t.checkExpect(new Color(image.getRGB(0, 0)), Color.BLACK);
+    t.checkExpect(new Color(image.getRGB(1, 1)), Color.GREEN);
+    t.checkExpect(new Color(image.getRGB(2, 2)), Color.GREEN);
+    t.checkExpect(new Color(image.getRGB(3, 1)),
+        exporter.palette[exporter.passageIndex(0, 1)]);
+    t.checkExpect(new Color(image.getRGB(3, 3)), Color.BLACK);
+    // the top right cell has no passages, and the end is reached from the left
+    t.checkExpect(new Color(image.getRGB(7, 1)), Color.WHITE);
+    t.checkExpect(new Color(image.getRGB(6, 1)), Color.BLACK);
+    t.checkExpect(new Color(image.getRGB(6, 4)), Color.MAGENTA);
+    t.checkExpect(new Color(image.getRGB(8, 5)), Color.RED);
+
+    // the bands join into the same image as a single band
+    exporter.bandRows = 64;
+    File single = File.createTempFile("maze", ".png");
+    single.deleteOnExit();
+    exporter.export(single);
+    BufferedImage whole = ImageIO.read(single);
+    boolean same = true;
+    for (int y = 0; y < 7; y++) {
+      for (int x = 0; x < 10; x++) {
+        same = same && image.getRGB(x, y) == whole.getRGB(x, y);
+      }
+    }
+    t.checkExpect(same, true);
+  }
+
+  // test the combineAdler method
+  void testCombineAdler(Tester t) {
+    Adler32 first = new Adler32();
+    first.update(new byte[] {1, 2, 3}, 0, 3);
+    Adler32 second = new Adler32();
+    second.update(new byte[] {4, 5, 6, 7}, 0, 4);
+    Adler32 both = new Adler32();
+    both.update(new byte[] {1, 2, 3, 4, 5, 6, 7}, 0, 7);
+    t.checkExpect(PngExporter.combineAdler(first.getValue(), second.getValue(), 4),
+        both.getValue());
+    t.checkExpect(PngExporter.combineAdler(1, both.getValue(), 7), both.getValue());
+  }
+
+  // test recording a search's animation and playing it back
+  void testAnimationExport(Tester t) throws IOException {
+    this.initGraph();
+    File file = File.createTempFile("maze", ".mzd");
+    file.deleteOnExit();
+    BfsSolver solver = new BfsSolver(this.g1, 0, 5);
+    AnimationExporter exporter = new AnimationExporter(this.g1, 0, new int[] {5}, solver, 2);
+    int frames = exporter.export(file);
+    t.checkExpect(frames > 0, true);
+
+    AnimationPlayer player = new AnimationPlayer(file);
+    t.checkExpect(player.graph.width, 3);
+    t.checkExpect(player.graph.height, 2);
+    boolean sameWalls = true;
+    for (int cell = 0; cell < 6; cell++) {
+      for (int direction = 0; direction < 4; direction++) {
+        sameWalls = sameWalls
+            && player.graph.isOpen(cell, direction) == this.g1.isOpen(cell, direction);
+      }
+    }
+    t.checkExpect(sameWalls, true);
+    // the first frame holds the first two steps of the search
+    t.checkExpect(player.nextFrame(), true);
+    t.checkExpect(player.frame, 1);
+    t.checkExpect(player.view.isVisited(0), true);
+    t.checkExpect(player.view.isVisited(5), false);
+    while (player.nextFrame()) {
+      // play to the end
+    }
+    t.checkExpect(player.frame, frames);
+    t.checkExpect(player.nextFrame(), false);
+    boolean sameMarks = true;
+    for (int cell = 0; cell < 6; cell++) {
+      sameMarks = sameMarks && player.view.isVisited(cell) == solver.isVisited(cell)
+          && player.view.onPath(cell) == solver.onPath(cell);
+    }
+    t.checkExpect(sameMarks, true);
+    t.checkExpect(player.view.onPath(5), true);
+    player.close();
+
+    // the start and ends come back as they were recorded, and are drawn there
+    AnimationExporter moved = new AnimationExporter(this.g1, 5, new int[] {0, 3},
+        new BfsSolver(this.g1, new int[] {5}, new int[] {0, 3}), 2);
+    moved.export(file);
+    player = new AnimationPlayer(file);
+    t.checkExpect(player.start, 5);
+    t.checkExpect(player.ends, new int[] {0, 3});
+    while (player.nextFrame()) {
+      // play to the end
+    }
+    player.close();
+    File png = File.createTempFile("maze", ".png");
+    png.deleteOnExit();
+    player.writePng(png);
+    BufferedImage image = ImageIO.read(png);
+    t.checkExpect(new Color(image.getRGB(5, 3)), Color.GREEN);
+    t.checkExpect(new Color(image.getRGB(1, 1)), Color.RED);
+    t.checkExpect(new Color(image.getRGB(1, 3)), Color.RED);
+    t.checkExpect(new Color(image.getRGB(3, 3)), Color.MAGENTA);
+
+    // a deflated file that does not start with the magic number is refused
+    File other = File.createTempFile("maze", ".mzd");
+    other.deleteOnExit();
+    DataOutputStream out = new DataOutputStream(
+        new DeflaterOutputStream(new FileOutputStream(other)));
+    out.writeInt(0);
+    out.close();
+    t.checkException(new IOException(other + " is not a maze animation"),
+        this, "openAnimation", other);
+  }
+
+  // open the given file as an animation
+  AnimationPlayer openAnimation(File file) throws IOException {
+    return new AnimationPlayer(file);
+  }
+
+  // test writing and reading variable-length numbers
+  void testAnimationNumbers(Tester t) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    int[] numbers = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE};
+    for (int number : numbers) {
+      AnimationExporter.writeNumber(out, number);
+    }
+    out.close();
+    byte[] written = bytes.toByteArray();
+    t.checkExpect(written.length, 1 + 1 + 1 + 2 + 2 + 2 + 3 + 5);
+    t.checkExpect(written[3], (byte) 0x80);
+    t.checkExpect(written[4], (byte) 1);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(written));
+    boolean same = true;
+    for (int number : numbers) {
+      same = same && AnimationExporter.readNumber(in) == number;
+    }
+    t.checkExpect(same, true);
+  }
+
+  // test the StepSchedule class
+  void testStepSchedule(Tester t) {
+    this.initGraph();
+    StepSchedule schedule = new StepSchedule(600, 1000, 10, 5);
+    t.checkExpect(schedule.stepsDue(0), 0L);
+    t.checkExpect(schedule.stepsDue(500), 300L);
+    t.checkExpect(schedule.stepsDue(999), 599L);
+    t.checkExpect(schedule.stepsDue(1000), Long.MAX_VALUE);
+    schedule = StepSchedule.forMaze(this.g1);
+    t.checkExpect(schedule.totalSteps, 6L);
+    t.checkExpect(schedule.durationNanos, StepSchedule.DURATION_NANOS);
+  }
+
+  // test pacing a worker with a schedule
+  void testScheduledWorker(Tester t) {
+    this.initGraph();
+    // only the steps due are taken, then published
+    SolverWorker worker = new SolverWorker(new BfsSolver(this.g1, 0, 5),
+        new StepSchedule(6, 600, 0, Long.MAX_VALUE));
+    t.checkExpect(worker.batchSize, SolverWorker.SCHEDULED_BATCH);
+    worker.runFrame(0);
+    t.checkExpect(worker.stepsTaken, 0L);
+    t.checkExpect(worker.latest.visitedCount, 0);
+    worker.runFrame(200);
+    t.checkExpect(worker.stepsTaken, 2L);
+    t.checkExpect(worker.latest.visitedCount, 2);
+    worker.runFrame(300);
+    t.checkExpect(worker.stepsTaken, 3L);
+    // after the duration, everything left is due, path included
+    worker.runFrame(600);
+    t.checkExpect(worker.solver.isDone(), true);
+    t.checkExpect(worker.latest.phase, SolverProgress.SOLVED);
+
+    // a search that runs out of budget falls behind instead of catching up
+    worker = new SolverWorker(new BfsSolver(this.g1, 0, 5), new StepSchedule(6, 600, 0, 1));
+    worker.batchSize = 1;
+    worker.runFrame(600);
+    t.checkExpect(worker.stepsTaken, 1L);
+    worker.runFrame(600);
+    t.checkExpect(worker.stepsTaken, 2L);
+
+    // run on its own, a scheduled worker finishes the search
+    worker = new SolverWorker(new DfsSolver(this.g1, 0, 5),
+        new StepSchedule(6, 1000000, 100000, 1000000));
+    worker.run();
+    t.checkExpect(worker.latest.phase, SolverProgress.SOLVED);
+    t.checkExpect(worker.stepsTaken > 0, true);
+  }
+
+  // test that walls stop the player
+  void testMoveBlocked(Tester t) {
+    this.initMazeWorlds();
+    this.initGraph();
+    // only the passages of g1 are open: 0-1, 0-3, 1-4, 3-4 and 4-5
+    this.mw1.width = 3;
+    this.mw1.height = 2;
+    this.mw1.graph = this.g1;
+    this.mw1.vertices = new ArrayList<ArrayList<Vertex>>();
+    for (int x = 0; x < 3; x++) {
+      this.mw1.vertices.add(new ArrayList<Vertex>(
+          Arrays.asList(new Vertex(x, 0), new Vertex(x, 1))));
+    }
+    this.mw1.setEnds(0, new int[] {5});
+    this.mw1.move(MazeGraph.RIGHT);
+    this.mw1.move(MazeGraph.RIGHT);
+    t.checkExpect(this.mw1.player, this.mw1.vertices.get(1).get(0));
+    t.checkExpect(this.mw1.routeMoves(), 1);
+    this.mw1.move(MazeGraph.DOWN);
+    t.checkExpect(this.mw1.player, this.mw1.vertices.get(1).get(1));
+    t.checkExpect(this.mw1.playerWon, false);
+    this.mw1.move(MazeGraph.RIGHT);
+    t.checkExpect(this.mw1.player, this.mw1.vertices.get(2).get(1));
+    t.checkExpect(this.mw1.playerWon, true);
+    t.checkExpect(this.mw1.playerReconstruct, true);
+    t.checkExpect(this.mw1.routeMoves(), 3);
+    // once the player has won, their route stays as it is
+    this.mw1.move(MazeGraph.LEFT);
+    t.checkExpect(this.mw1.player, this.mw1.vertices.get(2).get(1));
+    t.checkExpect(this.mw1.routeMoves(), 3);
+  }
+
+  // test queueing the player's moves until the next tick
+  void testQueuedMoves(Tester t) {
+    this.initMazeWorlds();
+    this.mw3.onKeyEvent("m");
+    int start = this.mw3.graph.id(this.mw3.player);
+    // through the start's first passage, back, and through it again
+    String open = this.mw3.graph.isOpen(start, MazeGraph.RIGHT) ? "right" : "down";
+    String back = open.equals("right") ? "left" : "up";
+    int cell = this.mw3.graph.neighbor(start,
+        open.equals("right") ? MazeGraph.RIGHT : MazeGraph.DOWN);
+    this.mw3.onKeyEvent(open);
+    this.mw3.onKeyEvent(back);
+    this.mw3.onKeyEvent(open);
+    t.checkExpect(this.mw3.pendingMoveCount, 3);
+    t.checkExpect(this.mw3.graph.id(this.mw3.player), start);
+    this.mw3.renderer.draw(this.mw3);
+    this.mw3.onTick();
+    t.checkExpect(this.mw3.pendingMoveCount, 0);
+    t.checkExpect(this.mw3.graph.id(this.mw3.player), cell);
+    // there and back again erases the loop
+    t.checkExpect(this.mw3.routeMoves(), 1);
+    // only the old and new cells are repainted
+    t.checkExpect(this.mw3.renderer.dirtyCount, 2);
+
+    // the queue grows with fast key repeat, and escape drops it
+    for (int i = 0; i < 20; i++) {
+      this.mw3.onKeyEvent("left");
+    }
+    t.checkExpect(this.mw3.pendingMoveCount, 20);
+    t.checkExpect(this.mw3.pendingMoves.length >= 20, true);
+    this.mw3.onKeyEvent("escape");
+    t.checkExpect(this.mw3.pendingMoveCount, 0);
+  }
+
+  // test the CorridorSlides class
+  void testCorridorSlides(Tester t) {
+    this.initGraph();
+    // g1 opens 0-1, 0-3, 1-4, 3-4 and 4-5, so 1 and 3 are corridor cells
+    CorridorSlides slides = new CorridorSlides(this.g1, new int[] {0, 5});
+    t.checkExpect(slides.isStop(this.g1, 0), true);
+    t.checkExpect(slides.isStop(this.g1, 1), false);
+    t.checkExpect(slides.isStop(this.g1, 4), true);
+    t.checkExpect(slides.end(0, MazeGraph.RIGHT), 4);
+    t.checkExpect(slides.length(0, MazeGraph.RIGHT), 2);
+    t.checkExpect(slides.end(0, MazeGraph.DOWN), 4);
+    t.checkExpect(slides.end(4, MazeGraph.UP), 0);
+    t.checkExpect(slides.length(4, MazeGraph.UP), 2);
+    t.checkExpect(slides.end(4, MazeGraph.RIGHT), 5);
+    t.checkExpect(slides.length(4, MazeGraph.RIGHT), 1);
+    // from the middle of a corridor, each way leads to its own end
+    t.checkExpect(slides.end(1, MazeGraph.DOWN), 4);
+    t.checkExpect(slides.length(1, MazeGraph.DOWN), 1);
+    t.checkExpect(slides.end(1, MazeGraph.LEFT), 0);
+    t.checkExpect(slides.onward(this.g1, 1, 0), MazeGraph.DOWN);
+    // walls lead nowhere
+    t.checkExpect(slides.end(0, MazeGraph.LEFT), -1);
+    t.checkExpect(slides.length(0, MazeGraph.LEFT), 0);
+    t.checkExpect(slides.end(2, MazeGraph.DOWN), -1);
+
+    // without the start as a stop, the slide runs through it
+    slides = new CorridorSlides(this.g1, new int[] {5});
+    t.checkExpect(slides.end(1, MazeGraph.LEFT), 4);
+    t.checkExpect(slides.length(1, MazeGraph.LEFT), 3);
+    // a cycle of corridor cells with no stops has no slides
+    MazeGraph ring = new MazeGraph(2, 2, new ArrayList<Edge>());
+    ring.setOpen(0, 1, true);
+    ring.setOpen(1, 3, true);
+    ring.setOpen(3, 2, true);
+    ring.setOpen(2, 0, true);
+    slides = new CorridorSlides(ring, new int[0]);
+    t.checkExpect(slides.end(0, MazeGraph.RIGHT), -1);
+  }
+
+  // test sliding the manual player along corridors
+  void testAutoRun(Tester t) {
+    this.initMazeWorlds();
+    this.mw3.onKeyEvent("a");
+    t.checkExpect(this.mw3.autoRun, false);
+    this.mw3.onKeyEvent("m");
+    this.mw3.onKeyEvent("a");
+    t.checkExpect(this.mw3.autoRun, true);
+    t.checkExpect(this.mw3.slides, null);
+    int side = this.mw3.graph.isOpen(0, MazeGraph.RIGHT) ? MazeGraph.RIGHT : MazeGraph.DOWN;
+    String[] keys = {"up", "down", "left", "right"};
+    this.mw3.renderer.draw(this.mw3);
+    this.mw3.onKeyEvent(keys[side]);
+    this.mw3.onTick();
+    int end = this.mw3.slides.end(0, side);
+    t.checkExpect(this.mw3.graph.id(this.mw3.player), end);
+    t.checkExpect(this.mw3.routeMoves(), this.mw3.slides.length(0, side));
+    t.checkExpect(this.mw3.onRoute(this.mw3.graph.neighbor(0, side)), true);
+    // one transition: only the old and new cells are repainted
+    t.checkExpect(this.mw3.renderer.dirtyCount <= 2, true);
+    // sliding back erases the corridor from the route
+    int back = 0;
+    while (this.mw3.slides.end(end, back) != 0) {
+      back++;
+    }
+    this.mw3.onKeyEvent(keys[back]);
     this.mw3.onTick();
-    t.checkExpect(this.mw3.bfsWorklist.size(), 2);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v2), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v2), true);
-    t.checkExpect(this.mw3.bfsWorklist.contains(this.v3), true);
-    t.checkExpect(this.mw3.cameFromEdgeBfs.containsKey(this.v3), true);
-    t.checkExpect(this.mw3.bfsVisited, new ArrayList<Vertex>(Arrays.asList(this.v1)));
+    t.checkExpect(this.mw3.graph.id(this.mw3.player), 0);
+    t.checkExpect(this.mw3.routeMoves(), 0);
+
+    // a slide into a wall does nothing, and the mode ends with manual play
+    this.mw3.resetPlayer();
+    this.mw3.manualGameplay = true;
+    this.mw3.autoRun = true;
+    this.mw3.slide(MazeGraph.LEFT);
+    t.checkExpect(this.mw3.graph.id(this.mw3.player), 0);
+    t.checkExpect(this.mw3.routeMoves(), 0);
+    this.mw3.onKeyEvent("escape");
+    t.checkExpect(this.mw3.autoRun, false);
+
+    // a slide stops at the end, and wins
+    this.initGraph();
+    this.mw1.width = 3;
+    this.mw1.height = 2;
+    this.mw1.graph = this.g1;
+    this.mw1.slides = null;
+    this.mw1.vertices = new ArrayList<ArrayList<Vertex>>();
+    for (int x = 0; x < 3; x++) {
+      this.mw1.vertices.add(new ArrayList<Vertex>(
+          Arrays.asList(new Vertex(x, 0), new Vertex(x, 1))));
+    }
+    this.mw1.setEnds(0, new int[] {5});
+    this.mw1.player = this.mw1.vertices.get(0).get(0);
+    this.mw1.slide(MazeGraph.RIGHT);
+    t.checkExpect(this.mw1.player, this.mw1.vertices.get(1).get(1));
+    t.checkExpect(this.mw1.routeMoves(), 2);
+    this.mw1.slide(MazeGraph.RIGHT);
+    t.checkExpect(this.mw1.player, this.mw1.vertices.get(2).get(1));
+    t.checkExpect(this.mw1.playerWon, true);
+  }
+
+  // test recording a session's keys
+  void testInputLog(Tester t) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    InputLog log = new InputLog(bytes, 10, 20, 7);
+    t.checkExpect(bytes.size(), 20);
+    log.record(0, "m");
+    log.record(300, "right");
+    t.checkException(new IllegalArgumentException("key q is not in InputLog.KEYS"),
+        this, "recordKey", log, 300L, "q");
+    log.record(301, "escape");
+    log.close(400);
+    byte[] written = bytes.toByteArray();
+    // each key takes its tick gap and its index, and an unknown key writes nothing
+    t.checkExpect(written.length, 20 + 2 + 3 + 2 + 2);
+    t.checkExpect(written[20], (byte) 0);
+    t.checkExpect(written[21], (byte) InputLog.keyIndex("m"));
+    t.checkExpect(written[22], (byte) (300 & 0x7F | 0x80));
+    t.checkExpect(written[23], (byte) (300 >> 7));
+    t.checkExpect(written[24], (byte) 3);
+    t.checkExpect(written[25], (byte) 1);
+    t.checkExpect(written[written.length - 1], (byte) InputLog.END);
+    t.checkExpect(InputLog.keyIndex("q"), -1);
+    t.checkExpect(InputLog.KEYS[InputLog.keyIndex("escape")], "escape");
+    // keys added later come after the first ones, whose indexes stay as they were
+    t.checkExpect(InputLog.keyIndex("-"), 17);
+    t.checkExpect(InputLog.keyIndex("e"), InputLog.KEYS.length - 1);
+
+    InputReplay replay = new InputReplay(written);
+    t.checkExpect(replay.width, 10);
+    t.checkExpect(replay.height, 20);
+    t.checkExpect(replay.seed, 7L);
+    t.checkException(new IOException("not a maze input log"),
+        this, "openReplay", new byte[20]);
+  }
+
+  // open the given bytes as a replay
+  InputReplay openReplay(byte[] log) throws IOException {
+    return new InputReplay(log);
+  }
+
+  // record the given key in the given log
+  void recordKey(InputLog log, long tick, String key) throws IOException {
+    log.record(tick, key);
+  }
+
+  // test replaying a recorded session
+  void testInputReplay(Tester t) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    InputReplay fresh = new InputReplay(new byte[] {0x4D, 0x41, 0x5A, 0x52, 0, 0, 0, 20,
+      0, 0, 0, 15, 0, 0, 0, 0, 0, 0, 0, 42});
+    MazeWorld world = fresh.newWorld();
+    t.checkExpect(world.lockstepNanos, InputReplay.TICK_NANOS);
+    world.log = new InputLog(bytes, 20, 15, 42);
+    // a player wanders on auto-run, gives up and watches breadth first search
+    world.onKeyEvent("m");
+    world.onKeyEvent("a");
+    String[] keys = {"right", "down", "down", "right", "left", "up", "right", "down"};
+    for (String key : keys) {
+      for (int i = 0; i < 7; i++) {
+        world.onTick();
+      }
+      world.onKeyEvent(key);
+    }
+    world.onTick();
+    String wandered = InputReplay.describe(world);
+    world.onKeyEvent("escape");
+    world.onKeyEvent("b");
+    t.checkExpect(world.bfsWorker.isInline(), true);
+    t.checkExpect(world.bfsWorker.thread, null);
+    for (int i = 0; i < 4000; i++) {
+      world.onTick();
+    }
+    world.log.close(world.ticks);
+    t.checkExpect(world.bfsView.progress.visitedCount > 0, true);
+
+    // the replay ends in the same state, every time
+    MazeWorld replayed = new InputReplay(bytes.toByteArray()).run();
+    t.checkExpect(replayed.ticks, world.ticks);
+    t.checkExpect(InputReplay.describe(replayed), InputReplay.describe(world));
+    t.checkExpect(replayed.bfsView.marks, world.bfsView.marks);
+    MazeWorld again = new InputReplay(bytes.toByteArray()).run();
+    t.checkExpect(InputReplay.describe(again), InputReplay.describe(world));
+
+    // and a log cut off after the wandering ends with the player where they were
+    byte[] cut = Arrays.copyOf(bytes.toByteArray(), 20 + 2 + 2 + 2 * keys.length);
+    MazeWorld wanderer = new InputReplay(cut).run();
+    wanderer.onTick();
+    t.checkExpect(InputReplay.describe(wanderer), wandered);
+
+    // a session ended while a search is still running replays up to its end,
+    // not only up to its last key
+    ByteArrayOutputStream running = new ByteArrayOutputStream();
+    MazeWorld watcher = fresh.newWorld();
+    watcher.log = new InputLog(running, 20, 15, 42);
+    watcher.onKeyEvent("b");
+    for (int i = 0; i < 2000; i++) {
+      watcher.onTick();
+    }
+    watcher.stopRecording();
+    t.checkExpect(watcher.log, null);
+    watcher.stopRecording();
+    t.checkExpect(watcher.bfsView.progress.phase, SolverProgress.SEARCHING);
+    t.checkExpect(watcher.bfsView.progress.visitedCount > 1, true);
+    MazeWorld rewatched = new InputReplay(running.toByteArray()).run();
+    t.checkExpect(rewatched.ticks, watcher.ticks);
+    t.checkExpect(rewatched.bfsView.marks, watcher.bfsView.marks);
+    t.checkExpect(InputReplay.describe(rewatched), InputReplay.describe(watcher));
+  }
+
+  // test replaying a session that presses every mode key
+  void testInputReplayModes(Tester t) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    MazeWorld world = new MazeWorld(20, 15, new Random(42));
+    world.lockstepNanos = InputReplay.TICK_NANOS;
+    world.log = new InputLog(bytes, 20, 15, 42);
+    // two more exits, then manual play with keys to collect, fog and pursuers,
+    // with keys that do nothing in between
+    String[] keys = {"e", "e", "q", "m", "o", "g", "p", "k", "right", "down", "down",
+      "right", "left", "up", "right", "down", "down", "right"};
+    for (String key : keys) {
+      for (int i = 0; i < 5; i++) {
+        world.onTick();
+      }
+      world.onKeyEvent(key);
+    }
+    for (int i = 0; i < 300; i++) {
+      world.onTick();
+    }
+    world.log.close(world.ticks);
+    t.checkExpect(world.exits.length, 3);
+    t.checkExpect(world.fog, true);
+    t.checkExpect(world.chase, true);
+    t.checkExpect(world.collecting, true);
+    // neither key that did nothing was recorded
+    t.checkExpect(bytes.size(), 20 + 2 * (keys.length - 2) + 3);
+
+    MazeWorld replayed = new InputReplay(bytes.toByteArray()).run();
+    t.checkExpect(replayed.ticks, world.ticks);
+    t.checkExpect(InputReplay.describe(replayed), InputReplay.describe(world));
+    t.checkExpect(replayed.exits, world.exits);
+    t.checkExpect(replayed.keyCells, world.keyCells);
+    t.checkExpect(replayed.pursuers, world.pursuers);
+  }
+
+  // test the AgentSwarm class
+  void testAgentSwarm(Tester t) {
+    this.initGraph();
+    // g1 opens 0-1, 0-3, 1-4, 3-4 and 4-5
+    AgentSwarm swarm = new AgentSwarm(this.g1, 5, 7, 1);
+    t.checkExpect(swarm.kind[4], AgentSwarm.WALL_FOLLOWER);
+    t.checkExpect(swarm.exitTick[4], -1);
+    // a wall follower keeps its right hand on the wall
+    t.checkExpect(swarm.followWall(0, MazeGraph.RIGHT), MazeGraph.DOWN);
+    t.checkExpect(swarm.followWall(3, MazeGraph.DOWN), MazeGraph.RIGHT);
+    t.checkExpect(swarm.followWall(4, MazeGraph.RIGHT), MazeGraph.RIGHT);
+    t.checkExpect(swarm.followWall(1, MazeGraph.UP), MazeGraph.LEFT);
+    t.checkExpect(swarm.followWall(2, MazeGraph.UP), -1);
+    // a greedy agent heads for the exit as the crow flies
+    // ties go to the first side in order
+    t.checkExpect(swarm.closerSide(0), MazeGraph.DOWN);
+    t.checkExpect(swarm.closerSide(1), MazeGraph.DOWN);
+    t.checkExpect(swarm.closerSide(2), -1);
+    // a random walker picks any open side
+    t.checkExpect(swarm.randomSide(4, 0), MazeGraph.UP);
+    t.checkExpect(swarm.randomSide(4, 1), MazeGraph.LEFT);
+    t.checkExpect(swarm.randomSide(4, 5), MazeGraph.RIGHT);
+    t.checkExpect(swarm.randomSide(2, 5), -1);
+
+    // the wall follower takes 0, 3, 4, 5
+    swarm.threads = 2;
+    swarm.blockSize = 2;
+    long steps = swarm.run(1);
+    t.checkExpect(steps, 7L);
+    t.checkExpect(swarm.cell[1], 3);
+    swarm.run(2);
+    t.checkExpect(swarm.exitTick[1], 3);
+    t.checkExpect(swarm.cell[1], 5);
+    t.checkExpect(swarm.ticks, 3);
+    // agents that are out stop moving, and everyone gets out in the end
+    swarm.run(1000);
+    t.checkExpect(swarm.exitTick[1], 3);
+    t.checkExpect(swarm.exitTimes(AgentSwarm.WALL_FOLLOWER), new int[] {3, 3});
+    t.checkExpect(swarm.exitTimes(AgentSwarm.RANDOM_WALKER).length, 3);
+    t.checkExpect(swarm.exitReport(AgentSwarm.WALL_FOLLOWER),
+        "wall followers: 2 of 2 out, exit ticks median 3, 90th percentile 3, most 3");
+    t.checkExpect(swarm.exitReport(AgentSwarm.GREEDY).startsWith("greedy agents: 2 of 2 out"),
+        true);
+  }
+
+  // test that agents end the same way however they are split across threads
+  void testAgentSwarmThreads(Tester t) {
+    MazeGraph graph = MazeGraph.generate(40, 30, new Random(5));
+    AgentSwarm one = new AgentSwarm(graph, graph.size() - 1, 300, 9);
+    one.threads = 1;
+    one.blockSize = 300;
+    AgentSwarm many = new AgentSwarm(graph, graph.size() - 1, 300, 9);
+    many.threads = 3;
+    many.blockSize = 7;
+    t.checkExpect(one.run(500), many.run(500));
+    t.checkExpect(one.run(2500), many.run(2500));
+    t.checkExpect(one.cell, many.cell);
+    t.checkExpect(one.exitTick, many.exitTick);
+    t.checkExpect(one.exitTimes(AgentSwarm.WALL_FOLLOWER).length, 100);
+    // no agent ever steps through a wall
+    boolean adjacent = true;
+    AgentSwarm walker = new AgentSwarm(graph, graph.size() - 1, 30, 3);
+    for (int i = 0; i < 200; i++) {
+      int[] before = walker.cell.clone();
+      walker.run(1);
+      for (int agent = 0; agent < 30; agent++) {
+        adjacent = adjacent && (walker.exitTick[agent] >= 0 && walker.exitTick[agent] < i
+            || graph.isOpen(before[agent], graph.direction(before[agent], walker.cell[agent])));
+      }
+    }
+    t.checkExpect(adjacent, true);
+  }
+
+  // test the runs of corridor through each cell
+  void testCorridorRunsOf(Tester t) {
+    this.initGraph();
+    // g1 opens 0-1, 0-3, 1-4, 3-4 and 4-5
+    CorridorRuns runs = new CorridorRuns(this.g1);
+    t.checkExpect(runs.rowRunOf, new int[] {0, 0, 1, 2, 2, 2});
+    t.checkExpect(runs.columnRunOf, new int[] {0, 1, -1, 0, 1, -1});
+  }
+
+  // test searches from several starts to the nearest of several ends
+  void testNearestEnd(Tester t) {
+    this.initGraph();
+    // from 4 in g1, the end 5 is one move away, and 0 is two
+    BfsSolver bfs = new BfsSolver(this.g1, new int[] {4}, new int[] {0, 5});
+    bfs.step(100);
+    t.checkExpect(bfs.end, 5);
+    t.checkExpect(bfs.pathLength, 2);
+    t.checkExpect(bfs.path[1], 4);
+    // a start that is an end is solved at once
+    DfsSolver dfs = new DfsSolver(this.g1, new int[] {1, 4}, new int[] {4});
+    dfs.step(1);
+    t.checkExpect(dfs.isDone(), true);
+    t.checkExpect(dfs.pathLength, 1);
+    // no end is reachable from the cut off cell 2
+    bfs = new BfsSolver(this.g1, new int[] {2}, new int[] {0, 5});
+    bfs.step(100);
+    t.checkExpect(bfs.end, -1);
+    t.checkExpect(bfs.phase, SolverProgress.UNSOLVABLE);
+
+    // on a big maze, one search to many ends visits no more cells than the
+    // search to the nearest one alone, and finds the same path
+    MazeGraph graph = MazeGraph.generate(40, 30, new Random(5));
+    int[] ends = {graph.size() - 1, 39, 600, 1170};
+    bfs = new BfsSolver(graph, new int[] {0}, ends);
+    bfs.step(Integer.MAX_VALUE);
+    int nearest = -1;
+    int visited = 0;
+    for (int end : ends) {
+      BfsSolver single = new BfsSolver(graph, 0, end);
+      single.step(Integer.MAX_VALUE);
+      if (nearest == -1 || single.pathLength < nearest) {
+        nearest = single.pathLength;
+        visited = single.visitedCount;
+      }
+    }
+    t.checkExpect(bfs.pathLength, nearest);
+    t.checkExpect(bfs.visitedCount, visited);
+    // and from several starts at once, the path is from the nearest start
+    bfs = new BfsSolver(graph, new int[] {0, graph.size() - 1}, new int[] {600});
+    bfs.step(Integer.MAX_VALUE);
+    BfsSolver first = new BfsSolver(graph, 0, 600);
+    first.step(Integer.MAX_VALUE);
+    BfsSolver last = new BfsSolver(graph, graph.size() - 1, 600);
+    last.step(Integer.MAX_VALUE);
+    t.checkExpect(bfs.pathLength, Math.min(first.pathLength, last.pathLength));
+    // weighted searches find the cheapest end
+    graph.addLoops(0.1, new Random(6));
+    graph.randomizeWeights(new Random(7));
+    DialSolver dial = new DialSolver(graph, new int[] {0}, ends);
+    dial.step(Integer.MAX_VALUE);
+    int cheapest = Integer.MAX_VALUE;
+    for (int end : ends) {
+      HeapDijkstraSolver single = new HeapDijkstraSolver(graph, 0, end);
+      single.step(Integer.MAX_VALUE);
+      cheapest = Math.min(cheapest, single.pathCost);
+    }
+    t.checkExpect(dial.pathCost, cheapest);
+  }
+
+  // test moving the start and adding exits
+  void testEnds(Tester t) {
+    this.initMazeWorlds();
+    this.initGraph();
+    MazeWorld mw = this.mw1;
+    mw.width = 3;
+    mw.height = 2;
+    mw.graph = this.g1;
+    mw.vertices = new ArrayList<ArrayList<Vertex>>();
+    for (int x = 0; x < 3; x++) {
+      mw.vertices.add(new ArrayList<Vertex>(Arrays.asList(new Vertex(x, 0), new Vertex(x, 1))));
+    }
+    mw.setEnds(4, new int[] {0, 5});
+    t.checkExpect(mw.player, mw.vertices.get(1).get(1));
+    t.checkExpect(mw.playerRoute[0], 4);
+    t.checkExpect(mw.isExit, new boolean[] {true, false, false, false, false, true});
+    t.checkExpect(mw.cellColor(4), Color.GREEN);
+    t.checkExpect(mw.cellColor(0), Color.RED);
+    t.checkExpect(mw.cellColor(5), Color.RED);
+    t.checkExpect(mw.cellColor(1), Color.WHITE);
+    t.checkExpect(mw.tileColor(1, 0, 0), Color.GREEN);
+    t.checkExpect(mw.exitInTile(1, 1, 0), true);
+    t.checkExpect(mw.exitInTile(1, 0, 0), true);
+    t.checkExpect(mw.exitInTile(0, 1, 0), false);
+    t.checkExpect(mw.slides().isStop(mw.graph, 0), true);
+
+    // one search finds the nearest exit
+    this.advance(mw.bfsWorker, mw.bfsView, 100);
+    t.checkExpect(mw.bfsView.progress.phase, SolverProgress.SOLVED);
+    t.checkExpect(mw.bfsView.progress.pathLength, 2);
+    t.checkExpect(mw.bfsView.onPath(5), true);
+
+    // either exit wins
+    mw.onKeyEvent("m");
+    mw.onKeyEvent("up");
+    mw.onKeyEvent("left");
+    mw.onTick();
+    t.checkExpect(mw.player, mw.vertices.get(0).get(0));
+    t.checkExpect(mw.playerWon, true);
+    t.checkExpect(mw.routeMoves(), 2);
+    mw.onKeyEvent("escape");
+    t.checkExpect(mw.player, mw.vertices.get(1).get(1));
+
+    // 'e' adds an exit in a cell that is neither the start nor an exit, and
+    // starts the searches over
+    mw.onKeyEvent("e");
+    t.checkExpect(mw.exits.length, 3);
+    t.checkExpect(mw.exits[2] != 4 && mw.exits[2] != 0 && mw.exits[2] != 5, true);
+    t.checkExpect(mw.isExit[mw.exits[2]], true);
+    t.checkExpect(mw.bfsView.progress.phase, SolverProgress.SEARCHING);
+    mw.onKeyEvent("e");
+    mw.onKeyEvent("e");
+    mw.onKeyEvent("e");
+    t.checkExpect(mw.exits.length, 5);
+    t.checkExpect(mw.isExit[4], false);
+  }
+
+  // test the shortest route through the keys
+  void testKeyRoute(Tester t) {
+    // the maze 0-1-3-2 has no loops
+    ArrayList<Edge> edges = new ArrayList<Edge>(Arrays.asList(
+        new Edge(new Vertex(0, 0), new Vertex(1, 0), 0),
+        new Edge(new Vertex(1, 0), new Vertex(1, 1), 0),
+        new Edge(new Vertex(1, 1), new Vertex(0, 1), 0)));
+    MazeGraph path = new MazeGraph(2, 2, edges);
+    KeyRoute route = new KeyRoute(path, 0, new int[] {2, 1}, new int[] {3});
+    t.checkExpect(route.distance, new int[][] {{0, 3, 1}, {3, 0, 2}, {1, 2, 0}});
+    t.checkExpect(route.exitDistance, new int[] {2, 1, 1});
+    t.checkExpect(route.order, new int[] {1, 0});
+    t.checkExpect(route.length, 4);
+    t.checkExpect(route.exact, true);
+    // without keys, the route is to the nearest exit
+    route = new KeyRoute(path, 0, new int[0], new int[] {2, 3});
+    t.checkExpect(route.length, 2);
+    // g1 has a loop, so the distances come from breadth first searches
+    this.initGraph();
+    route = new KeyRoute(this.g1, 0, new int[] {4}, new int[] {5});
+    t.checkExpect(route.distance, new int[][] {{0, 2}, {2, 0}});
+    t.checkExpect(route.length, 3);
+    t.checkExpect(KeyRoute.distances(this.g1, new int[] {0, 5}),
+        new int[] {0, 1, -1, 1, 1, 0});
+
+    // on a big maze, the distances from the one depth first search match
+    // breadth first searches, and the order is the best of every order
+    MazeGraph graph = MazeGraph.generate(40, 30, new Random(8));
+    int[] keys = {17, 345, 1199, 640, 888, 12};
+    int[] exits = {graph.size() - 1, 600};
+    route = new KeyRoute(graph, 0, keys, exits);
+    boolean matches = true;
+    for (int i = 0; i < route.targets.length; i++) {
+      int[] moves = KeyRoute.distances(graph, new int[] {route.targets[i]});
+      for (int j = 0; j < route.targets.length; j++) {
+        matches = matches && route.distance[i][j] == moves[route.targets[j]];
+      }
+    }
+    t.checkExpect(matches, true);
+    t.checkExpect(route.length, this.bestRoute(route, new int[keys.length], 0,
+        new boolean[keys.length]));
+    int exact = route.length;
+    route.solveNearestFirst();
+    t.checkExpect(route.length >= exact, true);
+    boolean[] seen = new boolean[keys.length];
+    for (int key : route.order) {
+      seen[key] = true;
+    }
+    t.checkExpect(seen, new boolean[] {true, true, true, true, true, true});
+    // too many keys to order exactly
+    keys = new int[KeyRoute.DP_LIMIT + 4];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = 1 + 50 * i;
+    }
+    route = new KeyRoute(graph, 0, keys, exits);
+    t.checkExpect(route.exact, false);
+    int length = route.distance[0][route.order[0] + 1]
+        + route.exitDistance[route.order[keys.length - 1] + 1];
+    for (int i = 1; i < keys.length; i++) {
+      length += route.distance[route.order[i - 1] + 1][route.order[i] + 1];
+    }
+    t.checkExpect(route.length, length);
+  }
+
+  // the shortest route of the given route's targets that takes the keys in
+  // the given order up to the given count, and then every other order of
+  // the keys not yet taken, by trying them all
+  int bestRoute(KeyRoute route, int[] order, int count, boolean[] taken) {
+    if (count == order.length) {
+      int length = route.distance[0][order[0] + 1] + route.exitDistance[order[count - 1] + 1];
+      for (int i = 1; i < count; i++) {
+        length += route.distance[order[i - 1] + 1][order[i] + 1];
+      }
+      return length;
+    }
+    int best = Integer.MAX_VALUE;
+    for (int key = 0; key < order.length; key++) {
+      if (!taken[key]) {
+        taken[key] = true;
+        order[count] = key;
+        best = Math.min(best, this.bestRoute(route, order, count + 1, taken));
+        taken[key] = false;
+      }
+    }
+    return best;
+  }
+
+  // test collecting keys before the exit
+  void testCollectKeys(Tester t) {
+    this.initMazeWorlds();
+    MazeWorld mw = this.mw3;
+    // only in manual gameplay
+    mw.onKeyEvent("o");
+    t.checkExpect(mw.collecting, false);
+    mw.onKeyEvent("m");
+    mw.onKeyEvent("o");
+    t.checkExpect(mw.collecting, true);
+    t.checkExpect(mw.keyCells.length, MazeWorld.KEY_COUNT);
+    t.checkExpect(mw.keysLeft, MazeWorld.KEY_COUNT);
+    t.checkExpect(mw.isKey[0], false);
+    t.checkExpect(mw.isKey[mw.graph.size() - 1], false);
+    t.checkExpect(mw.cellColor(mw.keyCells[0]), MazeWorld.KEY_COLOR);
+    t.checkExpect(mw.slides().isStop(mw.graph, mw.keyCells[0]), true);
+    t.checkExpect(mw.keysStatus(),
+        "Keys: 0 of 8, 0 moves, shortest route " + mw.keyRoute.length);
+
+    // the exit does not win until every key is collected
+    int exit = mw.graph.size() - 1;
+    this.walkTo(mw, exit);
+    t.checkExpect(mw.playerWon, false);
+    t.checkExpect(mw.keysLeft > 0, true);
+    // scattered again, following the route takes exactly its length
+    mw.onKeyEvent("o");
+    mw.onKeyEvent("o");
+    for (int key : mw.keyRoute.order) {
+      this.walkTo(mw, mw.keyCells[key]);
+    }
+    t.checkExpect(mw.keysLeft, 0);
+    t.checkExpect(mw.playerWon, false);
+    this.walkTo(mw, exit);
+    t.checkExpect(mw.playerWon, true);
+    t.checkExpect(mw.keyMoves, mw.keyRoute.length);
+    // escape takes the keys away
+    mw.onKeyEvent("escape");
+    t.checkExpect(mw.collecting, false);
+    t.checkExpect(mw.keysLeft, 0);
+    t.checkExpect(mw.slides, null);
+  }
+
+  // walk the manual player of the given world along the shortest path to the
+  // given cell, one tick per move
+  void walkTo(MazeWorld mw, int cell) {
+    PursuitField field = new PursuitField(mw.graph, cell);
+    int at = mw.graph.id(mw.player);
+    while (at != cell) {
+      mw.queueMove(field.toward[at]);
+      mw.onTick();
+      at = mw.graph.id(mw.player);
+    }
+  }
+
+  // test stepping many maze environments at once
+  void testMazeEnvironments(Tester t) {
+    MazeEnvironments envs = new MazeEnvironments(3, 4, 3, 5);
+    envs.reset(1);
+    t.checkExpect(Arrays.copyOfRange(envs.open, 12, 24),
+        MazeGraph.generate(4, 3, new Random(32)).open);
+    t.checkExpect(Arrays.copyOfRange(envs.observations, 0, 4),
+        new int[] {0, 0, envs.open[0], 0});
+    // each agent moves through an open side of the start, to the right or below
+    int[] actions = new int[3];
+    for (int env = 0; env < 3; env++) {
+      actions[env] = Integer.numberOfTrailingZeros(envs.observations[4 * env + 2]);
+    }
+    envs.step(actions);
+    for (int env = 0; env < 3; env++) {
+      t.checkExpect(envs.cell[env], actions[env] == MazeGraph.RIGHT ? 1 : 4);
+      t.checkExpect(envs.observations[4 * env] + envs.observations[4 * env + 1], 1);
+      t.checkExpect(envs.observations[4 * env + 3], 1);
+    }
+    t.checkExpect(envs.rewards, new float[] {MazeEnvironments.STEP_REWARD,
+        MazeEnvironments.STEP_REWARD, MazeEnvironments.STEP_REWARD});
+    t.checkExpect(envs.dones, new byte[] {0, 0, 0});
+    // walls and other actions stay put, until the episode runs out of steps
+    int[] cells = envs.cell.clone();
+    envs.step(new int[] {4, -1, 4});
+    t.checkExpect(envs.cell, cells);
+    envs.step(new int[] {4, 4, 4});
+    envs.step(new int[] {4, 4, 4});
+    t.checkExpect(envs.dones, new byte[] {0, 0, 0});
+    envs.step(new int[] {4, 4, 4});
+    t.checkExpect(envs.dones, new byte[] {1, 1, 1});
+    t.checkExpect(envs.cell, new int[] {0, 0, 0});
+    t.checkExpect(Arrays.copyOfRange(envs.observations, 0, 4),
+        new int[] {0, 0, envs.open[0], 0});
+    envs.step(new int[] {MazeGraph.LEFT, MazeGraph.UP, MazeGraph.LEFT});
+    t.checkExpect(envs.cell, new int[] {0, 0, 0});
+    t.checkExpect(envs.dones, new byte[] {0, 0, 0});
+    t.checkException(new IllegalArgumentException("Expected 3 actions, got 2"),
+        envs, "step", new int[2]);
+
+    // reaching the exit is rewarded, and starts over
+    envs = new MazeEnvironments(2, 2, 1, 100);
+    envs.reset(7);
+    envs.step(new int[] {MazeGraph.RIGHT, 4});
+    t.checkExpect(envs.rewards, new float[] {MazeEnvironments.EXIT_REWARD,
+        MazeEnvironments.STEP_REWARD});
+    t.checkExpect(envs.dones, new byte[] {1, 0});
+    t.checkExpect(envs.cell, new int[] {0, 0});
+
+    // blocks stepped on a pool of threads end the same as on this thread
+    MazeEnvironments alone = new MazeEnvironments(10, 5, 5, 20);
+    MazeEnvironments pooled = new MazeEnvironments(10, 5, 5, 20);
+    alone.threads = 1;
+    pooled.threads = 2;
+    pooled.blockSize = 3;
+    alone.reset(3);
+    pooled.reset(3);
+    t.checkExpect(pooled.open, alone.open);
+    int[][] random = MazeEnvironments.randomActions(10, 50, new Random(4));
+    for (int[] step : random) {
+      alone.step(step);
+      pooled.step(step);
+    }
+    t.checkExpect(pooled.observations, alone.observations);
+    t.checkExpect(pooled.steps, alone.steps);
+    t.checkExpect(pooled.pool != null, true);
+    pooled.close();
+    t.checkExpect(pooled.pool, null);
+  }
+
+  // test the way to the player from every cell
+  // test the way to the player from every cell
+  void testPursuitField(Tester t) {
+    this.initGraph();
+    // g1 has a loop 0-1-4-3, and cell 2 is cut off, so every move rebuilds
+    PursuitField field = new PursuitField(this.g1, 5);
+    t.checkExpect(field.tree, false);
+    t.checkExpect(field.toward, new byte[] {MazeGraph.RIGHT, MazeGraph.DOWN, -1,
+        MazeGraph.RIGHT, MazeGraph.RIGHT, -1});
+    t.checkExpect(field.step(0), 1);
+    t.checkExpect(field.step(5), 5);
+    t.checkExpect(field.step(2), 2);
+    t.checkExpect(field.distance(0), 3);
+    t.checkExpect(field.distance(2), -1);
+    field.moveTo(4);
+    t.checkExpect(field.rebuilds, 2);
+    t.checkExpect(field.distance(0), 2);
+    t.checkExpect(field.step(5), 4);
+
+    // in a maze without loops, a step only turns the two cells of that step
+    ArrayList<Edge> edges = new ArrayList<Edge>(Arrays.asList(
+        new Edge(new Vertex(0, 0), new Vertex(1, 0), 0),
+        new Edge(new Vertex(1, 0), new Vertex(1, 1), 0),
+        new Edge(new Vertex(1, 1), new Vertex(0, 1), 0)));
+    field = new PursuitField(new MazeGraph(2, 2, edges), 0);
+    t.checkExpect(field.tree, true);
+    t.checkExpect(field.distance(2), 3);
+    field.moveTo(1);
+    t.checkExpect(field.rebuilds, 1);
+    t.checkExpect(field.toward, new byte[] {MazeGraph.RIGHT, -1, MazeGraph.RIGHT,
+        MazeGraph.UP});
+    field.moveTo(3);
+    t.checkExpect(field.distance(0), 2);
+    t.checkExpect(field.distance(2), 1);
+    // a jump rebuilds the field
+    field.moveTo(0);
+    t.checkExpect(field.rebuilds, 2);
+    t.checkExpect(field.distance(2), 3);
+
+    // on a big maze, the kept field matches a rebuilt one after a random walk
+    MazeGraph graph = MazeGraph.generate(40, 30, new Random(3));
+    field = new PursuitField(graph, 0);
+    Random rand = new Random(4);
+    int cell = 0;
+    for (int i = 0; i < 5000; i++) {
+      int side = rand.nextInt(4);
+      if (graph.isOpen(cell, side)) {
+        cell = graph.neighbor(cell, side);
+        field.moveTo(cell);
+      }
+    }
+    t.checkExpect(field.rebuilds, 1);
+    PursuitField rebuilt = new PursuitField(graph, cell);
+    t.checkExpect(field.toward, rebuilt.toward);
+  }
+
+  // test pursuers hunting the player
+  void testChase(Tester t) {
+    this.initMazeWorlds();
+    MazeWorld mw = this.mw3;
+    // only in manual gameplay
+    mw.onKeyEvent("p");
+    t.checkExpect(mw.chase, false);
+    mw.onKeyEvent("m");
+    mw.onKeyEvent("p");
+    t.checkExpect(mw.chase, true);
+    t.checkExpect(mw.pursuers.length, 15);
+    t.checkExpect(mw.pursuersAt[0], 0);
+    int count = 0;
+    for (int cell = 0; cell < mw.graph.size(); cell++) {
+      count += mw.pursuersAt[cell];
+    }
+    t.checkExpect(count, 15);
+    t.checkExpect(mw.cellColor(mw.pursuers[0]), MazeWorld.PURSUER_COLOR);
+
+    // pursuers step every PURSUER_TICKS ticks, each one cell nearer the player
+    int[] distances = new int[mw.pursuers.length];
+    for (int i = 0; i < mw.pursuers.length; i++) {
+      distances[i] = mw.pursuit.distance(mw.pursuers[i]);
+    }
+    for (int i = 1; i < MazeWorld.PURSUER_TICKS; i++) {
+      mw.onTick();
+    }
+    t.checkExpect(mw.pursuit.distance(mw.pursuers[0]), distances[0]);
+    mw.renderer.draw(mw);
+    mw.onTick();
+    boolean nearer = true;
+    for (int i = 0; i < mw.pursuers.length; i++) {
+      nearer = nearer && mw.pursuit.distance(mw.pursuers[i]) == distances[i] - 1;
+    }
+    t.checkExpect(nearer, true);
+    t.checkExpect(mw.renderer.dirtyCount > 0, true);
+
+    // the field follows the player's moves
+    int side = mw.graph.isOpen(0, MazeGraph.RIGHT) ? MazeGraph.RIGHT : MazeGraph.DOWN;
+    mw.onKeyEvent(side == MazeGraph.RIGHT ? "right" : "down");
+    mw.onTick();
+    t.checkExpect(mw.pursuit.target, mw.graph.neighbor(0, side));
+    t.checkExpect(mw.pursuit.rebuilds, 1);
+
+    // walking into a pursuer is caught, and so is waiting for one
+    mw.pursuersAt[0]++;
+    mw.onKeyEvent(side == MazeGraph.RIGHT ? "left" : "up");
+    mw.onTick();
+    t.checkExpect(mw.playerCaught, true);
+    t.checkExpect(mw.graph.id(mw.player), 0);
+    mw.onKeyEvent(side == MazeGraph.RIGHT ? "right" : "down");
+    mw.onTick();
+    t.checkExpect(mw.graph.id(mw.player), 0);
+    mw.onKeyEvent("p");
+    t.checkExpect(mw.playerCaught, false);
+    mw.onKeyEvent("p");
+    mw.pursuersAt[mw.pursuers[0]]--;
+    mw.pursuers[0] = mw.graph.neighbor(0, side);
+    mw.pursuersAt[mw.pursuers[0]]++;
+    mw.stepPursuers();
+    t.checkExpect(mw.playerCaught, true);
+    // and escape ends the chase
+    mw.onKeyEvent("escape");
+    t.checkExpect(mw.chase, false);
+    t.checkExpect(mw.playerCaught, false);
+  }
+
+  // test fog of war
+  void testFog(Tester t) {
+    this.initMazeWorlds();
+    this.initGraph();
+    MazeWorld mw = this.mw2;
+    this.searchSmallGraph(mw);
+    mw.width = 3;
+    mw.height = 2;
+    mw.corridors = null;
+    mw.slides = null;
+    mw.initPlayerTrail();
+    mw.player = new Vertex(0, 0);
+    // only in manual gameplay
+    mw.onKeyEvent("g");
+    t.checkExpect(mw.fog, false);
+    t.checkExpect(mw.isFogged(5), false);
+    mw.onKeyEvent("m");
+    mw.player = new Vertex(0, 0);
+    mw.onKeyEvent("g");
+    t.checkExpect(mw.fog, true);
+    // from the start, the row 0-1 and the column 0-3 are seen
+    t.checkExpect(mw.revealedCount, 3);
+    t.checkExpect(mw.isFogged(1), false);
+    t.checkExpect(mw.isFogged(3), false);
+    t.checkExpect(mw.isFogged(4), true);
+    t.checkExpect(mw.cellColor(4), MazeWorld.FOG_COLOR);
+    t.checkExpect(mw.cellColor(5), MazeWorld.FOG_COLOR);
+    t.checkExpect(mw.cellColor(1), Color.WHITE);
+    t.checkExpect(mw.tileColor(1, 1, 0), MazeWorld.FOG_COLOR);
+    t.checkExpect(mw.tileColor(1, 0, 0), Color.GREEN);
+
+    // moving down reveals the rest of the bottom row, and only the cells
+    // moved between and newly seen are repainted
+    mw.renderer.draw(mw);
+    mw.onKeyEvent("down");
+    mw.onTick();
+    t.checkExpect(mw.revealedCount, 5);
+    t.checkExpect(mw.cellColor(5), Color.RED);
+    t.checkExpect(mw.isFogged(2), true);
+    t.checkExpect(mw.renderer.dirtyCount, 4);
+    // seen runs are not revealed again
+    mw.renderer.draw(mw);
+    mw.onKeyEvent("up");
+    mw.onTick();
+    t.checkExpect(mw.revealedCount, 5);
+    t.checkExpect(mw.renderer.dirtyCount, 2);
+
+    // between hidden cells, even the walls are hidden
+    mw.onKeyEvent("g");
+    t.checkExpect(mw.fog, false);
+    mw.onKeyEvent("g");
+    mw.revealed[0] = 1L;
+    ComputedPixelImage front = (ComputedPixelImage) mw.renderer.draw(mw);
+    t.checkExpect(front.getPixel(45, 15), MazeWorld.FOG_COLOR);
+    t.checkExpect(front.getPixel(59, 15), MazeWorld.FOG_COLOR);
+    t.checkExpect(front.getPixel(15, 29), Color.WHITE);
+    // and leaving manual gameplay lifts the fog
+    mw.onKeyEvent("escape");
+    t.checkExpect(mw.fog, false);
+  }
+
+  // test the raceStatus method
+  // test the raceStatus method
+  void testRaceStatus(Tester t) {
+    this.initMazeWorlds();
+    SolverProgress progress = new SolverProgress();
+    progress.visitedCount = 12;
+    t.checkExpect(this.mw1.raceStatus("DFS", progress), "DFS: searching, 12 cells visited");
+    progress.phase = SolverProgress.RECONSTRUCTING;
+    t.checkExpect(this.mw1.raceStatus("DFS", progress), "DFS: found the end after 12 cells");
+    progress.phase = SolverProgress.SOLVED;
+    progress.elapsedNanos = 1500000;
+    t.checkExpect(this.mw1.raceStatus("BFS", progress),
+        "BFS: solved in " + String.format("%.3f", 1.5) + " ms, 12 cells visited");
+    progress.phase = SolverProgress.CANCELLED;
+    t.checkExpect(this.mw1.raceStatus("BFS", progress), "BFS: stopped after 12 cells");
+  }
+
+  // test the SolverWorker and SolverView classes
+  void testSolverWorker(Tester t) {
+    this.initGraph();
+
+    // publishing copies the search's progress into a fresh snapshot
+    SolverWorker worker = new SolverWorker(new BfsSolver(this.g1, 0, 5), 2, 0);
+    SolverProgress before = worker.latest;
+    t.checkExpect(before, new SolverProgress());
+    worker.solver.step(3);
+    worker.publish();
+    t.checkExpect(worker.latest.visitedCount, 3);
+    t.checkExpect(before.visitedCount, 0);
+    t.checkExpect(worker.solver.visitedCell(0), 0);
+    t.checkExpect(worker.solver.visitedCell(1), 3);
+    t.checkExpect(worker.solver.visitedCell(2), 1);
+
+    // a view only marks the cells that have been published
+    SolverView view = new SolverView(this.g1.size());
+    worker.solver.step(1);
+    view.sync(worker);
+    t.checkExpect(view.isVisited(1), true);
+    t.checkExpect(view.isVisited(4), false);
+    t.checkExpect(view.seenVisited, 3);
+
+    // running a worker steps its search to the end
+    worker.run();
+    view.sync(worker);
+    t.checkExpect(worker.latest.phase, SolverProgress.SOLVED);
+    t.checkExpect(worker.latest.pathLength, 4);
+    t.checkExpect(worker.solver.pathCell(0), 5);
+    t.checkExpect(worker.solver.pathCell(3), 0);
+    t.checkExpect(view.onPath(4), true);
+    t.checkExpect(view.onPath(1), false);
+    t.checkExpect(view.progress, worker.latest);
+
+    // a cancelled worker stops its search
+    worker = new SolverWorker(new DfsSolver(this.g1, 0, 5), 1, 0);
+    worker.cancel();
+    worker.run();
+    t.checkExpect(worker.latest.phase, SolverProgress.CANCELLED);
+    t.checkExpect(worker.latest.visitedCount, 0);
+
+    // both searches can race on their own threads
+    this.initMazeWorlds();
+    SolverWorker dfs = new SolverWorker(new DfsSolver(this.mw5.graph, 0, 4199), 64, 0);
+    SolverWorker bfs = new SolverWorker(new BfsSolver(this.mw5.graph, 0, 4199), 64, 0);
+    dfs.start("test-dfs");
+    bfs.start("test-bfs");
+    dfs.awaitDone(10000);
+    bfs.awaitDone(10000);
+    t.checkExpect(dfs.latest.phase, SolverProgress.SOLVED);
+    t.checkExpect(bfs.latest.phase, SolverProgress.SOLVED);
+    t.checkExpect(dfs.latest.pathLength, bfs.latest.pathLength);
+    t.checkExpect(bfs.latest.elapsedNanos > 0, true);
   }
 
 }